@@ -0,0 +1,142 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ADFSMetadataCacheTest {
+
+    private static final String DRS_RESPONSE = "{\"IdentityProviderService\":"
+            + "{\"PassiveAuthEndpoint\":\"https://fs.lindft6.com/adfs/ls\"}}";
+
+    private static final String WEBFINGER_RESPONSE = "{\"subject\":\"https://fs.lindft6.com\","
+            + "\"links\":[{\"rel\":\"http://schemas.microsoft.com/rel/trusted-realm\","
+            + "\"href\":\"https://fs.lindft6.com\"}]}";
+
+    private static final String DOMAIN = "lindft6.com";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = getInstrumentation().getTargetContext();
+        ADFSMetadataCache.clear(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        HttpUrlConnectionFactory.setMockedHttpUrlConnection(null);
+        ADFSMetadataCache.setTimeToLiveMillis(ADFSMetadataCache.DEFAULT_TIME_TO_LIVE_MILLIS);
+        ADFSMetadataCache.clear(mContext);
+    }
+
+    @Test
+    public void testDRSMetadataSurvivesProcessRestart() {
+        ADFSMetadataCache.putDRSMetadata(mContext, DOMAIN, new Gson().fromJson(DRS_RESPONSE, DRSMetadata.class));
+        ADFSMetadataCache.clearInMemoryCache();
+
+        final DRSMetadata cached = ADFSMetadataCache.getDRSMetadata(mContext, "LINDFT6.com");
+        assertNotNull(cached);
+        assertEquals("https://fs.lindft6.com/adfs/ls", cached.getIdentityProviderService().getPassiveAuthEndpoint());
+    }
+
+    @Test
+    public void testWebFingerMetadataIsKeyedByAuthority() throws Exception {
+        final URI authority = new URI("https://fs.lindft6.com/adfs/ls");
+        ADFSMetadataCache.putWebFingerMetadata(mContext, DOMAIN, authority,
+                new Gson().fromJson(WEBFINGER_RESPONSE, WebFingerMetadata.class));
+        ADFSMetadataCache.clearInMemoryCache();
+
+        final WebFingerMetadata cached = ADFSMetadataCache.getWebFingerMetadata(mContext, DOMAIN, authority);
+        assertNotNull(cached);
+        assertEquals("https://fs.lindft6.com", cached.getSubject());
+        assertNull(ADFSMetadataCache.getWebFingerMetadata(mContext, DOMAIN, new URI("https://other.lindft6.com/adfs/ls")));
+    }
+
+    @Test
+    public void testUntrustedWebFingerMetadataIsNotCached() throws IOException {
+        System.setProperty("dexmaker.dexcache", mContext.getCacheDir().getPath());
+        ADFSMetadataCache.putDRSMetadata(mContext, DOMAIN, new Gson().fromJson(DRS_RESPONSE, DRSMetadata.class));
+
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        Mockito.when(mockedConnection.getInputStream()).thenReturn(Util.createInputStream(WEBFINGER_RESPONSE));
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        // The WebFinger response only trusts https://fs.lindft6.com
+        final URL authority = new URL("https://untrusted.lindft6.com/adfs/ls");
+        try {
+            new Discovery(mContext).validateAuthorityADFS(authority, DOMAIN);
+            fail("Expected the authority to be rejected");
+        } catch (final AuthenticationException e) {
+            assertEquals(ADALError.DEVELOPER_AUTHORITY_IS_NOT_VALID_INSTANCE, e.getCode());
+        }
+
+        ADFSMetadataCache.clearInMemoryCache();
+        assertNull(ADFSMetadataCache.getWebFingerMetadata(mContext, DOMAIN, URI.create(authority.toString())));
+    }
+
+    @Test
+    public void testExpiredMetadataIsNotReturned() {
+        ADFSMetadataCache.setTimeToLiveMillis(0);
+        ADFSMetadataCache.putDRSMetadata(mContext, DOMAIN, new Gson().fromJson(DRS_RESPONSE, DRSMetadata.class));
+
+        assertNull(ADFSMetadataCache.getDRSMetadata(mContext, DOMAIN));
+        assertNull(mContext.getSharedPreferences(ADFSMetadataCache.SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE)
+                .getString("drs|" + DOMAIN, null));
+    }
+
+    @Test
+    public void testNullContextKeepsInMemoryCacheOnly() {
+        ADFSMetadataCache.putDRSMetadata(null, DOMAIN, new Gson().fromJson(DRS_RESPONSE, DRSMetadata.class));
+        assertNotNull(ADFSMetadataCache.getDRSMetadata(null, DOMAIN));
+
+        ADFSMetadataCache.clearInMemoryCache();
+        assertNull(ADFSMetadataCache.getDRSMetadata(mContext, DOMAIN));
+    }
+}
@@ -178,6 +178,58 @@ public final class AcquireTokenSilentHandlerTest {
         }
     }
 
+    /**
+     * Acquire token uses refresh token while offline, the stale token is returned with extended lifetime enabled.
+     */
+    @Test
+    public void testRefreshTokenNoNetworkReturnsStaleToken() throws AuthenticationException {
+        final FileMockContext mockContext = new FileMockContext(getApplicationContext());
+        mockContext.setConnectionAvailable(false);
+        final ITokenCacheStore mockCache = getCacheForRefreshToken(TEST_IDTOKEN_USERID, TEST_IDTOKEN_UPN);
+        final String key = CacheKey.createCacheKey(VALID_AUTHORITY, "resource", "clientId", false, TEST_IDTOKEN_USERID, null);
+        final TokenCacheItem staleItem = mockCache.getItem(key);
+        final Calendar extendedExpiresOn = new GregorianCalendar();
+        extendedExpiresOn.add(Calendar.HOUR, 1);
+        staleItem.setExtendedExpiresOn(extendedExpiresOn.getTime());
+        mockCache.setItem(key, staleItem);
+
+        final AuthenticationRequest authenticationRequest = getAuthenticationRequest(VALID_AUTHORITY, "resource", "clientId", true);
+        authenticationRequest.setUserIdentifierType(UserIdentifierType.UniqueId);
+        authenticationRequest.setUserId(TEST_IDTOKEN_USERID);
+        final AcquireTokenSilentHandler acquireTokenSilentHandler = getAcquireTokenHandler(mockContext,
+                authenticationRequest, mockCache);
+
+        final AuthenticationResult result = acquireTokenSilentHandler.acquireTokenWithRefreshToken("refreshToken");
+
+        assertTrue(result.isExtendedLifeTimeToken());
+        assertEquals("accessToken", result.getAccessToken());
+        clearCache(mockCache);
+    }
+
+    /**
+     * Acquire token uses refresh token while offline, without extended lifetime the request fails fast.
+     */
+    @Test
+    public void testRefreshTokenNoNetworkWithoutExtendedLifetime() {
+        final FileMockContext mockContext = new FileMockContext(getApplicationContext());
+        mockContext.setConnectionAvailable(false);
+        final ITokenCacheStore mockCache = getCacheForRefreshToken(TEST_IDTOKEN_USERID, TEST_IDTOKEN_UPN);
+        final AuthenticationRequest authenticationRequest = getAuthenticationRequest(VALID_AUTHORITY, "resource", "clientId", false);
+        authenticationRequest.setUserIdentifierType(UserIdentifierType.UniqueId);
+        authenticationRequest.setUserId(TEST_IDTOKEN_USERID);
+        final AcquireTokenSilentHandler acquireTokenSilentHandler = getAcquireTokenHandler(mockContext,
+                authenticationRequest, mockCache);
+
+        try {
+            acquireTokenSilentHandler.acquireTokenWithRefreshToken("refreshToken");
+            fail("Expect exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.DEVICE_CONNECTION_IS_NOT_AVAILABLE, exception.getCode());
+        } finally {
+            clearCache(mockCache);
+        }
+    }
+
     /**
      * Acquire token uses refresh token, but web request returns error with an empty body.
      */
@@ -0,0 +1,128 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class AcquireTokenSilentSyncFastPathTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String RESOURCE = "resource";
+
+    private static final String CLIENT_ID = "clientid";
+
+    private static final String USER_ID = "userid";
+
+    private static final String ACCESS_TOKEN = "accessToken";
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+    }
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void testCacheHitIsResolvedOnCallingThread() throws AuthenticationException, InterruptedException {
+        final ThreadRecordingCache cache = new ThreadRecordingCache();
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, RESOURCE, CLIENT_ID, USER_ID), createValidItem());
+        final AuthenticationContext context = new AuthenticationContext(getInstrumentation().getContext(),
+                AUTHORITY, false, cache);
+
+        final AuthenticationResult result = context.acquireTokenSilentSync(RESOURCE, CLIENT_ID, USER_ID);
+
+        assertEquals(ACCESS_TOKEN, result.getAccessToken());
+        assertEquals(1, cache.getReadThreads().size());
+        assertTrue(cache.getReadThreads().contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testCacheMissFallsBackToBackgroundPipeline() throws InterruptedException {
+        final ThreadRecordingCache cache = new ThreadRecordingCache();
+        final AuthenticationContext context = new AuthenticationContext(getInstrumentation().getContext(),
+                AUTHORITY, false, cache);
+
+        try {
+            context.acquireTokenSilentSync(RESOURCE, CLIENT_ID, USER_ID);
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.AUTH_REFRESH_FAILED_PROMPT_NOT_ALLOWED, exception.getCode());
+        }
+
+        // The cache is looked up again by the background pipeline
+        assertTrue(cache.getReadThreads().size() > 1);
+    }
+
+    private static TokenCacheItem createValidItem() {
+        final Calendar expiresOn = new GregorianCalendar();
+        expiresOn.add(Calendar.MINUTE, 30);
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(AUTHORITY);
+        item.setResource(RESOURCE);
+        item.setClientId(CLIENT_ID);
+        item.setAccessToken(ACCESS_TOKEN);
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn.getTime());
+        item.setUserInfo(new UserInfo(USER_ID, "", "", "", USER_ID));
+        return item;
+    }
+
+    private static final class ThreadRecordingCache extends MemoryTokenCacheStore {
+        private final Set<Thread> mReadThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+        @Override
+        public TokenCacheItem getItem(final String key) {
+            mReadThreads.add(Thread.currentThread());
+            return super.getItem(key);
+        }
+
+        Set<Thread> getReadThreads() {
+            return mReadThreads;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.microsoft.identity.common.adal.internal.net.HttpUrlConnectionFactory;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class AcquireTokensSilentTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String CLIENT_ID = "clientid";
+
+    // Object id of the user in Util.TEST_IDTOKEN
+    private static final String USER_ID = "4f859989-a2ff-411e-9048-c322247ac62c";
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+        AuthenticationSettings.INSTANCE.setUseBroker(false);
+    }
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+        HttpUrlConnectionFactory.setMockedHttpUrlConnection(null);
+        Telemetry.getInstance().registerDispatcher(null, false);
+    }
+
+    @Test
+    public void testAllResourcesFromCache() throws InterruptedException {
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource1", CLIENT_ID, USER_ID),
+                createAccessTokenItem("resource1", "accessToken1"));
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource2", CLIENT_ID, USER_ID),
+                createAccessTokenItem("resource2", "accessToken2"));
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, cache);
+
+        final BatchAuthenticationResult result = acquireTokensSilent(context, "resource1", "resource2");
+
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getResults().size());
+        assertEquals("accessToken1", result.getResult("resource1").getAccessToken());
+        assertEquals("accessToken2", result.getResult("resource2").getAccessToken());
+    }
+
+    @Test
+    public void testCacheMissesRedeemedWithSharedRefreshToken() throws InterruptedException, IOException,
+            JSONException {
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource1", CLIENT_ID, USER_ID),
+                createAccessTokenItem("resource1", "accessToken1"));
+        final TokenCacheItem mrrtItem = createAccessTokenItem(null, null);
+        mrrtItem.setIsMultiResourceRefreshToken(true);
+        cache.setItem(CacheKey.createCacheKeyForMRRT(AUTHORITY, CLIENT_ID, USER_ID), mrrtItem);
+
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        Mockito.when(mockedConnection.getInputStream())
+                .thenReturn(Util.createInputStream(Util.getSuccessTokenResponse(true, false)),
+                        Util.createInputStream(Util.getSuccessTokenResponse(true, false)));
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, cache);
+
+        final BatchAuthenticationResult result = acquireTokensSilent(context, "resource1", "resource2", "resource3");
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getResults().size());
+        assertEquals("accessToken1", result.getResult("resource1").getAccessToken());
+        assertEquals("I am a new access token", result.getResult("resource2").getAccessToken());
+        assertEquals("I am a new access token", result.getResult("resource3").getAccessToken());
+        Mockito.verify(mockedConnection, Mockito.times(2)).getInputStream();
+
+        // Both refreshed tokens were written to the cache
+        assertNotNull(cache.getItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource2", CLIENT_ID, USER_ID)));
+        assertNotNull(cache.getItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource3", CLIENT_ID, USER_ID)));
+    }
+
+    @Test
+    public void testParallelRefreshesReportHttpEventEach() throws InterruptedException, IOException,
+            JSONException {
+        final List<Map<String, String>> httpEvents = Collections.synchronizedList(
+                new ArrayList<Map<String, String>>());
+        Telemetry.getInstance().registerDispatcher(new IDispatcher() {
+            @Override
+            public void dispatchEvent(final Map<String, String> events) {
+                if (EventStrings.HTTP_EVENT.equals(events.get(EventStrings.EVENT_NAME))) {
+                    httpEvents.add(events);
+                }
+            }
+        }, false);
+
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        final TokenCacheItem mrrtItem = createAccessTokenItem(null, null);
+        mrrtItem.setIsMultiResourceRefreshToken(true);
+        cache.setItem(CacheKey.createCacheKeyForMRRT(AUTHORITY, CLIENT_ID, USER_ID), mrrtItem);
+
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        Mockito.when(mockedConnection.getInputStream())
+                .thenReturn(Util.createInputStream(Util.getSuccessTokenResponse(true, false)),
+                        Util.createInputStream(Util.getSuccessTokenResponse(true, false)),
+                        Util.createInputStream(Util.getSuccessTokenResponse(true, false)));
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, cache);
+
+        final BatchAuthenticationResult result = acquireTokensSilent(context, "resource1", "resource2", "resource3");
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3, httpEvents.size());
+        for (final Map<String, String> httpEvent : httpEvents) {
+            assertNotNull(httpEvent.get(EventStrings.RESPONSE_TIME));
+        }
+    }
+
+    @Test
+    public void testRefreshesAboveQueueBoundAreReportedPerResource() throws InterruptedException, IOException {
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        final TokenCacheItem mrrtItem = createAccessTokenItem(null, null);
+        mrrtItem.setIsMultiResourceRefreshToken(true);
+        cache.setItem(CacheKey.createCacheKeyForMRRT(AUTHORITY, CLIENT_ID, USER_ID), mrrtItem);
+
+        // Hold the refresh token requests until all of them were submitted
+        final int accepted = AcquireTokenRequest.MAX_PARALLEL_REFRESH_REQUESTS
+                + AcquireTokenRequest.MAX_QUEUED_REFRESH_REQUESTS;
+        final CountDownLatch inFlight = new CountDownLatch(AcquireTokenRequest.MAX_PARALLEL_REFRESH_REQUESTS);
+        final CountDownLatch release = new CountDownLatch(1);
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        Mockito.when(mockedConnection.getInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+                inFlight.countDown();
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return Util.createInputStream(Util.getSuccessTokenResponse(true, false));
+            }
+        });
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, cache);
+        final String[] resources = new String[accepted + 4];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = "resource" + i;
+        }
+
+        final AtomicReference<BatchAuthenticationResult> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        context.acquireTokensSilent(Arrays.asList(resources), CLIENT_ID, USER_ID,
+                new AuthenticationCallback<BatchAuthenticationResult>() {
+                    @Override
+                    public void onSuccess(final BatchAuthenticationResult batchResult) {
+                        result.set(batchResult);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Exception exc) {
+                        done.countDown();
+                    }
+                });
+        assertTrue(inFlight.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // The remaining requests are submitted right after the first ones started
+        Thread.sleep(500);
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(result.get());
+        assertEquals(accepted, result.get().getResults().size());
+        assertEquals(4, result.get().getErrors().size());
+        for (final AuthenticationException error : result.get().getErrors().values()) {
+            assertEquals(ADALError.IO_EXCEPTION, error.getCode());
+        }
+    }
+
+    @Test
+    public void testResourceWithoutTokenIsReportedPerResource() throws InterruptedException {
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, "resource1", CLIENT_ID, USER_ID),
+                createAccessTokenItem("resource1", "accessToken1"));
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, cache);
+
+        final BatchAuthenticationResult result = acquireTokensSilent(context, "resource1", "resource2");
+
+        assertFalse(result.isSuccessful());
+        assertEquals("accessToken1", result.getResult("resource1").getAccessToken());
+        assertEquals(ADALError.AUTH_REFRESH_FAILED_PROMPT_NOT_ALLOWED, result.getError("resource2").getCode());
+    }
+
+    @Test
+    public void testEmptyResources() {
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, new MemoryTokenCacheStore());
+
+        try {
+            context.acquireTokensSilent(Collections.<String>emptyList(), CLIENT_ID, USER_ID,
+                    new AuthenticationCallback<BatchAuthenticationResult>() {
+                        @Override
+                        public void onSuccess(final BatchAuthenticationResult result) {
+                        }
+
+                        @Override
+                        public void onError(final Exception exc) {
+                        }
+                    });
+            fail("Expected exception");
+        } catch (final IllegalArgumentException exception) {
+            assertTrue(exception.getMessage().contains("resources"));
+        }
+    }
+
+    private BatchAuthenticationResult acquireTokensSilent(final AuthenticationContext context,
+                                                         final String... resources) throws InterruptedException {
+        final AtomicReference<BatchAuthenticationResult> result = new AtomicReference<>();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        context.acquireTokensSilent(Arrays.asList(resources), CLIENT_ID, USER_ID,
+                new AuthenticationCallback<BatchAuthenticationResult>() {
+                    @Override
+                    public void onSuccess(final BatchAuthenticationResult batchResult) {
+                        result.set(batchResult);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Exception exc) {
+                        error.set(exc);
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        if (error.get() != null) {
+            fail("Unexpected error: " + error.get().getMessage());
+        }
+
+        return result.get();
+    }
+
+    private static TokenCacheItem createAccessTokenItem(final String resource, final String accessToken) {
+        final Calendar expiresOn = new GregorianCalendar();
+        expiresOn.add(Calendar.MINUTE, 30);
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(AUTHORITY);
+        item.setResource(resource);
+        item.setClientId(CLIENT_ID);
+        item.setAccessToken(accessToken);
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn.getTime());
+        item.setUserInfo(new UserInfo(USER_ID, "", "", "", USER_ID));
+        return item;
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class AliasAuthoritiesTest {
+
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void testNoMetadata() throws MalformedURLException {
+        final AliasAuthorities aliasAuthorities = AliasAuthorities.forAuthority(AUTHORITY);
+        assertEquals(AUTHORITY, aliasAuthorities.getPreferredCacheAuthority());
+        assertTrue(aliasAuthorities.getOtherAliasAuthorities().isEmpty());
+    }
+
+    @Test
+    public void testAliasesWithoutPassedInAndPreferredAuthority() throws MalformedURLException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap("login.microsoftonline.com",
+                new InstanceDiscoveryMetadata("login.microsoftonline.com", "login.windows.net",
+                        Arrays.asList("login.microsoftonline.com", "login.windows.net", "sts.windows.net")));
+
+        final AliasAuthorities aliasAuthorities = AliasAuthorities.forAuthority(AUTHORITY);
+        assertEquals("https://login.windows.net/common", aliasAuthorities.getPreferredCacheAuthority());
+        assertEquals(Collections.singletonList("https://sts.windows.net/common"),
+                aliasAuthorities.getOtherAliasAuthorities());
+    }
+
+    @Test
+    public void testMemoizedUntilMetadataChanges() throws MalformedURLException {
+        final AliasAuthorities first = AliasAuthorities.forAuthority(AUTHORITY);
+        assertSame(first, AliasAuthorities.forAuthority(AUTHORITY));
+
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap("login.microsoftonline.com",
+                new InstanceDiscoveryMetadata("login.microsoftonline.com", "login.windows.net"));
+        final AliasAuthorities updated = AliasAuthorities.forAuthority(AUTHORITY);
+        assertNotSame(first, updated);
+        assertEquals("https://login.windows.net/common", updated.getPreferredCacheAuthority());
+
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+        assertEquals(AUTHORITY, AliasAuthorities.forAuthority(AUTHORITY).getPreferredCacheAuthority());
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void testInvalidAuthority() throws MalformedURLException {
+        AliasAuthorities.forAuthority("not a url");
+    }
+}
@@ -0,0 +1,117 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public final class AsyncDispatcherTest {
+
+    private static final String CONSTANT_REQUEST_ID = "random";
+
+    private static final long WAIT_TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void testEventsDispatchedOffCallerThread() throws MalformedURLException, InterruptedException {
+        final CountDownLatch dispatched = new CountDownLatch(1);
+        final AtomicReference<Thread> dispatchThread = new AtomicReference<>();
+        final AsyncDispatcher dispatcher = new AsyncDispatcher(new AggregatedDispatcher(new IDispatcher() {
+            @Override
+            public void dispatchEvent(final Map<String, String> events) {
+                dispatchThread.set(Thread.currentThread());
+                assertTrue(events.containsKey(EventStrings.OAUTH_ERROR_CODE));
+                dispatched.countDown();
+            }
+        }));
+
+        dispatcher.receive(CONSTANT_REQUEST_ID, createHttpEvent());
+        dispatcher.flush(CONSTANT_REQUEST_ID);
+
+        assertTrue(dispatched.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), dispatchThread.get());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testFullQueueDropsEvents() throws MalformedURLException, InterruptedException {
+        final CountDownLatch blockDispatch = new CountDownLatch(1);
+        final CountDownLatch firstDispatched = new CountDownLatch(1);
+        final AtomicInteger dispatchCount = new AtomicInteger();
+        final int queueCapacity = 2;
+        final AsyncDispatcher dispatcher = new AsyncDispatcher(new DefaultDispatcher(new IDispatcher() {
+            @Override
+            public void dispatchEvent(final Map<String, String> events) {
+                dispatchCount.incrementAndGet();
+                firstDispatched.countDown();
+                try {
+                    blockDispatch.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }), queueCapacity, 1, 0);
+
+        // The first event keeps the flusher busy, the following ones fill the queue.
+        dispatcher.receive(CONSTANT_REQUEST_ID, createHttpEvent());
+        assertTrue(firstDispatched.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int i = 0; i < queueCapacity * 2; i++) {
+            dispatcher.receive(CONSTANT_REQUEST_ID, createHttpEvent());
+        }
+
+        assertEquals(queueCapacity, dispatcher.getPendingCount());
+        blockDispatch.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testOrphanedRequestsEvicted() throws MalformedURLException {
+        final AggregatedDispatcher dispatcher = new AggregatedDispatcher(new AggregatedTelemetryTestClass(), 1);
+        dispatcher.receive(CONSTANT_REQUEST_ID, createHttpEvent());
+        assertEquals(1, dispatcher.getObjectsToBeDispatched().size());
+
+        dispatcher.evictOrphanedRequests(System.currentTimeMillis() + 2);
+        assertTrue(dispatcher.getObjectsToBeDispatched().isEmpty());
+    }
+
+    private HttpEvent createHttpEvent() throws MalformedURLException {
+        final HttpEvent httpEvent = new HttpEvent(EventStrings.HTTP_EVENT);
+        httpEvent.setHttpPath(new URL("https://contoso.com"));
+        httpEvent.setOauthErrorCode("interaction_required");
+        return httpEvent;
+    }
+}
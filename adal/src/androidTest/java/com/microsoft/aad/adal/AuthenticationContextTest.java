@@ -48,8 +48,10 @@ import static org.mockito.Mockito.when;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -58,6 +60,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.util.Base64;
 
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.test.annotation.UiThreadTest;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -2333,6 +2336,47 @@ public final class AuthenticationContextTest {
                 callback.getCallbackException().getMessage().contains("User cancelled the flow"));
     }
 
+    @Test
+    public void testOnActivityResultBrokerRequestResumeSignalsHandled() throws InterruptedException {
+        final ITokenCacheStore cache = mock(ITokenCacheStore.class);
+        final FileMockContext mockContext = new FileMockContext(getInstrumentation().getContext());
+        final AuthenticationContext authContext = new AuthenticationContext(mockContext,
+                VALID_AUTHORITY, false, cache);
+        final TestAuthCallback callback = new TestAuthCallback();
+
+        final Intent data = new Intent();
+        data.putExtra(AuthenticationConstants.Browser.REQUEST_ID, callback.hashCode());
+
+        final CountDownLatch handled = new CountDownLatch(1);
+        final BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                if (intent.getIntExtra(AuthenticationConstants.Browser.REQUEST_ID, 0) == callback.hashCode()) {
+                    handled.countDown();
+                }
+            }
+        };
+        LocalBroadcastManager.getInstance(mockContext).registerReceiver(receiver,
+                new IntentFilter(AuthenticationConstants.Browser.ACTION_BROKER_RESUME_HANDLED));
+
+        try {
+            // act
+            authContext.acquireToken(Mockito.mock(Activity.class), "resource", "clientid", "redirect",
+                    PromptBehavior.Always, callback);
+            final CountDownLatch signal = new CountDownLatch(1);
+            signal.await(ACTIVITY_TIME_OUT, TimeUnit.MILLISECONDS);
+
+            authContext.onActivityResult(BROWSER_FLOW, AuthenticationConstants.UIResponse.BROKER_REQUEST_RESUME, data);
+
+            // assert
+            assertTrue("Broker resume handled is signalled", handled.await(ACTIVITY_TIME_OUT, TimeUnit.MILLISECONDS));
+            assertEquals(ADALError.BROKER_APP_INSTALLATION_STARTED,
+                    ((AuthenticationException) callback.getCallbackException()).getCode());
+        } finally {
+            LocalBroadcastManager.getInstance(mockContext).unregisterReceiver(receiver);
+        }
+    }
+
     @Test
     public void testOnActivityResultResultCodeError() throws InterruptedException {
         final ITokenCacheStore cache = mock(ITokenCacheStore.class);
@@ -3423,6 +3467,84 @@ public final class AuthenticationContextTest {
         context.deserialize(differentVersionString);
     }
 
+    /**
+     * Test the deserialize() function where the version attribute comes before the token cache items
+     * in the blob. The single pass reader is expected to accept either order.
+     */
+    @Test
+    public void testDeserializeVersionBeforeTokenCacheItems() throws AuthenticationException {
+        final FileMockContext mockContext = new FileMockContext(getInstrumentation().getContext());
+        final DefaultTokenCacheStore mockCache = new DefaultTokenCacheStore(mockContext);
+        addFRTCacheItem(mockCache);
+        final AuthenticationContext context = getAuthenticationContext(mockContext, TEST_AUTHORITY, false, mockCache);
+        final String serializedBlob = context.serialize(TEST_IDTOKEN_USERID);
+        assertTrue(serializedBlob.indexOf("\"version\"") < serializedBlob.indexOf("\"tokenCacheItems\""));
+        this.clearCache(context);
+
+        context.deserialize(serializedBlob);
+        assertFalse(mockCache.getTokensForUser(TEST_IDTOKEN_USERID).isEmpty());
+    }
+
+    /**
+     * Test the deserialize() function where the blob has no version attribute. The function is
+     * expected to throw the DeserializationAuthenticationException.
+     */
+    @Test(expected = DeserializationAuthenticationException.class)
+    public void testDeserializeMissingVersion() throws AuthenticationException {
+        final String missingVersionString = "{\"tokenCacheItems\":[{\"authority\":\"https://login.windows.net/ComMon/\",\"refresh_token\":\"FRT\",\"foci\":\"1\"}]}";
+        final FileMockContext mockContext = new FileMockContext(getInstrumentation().getContext());
+        final DefaultTokenCacheStore mockCache = new DefaultTokenCacheStore(mockContext);
+        final AuthenticationContext context = getAuthenticationContext(mockContext, VALID_AUTHORITY, false, mockCache);
+        context.deserialize(missingVersionString);
+    }
+
+    /**
+     * Test the deserializeAll() function with several valid blobs. All the deserialized FoCI token
+     * cache items are expected to be stored back to the cache store.
+     */
+    @Test
+    public void testDeserializeAllValid() throws AuthenticationException {
+        final FileMockContext mockContext = new FileMockContext(getInstrumentation().getContext());
+        final DefaultTokenCacheStore mockCache = new DefaultTokenCacheStore(mockContext);
+        addFRTCacheItem(mockCache);
+        final AuthenticationContext context = getAuthenticationContext(mockContext, TEST_AUTHORITY, false, mockCache);
+        final String serializedBlob = context.serialize(TEST_IDTOKEN_USERID);
+        this.clearCache(context);
+
+        final List<String> serializedBlobs = new ArrayList<>();
+        serializedBlobs.add(serializedBlob);
+        serializedBlobs.add(serializedBlob);
+        context.deserializeAll(serializedBlobs);
+        assertFalse(mockCache.getTokensForUser(TEST_IDTOKEN_USERID).isEmpty());
+    }
+
+    /**
+     * Test the deserializeAll() function where one of the blobs has an incompatible version. The
+     * function is expected to throw the DeserializationAuthenticationException without storing
+     * any of the blobs.
+     */
+    @Test
+    public void testDeserializeAllOneInvalidBlob() throws AuthenticationException {
+        final FileMockContext mockContext = new FileMockContext(getInstrumentation().getContext());
+        final DefaultTokenCacheStore mockCache = new DefaultTokenCacheStore(mockContext);
+        addFRTCacheItem(mockCache);
+        final AuthenticationContext context = getAuthenticationContext(mockContext, TEST_AUTHORITY, false, mockCache);
+        final String serializedBlob = context.serialize(TEST_IDTOKEN_USERID);
+        this.clearCache(context);
+
+        final List<String> serializedBlobs = new ArrayList<>();
+        serializedBlobs.add(serializedBlob);
+        serializedBlobs.add(serializedBlob.replace("\"version\":1", "\"version\":2"));
+        try {
+            context.deserializeAll(serializedBlobs);
+            Assert.fail("Not expected.");
+        } catch (final DeserializationAuthenticationException exception) {
+            assertEquals(ADALError.INCOMPATIBLE_BLOB_VERSION, exception.getCode());
+        }
+
+        assertFalse(mockCache.getAll().hasNext());
+    }
+
     @Test
     public void testMergeClaimsWithValidInput() throws JSONException {
 
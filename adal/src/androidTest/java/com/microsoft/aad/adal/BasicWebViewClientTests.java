@@ -26,6 +26,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.webkit.WebView;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiThread;
 import androidx.test.annotation.UiThreadTest;
@@ -40,6 +41,8 @@ import org.mockito.Mockito;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.microsoft.aad.adal.AuthenticationConstants.UIResponse.BROWSER_CODE_ERROR;
 import static com.microsoft.identity.common.adal.internal.AuthenticationConstants.Broker.AUTHENTICATOR_MFA_LINKING_PREFIX;
@@ -371,6 +374,90 @@ public class BasicWebViewClientTests {
         }
     }
 
+    @Test
+    public void testInstallRequestOpensBrowserOnlyOnceCallerIsReady() {
+        final AtomicReference<Runnable> readyAction = new AtomicReference<>();
+        final AtomicInteger openedLinks = new AtomicInteger();
+        final BasicWebViewClient dummyClient = new BasicWebViewClient(
+                androidx.test.platform.app.InstrumentationRegistry.getInstrumentation().getContext(),
+                TEST_INSTALL_REQUEST_URL,
+                new AuthenticationRequest(
+                        "NA",
+                        "NA",
+                        "NA",
+                        "NA",
+                        "user",
+                        false
+                ),
+                new UIEvent("")) {
+            @Override
+            public void showSpinner(boolean status) {
+                // Not under test
+            }
+
+            @Override
+            public void sendResponse(int returnCode, Intent responseIntent) {
+                // Not under test
+            }
+
+            @Override
+            public void cancelWebViewRequest(@Nullable Intent errorIntent) {
+                // Not under test
+            }
+
+            @Override
+            public void prepareForBrokerResumeRequest() {
+                // Not under test
+            }
+
+            @Override
+            public void prepareForBrokerResumeRequest(@NonNull Runnable onReady) {
+                readyAction.set(onReady);
+            }
+
+            @Override
+            public void setPKeyAuthStatus(boolean status) {
+                // Not under test
+            }
+
+            @Override
+            public void postRunnable(Runnable item) {
+                // Not under test
+            }
+
+            @Override
+            public void processRedirectUrl(WebView view, String url) {
+                // Not under test
+            }
+
+            @Override
+            public boolean processInvalidUrl(WebView view, String url) {
+                return false;
+            }
+
+            @Override
+            protected void openLinkInBrowser(String url) {
+                assertEquals(url, "myapplink.com");
+                openedLinks.incrementAndGet();
+            }
+        };
+
+        final long start = System.currentTimeMillis();
+        dummyClient.shouldOverrideUrlLoading(
+                mMockWebView,
+                AuthenticationConstants.Broker.BROWSER_EXT_INSTALL_PREFIX
+                        + "https://testdomain.com?app_link=myapplink.com"
+        );
+
+        // The callback thread must not be stalled waiting for the caller
+        assertTrue(System.currentTimeMillis() - start < AuthenticationActivity.BROKER_RESUME_READY_TIMEOUT_MILLIS);
+        assertEquals(0, openedLinks.get());
+        Mockito.verify(mMockWebView).stopLoading();
+
+        readyAction.get().run();
+        assertEquals(1, openedLinks.get());
+    }
+
     @Test
     public void testOnReceivedErrorSendsIntentWithErrorData() throws InterruptedException {
         final int errCode = 400;
@@ -0,0 +1,237 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class CancellationTokenTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final long LONG_WAIT_MILLIS = 10000;
+
+    private static final long CANCEL_DELAY_MILLIS = 100;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+    }
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void testTokenWithoutDeadlineDoesNotExpire() throws AuthenticationException {
+        final CancellationToken token = new CancellationToken();
+
+        assertFalse(token.isExpired());
+        assertFalse(token.isCancelled());
+        assertEquals(Long.MAX_VALUE, token.getRemainingMillis());
+        token.throwIfCancelledOrExpired();
+    }
+
+    @Test
+    public void testExpiredToken() {
+        final CancellationToken token = CancellationToken.withTimeout(0, TimeUnit.MILLISECONDS);
+
+        assertTrue(token.isExpired());
+        assertErrorCode(ADALError.REQUEST_DEADLINE_EXCEEDED, token);
+    }
+
+    @Test
+    public void testCancelledToken() {
+        final CancellationToken token = CancellationToken.withTimeout(1, TimeUnit.HOURS);
+        token.cancel();
+
+        assertTrue(token.isCancelled());
+        assertErrorCode(ADALError.REQUEST_CANCELLED, token);
+    }
+
+    @Test
+    public void testCancelReleasesAwait() throws InterruptedException {
+        final CancellationToken token = new CancellationToken();
+        cancelLater(token);
+
+        final long startedAt = System.currentTimeMillis();
+        try {
+            token.await(new CountDownLatch(1));
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.REQUEST_CANCELLED, exception.getCode());
+        }
+
+        assertTrue(System.currentTimeMillis() - startedAt < LONG_WAIT_MILLIS);
+    }
+
+    @Test
+    public void testAwaitReturnsWhenLatchReleased() throws AuthenticationException, InterruptedException {
+        final CancellationToken token = CancellationToken.withTimeout(1, TimeUnit.HOURS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        latch.countDown();
+
+        token.await(latch);
+    }
+
+    @Test
+    public void testAwaitExpires() throws InterruptedException {
+        final CancellationToken token = CancellationToken.withTimeout(CANCEL_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+
+        try {
+            token.await(new CountDownLatch(1));
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.REQUEST_DEADLINE_EXCEEDED, exception.getCode());
+        }
+    }
+
+    @Test
+    public void testCancelInterruptsSleep() throws InterruptedException {
+        final CancellationToken token = new CancellationToken();
+        cancelLater(token);
+
+        final long startedAt = System.currentTimeMillis();
+        try {
+            token.sleep(LONG_WAIT_MILLIS);
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.REQUEST_CANCELLED, exception.getCode());
+        }
+
+        assertTrue(System.currentTimeMillis() - startedAt < LONG_WAIT_MILLIS);
+    }
+
+    @Test
+    public void testLockGivesUpAtDeadline() throws InterruptedException {
+        final ReentrantLock lock = new ReentrantLock();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+
+        try {
+            CancellationToken.withTimeout(CANCEL_DELAY_MILLIS, TimeUnit.MILLISECONDS).lock(lock);
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(ADALError.REQUEST_DEADLINE_EXCEEDED, exception.getCode());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testExpiredRequestFailsWithDeadlineError() throws InterruptedException {
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, new MemoryTokenCacheStore());
+
+        final Future<AuthenticationResult> future = context.acquireTokenSilentWithCancellation("resource",
+                "clientid", "userid", CancellationToken.withTimeout(0, TimeUnit.MILLISECONDS), null);
+
+        try {
+            future.get(LONG_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            fail("Expected exception");
+        } catch (final ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof AuthenticationException);
+            assertEquals(ADALError.REQUEST_DEADLINE_EXCEEDED,
+                    ((AuthenticationException) exception.getCause()).getCode());
+        } catch (final TimeoutException exception) {
+            fail("The request did not complete");
+        }
+    }
+
+    @Test
+    public void testCancellingFutureCancelsToken() {
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, new MemoryTokenCacheStore());
+        final CancellationToken token = new CancellationToken();
+
+        final Future<AuthenticationResult> future = context.acquireTokenSilentWithCancellation("resource",
+                "clientid", "userid", token, null);
+        future.cancel(true);
+
+        assertTrue(token.isCancelled());
+    }
+
+    private static void cancelLater(final CancellationToken token) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(CANCEL_DELAY_MILLIS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                token.cancel();
+            }
+        }).start();
+    }
+
+    private static void assertErrorCode(final ADALError expected, final CancellationToken token) {
+        try {
+            token.throwIfCancelledOrExpired();
+            fail("Expected exception");
+        } catch (final AuthenticationException exception) {
+            assertEquals(expected, exception.getCode());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ConnectivityMonitorTest {
+
+    private ConnectivityManager mConnectivityManager;
+
+    private Context mContext;
+
+    private ConnectivityMonitor mMonitor;
+
+    private ConnectivityMonitor.Callback mCallback;
+
+    @Before
+    public void setUp() {
+        System.setProperty("dexmaker.dexcache", getInstrumentation().getTargetContext().getCacheDir().getPath());
+        mConnectivityManager = Mockito.mock(ConnectivityManager.class);
+        // The network info still reports the lost network while the callbacks run
+        final NetworkInfo networkInfo = Mockito.mock(NetworkInfo.class);
+        Mockito.when(networkInfo.isConnectedOrConnecting()).thenReturn(true);
+        Mockito.when(mConnectivityManager.getActiveNetworkInfo()).thenReturn(networkInfo);
+
+        mContext = Mockito.mock(Context.class);
+        Mockito.when(mContext.getSystemService(Context.CONNECTIVITY_SERVICE)).thenReturn(mConnectivityManager);
+
+        mMonitor = new ConnectivityMonitor(mConnectivityManager, null);
+        mCallback = mMonitor.new Callback();
+    }
+
+    @Test
+    public void testAvailableAfterOnAvailable() {
+        assertFalse(mMonitor.isNetworkAvailable(mContext));
+
+        mCallback.onAvailable(Mockito.mock(Network.class));
+
+        assertTrue(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testUnavailableAfterOnLost() {
+        final Network network = Mockito.mock(Network.class);
+        mCallback.onAvailable(network);
+
+        mCallback.onLost(network);
+
+        assertFalse(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testAvailableAfterOnCapabilitiesChanged() {
+        final Network network = Mockito.mock(Network.class);
+        mCallback.onAvailable(network);
+        mCallback.onLost(network);
+
+        mCallback.onCapabilitiesChanged(network, null);
+
+        assertTrue(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testLossOfReplacedNetworkIsIgnored() {
+        final Network wifi = Mockito.mock(Network.class);
+        final Network cellular = Mockito.mock(Network.class);
+        mCallback.onAvailable(wifi);
+        mCallback.onAvailable(cellular);
+
+        mCallback.onLost(wifi);
+
+        assertTrue(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testBlockedNetworkIsUnavailable() {
+        final Network network = Mockito.mock(Network.class);
+        mCallback.onAvailable(network);
+
+        mCallback.onBlockedStatusChanged(network, true);
+        assertFalse(mMonitor.isNetworkAvailable(mContext));
+
+        mCallback.onBlockedStatusChanged(network, false);
+        assertTrue(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testOnLostClearsBlockedStatus() {
+        final Network network = Mockito.mock(Network.class);
+        mCallback.onAvailable(network);
+        mCallback.onBlockedStatusChanged(network, true);
+        mCallback.onLost(network);
+
+        mCallback.onAvailable(Mockito.mock(Network.class));
+
+        assertTrue(mMonitor.isNetworkAvailable(mContext));
+    }
+
+    @Test
+    public void testOtherConnectivityManagerIsNotTrusted() {
+        mCallback.onAvailable(Mockito.mock(Network.class));
+        final Context otherContext = Mockito.mock(Context.class);
+        Mockito.when(otherContext.getSystemService(Context.CONNECTIVITY_SERVICE))
+                .thenReturn(Mockito.mock(ConnectivityManager.class));
+
+        assertFalse(mMonitor.isNetworkAvailable(otherContext));
+    }
+}
@@ -33,11 +33,19 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
@@ -126,6 +134,127 @@ public class DRSMetadataRequestorTests extends AndroidTestHelper {
         }
     }
 
+    @Test
+    public void testRequestMetadataFallsBackToCloudOnUnknownHost() throws IOException, AuthenticationException {
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+
+        Mockito.when(mockedConnection.getInputStream())
+                .thenThrow(new UnknownHostException())
+                .thenReturn(Util.createInputStream(RESPONSE));
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final DRSMetadata metadata = new DRSMetadataRequestor().requestMetadata(DOMAIN);
+
+        assertEquals(
+                TEST_ADFS,
+                metadata.getIdentityProviderService().getPassiveAuthEndpoint()
+        );
+        Mockito.verify(mockedConnection, Mockito.times(2)).getInputStream();
+    }
+
+    @Test
+    public void testRequestMetadataHedgesSlowOnPremLookup() throws IOException, AuthenticationException {
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+
+        // The first (on-prem) lookup only fails once the second (cloud) lookup has been issued,
+        // which can only happen if the cloud lookup is started while the on-prem one is in flight
+        final AtomicInteger requestCount = new AtomicInteger();
+        final CountDownLatch cloudRequested = new CountDownLatch(1);
+        Mockito.when(mockedConnection.getInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+                if (requestCount.getAndIncrement() == 0) {
+                    assertTrue(cloudRequested.await(5, TimeUnit.SECONDS));
+                    throw new UnknownHostException();
+                }
+
+                cloudRequested.countDown();
+                return Util.createInputStream(RESPONSE);
+            }
+        });
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final DRSMetadata metadata = new DRSMetadataRequestor(10).requestMetadata(DOMAIN);
+
+        assertEquals(
+                TEST_ADFS,
+                metadata.getIdentityProviderService().getPassiveAuthEndpoint()
+        );
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testRequestMetadataGivesUpAtDeadline() throws IOException, InterruptedException {
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+
+        // The lookups hang until the test is done
+        final CountDownLatch released = new CountDownLatch(1);
+        Mockito.when(mockedConnection.getInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+                released.await(10, TimeUnit.SECONDS);
+                return Util.createInputStream(RESPONSE);
+            }
+        });
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final long startedAt = System.currentTimeMillis();
+        try {
+            new DRSMetadataRequestor(CancellationToken.withTimeout(200, TimeUnit.MILLISECONDS), 10)
+                    .requestMetadata(DOMAIN);
+            fail("Expected exception");
+        } catch (final AuthenticationException e) {
+            assertEquals(ADALError.REQUEST_DEADLINE_EXCEEDED, e.getCode());
+            assertTrue(System.currentTimeMillis() - startedAt < 5000);
+        } finally {
+            released.countDown();
+        }
+    }
+
+    @Test
+    public void testRequestMetadataStopsWaitingWhenCancelled() throws IOException, InterruptedException {
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+
+        final CountDownLatch requested = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        Mockito.when(mockedConnection.getInputStream()).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(final InvocationOnMock invocation) throws Throwable {
+                requested.countDown();
+                released.await(10, TimeUnit.SECONDS);
+                return Util.createInputStream(RESPONSE);
+            }
+        });
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final CancellationToken cancellationToken = new CancellationToken();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (requested.await(5, TimeUnit.SECONDS)) {
+                        cancellationToken.cancel();
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+
+        try {
+            new DRSMetadataRequestor(cancellationToken).requestMetadata(DOMAIN);
+            fail("Expected exception");
+        } catch (final AuthenticationException e) {
+            assertEquals(ADALError.REQUEST_CANCELLED, e.getCode());
+        } finally {
+            released.countDown();
+        }
+    }
+
     @Test
     public void testParseMetadata() throws AuthenticationException {
         HttpWebResponse mockWebResponse = Mockito.mock(HttpWebResponse.class);
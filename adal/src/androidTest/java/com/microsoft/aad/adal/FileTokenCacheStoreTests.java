@@ -35,9 +35,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 
@@ -333,6 +338,117 @@ public class FileTokenCacheStoreTests extends AndroidTestHelper {
         assertNull("Token cache item is expected to be null", item);
     }
 
+    @Test
+    public void testMigrateSerializedCacheFile() throws AuthenticationException, IOException {
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAccessToken("token");
+        item.setAuthority("authority");
+        item.setClientId("clientid");
+        item.setResource("resource");
+        final String key = CacheKey.createCacheKey(item);
+        final MemoryTokenCacheStore memoryCache = new MemoryTokenCacheStore();
+        memoryCache.setItem(key, item);
+
+        final File file = new File(mTargetContex.getDir(mTargetContex.getPackageName(), Context.MODE_PRIVATE),
+                FILE_DEFAULT_NAME);
+        final ObjectOutputStream objectStream = new ObjectOutputStream(new FileOutputStream(file));
+        objectStream.writeObject(memoryCache);
+        objectStream.close();
+
+        final ITokenCacheStore store = new FileTokenCacheStore(mTargetContex, FILE_DEFAULT_NAME);
+        assertEquals("token", store.getItem(key).getAccessToken());
+
+        final DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            assertEquals("File is rewritten in the binary format", TokenCacheFileFormat.MAGIC, input.readInt());
+        } finally {
+            input.close();
+        }
+
+        final TokenCacheItem reloaded = new FileTokenCacheStore(mTargetContex, FILE_DEFAULT_NAME).getItem(key);
+        assertNotNull(reloaded);
+        assertEquals("token", reloaded.getAccessToken());
+    }
+
+    @Test
+    public void testBinaryCacheFileRoundTrip() throws AuthenticationException {
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority("authority");
+        item.setResource("resource");
+        item.setClientId("clientid");
+        item.setAccessToken("token");
+        item.setRefreshToken("refreshtoken");
+        item.setRawIdToken("idtoken");
+        item.setExpiresOn(new Date(1000000L));
+        item.setIsMultiResourceRefreshToken(true);
+        item.setTenantId("tenantid");
+        item.setFamilyClientId("1");
+        item.setExtendedExpiresOn(new Date(2000000L));
+        item.setSpeRing("spering");
+        item.setUserInfo(new UserInfo("userid", "givenName", "familyName", "identity", "displayable"));
+        final String key = CacheKey.createCacheKey(item);
+
+        // Key without a resource, user or expiry
+        final TokenCacheItem sparseItem = new TokenCacheItem();
+        sparseItem.setAuthority("authority");
+        sparseItem.setClientId("clientid");
+        sparseItem.setRefreshToken("refreshtoken2");
+        final String sparseKey = "sparse";
+
+        final ITokenCacheStore store = new FileTokenCacheStore(mTargetContex, FILE_DEFAULT_NAME);
+        store.removeAll();
+        store.setItem(key, item);
+        store.setItem(sparseKey, sparseItem);
+
+        final ITokenCacheStore reloadedStore = new FileTokenCacheStore(mTargetContex, FILE_DEFAULT_NAME);
+        final TokenCacheItem reloaded = reloadedStore.getItem(key);
+        assertNotNull(reloaded);
+        assertEquals("authority", reloaded.getAuthority());
+        assertEquals("resource", reloaded.getResource());
+        assertEquals("clientid", reloaded.getClientId());
+        assertEquals("token", reloaded.getAccessToken());
+        assertEquals("refreshtoken", reloaded.getRefreshToken());
+        assertEquals("idtoken", reloaded.getRawIdToken());
+        assertEquals(item.getExpiresOn(), reloaded.getExpiresOn());
+        assertTrue(reloaded.getIsMultiResourceRefreshToken());
+        assertEquals("tenantid", reloaded.getTenantId());
+        assertEquals("1", reloaded.getFamilyClientId());
+        assertEquals(item.getTokenUpdateTime(), reloaded.getTokenUpdateTime());
+        assertEquals(item.getExtendedExpiresOn(), reloaded.getExtendedExpiresOn());
+        assertEquals("spering", reloaded.getSpeRing());
+        assertNotNull(reloaded.getUserInfo());
+        assertEquals("userid", reloaded.getUserInfo().getUserId());
+        assertEquals("givenName", reloaded.getUserInfo().getGivenName());
+        assertEquals("familyName", reloaded.getUserInfo().getFamilyName());
+        assertEquals("identity", reloaded.getUserInfo().getIdentityProvider());
+        assertEquals("displayable", reloaded.getUserInfo().getDisplayableId());
+
+        final TokenCacheItem reloadedSparse = reloadedStore.getItem(sparseKey);
+        assertNotNull(reloadedSparse);
+        assertEquals("refreshtoken2", reloadedSparse.getRefreshToken());
+        assertNull(reloadedSparse.getResource());
+        assertNull(reloadedSparse.getExpiresOn());
+        assertNull(reloadedSparse.getUserInfo());
+        assertFalse(reloadedSparse.getIsMultiResourceRefreshToken());
+    }
+
+    @Test
+    public void testLoadingUnknownFormatVersion() throws IOException {
+        final File file = new File(mTargetContex.getDir(mTargetContex.getPackageName(), Context.MODE_PRIVATE),
+                FILE_DEFAULT_NAME);
+        final DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+        output.writeInt(TokenCacheFileFormat.MAGIC);
+        output.writeInt(TokenCacheFileFormat.FORMAT_VERSION + 1);
+        output.writeInt(0);
+        output.close();
+
+        final CustomLogger logger = new CustomLogger();
+        Logger.getInstance().setExternalLogger(logger);
+        final ITokenCacheStore store = new FileTokenCacheStore(mTargetContex, FILE_DEFAULT_NAME);
+        assertFalse(store.getAll().hasNext());
+        assertTrue("Verify message ", logger.getLogMessage().contains("Existing cache format is wrong"));
+    }
+
     private class CustomLogger implements ILogger {
 
         private String mLogMessage;
@@ -0,0 +1,108 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.microsoft.identity.common.adal.internal.util.StringExtensions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class FormEncodedRequestBuilderTest {
+
+    private static final String[] VALUES = {
+            "",
+            "plain",
+            "resource%20 ",
+            "client 1234567890-+=;'",
+            "~!@#$%^&*()_+`-={}|[]\\:\";'<>?,./",
+            "\u00e9t\u00e9 \u00fcber",
+            "\u4e2d\u6587\u0800\u07ff\u0080\u007f",
+            "emoji \ud83d\ude00 pair",
+            "lone high \ud83d end",
+            "lone low \ude00 end",
+            "trailing high \ud83d",
+            "\r\n\t\u0000"
+    };
+
+    @Test
+    public void testEncodingMatchesUrlFormEncode() throws UnsupportedEncodingException {
+        for (final String value : VALUES) {
+            final FormEncodedRequestBuilder builder = new FormEncodedRequestBuilder(1)
+                    .appendParameter("name", value);
+            final String expected = "name=" + StringExtensions.urlFormEncode(value);
+            assertEquals(value, expected, builder.toString());
+            assertArrayEquals(value, expected.getBytes(StandardCharsets.UTF_8), builder.toByteArray());
+        }
+    }
+
+    @Test
+    public void testParametersAreSeparated() {
+        final FormEncodedRequestBuilder builder = new FormEncodedRequestBuilder()
+                .appendRawParameter("client_info", "1")
+                .appendParameter("scope", "openid profile");
+        assertEquals("client_info=1&scope=openid+profile", builder.toString());
+    }
+
+    @Test
+    public void testParameterAfterPrefixIsAlwaysSeparated() {
+        // Matches the previous String.format("%s&%s=%s", message, ...) concatenation
+        assertEquals("&a=b", new FormEncodedRequestBuilder().append("").appendParameter("a", "b").toString());
+        assertEquals("x=1&a=b", new FormEncodedRequestBuilder().append("x=1").appendParameter("a", "b").toString());
+    }
+
+    @Test
+    public void testAssertionMessage() throws UnsupportedEncodingException {
+        final AuthenticationRequest request = OauthTests.createAuthenticationRequest(
+                "http://www.something.com", "resource%20 ", "client 1234567890-+=;'",
+                "redirect 1234567890-+=;'", "loginhint@ggg.com", null, null, null, false);
+        final Oauth2 oauth2 = OauthTests.createOAuthInstance(request);
+
+        assertEquals(
+                "grant_type=urn%3Aietf%3Aparams%3Aoauth%3Agrant-type%3Asaml1_1-bearer"
+                        + "&assertion=PHNhbWw%2BYXNzZXJ0aW9uPC9zYW1sPg%3D%3D"
+                        + "&client_id=client+1234567890-%2B%3D%3B%27&scope=openid&client_info=1"
+                        + "&resource=resource%2520+&redirect_uri=redirect+1234567890-%2B%3D%3B%27",
+                oauth2.buildAssertionMessage("<saml>assertion</saml>",
+                        "urn:ietf:params:oauth:grant-type:saml1_1-bearer"));
+    }
+
+    @Test
+    public void testBuildRequestMessageKeepsPrefix() throws UnsupportedEncodingException {
+        final AuthenticationRequest request = OauthTests.createAuthenticationRequest(
+                "http://www.something.com", "resource", "client", "", "loginhint@ggg.com",
+                null, null, null, false);
+        final Oauth2 oauth2 = OauthTests.createOAuthInstance(request);
+
+        assertEquals("grant_type=x&resource=resource", oauth2.buildRequestMessage("grant_type=x"));
+    }
+}
@@ -0,0 +1,93 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.UnsupportedEncodingException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+@RunWith(AndroidJUnit4.class)
+public class InteractiveRequestPrewarmerTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    @After
+    public void tearDown() {
+        InteractiveRequestPrewarmer.clear();
+    }
+
+    @Test
+    public void testPrebuiltUrlMatchesUrlBuiltForRequest() throws UnsupportedEncodingException {
+        InteractiveRequestPrewarmer.prebuildCodeRequestUrl(createRequest("resource", "loginhint", UUID.randomUUID()));
+
+        final AuthenticationRequest request = createRequest("resource", "loginhint", UUID.randomUUID());
+        final String expectedUrl = new Oauth2(request).getCodeRequestUrl();
+
+        assertEquals(expectedUrl, InteractiveRequestPrewarmer.getCodeRequestUrl(request));
+    }
+
+    @Test
+    public void testPrebuiltUrlIsNotUsedForDifferentRequest() throws UnsupportedEncodingException {
+        final UUID placeholderCorrelationId = UUID.randomUUID();
+        InteractiveRequestPrewarmer.prebuildCodeRequestUrl(createRequest("resource", "loginhint", placeholderCorrelationId));
+
+        assertNull(InteractiveRequestPrewarmer.getCodeRequestUrl(
+                createRequest("otherResource", "loginhint", UUID.randomUUID())));
+        assertNull(InteractiveRequestPrewarmer.getCodeRequestUrl(
+                createRequest("resource", "otherLoginhint", UUID.randomUUID())));
+
+        final AuthenticationRequest withClaims = createRequest("resource", "loginhint", UUID.randomUUID());
+        withClaims.setClaimsChallenge("{\"access_token\":{\"deviceid\":{\"essential\":true}}}");
+        assertNull(InteractiveRequestPrewarmer.getCodeRequestUrl(withClaims));
+
+        final String url = InteractiveRequestPrewarmer.getCodeRequestUrl(
+                createRequest("resource", "loginhint", UUID.randomUUID()));
+        assertFalse(url.contains(placeholderCorrelationId.toString()));
+    }
+
+    @Test
+    public void testClearDropsPrebuiltUrl() {
+        InteractiveRequestPrewarmer.prebuildCodeRequestUrl(createRequest("resource", null, UUID.randomUUID()));
+        InteractiveRequestPrewarmer.clear();
+
+        assertNull(InteractiveRequestPrewarmer.getCodeRequestUrl(createRequest("resource", null, UUID.randomUUID())));
+    }
+
+    private AuthenticationRequest createRequest(final String resource, final String loginHint, final UUID correlationId) {
+        final AuthenticationRequest request = new AuthenticationRequest(AUTHORITY, resource, "clientId",
+                "redirectUri", loginHint, PromptBehavior.Auto, null, correlationId, false, null);
+        request.setAppName("test.mock.");
+        request.setAppVersion("test");
+        return request;
+    }
+}
@@ -0,0 +1,145 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class InteractiveTaskExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void testRunsTaskOffCallerThreadAndRecordsTimings() throws InterruptedException {
+        final UIEvent uiEvent = new UIEvent(EventStrings.UI_EVENT);
+        final InteractiveTaskExecutor executor = new InteractiveTaskExecutor(uiEvent);
+        final AtomicReference<Thread> taskThread = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                taskThread.set(Thread.currentThread());
+                done.countDown();
+            }
+        }));
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), taskThread.get());
+
+        // Timings are recorded on the main thread once the task has finished
+        while (executor.getPendingCount() > 0) {
+            Thread.sleep(10);
+        }
+        getInstrumentation().waitForIdleSync();
+
+        boolean hasCount = false;
+        for (final Map.Entry<String, String> property : uiEvent.getEvents()) {
+            if (EventStrings.UI_BACKGROUND_TASK_COUNT.equals(property.getKey())) {
+                assertEquals("1", property.getValue());
+                hasCount = true;
+            }
+        }
+        assertTrue(hasCount);
+    }
+
+    @Test
+    public void testCancelAllInterruptsRunningTasksAndRejectsNewOnes() throws InterruptedException {
+        final InteractiveTaskExecutor executor = new InteractiveTaskExecutor(null);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        assertTrue(executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (final InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        }));
+
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.cancelAll();
+
+        assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, executor.getPendingCount());
+        assertFalse(executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // never runs
+            }
+        }));
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRecordTimings() throws InterruptedException {
+        final UIEvent uiEvent = new UIEvent(EventStrings.UI_EVENT);
+        final InteractiveTaskExecutor executor = new InteractiveTaskExecutor(uiEvent);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        assertTrue(executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (final InterruptedException e) {
+                    // cancelled
+                } finally {
+                    finished.countDown();
+                }
+            }
+        }));
+
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.cancelAll();
+
+        // The timings would be posted right after the task returns
+        assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        getInstrumentation().waitForIdleSync();
+
+        for (final Map.Entry<String, String> property : uiEvent.getEvents()) {
+            assertNotEquals(EventStrings.UI_BACKGROUND_TASK_COUNT, property.getKey());
+        }
+    }
+}
@@ -36,12 +36,20 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 import javax.crypto.NoSuchPaddingException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(AndroidJUnit4.class)
 public class MemoryTokenCacheStoreTests extends BaseTokenStoreTests {
@@ -50,6 +58,8 @@ public class MemoryTokenCacheStoreTests extends BaseTokenStoreTests {
 
     private static final int ACTIVE_TEST_THREADS = 10;
 
+    private static final int STRESS_ITERATIONS = 500;
+
     @Before
     public void setUp() throws Exception {
         super.setUp();
@@ -185,6 +195,133 @@ public class MemoryTokenCacheStoreTests extends BaseTokenStoreTests {
         assertNull("Token cache item is expected to be null", item);
     }
 
+    /**
+     * Writers and removers run while other threads iterate over the cache, iterating must not fail.
+     */
+    @Test
+    public void testIterateWhileWriting() {
+        final MemoryTokenCacheStore store = new MemoryTokenCacheStore();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch signal = new CountDownLatch(ACTIVE_TEST_THREADS);
+
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                final String prefix = Thread.currentThread().getName();
+                try {
+                    for (int i = 0; i < STRESS_ITERATIONS; i++) {
+                        final String key = prefix + ":" + i;
+                        store.setItem(key, createItem("resource" + i, 1));
+                        assertTrue(store.contains(key));
+
+                        final Iterator<TokenCacheItem> items = store.getAll();
+                        while (items.hasNext()) {
+                            assertNotNull(items.next());
+                        }
+
+                        if (i % 2 == 0) {
+                            store.removeItem(key);
+                        }
+                    }
+                } catch (final Throwable throwable) {
+                    failures.add(throwable);
+                } finally {
+                    signal.countDown();
+                }
+            }
+        };
+
+        testMultiThread(ACTIVE_TEST_THREADS, signal, runnable);
+
+        assertEquals("failures " + failures, 0, failures.size());
+        assertEquals(ACTIVE_TEST_THREADS * STRESS_ITERATIONS / 2, count(store.getAll()));
+    }
+
+    @Test
+    public void testBoundEvictsItemsExpiringFirst() {
+        final MemoryTokenCacheStore store = new MemoryTokenCacheStore(2);
+        store.setItem("expired", createItem("resource", -1));
+        store.setItem("late", createItem("resource", 2));
+        store.setItem("early", createItem("resource", 1));
+
+        assertFalse(store.contains("expired"));
+        assertTrue(store.contains("late"));
+        assertTrue(store.contains("early"));
+
+        store.setItem("latest", createItem("resource", 3));
+
+        assertFalse(store.contains("early"));
+        assertTrue(store.contains("late"));
+        assertTrue(store.contains("latest"));
+    }
+
+    @Test
+    public void testBoundEvictsRefreshTokensLast() {
+        final MemoryTokenCacheStore store = new MemoryTokenCacheStore(2);
+        final TokenCacheItem refreshable = createItem("resource", -1);
+        refreshable.setRefreshToken("refreshToken");
+        store.setItem("refreshable", refreshable);
+        store.setItem("accessTokenOnly", createItem("resource", 2));
+        store.setItem("latest", createItem("resource", 3));
+
+        assertTrue("Item with a refresh token is kept though its access token expired", store.contains("refreshable"));
+        assertFalse(store.contains("accessTokenOnly"));
+        assertTrue(store.contains("latest"));
+    }
+
+    @Test
+    public void testBoundEvictsMultiResourceRefreshTokensAfterRegularRefreshTokens() {
+        final MemoryTokenCacheStore store = new MemoryTokenCacheStore(2);
+        final TokenCacheItem multiResource = createItem(null, -1);
+        multiResource.setClientId("clientId");
+        multiResource.setRefreshToken("refreshToken");
+        store.setItem("multiResource", multiResource);
+        final TokenCacheItem regular = createItem("resource", 2);
+        regular.setRefreshToken("refreshToken");
+        store.setItem("regular", regular);
+        final TokenCacheItem latest = createItem("resource", 3);
+        latest.setRefreshToken("refreshToken");
+        store.setItem("latest", latest);
+
+        assertTrue(store.contains("multiResource"));
+        assertFalse(store.contains("regular"));
+        assertTrue(store.contains("latest"));
+    }
+
+    @Test
+    public void testBoundKeepsItemJustSet() {
+        final MemoryTokenCacheStore store = new MemoryTokenCacheStore(1);
+        store.setItem("late", createItem("resource", 2));
+        store.setItem("expired", createItem("resource", -1));
+
+        assertTrue(store.contains("expired"));
+        assertEquals(1, count(store.getAll()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBound() {
+        new MemoryTokenCacheStore(-1);
+    }
+
+    private static TokenCacheItem createItem(final String resource, final int expiresInHours) {
+        final Calendar expiresOn = Calendar.getInstance();
+        expiresOn.add(Calendar.HOUR, expiresInHours);
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setResource(resource);
+        item.setAccessToken("accessToken");
+        item.setExpiresOn(expiresOn.getTime());
+        return item;
+    }
+
+    private static int count(final Iterator<TokenCacheItem> items) {
+        int count = 0;
+        while (items.hasNext()) {
+            items.next();
+            count++;
+        }
+        return count;
+    }
+
     @Override
     protected ITokenCacheStore getTokenCacheStore() {
         return new MemoryTokenCacheStore();
@@ -125,6 +125,28 @@ public class OauthTests {
         assertEquals("pwdUrl", actual.getPasswordChangeUrl());
     }
 
+    @Test
+    public void testParseIdTokenReturnsCachedInstance() throws UnsupportedEncodingException, AuthenticationException {
+        final String rawIdToken = Util.getIdToken();
+        final IdToken first = IdToken.parse(rawIdToken);
+        final IdToken second = IdToken.parse(rawIdToken);
+        assertTrue("Same parsed id token", first == second);
+        assertEquals("53c6acf2-2742-4538-918d-e78257ec8516", second.getObjectId());
+    }
+
+    @Test
+    public void testParseIdTokenSkipsNestedClaims() throws AuthenticationException {
+        final String claims = "{\"nested\":{\"upn\":\"nested@test.com\",\"list\":[1,2,{\"a\":true}]},"
+                + "\"upn\":\"test@test.onmicrosoft.com\",\"pwd_exp\":\"1387227772\",\"given_name\":null}";
+        final String rawIdToken = "eyJ0eXAiOiJKV1QiLCJhbGciOiJub25lIn0."
+                + new String(Base64.encode(claims.getBytes(StandardCharsets.UTF_8),
+                Base64.NO_PADDING | Base64.NO_WRAP | Base64.URL_SAFE), StandardCharsets.UTF_8) + ".";
+        final IdToken actual = IdToken.parse(rawIdToken);
+        assertEquals("test@test.onmicrosoft.com", actual.getUpn());
+        assertTrue(actual.getPasswordExpiration() == Util.TEST_PASSWORD_EXPIRATION);
+        assertNull(actual.getGivenName());
+    }
+
     @Test
     public void testDecoding() throws UnsupportedEncodingException {
         // check that Base64 UrlSafe flags behaves as expected
@@ -558,6 +580,36 @@ public class OauthTests {
                 testResult.getException().getMessage());
     }
 
+    @Test
+    public void testRefreshTokenAnswersEachDeviceChallenge() {
+        final PKeyAuthStandInServer server = new PKeyAuthStandInServer(true);
+
+        MockAuthenticationCallback testResult = refreshToken(getValidAuthenticationRequest(), server, "test");
+        assertNull(testResult.getException());
+        assertEquals("sometokenhere", testResult.getAuthenticationResult().getAccessToken());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, server.getChallengeCount());
+
+        // A challenge response is bound to the Context of its challenge, so it is not sent again
+        server.resetRequestCount();
+        testResult = refreshToken(getValidAuthenticationRequest(), server, "test");
+        assertNull(testResult.getException());
+        assertEquals("sometokenhere", testResult.getAuthenticationResult().getAccessToken());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, server.getChallengeCount());
+        assertEquals(0, server.getRejectedResponseCount());
+    }
+
+    @Test
+    public void testRefreshTokenDoesNotSendChallengeResponseWithoutChallenge() {
+        final PKeyAuthStandInServer server = new PKeyAuthStandInServer(false);
+
+        final MockAuthenticationCallback testResult = refreshToken(getValidAuthenticationRequest(), server, "test");
+        assertNull(testResult.getException());
+        assertEquals(1, server.getRequestCount());
+        assertFalse(server.getLastRequestHeaders().containsKey(AuthenticationConstants.Broker.CHALLENGE_RESPONSE_HEADER));
+    }
+
     @Test
     public void testProcessTokenResponse() throws IOException {
 
@@ -824,6 +876,98 @@ public class OauthTests {
         return new Oauth2(authenticationRequest, mockWebRequest, jwsBuilder);
     }
 
+    /**
+     * Stands in for an AD FS token endpoint: optionally answers requests without a PKeyAuth
+     * challenge response with a 401 challenge carrying a new Context, only accepts a response
+     * for the Context of the last challenge, and counts the requests it receives.
+     */
+    private static final class PKeyAuthStandInServer implements IWebRequestHandler {
+        private static final String TOKEN_RESPONSE = "{\"access_token\":\"sometokenhere\",\"token_type\":\"Bearer\","
+                + "\"expires_in\":\"28799\",\"expires_on\":\"1368768616\",\"refresh_token\":"
+                + "\"refreshfasdfsdf435\",\"scope\":\"*\"}";
+
+        private final boolean mChallenges;
+
+        private int mRequestCount;
+
+        private int mChallengeCount;
+
+        private int mRejectedResponseCount;
+
+        private String mContext;
+
+        private Map<String, String> mLastRequestHeaders;
+
+        PKeyAuthStandInServer(final boolean challenges) {
+            mChallenges = challenges;
+        }
+
+        @Override
+        public HttpWebResponse sendGet(final URL url, final Map<String, String> headers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public HttpWebResponse sendPost(final URL url, final Map<String, String> headers,
+                                        final byte[] content, final String contentType) {
+            mRequestCount++;
+            mLastRequestHeaders = new HashMap<>(headers);
+            if (!mChallenges) {
+                return new HttpWebResponse(HttpURLConnection.HTTP_OK, TOKEN_RESPONSE, null);
+            }
+
+            final String challengeResponse = headers.get(AuthenticationConstants.Broker.CHALLENGE_RESPONSE_HEADER);
+            if (challengeResponse != null) {
+                if (mContext != null && challengeResponse.startsWith(AuthenticationConstants.Broker.CHALLENGE_RESPONSE_TYPE)
+                        && challengeResponse.contains("Context=\"" + mContext + "\"")) {
+                    mContext = null;
+                    return new HttpWebResponse(HttpURLConnection.HTTP_OK, TOKEN_RESPONSE, null);
+                }
+
+                mRejectedResponseCount++;
+            }
+
+            mChallengeCount++;
+            mContext = "context" + mChallengeCount;
+            final Map<String, List<String>> responseHeaders = new HashMap<>();
+            responseHeaders.put(AuthenticationConstants.Broker.CHALLENGE_REQUEST_HEADER,
+                    Collections.singletonList(AuthenticationConstants.Broker.CHALLENGE_RESPONSE_TYPE
+                            + " Nonce=\"nonce" + mChallengeCount + "\", CertAuthorities=\"OU=MyOrganization\", "
+                            + "Version=\"1.0\", Context=\"" + mContext + "\""));
+            return new HttpWebResponse(HttpURLConnection.HTTP_UNAUTHORIZED, null, responseHeaders);
+        }
+
+        @Override
+        public void setRequestCorrelationId(final UUID correlationId) {
+            // not needed by the stand-in
+        }
+
+        @Override
+        public void setClientVersion(final String clientVersion) {
+            // not needed by the stand-in
+        }
+
+        int getRequestCount() {
+            return mRequestCount;
+        }
+
+        int getChallengeCount() {
+            return mChallengeCount;
+        }
+
+        int getRejectedResponseCount() {
+            return mRejectedResponseCount;
+        }
+
+        void resetRequestCount() {
+            mRequestCount = 0;
+        }
+
+        Map<String, String> getLastRequestHeaders() {
+            return mLastRequestHeaders;
+        }
+    }
+
     private Map<String, List<String>> getHeader(String key, String value) {
         return Collections.singletonMap(key, Collections.singletonList(value));
     }
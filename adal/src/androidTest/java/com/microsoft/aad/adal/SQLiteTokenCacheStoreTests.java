@@ -0,0 +1,249 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SQLiteTokenCacheStoreTests extends BaseTokenStoreTests {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        new DefaultTokenCacheStore(getTargetContext()).removeAll();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        getTargetContext().deleteDatabase(SQLiteTokenCacheStore.DATABASE_NAME);
+    }
+
+    @Test
+    public void testGetUniqueUsers() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) setupItems();
+
+        final Set<String> users = store.getUniqueUsersWithTokenCache();
+        assertEquals(2, users.size());
+        assertTrue(users.contains("userid1"));
+        assertTrue(users.contains("userid2"));
+    }
+
+    @Test
+    public void testGetTokensForResource() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) setupItems();
+
+        List<TokenCacheItem> tokens = store.getTokensForResource("resource");
+        assertEquals("token size", 1, tokens.size());
+        assertEquals("token content", "token", tokens.get(0).getAccessToken());
+
+        tokens = store.getTokensForResource("resource2");
+        assertEquals("token size", 2, tokens.size());
+    }
+
+    @Test
+    public void testGetTokensForUserIgnoresCase() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) setupItems();
+
+        assertEquals("token size", 2, store.getTokensForUser("userid1").size());
+        assertEquals("token size", 2, store.getTokensForUser("UserId2").size());
+    }
+
+    @Test
+    public void testExpiringTokens() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) setupItems();
+        assertEquals("token size", 0, store.getTokensAboutToExpire().size());
+
+        final TokenCacheItem expire = store.getTokensForUser("userid1").get(0);
+        final Calendar expiresOn = Calendar.getInstance();
+        expiresOn.add(Calendar.MINUTE, -10);
+        expire.setExpiresOn(expiresOn.getTime());
+        store.setItem(CacheKey.createCacheKey(expire), expire);
+
+        assertEquals("token size", 1, store.getTokensAboutToExpire().size());
+    }
+
+    @Test
+    public void testClearTokensForUser() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) setupItems();
+
+        store.clearTokensForUser("userid2");
+
+        assertEquals("token size", 0, store.getTokensForUser("userid2").size());
+        assertEquals("token size", 2, store.getTokensForUser("userid1").size());
+    }
+
+    @Test
+    public void testSetItems() throws AuthenticationException {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) getTokenCacheStore();
+        store.removeAll();
+        final Map<String, TokenCacheItem> items = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            final TokenCacheItem item = createItem("resource" + i);
+            items.put(CacheKey.createCacheKey(item), item);
+        }
+
+        store.setItems(items);
+
+        for (final Map.Entry<String, TokenCacheItem> entry : items.entrySet()) {
+            assertEquals(entry.getValue().getResource(), store.getItem(entry.getKey()).getResource());
+        }
+    }
+
+    @Test
+    public void testSetItemForAliasKeysStoresItemOnce() {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) getTokenCacheStore();
+        store.removeAll();
+        final TokenCacheItem item = createItem("resource");
+        final List<String> keys = getAliasKeys(item);
+
+        store.setItem(keys, item);
+
+        for (final String key : keys) {
+            assertTrue(store.contains(key));
+            assertEquals("accessToken", store.getItem(key).getAccessToken());
+        }
+        assertEquals("item count", 1, count(store.getAll()));
+        assertEquals("token size", 1, store.getTokensForResource("resource").size());
+    }
+
+    @Test
+    public void testRemoveAliasKeyKeepsItemForOtherKeys() {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) getTokenCacheStore();
+        store.removeAll();
+        final TokenCacheItem item = createItem("resource");
+        final List<String> keys = getAliasKeys(item);
+        store.setItem(keys, item);
+
+        store.removeItem(keys.get(0));
+
+        assertFalse(store.contains(keys.get(0)));
+        assertNotNull(store.getItem(keys.get(1)));
+        assertEquals("item count", 1, count(store.getAll()));
+
+        store.removeItems(keys.subList(1, keys.size()));
+
+        assertNull(store.getItem(keys.get(2)));
+        assertEquals("item count", 0, count(store.getAll()));
+    }
+
+    @Test
+    public void testSetItemReplacesItemOfAliasKeys() {
+        final SQLiteTokenCacheStore store = (SQLiteTokenCacheStore) getTokenCacheStore();
+        store.removeAll();
+        final TokenCacheItem item = createItem("resource");
+        final List<String> keys = getAliasKeys(item);
+        store.setItem(keys, item);
+
+        final TokenCacheItem updated = createItem("resource");
+        updated.setAccessToken("updatedAccessToken");
+        store.setItem(keys, updated);
+
+        assertEquals("item count", 1, count(store.getAll()));
+        assertEquals("updatedAccessToken", store.getItem(keys.get(0)).getAccessToken());
+
+        // The old item stays while one of its keys still points to it
+        store.setItem(keys.get(0), item);
+        assertEquals("item count", 2, count(store.getAll()));
+        assertEquals("updatedAccessToken", store.getItem(keys.get(1)).getAccessToken());
+    }
+
+    @Test
+    public void testMigratesDefaultTokenCacheStore() throws AuthenticationException {
+        final Context context = getTargetContext();
+        context.deleteDatabase(SQLiteTokenCacheStore.DATABASE_NAME);
+        final DefaultTokenCacheStore defaultStore = new DefaultTokenCacheStore(context);
+        final TokenCacheItem item = createItem("resource");
+        final String key = CacheKey.createCacheKey(item);
+        defaultStore.setItem(key, item);
+
+        final SQLiteTokenCacheStore store = new SQLiteTokenCacheStore(context);
+
+        final TokenCacheItem migrated = store.getItem(key);
+        assertNotNull(migrated);
+        assertEquals("accessToken", migrated.getAccessToken());
+        assertFalse(defaultStore.contains(key));
+    }
+
+    @Override
+    protected ITokenCacheStore getTokenCacheStore() {
+        return new SQLiteTokenCacheStore(getTargetContext());
+    }
+
+    private static Context getTargetContext() {
+        return getInstrumentation().getTargetContext();
+    }
+
+    private static List<String> getAliasKeys(final TokenCacheItem item) {
+        return Arrays.asList(
+                CacheKey.createCacheKeyForRTEntry(item.getAuthority(), item.getResource(), item.getClientId(), "displayableid"),
+                CacheKey.createCacheKeyForRTEntry(item.getAuthority(), item.getResource(), item.getClientId(), "userid"),
+                CacheKey.createCacheKeyForRTEntry(item.getAuthority(), item.getResource(), item.getClientId(), null));
+    }
+
+    private static int count(final Iterator<TokenCacheItem> items) {
+        int count = 0;
+        while (items.hasNext()) {
+            items.next();
+            count++;
+        }
+        return count;
+    }
+
+    private static TokenCacheItem createItem(final String resource) {
+        final Calendar expiresOn = Calendar.getInstance();
+        expiresOn.add(Calendar.HOUR, 1);
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority("authority");
+        item.setResource(resource);
+        item.setClientId("clientid");
+        item.setAccessToken("accessToken");
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn.getTime());
+        item.setUserInfo(new UserInfo("userid", "givenName", "familyName", "identity", "userid"));
+        return item;
+    }
+}
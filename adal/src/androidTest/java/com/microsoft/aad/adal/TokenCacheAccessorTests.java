@@ -25,6 +25,8 @@ package com.microsoft.aad.adal;
 import static androidx.test.InstrumentationRegistry.getContext;
 import static com.microsoft.identity.common.java.cache.SharedPreferencesAccountCredentialCache.DEFAULT_ACCOUNT_CREDENTIAL_SHARED_PREFERENCES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
 import android.util.Base64;
@@ -68,10 +70,15 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -110,6 +117,7 @@ public class TokenCacheAccessorTests {
     public static final String MOCK_AT = "mock_at";
     public static final String MOCK_RT = "mock_rt";
     public static final String USERID_1 = "userid1";
+    public static final String DISPLAYABLE_ID = "displayable@contoso.com";
     public static final String GIVEN_NAME = "givenName";
     public static final String FAMILY_NAME = "familyName";
     public static final String IDENTITY = "identity";
@@ -400,4 +408,159 @@ public class TokenCacheAccessorTests {
         Assert.assertEquals(CLIENT, refreshToken.getClientId());
         Assert.assertEquals(accountRecord.getHomeAccountId(), refreshToken.getHomeAccountId());
     }
+
+    /**
+     * Accessors created for concurrent requests share the strategy used to write to the common cache, each
+     * save must still write the records of its own result.
+     */
+    @Test
+    public void testConcurrentSavesShareCommonCacheStrategy() throws InterruptedException {
+        final int saves = 4;
+        final ITokenCacheStore tokenCacheStore = new DelegatingCache(mContext, new DefaultTokenCacheStore(mContext));
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(saves);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < saves; i++) {
+            final String uid = MOCK_UID + i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final TokenCacheAccessor accessor = new TokenCacheAccessor(mContext, tokenCacheStore,
+                                WORLDWIDE_AUTHORITY, UUID.randomUUID().toString());
+                        final AuthenticationResult result = new AuthenticationResult(MOCK_AT, MOCK_RT,
+                                new Date(System.currentTimeMillis() + (3600 * 1000)), false,
+                                new UserInfo(uid, GIVEN_NAME, FAMILY_NAME, IDENTITY, uid), TID,
+                                MOCK_ID_TOKEN_WITH_CLAIMS, null, CLIENT);
+                        result.setAuthority(WORLDWIDE_AUTHORITY);
+                        result.setClientInfo(new ClientInfo(createRawClientInfo(uid, MOCK_UTID)));
+                        result.setResponseReceived(System.currentTimeMillis());
+                        result.setExpiresIn(TimeUnit.HOURS.toSeconds(1));
+
+                        start.await();
+                        accessor.updateTokenCache(createAliasedRequest(), result);
+                    } catch (final Throwable throwable) {
+                        failure.compareAndSet(null, throwable);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        final MsalOAuth2TokenCache msalCache = new MsalOAuth2TokenCache(mComponents,
+                new SharedPreferencesAccountCredentialCache(new CacheKeyValueDelegate(),
+                        mComponents.getStorageSupplier().getEncryptedNameValueStore(
+                                DEFAULT_ACCOUNT_CREDENTIAL_SHARED_PREFERENCES, String.class)),
+                new MicrosoftStsAccountCredentialAdapter());
+        for (int i = 0; i < saves; i++) {
+            final AccountRecord accountRecord = msalCache.getAccount(LOGIN_WINDOWS_NET, CLIENT,
+                    MOCK_UID + i + "." + MOCK_UTID, MOCK_UTID);
+            Assert.assertNotNull(accountRecord);
+            final RefreshTokenRecord refreshToken = msalCache.load(CLIENT, null, null, null, accountRecord,
+                    new BearerAuthenticationSchemeInternal()).getRefreshToken();
+            Assert.assertEquals(accountRecord.getHomeAccountId(), refreshToken.getHomeAccountId());
+        }
+    }
+
+    @Test
+    public void testAliasedStoreSavesEachItemOnceUnderAllKeys() throws MalformedURLException, AuthenticationException,
+            ClientException {
+        final RecordingAliasedCacheStore store = new RecordingAliasedCacheStore();
+        final TokenCacheAccessor accessor = new TokenCacheAccessor(mContext, store, WORLDWIDE_AUTHORITY,
+                UUID.randomUUID().toString());
+
+        accessor.updateTokenCache(createAliasedRequest(), createAliasedResult());
+
+        // The regular and the multi resource refresh token item, under the displayable id, unique id and no user
+        assertEquals(0, store.mSingleKeyWrites);
+        assertEquals(2, store.mAliasedWrites.size());
+        final String authority = accessor.getAuthorityUrlWithPreferredCache();
+        assertEquals(Arrays.asList(
+                CacheKey.createCacheKeyForRTEntry(authority, RESOURCE, CLIENT, DISPLAYABLE_ID),
+                CacheKey.createCacheKeyForRTEntry(authority, RESOURCE, CLIENT, USERID_1),
+                CacheKey.createCacheKeyForRTEntry(authority, RESOURCE, CLIENT, null)), store.mAliasedWrites.get(0));
+        assertEquals(Arrays.asList(
+                CacheKey.createCacheKeyForMRRT(authority, CLIENT, DISPLAYABLE_ID),
+                CacheKey.createCacheKeyForMRRT(authority, CLIENT, USERID_1),
+                CacheKey.createCacheKeyForMRRT(authority, CLIENT, null)), store.mAliasedWrites.get(1));
+        assertEquals(MOCK_AT, accessor.getATFromCache(RESOURCE, CLIENT, USERID_1).getAccessToken());
+        assertEquals(MOCK_RT, accessor.getMRRTItem(CLIENT, DISPLAYABLE_ID).getRefreshToken());
+    }
+
+    @Test
+    public void testAliasedStoreRemovesAllKeysInOneCall() throws MalformedURLException, AuthenticationException,
+            ClientException {
+        final RecordingAliasedCacheStore store = new RecordingAliasedCacheStore();
+        final TokenCacheAccessor accessor = new TokenCacheAccessor(mContext, store, WORLDWIDE_AUTHORITY,
+                UUID.randomUUID().toString());
+        accessor.updateTokenCache(createAliasedRequest(), createAliasedResult());
+
+        // Redeeming the MRRT failed with invalid_grant, the MRRT and the regular RT entries are removed
+        accessor.removeTokenCacheItem(accessor.getMRRTItem(CLIENT, USERID_1), RESOURCE);
+
+        assertEquals(1, store.mAliasedRemovals);
+        assertEquals(0, store.mSingleKeyRemovals);
+        assertFalse(store.getAll().hasNext());
+    }
+
+    private static AuthenticationRequest createAliasedRequest() {
+        return new AuthenticationRequest(WORLDWIDE_AUTHORITY, RESOURCE, CLIENT, REDIRECT, "", PromptBehavior.Auto,
+                "", UUID.randomUUID(), false, null);
+    }
+
+    private static AuthenticationResult createAliasedResult() {
+        return new AuthenticationResult(MOCK_AT, MOCK_RT, new Date(System.currentTimeMillis() + (3600 * 1000)),
+                true, new UserInfo(USERID_1, GIVEN_NAME, FAMILY_NAME, IDENTITY, DISPLAYABLE_ID), TID,
+                MOCK_ID_TOKEN_WITH_CLAIMS, null, CLIENT);
+    }
+
+    /**
+     * Records how the accessor writes to and removes from an {@link IAliasedTokenCacheStore}.
+     */
+    private static final class RecordingAliasedCacheStore extends MemoryTokenCacheStore
+            implements IAliasedTokenCacheStore {
+
+        private final List<List<String>> mAliasedWrites = new ArrayList<>();
+
+        private int mSingleKeyWrites;
+
+        private int mAliasedRemovals;
+
+        private int mSingleKeyRemovals;
+
+        @Override
+        public void setItem(final String key, final TokenCacheItem item) {
+            mSingleKeyWrites++;
+            super.setItem(key, item);
+        }
+
+        @Override
+        public void setItem(final Collection<String> keys, final TokenCacheItem item) {
+            mAliasedWrites.add(new ArrayList<>(keys));
+            for (final String key : keys) {
+                super.setItem(key, item);
+            }
+        }
+
+        @Override
+        public void removeItem(final String key) {
+            mSingleKeyRemovals++;
+            super.removeItem(key);
+        }
+
+        @Override
+        public void removeItems(final Collection<String> keys) {
+            mAliasedRemovals++;
+            for (final String key : keys) {
+                super.removeItem(key);
+            }
+        }
+    }
 }
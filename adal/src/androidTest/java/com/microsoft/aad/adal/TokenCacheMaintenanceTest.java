@@ -0,0 +1,260 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.microsoft.identity.common.java.adal.cache.DateTimeAdapter;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TokenCacheMaintenanceTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String USER_ID = "userid";
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private MemoryTokenCacheStore mTokenCacheStore;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        // Keep the authority without aliases
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+        mTokenCacheStore = new MemoryTokenCacheStore();
+    }
+
+    @After
+    public void tearDown() {
+        HttpUrlConnectionFactory.setMockedHttpUrlConnection(null);
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void testRemovesItemsWithoutUsableToken() throws InterruptedException {
+        final TokenCacheItem item = createItem("resource", "displayable", hoursFromNow(-2), null);
+        item.setRefreshToken(null);
+        setItem(item, USER_ID);
+        setItem(item, null);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        assertNull(mTokenCacheStore.getItem(getKey("resource", USER_ID)));
+        assertNull(mTokenCacheStore.getItem(getKey("resource", null)));
+        assertEquals(2, maintenance.getEntriesRemoved());
+        assertTrue(maintenance.getBytesReclaimed() > 0);
+    }
+
+    @Test
+    public void testRemovesItemsSupersededForRenamedUser() throws InterruptedException {
+        final TokenCacheItem oldItem = createItem("resource", "old@contoso.com", hoursFromNow(1), null);
+        setItem(oldItem, "old@contoso.com");
+        final TokenCacheItem newItem = createItem("resource", "new@contoso.com", hoursFromNow(2), null);
+        setItem(newItem, "new@contoso.com");
+        setItem(newItem, USER_ID);
+        setItem(newItem, null);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        assertNull(mTokenCacheStore.getItem(getKey("resource", "old@contoso.com")));
+        assertNotNull(mTokenCacheStore.getItem(getKey("resource", "new@contoso.com")));
+        assertNotNull(mTokenCacheStore.getItem(getKey("resource", USER_ID)));
+        assertNotNull(mTokenCacheStore.getItem(getKey("resource", null)));
+        assertEquals(1, maintenance.getEntriesRemoved());
+    }
+
+    @Test
+    public void testDropsAccessTokenPastExtendedLifetime() throws InterruptedException {
+        final TokenCacheItem expired = createItem("expired", "displayable", hoursFromNow(-2), hoursFromNow(-1));
+        setItem(expired, USER_ID);
+        final TokenCacheItem extended = createItem("extended", "displayable", hoursFromNow(-2), hoursFromNow(1));
+        setItem(extended, USER_ID);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        final TokenCacheItem compacted = mTokenCacheStore.getItem(getKey("expired", USER_ID));
+        assertNull(compacted.getAccessToken());
+        assertEquals("refreshToken", compacted.getRefreshToken());
+        assertEquals("accessToken", mTokenCacheStore.getItem(getKey("extended", USER_ID)).getAccessToken());
+        assertEquals(1, maintenance.getAccessTokensDropped());
+        assertEquals(0, maintenance.getEntriesRemoved());
+        assertTrue(maintenance.getBytesReclaimed() > 0);
+    }
+
+    @Test
+    public void testSilentRequestRefreshesAfterAccessTokenDropped()
+            throws InterruptedException, IOException, JSONException, AuthenticationException {
+        System.setProperty("dexmaker.dexcache", getInstrumentation().getTargetContext().getCacheDir().getPath());
+        final TokenCacheItem expired = createItem("resource", "displayable", hoursFromNow(-2), hoursFromNow(-1));
+        setItem(expired, USER_ID);
+        compact();
+        assertNull(mTokenCacheStore.getItem(getKey("resource", USER_ID)).getAccessToken());
+
+        final HttpURLConnection mockedConnection = Mockito.mock(HttpURLConnection.class);
+        Util.prepareMockedUrlConnection(mockedConnection);
+        Mockito.when(mockedConnection.getOutputStream()).thenReturn(Mockito.mock(OutputStream.class));
+        Mockito.when(mockedConnection.getInputStream()).thenReturn(
+                Util.createInputStream(Util.getSuccessTokenResponse(false, false)));
+        Mockito.when(mockedConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+
+        final AuthenticationContext context = new AuthenticationContext(
+                new FileMockContext(getInstrumentation().getContext()), AUTHORITY, false, mTokenCacheStore);
+        final AuthenticationResult result = context.acquireTokenSilentSync("resource", "clientid", USER_ID);
+
+        assertEquals("I am a new access token", result.getAccessToken());
+        Mockito.verify(mockedConnection).getInputStream();
+    }
+
+    @Test
+    public void testKeepsItemsUnderOtherKeys() throws InterruptedException {
+        final TokenCacheItem item = createItem("resource", "displayable", hoursFromNow(-2), null);
+        item.setRefreshToken(null);
+        mTokenCacheStore.setItem("custom key", item);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        assertNotNull(mTokenCacheStore.getItem("custom key"));
+        assertEquals(0, maintenance.getEntriesRemoved());
+    }
+
+    @Test
+    public void testBytesReclaimedCountsUtf8Bytes() throws InterruptedException {
+        final TokenCacheItem item = createItem("resource", "zo\u00eb@contoso.com", hoursFromNow(-2), null);
+        item.setRefreshToken(null);
+        setItem(item, USER_ID);
+        final Gson gson = new GsonBuilder().registerTypeAdapter(Date.class, new DateTimeAdapter()).create();
+        final String json = gson.toJson(item);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        assertEquals(1, maintenance.getEntriesRemoved());
+        assertEquals(json.getBytes(Charset.forName("UTF-8")).length, maintenance.getBytesReclaimed());
+        assertTrue(maintenance.getBytesReclaimed() > json.length());
+    }
+
+    @Test
+    public void testKeepsTokenWrittenAfterItemWasRead() throws InterruptedException {
+        final TokenCacheItem expired = createItem("resource", "displayable", hoursFromNow(-2), null);
+        expired.setRefreshToken(null);
+        final TokenCacheItem refreshed = createItem("resource", "displayable", hoursFromNow(1), null);
+        final String key = getKey("resource", USER_ID);
+        final AtomicBoolean written = new AtomicBoolean(false);
+        mTokenCacheStore = new MemoryTokenCacheStore() {
+            @Override
+            public TokenCacheItem getItem(final String itemKey) {
+                final TokenCacheItem item = super.getItem(itemKey);
+                if (key.equals(itemKey) && written.compareAndSet(false, true)) {
+                    // A request saves a new token right after the compaction read the expired one
+                    synchronized (TokenCacheAccessor.CACHE_WRITE_LOCK) {
+                        super.setItem(key, refreshed);
+                        TokenCacheAccessor.onCacheWritten();
+                    }
+                }
+                return item;
+            }
+        };
+        setItem(expired, USER_ID);
+
+        final TokenCacheMaintenance maintenance = compact();
+
+        assertTrue(written.get());
+        assertEquals("accessToken", mTokenCacheStore.getItem(key).getAccessToken());
+        assertEquals(refreshed.getExpiresOn(), mTokenCacheStore.getItem(key).getExpiresOn());
+        assertEquals(0, maintenance.getEntriesRemoved());
+    }
+
+    @Test
+    public void testCompactTokenCacheWithoutCache() throws InterruptedException {
+        final TokenCacheMaintenance maintenance = new TokenCacheMaintenance(null);
+        maintenance.start();
+
+        assertTrue(maintenance.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(maintenance.isCancelled());
+        assertEquals(0, maintenance.getEntriesRemoved());
+    }
+
+    private TokenCacheMaintenance compact() throws InterruptedException {
+        final TokenCacheMaintenance maintenance = new TokenCacheMaintenance(mTokenCacheStore);
+        maintenance.start();
+        assertTrue(maintenance.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(maintenance.isDone());
+        return maintenance;
+    }
+
+    private void setItem(final TokenCacheItem item, final String user) {
+        mTokenCacheStore.setItem(getKey(item.getResource(), user), item);
+    }
+
+    private static String getKey(final String resource, final String user) {
+        return CacheKey.createCacheKeyForRTEntry(AUTHORITY, resource, "clientid", user);
+    }
+
+    private static TokenCacheItem createItem(final String resource, final String displayableId,
+                                             final Date expiresOn, final Date extendedExpiresOn) {
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(AUTHORITY);
+        item.setResource(resource);
+        item.setClientId("clientid");
+        item.setAccessToken("accessToken");
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn);
+        item.setExtendedExpiresOn(extendedExpiresOn);
+        item.setUserInfo(new UserInfo(USER_ID, "givenName", "familyName", "identityProvider", displayableId));
+        return item;
+    }
+
+    private static Date hoursFromNow(final int hours) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR, hours);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,73 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class TokenResponseReaderTest {
+
+    private static final String[] RESPONSES = {
+            "{\"access_token\":\"sometokenhere2343=\",\"token_type\":\"Bearer\",\"expires_in\":\"28799\","
+                    + "\"expires_on\":\"1368768616\",\"refresh_token\":\"refreshfasdfsdf435=\",\"scope\":\"*\"}",
+            "{\"access_token\":\"token\",\"expires_in\":3599,\"ext_expires_in\":10800,\"foci\":\"1\","
+                    + "\"resource\":\"https://graph.windows.net\",\"not_before\":1368768616}",
+            "{\"error\":\"invalid_grant\",\"error_description\":\"AADSTS70000: bad \\\"grant\\\" \\u00e9\","
+                    + "\"error_codes\":[70000,50076],\"timestamp\":\"2019-01-01 00:00:00Z\","
+                    + "\"trace_id\":\"abc\",\"correlation_id\":\"f4e3c0c5-6d36-4a4b-9b6b-6a8ab0b9a0b1\"}",
+            "{\"flag\":true,\"other\":false,\"nothing\":null}",
+            "{}"
+    };
+
+    @Test
+    public void testMatchesExtractJsonObjects() throws JSONException {
+        for (final String response : RESPONSES) {
+            final Map<String, String> expected = new HashMap<>();
+            Oauth2.extractJsonObjects(expected, response);
+            assertEquals(response, expected, TokenResponseReader.read(response));
+        }
+    }
+
+    @Test
+    public void testMalformedResponseThrowsJsonException() {
+        for (final String response : new String[]{"[1,2]", "{\"a\":", "not json"}) {
+            try {
+                TokenResponseReader.read(response);
+                fail(response);
+            } catch (final JSONException e) {
+                // expected
+            }
+        }
+    }
+}
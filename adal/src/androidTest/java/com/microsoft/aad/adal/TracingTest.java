@@ -0,0 +1,139 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TracingTest {
+
+    @After
+    public void tearDown() {
+        Tracing.setListener(null);
+        Tracing.setSystemTraceEnabled(false);
+    }
+
+    @Test
+    public void testNoSpanWhenDisabled() {
+        assertNull(Tracing.begin(TracePhase.ACQUIRE_TOKEN, UUID.randomUUID()));
+        // Ending a null span is a no-op
+        Tracing.end(null);
+    }
+
+    @Test
+    public void testNestedSpansShareCorrelationId() {
+        final RecordingListener listener = new RecordingListener();
+        Tracing.setListener(listener);
+        Tracing.setSystemTraceEnabled(true);
+
+        final UUID correlationId = UUID.randomUUID();
+        final TraceSpan root = Tracing.begin(TracePhase.ACQUIRE_TOKEN, correlationId);
+        final TraceSpan cacheLookup = Tracing.begin(TracePhase.CACHE_LOOKUP);
+        final TraceSpan decrypt = Tracing.begin(TracePhase.DECRYPT);
+        Tracing.end(decrypt);
+        Tracing.end(cacheLookup);
+        final TraceSpan network = Tracing.begin(TracePhase.NETWORK, correlationId);
+        Tracing.end(network);
+        Tracing.end(root);
+
+        assertEquals(4, listener.mSpans.size());
+        assertSame(decrypt, listener.mSpans.get(0));
+        assertSame(root, listener.mSpans.get(3));
+
+        assertEquals(correlationId, decrypt.getCorrelationId());
+        assertSame(cacheLookup, decrypt.getParent());
+        assertSame(root, cacheLookup.getParent());
+        assertSame(root, network.getParent());
+        assertNull(root.getParent());
+        assertEquals(2, decrypt.getDepth());
+
+        assertTrue(root.getDurationNanos() >= cacheLookup.getDurationNanos() + network.getDurationNanos());
+        assertTrue(decrypt.getDurationNanos() >= 0);
+
+        // The thread has no current span once the outermost one ended
+        final TraceSpan unrelated = Tracing.begin(TracePhase.DECRYPT);
+        Tracing.end(unrelated);
+        assertNull(unrelated.getCorrelationId());
+        assertNull(unrelated.getParent());
+    }
+
+    @Test
+    public void testSpanOnOtherThreadIsChildOfOpenRequestSpan() throws InterruptedException {
+        final RecordingListener listener = new RecordingListener();
+        Tracing.setListener(listener);
+
+        final UUID correlationId = UUID.randomUUID();
+        final TraceSpan root = Tracing.begin(TracePhase.ACQUIRE_TOKEN, correlationId);
+        final Thread callbackThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Tracing.end(Tracing.begin(TracePhase.CALLBACK_DISPATCH, correlationId));
+            }
+        });
+        callbackThread.start();
+        callbackThread.join();
+        Tracing.end(root);
+
+        assertEquals(2, listener.mSpans.size());
+        final TraceSpan callbackSpan = listener.mSpans.get(0);
+        assertEquals(TracePhase.CALLBACK_DISPATCH, callbackSpan.getPhase());
+        assertSame(root, callbackSpan.getParent());
+        assertEquals(callbackThread.getName(), callbackSpan.getThreadName());
+    }
+
+    @Test
+    public void testListenerExceptionDoesNotPropagate() {
+        Tracing.setListener(new ITraceListener() {
+            @Override
+            public void onSpanEnded(final TraceSpan span) {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+
+        Tracing.end(Tracing.begin(TracePhase.NETWORK, UUID.randomUUID()));
+    }
+
+    private static final class RecordingListener implements ITraceListener {
+        private final List<TraceSpan> mSpans = Collections.synchronizedList(new ArrayList<TraceSpan>());
+
+        @Override
+        public void onSpanEnded(final TraceSpan span) {
+            mSpans.add(span);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class WarmUpTest {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        // Keep instance discovery off the network
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+    }
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void testWarmUpRunsAllStagesAndReportsDurations() throws InterruptedException {
+        final MemoryTokenCacheStore tokenCacheStore = new MemoryTokenCacheStore();
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setResource("resource");
+        tokenCacheStore.setItem("key", item);
+        final AuthenticationContext context = new AuthenticationContext(getInstrumentation().getContext(),
+                AUTHORITY, false, tokenCacheStore);
+
+        final WarmUp warmUp = context.warmUp("resource");
+
+        assertTrue(warmUp.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(warmUp.isDone());
+        final Map<WarmUp.Stage, Long> stageDurations = warmUp.getStageDurations();
+        assertEquals(WarmUp.Stage.values().length, stageDurations.size());
+        for (final Long duration : stageDurations.values()) {
+            assertTrue(duration >= 0);
+        }
+    }
+
+    @Test
+    public void testWarmUpIsIdempotentUntilCancelled() throws InterruptedException {
+        final AuthenticationContext context = new AuthenticationContext(getInstrumentation().getContext(),
+                AUTHORITY, false, new MemoryTokenCacheStore());
+
+        final WarmUp warmUp = context.warmUp();
+        assertSame(warmUp, context.warmUp("resource"));
+
+        warmUp.cancel();
+        assertTrue(warmUp.isCancelled());
+        assertTrue(warmUp.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        final WarmUp restarted = context.warmUp();
+        assertNotSame(warmUp, restarted);
+        assertTrue(restarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+}
@@ -653,7 +653,17 @@ public enum ADALError {
     /**
      * Device is required to be managed.
      */
-    MDM_REQUIRED("Device needs to be managed to access the resource");
+    MDM_REQUIRED("Device needs to be managed to access the resource"),
+
+    /**
+     * The request did not complete before the deadline of its {@link CancellationToken}.
+     */
+    REQUEST_DEADLINE_EXCEEDED("The request did not complete before its deadline"),
+
+    /**
+     * The request was cancelled through its {@link CancellationToken}.
+     */
+    REQUEST_CANCELLED("The request was cancelled");
 
     private String mDescription;
 
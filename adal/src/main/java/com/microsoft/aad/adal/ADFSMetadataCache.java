@@ -0,0 +1,208 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the DRS and WebFinger metadata used for AD FS authority validation, keyed per domain.
+ * Entries are kept in memory and in SharedPreferences so that a restarted process does not have
+ * to repeat the discovery round trips until the entries expire.
+ */
+final class ADFSMetadataCache {
+    private static final String TAG = ADFSMetadataCache.class.getSimpleName();
+
+    static final String SHARED_PREFERENCE_NAME = "com.microsoft.aad.adal.adfs.metadata";
+
+    /**
+     * How long cached metadata is trusted before discovery is performed again.
+     */
+    static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private static final String DRS_KEY_PREFIX = "drs|";
+
+    private static final String WEBFINGER_KEY_PREFIX = "webfinger|";
+
+    private static final Gson GSON = new Gson();
+
+    private static final ConcurrentMap<String, CachedMetadata> IN_MEMORY_CACHE = new ConcurrentHashMap<>();
+
+    private static volatile long sTimeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private ADFSMetadataCache() {
+        // Utility class, no public constructor
+    }
+
+    @Nullable
+    static DRSMetadata getDRSMetadata(@Nullable final Context context, final String domain) {
+        return get(context, getDRSKey(domain), DRSMetadata.class);
+    }
+
+    static void putDRSMetadata(@Nullable final Context context, final String domain, final DRSMetadata metadata) {
+        put(context, getDRSKey(domain), metadata);
+    }
+
+    @Nullable
+    static WebFingerMetadata getWebFingerMetadata(@Nullable final Context context, final String domain,
+                                                  final URI authorityUri) {
+        return get(context, getWebFingerKey(domain, authorityUri), WebFingerMetadata.class);
+    }
+
+    static void putWebFingerMetadata(@Nullable final Context context, final String domain,
+                                     final URI authorityUri, final WebFingerMetadata metadata) {
+        put(context, getWebFingerKey(domain, authorityUri), metadata);
+    }
+
+    /**
+     * Removes all cached metadata, both in memory and persisted.
+     */
+    static void clear(@Nullable final Context context) {
+        IN_MEMORY_CACHE.clear();
+        final SharedPreferences prefs = getSharedPreferences(context);
+        if (prefs != null) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    /**
+     * Drops the in-memory entries only, as happens when the process is restarted.
+     */
+    static void clearInMemoryCache() {
+        IN_MEMORY_CACHE.clear();
+    }
+
+    static void setTimeToLiveMillis(final long timeToLiveMillis) {
+        sTimeToLiveMillis = timeToLiveMillis;
+    }
+
+    private static String getDRSKey(final String domain) {
+        return DRS_KEY_PREFIX + domain.toLowerCase(Locale.US);
+    }
+
+    private static String getWebFingerKey(final String domain, final URI authorityUri) {
+        return WEBFINGER_KEY_PREFIX + domain.toLowerCase(Locale.US) + "|" + authorityUri.toString();
+    }
+
+    @Nullable
+    private static <T> T get(@Nullable final Context context, final String key, final Class<T> type) {
+        final String methodName = ":get";
+        CachedMetadata cached = IN_MEMORY_CACHE.get(key);
+
+        final SharedPreferences prefs = getSharedPreferences(context);
+        if (cached == null && prefs != null) {
+            final String serialized = prefs.getString(key, null);
+            if (serialized != null) {
+                try {
+                    cached = GSON.fromJson(serialized, CachedMetadata.class);
+                } catch (final JsonParseException e) {
+                    Logger.w(TAG + methodName, "Persisted AD FS metadata is malformed, ignoring it.");
+                }
+            }
+        }
+
+        if (cached == null || cached.mMetadata == null) {
+            return null;
+        }
+
+        if (cached.mExpiresOn <= System.currentTimeMillis()) {
+            Logger.v(TAG + methodName, "Cached AD FS metadata has expired.");
+            IN_MEMORY_CACHE.remove(key);
+            if (prefs != null) {
+                prefs.edit().remove(key).apply();
+            }
+            return null;
+        }
+
+        IN_MEMORY_CACHE.put(key, cached);
+
+        try {
+            return GSON.fromJson(cached.mMetadata, type);
+        } catch (final JsonParseException e) {
+            Logger.w(TAG + methodName, "Cached AD FS metadata is malformed, ignoring it.");
+            return null;
+        }
+    }
+
+    private static void put(@Nullable final Context context, final String key, @Nullable final Object metadata) {
+        if (metadata == null) {
+            return;
+        }
+
+        final CachedMetadata cached = new CachedMetadata(
+                GSON.toJson(metadata),
+                System.currentTimeMillis() + sTimeToLiveMillis
+        );
+        IN_MEMORY_CACHE.put(key, cached);
+
+        final SharedPreferences prefs = getSharedPreferences(context);
+        if (prefs != null) {
+            prefs.edit().putString(key, GSON.toJson(cached)).apply();
+        }
+    }
+
+    @Nullable
+    private static SharedPreferences getSharedPreferences(@Nullable final Context context) {
+        if (context == null) {
+            return null;
+        }
+
+        return context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Serialized form of a cache entry.
+     */
+    private static final class CachedMetadata {
+        @SerializedName("metadata")
+        private String mMetadata;
+
+        @SerializedName("expires_on")
+        private long mExpiresOn;
+
+        /**
+         * No args constructor for use in serialization for Gson to prevent usage of sun.misc.Unsafe.
+         */
+        @SuppressWarnings("unused")
+        CachedMetadata() {
+        }
+
+        CachedMetadata(final String metadata, final long expiresOn) {
+            mMetadata = metadata;
+            mExpiresOn = expiresOn;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.pm.PackageInfoCompat;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.microsoft.identity.common.adal.internal.util.StringExtensions;
 import com.microsoft.identity.common.java.providers.microsoft.MicrosoftAuthorizationErrorResponse;
@@ -46,10 +47,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.identity.common.adal.internal.AuthenticationConstants.Broker.AZURE_AUTHENTICATOR_APP_PACKAGE_NAME;
 import static com.microsoft.identity.common.adal.internal.AuthenticationConstants.Broker.BROKER_HOST_APP_PACKAGE_NAME;
@@ -69,6 +83,23 @@ class AcquireTokenRequest {
      */
     private static final ExecutorService THREAD_EXECUTOR = Executors.newSingleThreadExecutor();
 
+    /**
+     * Bounds how many refresh token requests of one {@link #acquireTokensSilent} call are in flight.
+     */
+    static final int MAX_PARALLEL_REFRESH_REQUESTS = 4;
+
+    /**
+     * Bounds how many refresh token requests wait for a thread, the requests above it fail with an error.
+     */
+    static final int MAX_QUEUED_REFRESH_REQUESTS = 32;
+
+    private static final long REFRESH_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Executor for the parallel refresh token requests of {@link #acquireTokensSilent}.
+     */
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR = createRefreshExecutor();
+
     private final Context mContext;
     private final AuthenticationContext mAuthContext;
     private TokenCacheAccessor mTokenCacheAccessor;
@@ -116,7 +147,8 @@ class AcquireTokenRequest {
     void acquireToken(final IWindowComponent activity, final boolean useDialog, final AuthenticationRequest authRequest,
                       final AuthenticationCallback<AuthenticationResult> authenticationCallback) {
         final String methodName = ":acquireToken";
-        final CallbackHandler callbackHandle = new CallbackHandler(getHandler(), authenticationCallback);
+        final CallbackHandler<AuthenticationResult> callbackHandle = new CallbackHandler<>(getHandler(),
+                authenticationCallback, authRequest.getCorrelationId());
         // Executes all the calls inside the Runnable to return immediately to
         // user. All UI
         // related actions will be performed using Handler.
@@ -131,25 +163,310 @@ class AcquireTokenRequest {
                 Logger.setCorrelationId(authRequest.getCorrelationId());
 
                 Logger.v(TAG + methodName, "Running task in thread:" + android.os.Process.myTid());
+                final TraceSpan span = Tracing.begin(TracePhase.ACQUIRE_TOKEN, authRequest.getCorrelationId());
                 try {
+                    // The request may have run out of time while it was queued
+                    authRequest.getCancellationToken().throwIfCancelledOrExpired();
+
                     // Validate acquire token call first.
                     validateAcquireTokenRequest(authRequest);
                     performAcquireTokenRequest(callbackHandle, activity, useDialog, authRequest);
                 } catch (final AuthenticationException authenticationException) {
-                    mAPIEvent.setSpeRing(authenticationException.getSpeRing());
-                    mAPIEvent.setRefreshTokenAge(authenticationException.getRefreshTokenAge());
-                    mAPIEvent.setServerErrorCode(authenticationException.getCliTelemErrorCode());
-                    mAPIEvent.setServerSubErrorCode(authenticationException.getCliTelemSubErrorCode());
-                    mAPIEvent.setWasApiCallSuccessful(false, authenticationException);
-                    mAPIEvent.setCorrelationId(authRequest.getCorrelationId().toString());
-                    mAPIEvent.stopTelemetryAndFlush();
+                    stopTelemetryWithError(authRequest, authenticationException);
+                    callbackHandle.onError(authenticationException);
+                } finally {
+                    Tracing.end(span);
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves a silent request on the calling thread when it is a pure cache read: a valid access
+     * token is in the cache and the authority can be validated from the cached instance discovery
+     * metadata. This saves the hop to the background thread and back through the main looper.
+     *
+     * @return the result with the cached access token, or null if the request needs network or
+     * broker work and has to go through {@link #acquireToken}.
+     * @throws AuthenticationException if the cache lookup or the authority validation fails.
+     */
+    AuthenticationResult acquireTokenSilentFromCache(final AuthenticationRequest authRequest)
+            throws AuthenticationException {
+        final String methodName = ":acquireTokenSilentFromCache";
+        if (mTokenCacheAccessor == null
+                || !authRequest.isSilent()
+                || authRequest.getForceRefresh()
+                || authRequest.isClaimsChallengePresent()
+                || !canValidateAuthorityWithoutNetwork(authRequest)) {
+            return null;
+        }
+
+        Logger.setCorrelationId(authRequest.getCorrelationId());
+        final TraceSpan span = Tracing.begin(TracePhase.ACQUIRE_TOKEN, authRequest.getCorrelationId());
+        try {
+            final TokenCacheItem accessTokenItem = mTokenCacheAccessor.getATFromCache(authRequest.getResource(),
+                    authRequest.getClientId(), authRequest.getUserFromRequest());
+            if (accessTokenItem == null || StringExtensions.isNullOrBlank(accessTokenItem.getAccessToken())) {
+                Logger.v(TAG + methodName, "No valid access token in the cache, sending the request in the background.");
+                return null;
+            }
+
+            validateAcquireTokenRequest(authRequest);
+
+            Logger.v(TAG + methodName, "Return AT from cache on the calling thread.");
+            final AuthenticationResult result = AuthenticationResult.createResult(accessTokenItem);
+            mAPIEvent.setWasApiCallSuccessful(true, null);
+            mAPIEvent.setCorrelationId(authRequest.getCorrelationId().toString());
+            mAPIEvent.setIdToken(result.getIdToken());
+            mAPIEvent.stopTelemetryAndFlush();
+            return result;
+        } catch (final AuthenticationException authenticationException) {
+            stopTelemetryWithError(authRequest, authenticationException);
+            throw authenticationException;
+        } finally {
+            Tracing.end(span);
+        }
+    }
 
+    /**
+     * Acquires tokens for several resources of the same client and user. The authority is validated once,
+     * the access tokens of all resources are looked up in one pass, and the resources without a valid
+     * access token are redeemed in parallel with the multi resource or family refresh token they share.
+     * The returned tokens are written to the cache together once all the requests completed. Resources
+     * the shared refresh token cannot serve go through the regular silent flow.
+     */
+    void acquireTokensSilent(final List<AuthenticationRequest> authRequests,
+                             final AuthenticationCallback<BatchAuthenticationResult> authenticationCallback) {
+        final String methodName = ":acquireTokensSilent";
+        final AuthenticationRequest firstRequest = authRequests.get(0);
+        final CallbackHandler<BatchAuthenticationResult> callbackHandle = new CallbackHandler<>(getHandler(),
+                authenticationCallback, firstRequest.getCorrelationId());
+        Logger.setCorrelationId(firstRequest.getCorrelationId());
+        Logger.v(TAG + methodName, "Sending async task for " + authRequests.size() + " resources from thread:"
+                + android.os.Process.myTid());
+        THREAD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                Logger.setCorrelationId(firstRequest.getCorrelationId());
+                final TraceSpan span = Tracing.begin(TracePhase.ACQUIRE_TOKEN, firstRequest.getCorrelationId());
+                try {
+                    final BatchAuthenticationResult result = performAcquireTokensSilent(authRequests);
+                    mAPIEvent.setWasApiCallSuccessful(result.isSuccessful(), null);
+                    mAPIEvent.setCorrelationId(firstRequest.getCorrelationId().toString());
+                    mAPIEvent.stopTelemetryAndFlush();
+                    callbackHandle.onSuccess(result);
+                } catch (final AuthenticationException authenticationException) {
+                    stopTelemetryWithError(firstRequest, authenticationException);
                     callbackHandle.onError(authenticationException);
+                } finally {
+                    Tracing.end(span);
                 }
             }
         });
     }
 
+    private BatchAuthenticationResult performAcquireTokensSilent(final List<AuthenticationRequest> authRequests)
+            throws AuthenticationException {
+        final String methodName = ":performAcquireTokensSilent";
+        final AuthenticationRequest firstRequest = authRequests.get(0);
+        validateAcquireTokenRequest(firstRequest);
+
+        final Map<String, AuthenticationResult> results = new LinkedHashMap<>();
+        final Map<String, AuthenticationException> errors = new LinkedHashMap<>();
+        List<AuthenticationRequest> cacheMisses = new ArrayList<>();
+        for (final AuthenticationRequest request : authRequests) {
+            // Authority validation may have moved the authority to the preferred network location
+            request.setAuthority(firstRequest.getAuthority());
+            if (mTokenCacheAccessor == null) {
+                cacheMisses.add(request);
+                continue;
+            }
+
+            try {
+                final TokenCacheItem accessTokenItem = mTokenCacheAccessor.getATFromCache(request.getResource(),
+                        request.getClientId(), request.getUserFromRequest());
+                if (accessTokenItem == null || StringExtensions.isNullOrBlank(accessTokenItem.getAccessToken())) {
+                    cacheMisses.add(request);
+                } else {
+                    results.put(request.getResource(), AuthenticationResult.createResult(accessTokenItem));
+                }
+            } catch (final AuthenticationException authenticationException) {
+                errors.put(request.getResource(), authenticationException);
+            }
+        }
+
+        Logger.v(TAG + methodName, results.size() + " access tokens found in the cache, "
+                + cacheMisses.size() + " to refresh.");
+        if (!cacheMisses.isEmpty() && mTokenCacheAccessor != null
+                && !mBrokerProxy.verifyBrokerForSilentRequest(firstRequest)) {
+            cacheMisses = redeemSharedRefreshToken(cacheMisses, results, errors);
+        }
+
+        for (final AuthenticationRequest request : cacheMisses) {
+            try {
+                // Throws if no access token is returned, the request is silent
+                results.put(request.getResource(), tryAcquireTokenSilent(request));
+            } catch (final AuthenticationException authenticationException) {
+                errors.put(request.getResource(), authenticationException);
+            }
+        }
+
+        return new BatchAuthenticationResult(results, errors);
+    }
+
+    /**
+     * Redeems the multi resource or family refresh token of the user for all the requests in parallel
+     * and writes the returned tokens to the cache once every request completed.
+     *
+     * @return the requests that did not get an access token with the shared refresh token.
+     */
+    private List<AuthenticationRequest> redeemSharedRefreshToken(final List<AuthenticationRequest> authRequests,
+                                                                 final Map<String, AuthenticationResult> results,
+                                                                 final Map<String, AuthenticationException> errors)
+            throws AuthenticationException {
+        final String methodName = ":redeemSharedRefreshToken";
+        final TokenCacheItem refreshTokenItem = getSharedRefreshTokenItem(authRequests.get(0));
+        if (refreshTokenItem == null) {
+            Logger.v(TAG + methodName, "No multi resource or family refresh token in the cache.");
+            return authRequests;
+        }
+
+        final List<Future<AuthenticationResult>> futures = new ArrayList<>(authRequests.size());
+        for (final AuthenticationRequest request : authRequests) {
+            final AcquireTokenSilentHandler acquireTokenSilentHandler = new AcquireTokenSilentHandler(mContext,
+                    request, mTokenCacheAccessor);
+            try {
+                futures.add(REFRESH_EXECUTOR.submit(new Callable<AuthenticationResult>() {
+                    @Override
+                    public AuthenticationResult call() throws AuthenticationException {
+                        Logger.setCorrelationId(request.getCorrelationId());
+                        return acquireTokenSilentHandler.acquireTokenWithRefreshToken(refreshTokenItem.getRefreshToken());
+                    }
+                }));
+            } catch (final RejectedExecutionException e) {
+                Logger.w(TAG + methodName, "Too many refresh token requests queued, request not sent.");
+                errors.put(request.getResource(),
+                        new AuthenticationException(ADALError.IO_EXCEPTION, "Too many refresh token requests", e));
+                futures.add(null);
+            }
+        }
+
+        final List<AuthenticationRequest> remainingRequests = new ArrayList<>();
+        final List<AuthenticationRequest> completedRequests = new ArrayList<>();
+        final List<AuthenticationResult> completedResults = new ArrayList<>();
+        for (int i = 0; i < authRequests.size(); i++) {
+            final AuthenticationRequest request = authRequests.get(i);
+            final Future<AuthenticationResult> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+
+            try {
+                final AuthenticationResult result = future.get();
+                if (result != null && !result.isExtendedLifeTimeToken()) {
+                    completedRequests.add(request);
+                    completedResults.add(result);
+                } else if (isAccessTokenReturned(result)) {
+                    results.put(request.getResource(), result);
+                } else {
+                    remainingRequests.add(request);
+                }
+            } catch (final ExecutionException e) {
+                // Network or server failure, the regular silent flow would run into it again
+                if (e.getCause() instanceof AuthenticationException) {
+                    errors.put(request.getResource(), (AuthenticationException) e.getCause());
+                } else {
+                    Logger.w(TAG + methodName, "Refresh token request failed, fall back to the silent flow.",
+                            e.getMessage(), null);
+                    remainingRequests.add(request);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                remainingRequests.add(request);
+            }
+        }
+
+        // All the requests completed, write what they returned in one pass. A failed result is still
+        // passed on, an invalid_grant removes the refresh token from the cache.
+        for (int i = 0; i < completedRequests.size(); i++) {
+            final AuthenticationRequest request = completedRequests.get(i);
+            final AuthenticationResult result = completedResults.get(i);
+            try {
+                mTokenCacheAccessor.updateCachedItemWithResult(request, result, refreshTokenItem);
+            } catch (final AuthenticationException authenticationException) {
+                errors.put(request.getResource(), authenticationException);
+                continue;
+            }
+
+            if (isAccessTokenReturned(result)) {
+                results.put(request.getResource(), result);
+            } else {
+                remainingRequests.add(request);
+            }
+        }
+
+        return remainingRequests;
+    }
+
+    /**
+     * @return the refresh token item that can be redeemed for any resource, the FRT if the MRRT is a family
+     * token, null if there is none or it is ambiguous which user it belongs to.
+     */
+    private TokenCacheItem getSharedRefreshTokenItem(final AuthenticationRequest request) throws AuthenticationException {
+        final String user = request.getUserFromRequest();
+        if (StringExtensions.isNullOrBlank(user) && mTokenCacheAccessor.isMultipleMRRTsMatchingGivenApp(request.getClientId())) {
+            return null;
+        }
+
+        TokenCacheItem refreshTokenItem;
+        try {
+            refreshTokenItem = mTokenCacheAccessor.getMRRTItem(request.getClientId(), user);
+            if (refreshTokenItem == null || refreshTokenItem.isFamilyToken()) {
+                final String familyClientId = refreshTokenItem == null
+                        ? AuthenticationConstants.MS_FAMILY_ID : refreshTokenItem.getFamilyClientId();
+                final TokenCacheItem frtItem = mTokenCacheAccessor.getFRTItem(familyClientId, user);
+                if (frtItem != null) {
+                    refreshTokenItem = frtItem;
+                }
+            }
+        } catch (final MalformedURLException ex) {
+            throw new AuthenticationException(ADALError.DEVELOPER_AUTHORITY_IS_NOT_VALID_URL, ex.getMessage(), ex);
+        }
+
+        if (refreshTokenItem == null || StringExtensions.isNullOrBlank(refreshTokenItem.getRefreshToken())) {
+            return null;
+        }
+
+        return refreshTokenItem;
+    }
+
+    /**
+     * @return true if {@link #performAuthorityValidation} can run without sending a network request.
+     */
+    private boolean canValidateAuthorityWithoutNetwork(final AuthenticationRequest authRequest) {
+        final URL authorityUrl = StringExtensions.getUrl(authRequest.getAuthority());
+        if (authorityUrl == null) {
+            return false;
+        }
+
+        if (UrlExtensions.isADFSAuthority(authorityUrl)) {
+            return !mAuthContext.getValidateAuthority() || mAuthContext.getIsAuthorityValidated();
+        }
+
+        return AuthorityValidationMetadataCache.containsAuthorityHost(authorityUrl);
+    }
+
+    private void stopTelemetryWithError(final AuthenticationRequest authRequest,
+                                        final AuthenticationException authenticationException) {
+        mAPIEvent.setSpeRing(authenticationException.getSpeRing());
+        mAPIEvent.setRefreshTokenAge(authenticationException.getRefreshTokenAge());
+        mAPIEvent.setServerErrorCode(authenticationException.getCliTelemErrorCode());
+        mAPIEvent.setServerSubErrorCode(authenticationException.getCliTelemSubErrorCode());
+        mAPIEvent.setWasApiCallSuccessful(false, authenticationException);
+        mAPIEvent.setCorrelationId(authRequest.getCorrelationId().toString());
+        mAPIEvent.stopTelemetryAndFlush();
+    }
+
     /**
      * This API allows to obtain a new access token in exchange for a refresh token. The refresh
      * token must be provided to this API. The tokens obtained via this API may or may not be saved
@@ -167,7 +484,8 @@ class AcquireTokenRequest {
         Logger.setCorrelationId(authenticationRequest.getCorrelationId());
         Logger.v(TAG + methodName, "Refresh token without cache");
 
-        final CallbackHandler callbackHandle = new CallbackHandler(getHandler(), externalCallback);
+        final CallbackHandler<AuthenticationResult> callbackHandle = new CallbackHandler<>(getHandler(),
+                externalCallback, authenticationRequest.getCorrelationId());
 
         // Execute all the calls inside Runnable to return immediately. All UI
         // related actions will be performed using Handler.
@@ -214,7 +532,7 @@ class AcquireTokenRequest {
                     // whereas the resource could be null if the caller did not specify a resource
                     // on the AuthenticationRequest.
                     if (!TextUtils.isEmpty(rawIdToken) && !TextUtils.isEmpty(authenticationRequest.getResource())) {
-                        final IdToken idTokenRecord = new IdToken(rawIdToken);
+                        final IdToken idTokenRecord = IdToken.parse(rawIdToken);
                         final UserInfo userInfo = new UserInfo(idTokenRecord);
 
                         TokenCacheItem tokenCacheItem = new TokenCacheItem();
@@ -259,7 +577,12 @@ class AcquireTokenRequest {
         }
 
         // validate authority
-        performAuthorityValidation(authenticationRequest, authorityUrl);
+        final TraceSpan span = Tracing.begin(TracePhase.AUTHORITY_VALIDATION, authenticationRequest.getCorrelationId());
+        try {
+            performAuthorityValidation(authenticationRequest, authorityUrl);
+        } finally {
+            Tracing.end(span);
+        }
 
         // Verify broker redirect uri for non-silent request
         final BrokerProxy.SwitchToBroker canSwitchToBrokerFlag = mBrokerProxy.canSwitchToBroker(authenticationRequest.getAuthority());
@@ -288,6 +611,7 @@ class AcquireTokenRequest {
         APIEvent apiEvent = new APIEvent(EventStrings.AUTHORITY_VALIDATION_EVENT);
         apiEvent.setCorrelationId(authenticationRequest.getCorrelationId().toString());
         apiEvent.setRequestId(authenticationRequest.getTelemetryRequestId());
+        mDiscovery.setCancellationToken(authenticationRequest.getCancellationToken());
 
         if (mAuthContext.getValidateAuthority()) {
             try {
@@ -316,6 +640,9 @@ class AcquireTokenRequest {
                 try {
                     mDiscovery.validateAuthority(authorityUrl);
                 } catch (final AuthenticationException authenticationException) {
+                    // Only a request that ran out of time fails here
+                    authenticationRequest.getCancellationToken().throwIfCancelledOrExpired();
+
                     // Ignore the failure, save in the map as a failed instance discovery to avoid it being looked up another times in the same process
                     AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(authorityUrl.getHost(), new InstanceDiscoveryMetadata(false));
                     AzureActiveDirectory.putCloud(authorityUrl.getHost(), new AzureActiveDirectoryCloud(false));
@@ -401,7 +728,7 @@ class AcquireTokenRequest {
      * If silent request fails and no prompt is allowed, we'll return the exception back via callback.
      * If silent request fails and prompt is allowed, we'll prompt the user and launch webview.
      */
-    private void performAcquireTokenRequest(final CallbackHandler callbackHandle,
+    private void performAcquireTokenRequest(final CallbackHandler<AuthenticationResult> callbackHandle,
                                             final IWindowComponent activity,
                                             final boolean useDialog,
                                             final AuthenticationRequest authenticationRequest)
@@ -439,6 +766,7 @@ class AcquireTokenRequest {
             throws AuthenticationException {
         final String methodName = ":tryAcquireTokenSilent";
         AuthenticationResult authenticationResult = null;
+        authenticationRequest.getCancellationToken().throwIfCancelledOrExpired();
 
         if (shouldTrySilentFlow(authenticationRequest)) {
             Logger.v(TAG + methodName, "Try to acquire token silently, return valid AT or use RT in the cache.");
@@ -677,7 +1005,7 @@ class AcquireTokenRequest {
      * Handles the acquire token interactive flow. If we can switch to broker, will always launch webview via broker.
      * If we cannot switch to broker, will launch webview locally.
      */
-    private void acquireTokenInteractiveFlow(final CallbackHandler callbackHandle,
+    private void acquireTokenInteractiveFlow(final CallbackHandler<AuthenticationResult> callbackHandle,
                                              final IWindowComponent activity,
                                              final boolean useDialog,
                                              final AuthenticationRequest authenticationRequest)
@@ -923,6 +1251,11 @@ class AcquireTokenRequest {
 
                     waitingRequestOnError(waitingRequest, requestId,
                             new AuthenticationException(ADALError.BROKER_APP_INSTALLATION_STARTED));
+
+                    // AuthenticationActivity opens the broker install page once the result is handled
+                    final Intent resumeHandledIntent = new Intent(AuthenticationConstants.Browser.ACTION_BROKER_RESUME_HANDLED);
+                    resumeHandledIntent.putExtra(AuthenticationConstants.Browser.REQUEST_ID, requestId);
+                    LocalBroadcastManager.getInstance(mContext).sendBroadcast(resumeHandledIntent);
                 } else if (resultCode == AuthenticationConstants.UIResponse.BROWSER_CODE_MDM) {
                     Logger.v(TAG + methodName, "Device needs to be managed, we expect the apps to call us"
                             + "back when the device is managed");
@@ -991,8 +1324,8 @@ class AcquireTokenRequest {
                     } else {
                         // Browser has the url and it will exchange auth code
                         // for token
-                        final CallbackHandler callbackHandle = new CallbackHandler(getHandler(),
-                                waitingRequest.getDelegate());
+                        final CallbackHandler<AuthenticationResult> callbackHandle = new CallbackHandler<>(getHandler(),
+                                waitingRequest.getDelegate(), waitingRequest.getRequest().getCorrelationId());
 
                         // Executes all the calls inside the Runnable to return
                         // immediately to
@@ -1048,6 +1381,28 @@ class AcquireTokenRequest {
         return authResult != null && !StringExtensions.isNullOrBlank(authResult.getAccessToken());
     }
 
+    private static ThreadPoolExecutor createRefreshExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_PARALLEL_REFRESH_REQUESTS,
+                MAX_PARALLEL_REFRESH_REQUESTS,
+                REFRESH_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_REFRESH_REQUESTS),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "adal-refresh-" + mThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private synchronized Handler getHandler() {
         if (sHandler == null) {
             sHandler = new Handler(Looper.getMainLooper());
@@ -1062,7 +1417,7 @@ class AcquireTokenRequest {
         waitingRequestOnError(null, waitingRequest, requestId, exc);
     }
 
-    private void waitingRequestOnError(final CallbackHandler handler, final AuthenticationRequestState waitingRequest,
+    private void waitingRequestOnError(final CallbackHandler<AuthenticationResult> handler, final AuthenticationRequestState waitingRequest,
                                        final int requestId, final AuthenticationException exc) {
         final String methodName = ":waitingRequestOnError";
         try {
@@ -1087,14 +1442,17 @@ class AcquireTokenRequest {
         }
     }
 
-    private static class CallbackHandler {
+    private static class CallbackHandler<T> {
         private Handler mRefHandler;
 
-        private AuthenticationCallback<AuthenticationResult> mCallback;
+        private AuthenticationCallback<T> mCallback;
+
+        private final UUID mCorrelationId;
 
-        CallbackHandler(Handler ref, AuthenticationCallback<AuthenticationResult> callbackExt) {
+        CallbackHandler(Handler ref, AuthenticationCallback<T> callbackExt, UUID correlationId) {
             mRefHandler = ref;
             mCallback = callbackExt;
+            mCorrelationId = correlationId;
         }
 
         public void onError(final AuthenticationException e) {
@@ -1103,32 +1461,50 @@ class AcquireTokenRequest {
                     mRefHandler.post(new Runnable() {
                         @Override
                         public void run() {
-                            mCallback.onError(e);
+                            dispatchError(e);
                         }
                     });
                 } else {
-                    mCallback.onError(e);
+                    dispatchError(e);
                 }
             }
         }
 
-        public void onSuccess(final AuthenticationResult result) {
+        public void onSuccess(final T result) {
             if (mCallback != null) {
                 if (mRefHandler != null) {
                     mRefHandler.post(new Runnable() {
                         @Override
                         public void run() {
-                            mCallback.onSuccess(result);
+                            dispatchSuccess(result);
                         }
                     });
                 } else {
-                    mCallback.onSuccess(result);
+                    dispatchSuccess(result);
                 }
             }
         }
 
-        AuthenticationCallback<AuthenticationResult> getCallback() {
+        AuthenticationCallback<T> getCallback() {
             return mCallback;
         }
+
+        private void dispatchError(final AuthenticationException e) {
+            final TraceSpan span = Tracing.begin(TracePhase.CALLBACK_DISPATCH, mCorrelationId);
+            try {
+                mCallback.onError(e);
+            } finally {
+                Tracing.end(span);
+            }
+        }
+
+        private void dispatchSuccess(final T result) {
+            final TraceSpan span = Tracing.begin(TracePhase.CALLBACK_DISPATCH, mCorrelationId);
+            try {
+                mCallback.onSuccess(result);
+            } finally {
+                Tracing.end(span);
+            }
+        }
     }
 }
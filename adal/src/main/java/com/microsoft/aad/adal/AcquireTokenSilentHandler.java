@@ -109,8 +109,10 @@ class AcquireTokenSilentHandler {
         // Check for if there is valid access token item in the cache.
         final TokenCacheItem accessTokenItem = mTokenCacheAccessor.getATFromCache(mAuthRequest.getResource(),
                 mAuthRequest.getClientId(), mAuthRequest.getUserFromRequest());
-        // If accessToken is null or if the user requested force refresh or if claims challenge is present then get a new access token using local refresh tokens
-        if (accessTokenItem == null || mAuthRequest.getForceRefresh() || mAuthRequest.isClaimsChallengePresent()) {
+        // If accessToken is null or if the user requested force refresh or if claims challenge is present then get a new access token using local refresh tokens.
+        // An item can hold only a refresh token once its access token is dropped by the cache compaction.
+        if (accessTokenItem == null || StringExtensions.isNullOrBlank(accessTokenItem.getAccessToken())
+                || mAuthRequest.getForceRefresh() || mAuthRequest.isClaimsChallengePresent()) {
             Logger.v(TAG + methodName, "No valid access token exists, try with refresh token.");
             return tryRT();
         }
@@ -165,6 +167,9 @@ class AcquireTokenSilentHandler {
                 // so we cant set the refresh token
             }
         } catch (final IOException | AuthenticationException exc) {
+            // The request ran out of time, report that rather than a token failure
+            mAuthRequest.getCancellationToken().throwIfCancelledOrExpired();
+
             // Server side error or similar
             Logger.e(TAG + methodName,
                     "Error in assertion for request.",
@@ -192,7 +197,20 @@ class AcquireTokenSilentHandler {
                 mAuthRequest.getLogInfo(), null);
 
         // Check if network is available, if not throw exception. 
-        HttpUtil.throwIfNetworkNotAvailable(mContext);
+        try {
+            HttpUtil.throwIfNetworkNotAvailable(mContext);
+        } catch (final AuthenticationException exc) {
+            // Offline, fall back to the stale token like when the server is not responding
+            if (mAuthRequest.getIsExtendedLifetimeEnabled() && mTokenCacheAccessor != null) {
+                final TokenCacheItem accessTokenItem = mTokenCacheAccessor.getStaleToken(mAuthRequest);
+                if (accessTokenItem != null) {
+                    Logger.i(TAG + methodName, "Network is not available, the result with stale access token is returned.", "");
+                    return AuthenticationResult.createExtendedLifeTimeResult(accessTokenItem);
+                }
+            }
+
+            throw exc;
+        }
 
         final AuthenticationResult result;
         try {
@@ -205,6 +223,7 @@ class AcquireTokenSilentHandler {
             }
         } catch (final ServerRespondingWithRetryableException exc) {
             Logger.i(TAG + methodName, "The server is not responding after the retry with error code: " + exc.getCode(), "");
+            mAuthRequest.getCancellationToken().throwIfCancelledOrExpired();
             final TokenCacheItem accessTokenItem = mTokenCacheAccessor.getStaleToken(mAuthRequest);
             if (accessTokenItem != null) {
                 final AuthenticationResult retryResult = AuthenticationResult.createExtendedLifeTimeResult(accessTokenItem);
@@ -224,6 +243,9 @@ class AcquireTokenSilentHandler {
                     ADALError.AUTH_FAILED_NO_TOKEN, ExceptionExtensions.getExceptionMessage(exc),
                     new AuthenticationException(ADALError.SERVER_ERROR, exc.getMessage(), exc));
         } catch (final IOException | AuthenticationException exc) {
+            // The request ran out of time, report that rather than a token failure
+            mAuthRequest.getCancellationToken().throwIfCancelledOrExpired();
+
             // Server side error or similar
             Logger.e(TAG + methodName,
                     "Error in refresh token for request.",
@@ -0,0 +1,126 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The authorities tokens of an authority can be cached under: the preferred cache location and the
+ * aliases returned by instance discovery. Building them parses and rebuilds the authority url, so
+ * they are computed once per authority and recomputed when {@link AuthorityValidationMetadataCache}
+ * changes.
+ */
+final class AliasAuthorities {
+
+    // Apps talk to a handful of authorities, start over rather than grow without bound
+    private static final int MAX_CACHED_AUTHORITIES = 64;
+
+    private static final ConcurrentMap<String, AliasAuthorities> AUTHORITIES = new ConcurrentHashMap<>();
+
+    private final int mGeneration;
+
+    private final String mPreferredCacheAuthority;
+
+    private final List<String> mOtherAliasAuthorities;
+
+    private AliasAuthorities(final int generation, final String preferredCacheAuthority,
+                             final List<String> otherAliasAuthorities) {
+        mGeneration = generation;
+        mPreferredCacheAuthority = preferredCacheAuthority;
+        mOtherAliasAuthorities = otherAliasAuthorities;
+    }
+
+    /**
+     * @param authority the authority passed in with the request
+     * @return the alias authorities for the authority, computed from the current instance discovery metadata.
+     * @throws MalformedURLException if the authority is not a valid url
+     */
+    static AliasAuthorities forAuthority(final String authority) throws MalformedURLException {
+        // Read the generation before the metadata, a concurrent change then makes the result stale
+        // instead of caching a mix of old and new metadata under the new generation.
+        final int generation = AuthorityValidationMetadataCache.getGeneration();
+        final AliasAuthorities cached = AUTHORITIES.get(authority);
+        if (cached != null && cached.mGeneration == generation) {
+            return cached;
+        }
+
+        final AliasAuthorities aliasAuthorities = create(authority, generation);
+        if (AUTHORITIES.size() >= MAX_CACHED_AUTHORITIES) {
+            AUTHORITIES.clear();
+        }
+        AUTHORITIES.put(authority, aliasAuthorities);
+
+        return aliasAuthorities;
+    }
+
+    /**
+     * @return the authority at the preferred cache location, the passed in authority if it has no validated metadata.
+     */
+    String getPreferredCacheAuthority() {
+        return mPreferredCacheAuthority;
+    }
+
+    /**
+     * @return the authorities of the aliased hosts, without the passed in and the preferred cache authority.
+     */
+    List<String> getOtherAliasAuthorities() {
+        return mOtherAliasAuthorities;
+    }
+
+    private static AliasAuthorities create(final String authority, final int generation) throws MalformedURLException {
+        final URL authorityUrl = new URL(authority);
+        final InstanceDiscoveryMetadata metadata = AuthorityValidationMetadataCache.getCachedInstanceDiscoveryMetadata(authorityUrl);
+        if (metadata == null) {
+            return new AliasAuthorities(generation, authority, Collections.<String>emptyList());
+        }
+
+        final String preferredCacheAuthority = metadata.isValidated()
+                ? constructAuthorityUrl(authority, authorityUrl, metadata.getPreferredCache()) : authority;
+
+        final List<String> otherAliasAuthorities = new ArrayList<>();
+        for (final String aliasHost : metadata.getAliases()) {
+            final String aliasAuthority = constructAuthorityUrl(authority, authorityUrl, aliasHost);
+            if (!aliasAuthority.equalsIgnoreCase(authority) && !aliasAuthority.equalsIgnoreCase(preferredCacheAuthority)) {
+                otherAliasAuthorities.add(aliasAuthority);
+            }
+        }
+
+        return new AliasAuthorities(generation, preferredCacheAuthority, Collections.unmodifiableList(otherAliasAuthorities));
+    }
+
+    private static String constructAuthorityUrl(final String authority, final URL authorityUrl, final String host)
+            throws MalformedURLException {
+        if (authorityUrl.getHost().equalsIgnoreCase(host)) {
+            return authority;
+        }
+
+        return Discovery.constructAuthorityUrl(authorityUrl, host).toString();
+    }
+}
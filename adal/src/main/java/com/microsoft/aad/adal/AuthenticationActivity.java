@@ -31,9 +31,11 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.security.KeyChain;
 import android.security.KeyChainAliasCallback;
 import android.security.KeyChainException;
@@ -47,6 +49,7 @@ import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.widget.ProgressBar;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
@@ -127,9 +130,15 @@ public class AuthenticationActivity extends DualScreenActivity {
 
     static final int BACK_PRESSED_CANCEL_DIALOG_STEPS = -2;
 
+    /**
+     * Upper bound on how long opening the broker install page waits for the calling activity.
+     */
+    static final long BROKER_RESUME_READY_TIMEOUT_MILLIS = 1000;
+
     private static final String TAG = "AuthenticationActivity";
     private boolean mRegisterReceiver = false;
     private WebView mWebView;
+    private CustomWebViewClient mWebViewClient;
     private String mStartUrl;
     private ProgressBar mSpinner;
     private String mRedirectUrl;
@@ -147,6 +156,26 @@ public class AuthenticationActivity extends DualScreenActivity {
     private boolean mPkeyAuthRedirect = false;
     private StorageHelper mStorageHelper;
     private UIEvent mUIEvent = null;
+    private long mCreatedAtMillis;
+    private boolean mFirstPaintRecorded = false;
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+    private Runnable mBrokerResumeReadyAction = null;
+    private final Runnable mBrokerResumeReadyTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Logger.verbose(TAG, "Timed out waiting for the calling activity, opening the install page.");
+            runBrokerResumeReadyAction();
+        }
+    };
+    private final android.content.BroadcastReceiver mBrokerResumeHandledReceiver = new android.content.BroadcastReceiver() {
+        @Override
+        public void onReceive(final Context context, final Intent intent) {
+            if (mAuthRequest == null || intent.getIntExtra(REQUEST_ID, 0) == mAuthRequest.getRequestId()) {
+                Logger.verbose(TAG, "Calling activity handled the broker resume result, opening the install page.");
+                runBrokerResumeReadyAction();
+            }
+        }
+    };
 
     // Broadcast receiver is needed to cancel outstanding AuthenticationActivity
     // for this AuthenticationContext since each instance of context can have
@@ -190,8 +219,12 @@ public class AuthenticationActivity extends DualScreenActivity {
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
         final String methodName = ":onCreate";
+        mCreatedAtMillis = SystemClock.elapsedRealtime();
         super.onCreate(savedInstanceState);
+        // Inflating the layout creates the WebView, which loads the WebView provider on first use
+        final long webViewInitStartMillis = SystemClock.elapsedRealtime();
         setContentView(R.layout.activity_authentication);
+        final long webViewInitTimeMillis = SystemClock.elapsedRealtime() - webViewInitStartMillis;
 
         mWebView = findViewById(R.id.authentication_activity_webView);
         mSpinner = findViewById(R.id.authentication_activity_progressBar);
@@ -246,6 +279,7 @@ public class AuthenticationActivity extends DualScreenActivity {
         mUIEvent = new UIEvent(EventStrings.UI_EVENT);
         mUIEvent.setRequestId(mAuthRequest.getTelemetryRequestId());
         mUIEvent.setCorrelationId(mAuthRequest.getCorrelationId().toString());
+        mUIEvent.setWebViewInitTime(webViewInitTimeMillis);
 
         // Disable hardware acceleration in WebView if needed
         if (!AuthenticationSettings.INSTANCE.getDisableWebViewHardwareAcceleration()) {
@@ -254,19 +288,24 @@ public class AuthenticationActivity extends DualScreenActivity {
             Logger.warn(TAG + methodName, "Hardware acceleration is disabled in WebView");
         }
 
-        mStartUrl = "about:blank";
+        mStartUrl = InteractiveRequestPrewarmer.getCodeRequestUrl(mAuthRequest);
+        mUIEvent.setPrewarmed(mStartUrl != null);
 
-        try {
-            final Oauth2 oauth = new Oauth2(mAuthRequest);
-            mStartUrl = oauth.getCodeRequestUrl();
-        } catch (UnsupportedEncodingException e) {
-            Logger.error(TAG + methodName, "Encoding format is not supported. ", e);
+        if (mStartUrl == null) {
+            mStartUrl = "about:blank";
 
-            final Intent resultIntent = new Intent();
-            resultIntent.putExtra(RESPONSE_REQUEST_INFO, mAuthRequest);
-            returnToCaller(BROWSER_CODE_ERROR, resultIntent);
+            try {
+                final Oauth2 oauth = new Oauth2(mAuthRequest);
+                mStartUrl = oauth.getCodeRequestUrl();
+            } catch (UnsupportedEncodingException e) {
+                Logger.error(TAG + methodName, "Encoding format is not supported. ", e);
 
-            return;
+                final Intent resultIntent = new Intent();
+                resultIntent.putExtra(RESPONSE_REQUEST_INFO, mAuthRequest);
+                returnToCaller(BROWSER_CODE_ERROR, resultIntent);
+
+                return;
+            }
         }
 
         // Create the broadcast receiver for cancel
@@ -452,7 +491,8 @@ public class AuthenticationActivity extends DualScreenActivity {
         webSettings.setDomStorageEnabled(true);
         webSettings.setUseWideViewPort(true);
         webSettings.setBuiltInZoomControls(true);
-        mWebView.setWebViewClient(new CustomWebViewClient());
+        mWebViewClient = new CustomWebViewClient();
+        mWebView.setWebViewClient(mWebViewClient);
         mWebView.setVisibility(View.INVISIBLE);
     }
 
@@ -702,6 +742,30 @@ public class AuthenticationActivity extends DualScreenActivity {
         returnToCaller(BROKER_REQUEST_RESUME, resultIntent);
     }
 
+    /**
+     * Returns to the caller with BROKER_REQUEST_RESUME and runs {@code onReady} once the caller has
+     * handled the result, which {@link AcquireTokenRequest} signals with
+     * {@link AuthenticationConstants.Browser#ACTION_BROKER_RESUME_HANDLED}, or after
+     * {@link #BROKER_RESUME_READY_TIMEOUT_MILLIS} at the latest if the caller does not pass the result on.
+     */
+    private void prepareForBrokerResume(@NonNull final Runnable onReady) {
+        mBrokerResumeReadyAction = onReady;
+        LocalBroadcastManager.getInstance(this).registerReceiver(mBrokerResumeHandledReceiver,
+                new IntentFilter(AuthenticationConstants.Browser.ACTION_BROKER_RESUME_HANDLED));
+        mMainThreadHandler.postDelayed(mBrokerResumeReadyTimeout, BROKER_RESUME_READY_TIMEOUT_MILLIS);
+        prepareForBrokerResume();
+    }
+
+    private void runBrokerResumeReadyAction() {
+        mMainThreadHandler.removeCallbacks(mBrokerResumeReadyTimeout);
+        final Runnable action = mBrokerResumeReadyAction;
+        mBrokerResumeReadyAction = null;
+        if (action != null) {
+            LocalBroadcastManager.getInstance(this).unregisterReceiver(mBrokerResumeHandledReceiver);
+            action.run();
+        }
+    }
+
     private void hideKeyBoard() {
         if (mWebView != null) {
             InputMethodManager imm = (InputMethodManager) this.getSystemService(Service.INPUT_METHOD_SERVICE);
@@ -713,6 +777,10 @@ public class AuthenticationActivity extends DualScreenActivity {
     protected void onDestroy() {
         super.onDestroy();
 
+        if (mWebViewClient != null) {
+            mWebViewClient.cancelBackgroundTasks();
+        }
+
         if (mUIEvent != null) {
             Telemetry.getInstance()
                     .stopEvent(
@@ -805,6 +873,17 @@ public class AuthenticationActivity extends DualScreenActivity {
             displaySpinner(status);
         }
 
+        @Override
+        public void onPageFinished(final WebView view, final String url) {
+            super.onPageFinished(view, url);
+
+            // The WebView is shown once the first page other than the blank one has loaded
+            if (!mFirstPaintRecorded && url != null && !url.startsWith(BLANK_PAGE) && mUIEvent != null) {
+                mFirstPaintRecorded = true;
+                mUIEvent.setTimeToFirstPaint(SystemClock.elapsedRealtime() - mCreatedAtMillis);
+            }
+        }
+
         @Override
         public void sendResponse(final int returnCode, final Intent responseIntent) {
             returnToCaller(returnCode, responseIntent);
@@ -820,6 +899,11 @@ public class AuthenticationActivity extends DualScreenActivity {
             prepareForBrokerResume();
         }
 
+        @Override
+        public void prepareForBrokerResumeRequest(@NonNull final Runnable onReady) {
+            prepareForBrokerResume(onReady);
+        }
+
         @Override
         public void setPKeyAuthStatus(final boolean status) {
             mPkeyAuthRedirect = status;
@@ -975,7 +1059,7 @@ public class AuthenticationActivity extends DualScreenActivity {
      * setUserData/getUserData inside the AccountManager. This is used only for
      * broker related call.
      */
-    class TokenTask extends AsyncTask<String, String, TokenTaskResult> {
+    class TokenTask {
 
         private String mPackageName;
         private int mAppCallingUID;
@@ -998,7 +1082,35 @@ public class AuthenticationActivity extends DualScreenActivity {
             mAccountManager = AccountManager.get(AuthenticationActivity.this);
         }
 
-        @Override
+        /**
+         * Redeems the authorization code on the interactive flow's background executor and
+         * reports the result on the UI thread.
+         *
+         * @param url the redirect url holding the authorization code
+         */
+        void execute(final String url) {
+            final boolean scheduled = mWebViewClient.getTaskExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final TokenTaskResult result = doInBackground(url);
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!isFinishing()) {
+                                onPostExecute(result);
+                            }
+                        }
+                    });
+                }
+            });
+
+            if (!scheduled) {
+                displaySpinner(false);
+                returnError(ADALError.AUTHORIZATION_CODE_NOT_EXCHANGED_FOR_TOKEN,
+                        "The authorization code could not be scheduled for redemption.");
+            }
+        }
+
         protected TokenTaskResult doInBackground(final String... urlItems) {
             final Oauth2 oauthRequest = new Oauth2(mRequest, mRequestHandler, mJWSBuilder);
             final TokenTaskResult result = new TokenTaskResult();
@@ -1260,7 +1372,6 @@ public class AuthenticationActivity extends DualScreenActivity {
             }
         }
 
-        @Override
         protected void onPostExecute(final TokenTaskResult result) {
             Logger.verbose(TAG, "Token task returns the result");
             displaySpinner(false);
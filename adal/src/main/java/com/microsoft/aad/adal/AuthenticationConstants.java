@@ -108,6 +108,12 @@ public final class AuthenticationConstants {
          */
         public static final String ACTION_CANCEL = com.microsoft.identity.common.adal.internal.AuthenticationConstants.Browser.ACTION_CANCEL;
 
+        /**
+         * Used by LocalBroadcastReceivers to filter the intent string of the caller having handled
+         * the broker resume result.
+         */
+        public static final String ACTION_BROKER_RESUME_HANDLED = "com.microsoft.aad.adal:BrokerResumeHandled";
+
         /**
          * Used as the key to send back request id.
          */
@@ -52,6 +52,8 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -88,6 +90,10 @@ public class AuthenticationContext {
     private boolean mExtendedLifetimeEnabled = false;
 
     private List<String> mClientCapabilites = null;
+
+    private WarmUp mWarmUp = null;
+
+    private TokenCacheMaintenance mTokenCacheMaintenance = null;
     /**
      * Delegate map is needed to handle activity recreate without asking
      * developer to handle context instance for config changes.
@@ -585,6 +591,105 @@ public class AuthenticationContext {
 
     }
 
+    /**
+     * Opt-in. Call this when the app expects to start an interactive sign-in soon, for example when
+     * it shows its sign-in button. It loads the WebView provider, connects to the authority host
+     * and builds the authorization request url in the background, so that the sign-in page shows up
+     * sooner once {@link #acquireToken} is called with the same parameters. It does not start
+     * any UI and does not read the token cache.
+     *
+     * @param resource    required resource identifier.
+     * @param clientId    required client identifier.
+     * @param redirectUri Optional. It will use package name info if not provided.
+     * @param loginHint   Optional. The login hint the interactive request will be sent with.
+     */
+    public void prepareForInteractiveRequest(final String resource, final String clientId,
+                                             @Nullable final String redirectUri, @Nullable final String loginHint) {
+        prepareForInteractiveRequest(resource, clientId, redirectUri, loginHint, PromptBehavior.Auto, null, null);
+    }
+
+    /**
+     * Opt-in. Call this when the app expects to start an interactive sign-in soon, for example when
+     * it shows its sign-in button. It loads the WebView provider, connects to the authority host
+     * and builds the authorization request url in the background, so that the sign-in page shows up
+     * sooner once {@link #acquireToken} is called with the same parameters. It does not start
+     * any UI and does not read the token cache.
+     *
+     * @param resource             required resource identifier.
+     * @param clientId             required client identifier.
+     * @param redirectUri          Optional. It will use package name info if not provided.
+     * @param loginHint            Optional. The login hint the interactive request will be sent with.
+     * @param prompt               Optional. The prompt behavior the interactive request will be sent with.
+     * @param extraQueryParameters Optional. The extra query parameters the interactive request will be sent with.
+     * @param claims               Optional. The claims challenge the interactive request will be sent with.
+     */
+    public void prepareForInteractiveRequest(final String resource, final String clientId,
+                                             @Nullable final String redirectUri, @Nullable final String loginHint,
+                                             @Nullable final PromptBehavior prompt, @Nullable final String extraQueryParameters,
+                                             @Nullable final String claims) {
+        if (StringExtensions.isNullOrBlank(resource)) {
+            throw new IllegalArgumentException("resource");
+        }
+
+        if (StringExtensions.isNullOrBlank(clientId)) {
+            throw new IllegalArgumentException("clientId");
+        }
+
+        // The correlation id is a placeholder, the prebuilt url gets the one of the actual request
+        final AuthenticationRequest request = new AuthenticationRequest(mAuthority, resource,
+                clientId, getRedirectUri(redirectUri), loginHint, prompt, extraQueryParameters,
+                UUID.randomUUID(), getExtendedLifetimeEnabled(), claims);
+        setAppInfoToRequest(request);
+        request.setClientCapabilities(mClientCapabilites);
+
+        InteractiveRequestPrewarmer.prewarm(mContext, request);
+    }
+
+    /**
+     * Opt-in. Call this early, for example when the app starts, to do the one-time work of the
+     * first token request in the background: loading the key the token cache is encrypted with,
+     * loading the token cache, instance discovery for the authority, checking for the broker and
+     * setting up the cache shared with MSAL. The stages run concurrently and the method returns
+     * right away.
+     * <p>
+     * Calling it again returns the warm-up which is running or has finished, unless it was
+     * cancelled, in which case a new one is started.
+     *
+     * @param resources Optional. Resources the app is going to request tokens for. Their tokens
+     *                  are read from the cache as part of the warm-up.
+     * @return {@link WarmUp} to wait for or cancel the warm-up, and which reports how long each
+     * of its stages took.
+     */
+    public synchronized WarmUp warmUp(@Nullable final String... resources) {
+        if (mWarmUp == null || mWarmUp.isCancelled()) {
+            mWarmUp = new WarmUp(mContext, mAuthority, mTokenCacheStore, mBrokerProxy,
+                    resources == null ? new String[0] : resources);
+            mWarmUp.start();
+        }
+
+        return mWarmUp;
+    }
+
+    /**
+     * Opt-in. Compacts the token cache in the background at low priority: removes items which can no
+     * longer be used, items superseded by newer tokens for the same user, client and resource, and
+     * access tokens past their extended lifetime. Tokens still usable are kept. The method returns
+     * right away.
+     * <p>
+     * Calling it while a compaction is running returns the running one.
+     *
+     * @return {@link TokenCacheMaintenance} to wait for or cancel the compaction, and which reports the
+     * entries and bytes reclaimed.
+     */
+    public synchronized TokenCacheMaintenance compactTokenCache() {
+        if (mTokenCacheMaintenance == null || mTokenCacheMaintenance.isDone()) {
+            mTokenCacheMaintenance = new TokenCacheMaintenance(mTokenCacheStore);
+            mTokenCacheMaintenance.start();
+        }
+
+        return mTokenCacheMaintenance;
+    }
+
     /**
      * This is sync function. It will first look at the cache and automatically
      * checks for the token expiration. Additionally, if no suitable access
@@ -740,7 +845,15 @@ public class AuthenticationContext {
                             + "This method will throw android.os.NetworkOnMainThreadException in next major release",
                     new NetworkOnMainThreadException());
         }
-        createAcquireTokenRequest(apiEvent).acquireToken(null, false, request,
+        final AcquireTokenRequest acquireTokenRequest = createAcquireTokenRequest(apiEvent);
+
+        // A valid access token in the cache is returned without leaving the calling thread
+        final AuthenticationResult cachedResult = acquireTokenRequest.acquireTokenSilentFromCache(request);
+        if (cachedResult != null) {
+            return cachedResult;
+        }
+
+        acquireTokenRequest.acquireToken(null, false, request,
                 new AuthenticationCallback<AuthenticationResult>() {
                     @Override
                     public void onSuccess(AuthenticationResult result) {
@@ -802,7 +915,8 @@ public class AuthenticationContext {
     @Deprecated
     public Future<AuthenticationResult> acquireTokenSilent(String resource, String clientId,
                                                            String userId, final AuthenticationCallback<AuthenticationResult> callback) {
-        final SettableFuture<AuthenticationResult> futureTask = new SettableFuture<>();
+        final CancellationToken cancellationToken = new CancellationToken();
+        final SettableFuture<AuthenticationResult> futureTask = new SettableFuture<>(cancellationToken);
         try {
             checkPreRequirements(resource, clientId);
             checkADFSValidationRequirements(null);
@@ -823,6 +937,7 @@ public class AuthenticationContext {
         request.setSilent(true);
         request.setPrompt(PromptBehavior.Auto);
         request.setUserIdentifierType(UserIdentifierType.UniqueId);
+        request.setCancellationToken(cancellationToken);
 
         request.setTelemetryRequestId(requestId);
         setAppInfoToRequest(request);
@@ -880,7 +995,8 @@ public class AuthenticationContext {
                                         String userId,
                                         AuthenticationCallback<AuthenticationResult> callback) {
         acquireTokenSilentAsync(null, null, resource, clientId, userId, UserIdentifierType.UniqueId,
-                false, null, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC, callback);
+                false, null, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC,
+                new CancellationToken(), callback);
     }
 
     /**
@@ -904,7 +1020,8 @@ public class AuthenticationContext {
                                         boolean forceRefresh,
                                         AuthenticationCallback<AuthenticationResult> callback) {
         acquireTokenSilentAsync(null, null, resource, clientId, userId, UserIdentifierType.UniqueId,
-                forceRefresh, null, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC_FORCE_REFRESH, callback);
+                forceRefresh, null, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC_FORCE_REFRESH,
+                new CancellationToken(), callback);
     }
 
     /**
@@ -929,7 +1046,124 @@ public class AuthenticationContext {
                                         @Nullable String claims,
                                         AuthenticationCallback<AuthenticationResult> callback) {
         acquireTokenSilentAsync(null, null, resource, clientId, userId, UserIdentifierType.UniqueId,
-                false, claims, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC_CLAIMS_CHALLENGE, callback);
+                false, claims, EventStrings.ACQUIRE_TOKEN_SILENT_ASYNC_CLAIMS_CHALLENGE,
+                new CancellationToken(), callback);
+    }
+
+    /**
+     * The function will first look at the cache and automatically checks for
+     * the token expiration. Additionally, if no suitable access token is found
+     * in the cache, but refresh token is available, the function will use the
+     * refresh token automatically. This method will not show UI for the user.
+     * If prompt is needed, the method will return an exception
+     * <p>
+     * The request gives up once the deadline of the {@link CancellationToken} passes, or when the token
+     * or the returned {@link Future} is cancelled. It then fails with
+     * {@link ADALError#REQUEST_DEADLINE_EXCEEDED} or {@link ADALError#REQUEST_CANCELLED}.
+     *
+     * @param resource          required resource identifier.
+     * @param clientId          required client identifier.
+     * @param userId            UserId obtained from {@link UserInfo} inside
+     *                          {@link AuthenticationResult}
+     * @param cancellationToken required {@link CancellationToken}, see
+     *                          {@link CancellationToken#withTimeout(long, java.util.concurrent.TimeUnit)}.
+     * @param callback          Optional. {@link AuthenticationCallback} object for async
+     *                          call.
+     * @return A {@link Future} object representing the
+     * {@link AuthenticationResult} of the call. Cancelling it cancels the request.
+     */
+    public Future<AuthenticationResult> acquireTokenSilentWithCancellation(
+            final String resource,
+            final String clientId,
+            final String userId,
+            @NonNull final CancellationToken cancellationToken,
+            @Nullable final AuthenticationCallback<AuthenticationResult> callback) {
+        if (cancellationToken == null) {
+            throw new IllegalArgumentException("cancellationToken");
+        }
+
+        final SettableFuture<AuthenticationResult> futureTask = new SettableFuture<>(cancellationToken);
+        acquireTokenSilentAsync(null, null, resource, clientId, userId, UserIdentifierType.UniqueId,
+                false, null, EventStrings.ACQUIRE_TOKEN_SILENT_WITH_CANCELLATION, cancellationToken,
+                new AuthenticationCallback<AuthenticationResult>() {
+                    @Override
+                    public void onSuccess(final AuthenticationResult result) {
+                        if (callback != null) {
+                            callback.onSuccess(result);
+                        }
+
+                        futureTask.set(result);
+                    }
+
+                    @Override
+                    public void onError(final Exception exc) {
+                        if (callback != null) {
+                            callback.onError(exc);
+                        }
+
+                        futureTask.setException(exc);
+                    }
+                });
+        return futureTask;
+    }
+
+    /**
+     * Acquires tokens for several resources silently, like {@link #acquireTokenSilentAsync} does for one.
+     * The authority is validated once, all access tokens are looked up in the cache in one pass, and the
+     * resources without a valid access token are refreshed in parallel with the multi resource refresh
+     * token of the user. This method will not show UI for the user.
+     *
+     * @param resources required resource identifiers.
+     * @param clientId  required client identifier.
+     * @param userId    UserId obtained from {@link UserInfo} inside
+     *                  {@link AuthenticationResult}
+     * @param callback  required {@link AuthenticationCallback} object for async
+     *                  call. Receives the token or the error of each resource,
+     *                  {@link AuthenticationCallback#onError} is only called if
+     *                  the request as a whole failed, such as on an invalid authority.
+     */
+    public void acquireTokensSilent(final List<String> resources,
+                                    final String clientId,
+                                    final String userId,
+                                    final AuthenticationCallback<BatchAuthenticationResult> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback");
+        }
+
+        if (resources == null || resources.isEmpty()) {
+            throw new IllegalArgumentException("resources");
+        }
+
+        try {
+            for (final String resource : resources) {
+                checkPreRequirements(resource, clientId);
+            }
+            checkADFSValidationRequirements(null);
+        } catch (final AuthenticationException e) {
+            callback.onError(e);
+            return;
+        }
+
+        final String requestId = Telemetry.registerNewRequest();
+        final APIEvent apiEvent = createApiEvent(mContext, clientId, requestId,
+                EventStrings.ACQUIRE_TOKENS_SILENT_ASYNC);
+        apiEvent.setPromptBehavior(PromptBehavior.Auto.toString());
+
+        final UUID correlationId = getRequestCorrelationId();
+        final List<AuthenticationRequest> requests = new ArrayList<>(resources.size());
+        for (final String resource : new LinkedHashSet<>(resources)) {
+            final AuthenticationRequest request = new AuthenticationRequest(mAuthority, resource, clientId, userId,
+                    correlationId, getExtendedLifetimeEnabled());
+            request.setSilent(true);
+            request.setPrompt(PromptBehavior.Auto);
+            request.setUserIdentifierType(UserIdentifierType.UniqueId);
+            request.setClientCapabilities(mClientCapabilites);
+            setAppInfoToRequest(request);
+            request.setTelemetryRequestId(requestId);
+            requests.add(request);
+        }
+
+        createAcquireTokenRequest(apiEvent).acquireTokensSilent(requests, callback);
     }
 
     /**
@@ -957,7 +1191,8 @@ public class AuthenticationContext {
                                                      final String userId,
                                                      AuthenticationCallback<AuthenticationResult> callback) {
         acquireTokenSilentAsync(assertion, assertionType, resource, clientId, userId, UserIdentifierType.LoginHint,
-                false, null, EventStrings.ACQUIRE_TOKEN_WITH_SAML_ASSERTION, callback);
+                false, null, EventStrings.ACQUIRE_TOKEN_WITH_SAML_ASSERTION,
+                new CancellationToken(), callback);
     }
 
     private void acquireTokenSilentAsync(final String assertion,
@@ -969,6 +1204,7 @@ public class AuthenticationContext {
                                          final boolean forceRefresh,
                                          final String claims,
                                          final String apiEventString,
+                                         final CancellationToken cancellationToken,
                                          final AuthenticationCallback<AuthenticationResult> callback) {
 
         if (!checkPreRequirements(resource, clientId, callback) || !checkADFSValidationRequirements(null, callback)) {
@@ -993,6 +1229,7 @@ public class AuthenticationContext {
         request.setPrompt(PromptBehavior.Auto);
         request.setUserIdentifierType(identifierType);
         request.setClientCapabilities(mClientCapabilites);
+        request.setCancellationToken(cancellationToken);
         setAppInfoToRequest(request);
 
         request.setTelemetryRequestId(requestId);
@@ -1535,12 +1772,54 @@ public class AuthenticationContext {
         // first, we'll fall back to passed in authority host and all the aliased hosts if necessary; If app receives the blob has the old
         // version of adal, since all the apps using token share library are using login.windows.net, token lookup will keep working.
         final TokenCacheItem tokenCacheItem = SSOStateSerializer.deserialize(serializedBlob);
+        throwIfDeserializedItemInvalid(tokenCacheItem);
+        final String cacheKey = CacheKey.createCacheKey(tokenCacheItem);
+        this.getCache().setItem(cacheKey, tokenCacheItem);
+    }
+
+    /**
+     * Internal API of ADAL to provide the bulk deserialization to the TokenCacheItems.
+     * <p>
+     * Same as {@link #deserialize(String)} for many blobs at once, e.g. when importing the SSO state
+     * of many users. The broker check is only done once, and nothing is stored into the cache unless
+     * all the blobs are successfully deserialized.
+     *
+     * @param serializedBlobs The blobs to be deserialized.
+     * @throws AuthenticationException
+     */
+    void deserializeAll(final List<String> serializedBlobs) throws AuthenticationException {
+        if (serializedBlobs == null || serializedBlobs.isEmpty()) {
+            throw new IllegalArgumentException("serializedBlobs");
+        }
+
+        for (final String serializedBlob : serializedBlobs) {
+            if (StringExtensions.isNullOrBlank(serializedBlob)) {
+                throw new IllegalArgumentException("serializedBlobs");
+            }
+        }
+
+        if (mBrokerProxy.canSwitchToBroker(mAuthority) != BrokerProxy.SwitchToBroker.CANNOT_SWITCH_TO_BROKER) {
+            throw new UsageAuthenticationException(ADALError.FAIL_TO_IMPORT, "Failed to import the serialized blobs "
+                    + "because broker is enabled.");
+        }
+
+        final List<TokenCacheItem> tokenCacheItems = SSOStateSerializer.deserializeAll(serializedBlobs);
+        for (final TokenCacheItem tokenCacheItem : tokenCacheItems) {
+            throwIfDeserializedItemInvalid(tokenCacheItem);
+        }
+
+        final ITokenCacheStore cache = this.getCache();
+        for (final TokenCacheItem tokenCacheItem : tokenCacheItems) {
+            cache.setItem(CacheKey.createCacheKey(tokenCacheItem), tokenCacheItem);
+        }
+    }
+
+    private static void throwIfDeserializedItemInvalid(final TokenCacheItem tokenCacheItem)
+            throws DeserializationAuthenticationException {
         if (StringExtensions.isNullOrBlank(tokenCacheItem.getAuthority()) ||
                 (StringExtensions.isNullOrBlank(tokenCacheItem.getClientId()) && StringExtensions.isNullOrBlank(tokenCacheItem.getFamilyClientId()))) {
             throw new DeserializationAuthenticationException("Failed to deserialize the blob because authority or client id is null/empty.");
         }
-        final String cacheKey = CacheKey.createCacheKey(tokenCacheItem);
-        this.getCache().setItem(cacheKey, tokenCacheItem);
     }
 
     void setIsAuthorityValidated(final boolean isAuthorityValidated) {
@@ -1627,15 +1906,29 @@ public class AuthenticationContext {
 
     /**
      * A {@link Future}  whose result can be set by a {@link #set(Object)} or {@link #setException(Throwable)}.
+     * Cancelling it cancels the {@link CancellationToken} of the request.
      */
     static final class SettableFuture<V> extends FutureTask<V> {
-        SettableFuture() {
+        private final CancellationToken mCancellationToken;
+
+        SettableFuture(@Nullable final CancellationToken cancellationToken) {
             super(new Callable<V>() {
                 @Override
                 public V call() throws Exception {
                     return null;
                 }
             });
+            mCancellationToken = cancellationToken;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mCancellationToken != null) {
+                mCancellationToken.cancel();
+            }
+
+            return cancelled;
         }
 
         @SuppressWarnings("PMD.UselessOverridingMethod")
@@ -167,11 +167,13 @@ class AuthenticationDialog {
                 webSettings.setUseWideViewPort(true);
                 webSettings.setBuiltInZoomControls(true);
 
+                final DialogWebViewClient webViewClient =
+                        new DialogWebViewClient(mContext, mRequest.getRedirectUri(), mRequest);
                 try {
-                    Oauth2 oauth = new Oauth2(mRequest);
-                    final String startUrl = oauth.getCodeRequestUrl();
-                    final String stopRedirect = mRequest.getRedirectUri();
-                    mWebView.setWebViewClient(new DialogWebViewClient(mContext, stopRedirect, mRequest));
+                    final String prebuiltStartUrl = InteractiveRequestPrewarmer.getCodeRequestUrl(mRequest);
+                    final String startUrl = prebuiltStartUrl != null
+                            ? prebuiltStartUrl : new Oauth2(mRequest).getCodeRequestUrl();
+                    mWebView.setWebViewClient(webViewClient);
                     mWebView.post(new Runnable() {
                         @Override
                         public void run() {
@@ -193,6 +195,12 @@ class AuthenticationDialog {
                     }
                 });
                 mDialog = builder.create();
+                mDialog.setOnDismissListener(new DialogInterface.OnDismissListener() {
+                    @Override
+                    public void onDismiss(DialogInterface dialog) {
+                        webViewClient.cancelBackgroundTasks();
+                    }
+                });
                 Logger.i(TAG + methodName, "Showing authenticationDialog", "");
                 mDialog.show();
             }
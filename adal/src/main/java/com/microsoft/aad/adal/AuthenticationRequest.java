@@ -95,6 +95,8 @@ class AuthenticationRequest implements Serializable {
 
     private String mAssertionType;
 
+    private transient CancellationToken mCancellationToken = new CancellationToken();
+
     /**
      * Developer can use acquireToken(with loginhint) or acquireTokenSilent(with
      * userid), so this sets the type of the request.
@@ -444,6 +446,20 @@ class AuthenticationRequest implements Serializable {
         return mInstanceDiscoveryMetadata;
     }
 
+    void setCancellationToken(@NonNull final CancellationToken cancellationToken) {
+        mCancellationToken = cancellationToken;
+    }
+
+    @NonNull
+    CancellationToken getCancellationToken() {
+        // The token is not serialized, a request read back from an intent has none
+        if (mCancellationToken == null) {
+            mCancellationToken = new CancellationToken();
+        }
+
+        return mCancellationToken;
+    }
+
     public boolean getForceRefresh() {
         return mForceRefresh;
     }
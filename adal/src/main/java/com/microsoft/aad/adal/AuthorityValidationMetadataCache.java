@@ -39,6 +39,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Hold the authority validation metadata.
@@ -58,6 +59,9 @@ final class AuthorityValidationMetadataCache {
 
     private static ConcurrentMap<String, InstanceDiscoveryMetadata> sAadAuthorityHostMetadata = new ConcurrentHashMap<>();
 
+    // Incremented after every change of the metadata, lets callers tell if values derived from it are stale
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+
     private AuthorityValidationMetadataCache() {
         // Utility class, no public constructor
     }
@@ -84,6 +88,7 @@ final class AuthorityValidationMetadataCache {
 
         if (!isTenantDiscoveryEndpointReturned) {
             sAadAuthorityHostMetadata.put(authorityHost, new InstanceDiscoveryMetadata(false));
+            sGeneration.incrementAndGet();
             return;
         }
 
@@ -91,14 +96,20 @@ final class AuthorityValidationMetadataCache {
         if (StringExtensions.isNullOrBlank(metadata)) {
             Logger.v(TAG + methodName, "No metadata returned from instance discovery.");
             sAadAuthorityHostMetadata.put(authorityHost, new InstanceDiscoveryMetadata(authorityHost, authorityHost));
+            sGeneration.incrementAndGet();
             return;
         }
 
-        processInstanceDiscoveryResponse(metadata);
+        try {
+            processInstanceDiscoveryResponse(metadata);
+        } finally {
+            sGeneration.incrementAndGet();
+        }
     }
 
     static void updateInstanceDiscoveryMap(final String host, final InstanceDiscoveryMetadata metadata) {
         sAadAuthorityHostMetadata.put(host.toLowerCase(Locale.US), metadata);
+        sGeneration.incrementAndGet();
     }
 
     static Map<String, InstanceDiscoveryMetadata> getAuthorityValidationMetadataCache() {
@@ -107,6 +118,14 @@ final class AuthorityValidationMetadataCache {
 
     static void clearAuthorityValidationCache() {
         sAadAuthorityHostMetadata.clear();
+        sGeneration.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes whenever the cached metadata changes.
+     */
+    static int getGeneration() {
+        return sGeneration.get();
     }
 
     private static void processInstanceDiscoveryResponse(final String metadata) throws JSONException {
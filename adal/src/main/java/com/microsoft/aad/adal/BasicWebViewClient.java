@@ -86,6 +86,7 @@ abstract class BasicWebViewClient extends WebViewClient {
     private String mRedirect;
     private final Context mCallingContext;
     private final UIEvent mUIEvent;
+    private final InteractiveTaskExecutor mTaskExecutor;
 
     BasicWebViewClient(@NonNull final Context appContext,
                        @NonNull final String redirect,
@@ -95,6 +96,7 @@ abstract class BasicWebViewClient extends WebViewClient {
         mRedirect = redirect;
         mRequest = request;
         mUIEvent = uiEvent;
+        mTaskExecutor = new InteractiveTaskExecutor(uiEvent);
     }
 
     public abstract void showSpinner(boolean status);
@@ -105,6 +107,17 @@ abstract class BasicWebViewClient extends WebViewClient {
 
     public abstract void prepareForBrokerResumeRequest();
 
+    /**
+     * Prepares for the broker resume request and runs {@code onReady} once the calling activity
+     * can receive its result. By default there is nothing to wait for and it runs right away.
+     *
+     * @param onReady the action to run once the caller is ready
+     */
+    public void prepareForBrokerResumeRequest(@NonNull final Runnable onReady) {
+        prepareForBrokerResumeRequest();
+        onReady.run();
+    }
+
     public abstract void setPKeyAuthStatus(boolean status);
 
     public abstract void postRunnable(Runnable item);
@@ -324,7 +337,7 @@ abstract class BasicWebViewClient extends WebViewClient {
             view.stopLoading();
             setPKeyAuthStatus(true);
 
-            new Thread(new Runnable() {
+            final boolean scheduled = mTaskExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
@@ -421,7 +434,20 @@ abstract class BasicWebViewClient extends WebViewClient {
                         );
                     }
                 }
-            }).start();
+            });
+
+            if (!scheduled) {
+                final Intent resultIntent = new Intent();
+                resultIntent.putExtra(
+                        RESPONSE_AUTHENTICATION_EXCEPTION,
+                        new AuthenticationException(
+                                ADALError.DEVICE_CHALLENGE_FAILURE,
+                                "The device challenge response could not be scheduled."
+                        )
+                );
+                resultIntent.putExtra(RESPONSE_REQUEST_INFO, mRequest);
+                sendResponse(BROWSER_CODE_AUTHENTICATION_EXCEPTION, resultIntent);
+            }
 
             return true;
         } else if (url.toLowerCase(Locale.US).startsWith(mRedirect.toLowerCase(Locale.US))) {
@@ -470,24 +496,16 @@ abstract class BasicWebViewClient extends WebViewClient {
             );
 
             final HashMap<String, String> parameters = StringExtensions.getUrlParameters(url);
-            prepareForBrokerResumeRequest();
-            // Having thread sleep for 1 second for calling activity to receive the result from
-            // prepareForBrokerResumeRequest, thus the receiver for listening broker result return
-            // can be registered. openLinkInBrowser will launch activity for going to
-            // playstore and broker app download page which brought the calling activity down
-            // in the activity stack.
-            final int threadSleepForCallingActivity = 1000;
-
-            try {
-                Thread.sleep(threadSleepForCallingActivity);
-            } catch (InterruptedException e) {
-                com.microsoft.identity.common.internal.logging.Logger.warn(
-                        TAG + methodName,
-                        "Error occurred when having thread sleeping for 1 second."
-                );
-            }
-
-            openLinkInBrowser(parameters.get(INSTALL_URL_KEY));
+            // openLinkInBrowser will launch activity for going to playstore and broker app
+            // download page which brings the calling activity down in the activity stack, so
+            // only open it once the calling activity is ready to receive the result from
+            // prepareForBrokerResumeRequest.
+            prepareForBrokerResumeRequest(new Runnable() {
+                @Override
+                public void run() {
+                    openLinkInBrowser(parameters.get(INSTALL_URL_KEY));
+                }
+            });
             view.stopLoading();
             return true;
         } else if (url.toLowerCase(Locale.US).startsWith(PLAY_STORE_INSTALL_PREFIX)) {
@@ -528,6 +546,20 @@ abstract class BasicWebViewClient extends WebViewClient {
         return processInvalidUrl(view, url);
     }
 
+    /**
+     * @return the executor for the background work of this client's interactive flow.
+     */
+    final InteractiveTaskExecutor getTaskExecutor() {
+        return mTaskExecutor;
+    }
+
+    /**
+     * Cancels the background work which is still outstanding, for when the owner goes away.
+     */
+    final void cancelBackgroundTasks() {
+        mTaskExecutor.cancelAll();
+    }
+
     final Context getCallingContext() {
         return mCallingContext;
     }
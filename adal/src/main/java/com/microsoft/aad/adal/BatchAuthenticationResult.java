@@ -0,0 +1,85 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of {@link AuthenticationContext#acquireTokensSilent}: the token or the error for each requested
+ * resource.
+ */
+public final class BatchAuthenticationResult {
+
+    private final Map<String, AuthenticationResult> mResults;
+
+    private final Map<String, AuthenticationException> mErrors;
+
+    BatchAuthenticationResult(final Map<String, AuthenticationResult> results,
+                              final Map<String, AuthenticationException> errors) {
+        mResults = Collections.unmodifiableMap(results);
+        mErrors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return the results of the resources a token was acquired for, keyed by resource.
+     */
+    public Map<String, AuthenticationResult> getResults() {
+        return mResults;
+    }
+
+    /**
+     * @return the errors of the resources no token could be acquired for, keyed by resource.
+     */
+    public Map<String, AuthenticationException> getErrors() {
+        return mErrors;
+    }
+
+    /**
+     * @param resource the resource identifier
+     * @return the result for the resource, null if the token could not be acquired.
+     */
+    @Nullable
+    public AuthenticationResult getResult(final String resource) {
+        return mResults.get(resource);
+    }
+
+    /**
+     * @param resource the resource identifier
+     * @return the error for the resource, null if the token was acquired.
+     */
+    @Nullable
+    public AuthenticationException getError(final String resource) {
+        return mErrors.get(resource);
+    }
+
+    /**
+     * @return true if a token was acquired for every resource.
+     */
+    public boolean isSuccessful() {
+        return mErrors.isEmpty();
+    }
+}
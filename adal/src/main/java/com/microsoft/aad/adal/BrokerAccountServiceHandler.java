@@ -124,6 +124,22 @@ final class BrokerAccountServiceHandler {
      * @throws {@link AuthenticationException} if failed to get token from the service.
      */
     public Bundle getAuthToken(final Context context, final Bundle requestBundle, final BrokerEvent brokerEvent) throws AuthenticationException {
+        return getAuthToken(context, requestBundle, brokerEvent, new CancellationToken());
+    }
+
+    /**
+     * Silently acquire the token from BrokerAccountService, waiting for the service no longer than the
+     * {@link CancellationToken} allows.
+     *
+     * @param context           The application {@link Context}.
+     * @param requestBundle     The request data for the silent request.
+     * @param cancellationToken The {@link CancellationToken} of the request.
+     * @return The {@link Bundle} result from the BrokerAccountService.
+     * @throws {@link AuthenticationException} if failed to get token from the service, or the token was
+     *                cancelled or expired first.
+     */
+    Bundle getAuthToken(final Context context, final Bundle requestBundle, final BrokerEvent brokerEvent,
+                        final CancellationToken cancellationToken) throws AuthenticationException {
         final String methodName = ":getAuthToken";
         final CountDownLatch countDownLatch = new CountDownLatch(1);
         final AtomicReference<Bundle> bundleResult = new AtomicReference<>(null);
@@ -150,7 +166,7 @@ final class BrokerAccountServiceHandler {
         }, brokerEvent);
 
         try {
-            countDownLatch.await();
+            cancellationToken.await(countDownLatch);
         } catch (final InterruptedException e) {
             exception.set(e);
         }
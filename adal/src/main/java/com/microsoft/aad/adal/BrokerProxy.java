@@ -67,6 +67,7 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles interactions to authenticator inside the Account Manager.
@@ -328,10 +329,16 @@ class BrokerProxy implements IBrokerProxy {
 
         // check if broker supports the new service, if it does not we need to switch back to the old way
         final Bundle bundleResult;
-        if (isBrokerAccountServiceSupported()) {
-            bundleResult = BrokerAccountServiceHandler.getInstance().getAuthToken(mContext, requestBundle, brokerEvent);
-        } else {
-            bundleResult = getAuthTokenFromAccountManager(request, requestBundle);
+        final TraceSpan span = Tracing.begin(TracePhase.BROKER_IPC, request.getCorrelationId());
+        try {
+            if (isBrokerAccountServiceSupported()) {
+                bundleResult = BrokerAccountServiceHandler.getInstance().getAuthToken(mContext, requestBundle, brokerEvent,
+                        request.getCancellationToken());
+            } else {
+                bundleResult = getAuthTokenFromAccountManager(request, requestBundle);
+            }
+        } finally {
+            Tracing.end(span);
         }
 
         if (bundleResult == null) {
@@ -365,10 +372,30 @@ class BrokerProxy implements IBrokerProxy {
                         null, //set to null to avoid callback
                         mHandler);
 
-                // Making blocking request here
+                // Making blocking request here, cancelling the request cancels the future
+                final CancellationToken cancellationToken = request.getCancellationToken();
+                final Runnable cancelFuture = new Runnable() {
+                    @Override
+                    public void run() {
+                        result.cancel(true);
+                    }
+                };
+                if (!cancellationToken.addCancelListener(cancelFuture)) {
+                    cancelFuture.run();
+                }
+
+                try {
+                    bundleResult = cancellationToken.hasDeadline()
+                            ? result.getResult(cancellationToken.getRemainingMillis(), TimeUnit.MILLISECONDS)
+                            : result.getResult();
+                } finally {
+                    cancellationToken.removeCancelListener(cancelFuture);
+                }
                 Logger.v(TAG + methodName, "Received result from broker");
-                bundleResult = result.getResult();
             } catch (final OperationCanceledException e) {
+                // The future is cancelled when the request is cancelled or runs out of time
+                request.getCancellationToken().throwIfCancelledOrExpired();
+
                 // Error code AUTH_FAILED_CANCELLED will be thrown if the request was canceled for any reason.
                 Logger.e(TAG + methodName, AUTHENTICATOR_CANCELS_REQUEST, "", ADALError.AUTH_FAILED_CANCELLED, e);
                 throw new AuthenticationException(ADALError.AUTH_FAILED_CANCELLED, e.getMessage(), e);
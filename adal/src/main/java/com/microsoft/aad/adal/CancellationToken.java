@@ -0,0 +1,210 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Deadline and cancellation signal of a request. The token is checked before the request sends
+ * network requests, and bounds the time the request waits for instance discovery, retries and the
+ * broker. A request whose token expires fails with {@link ADALError#REQUEST_DEADLINE_EXCEEDED}, one
+ * whose token is cancelled fails with {@link ADALError#REQUEST_CANCELLED}.
+ */
+public final class CancellationToken {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Longest a lock wait goes without checking whether the token was cancelled.
+     */
+    private static final long LOCK_POLL_INTERVAL_MILLIS = 50;
+
+    private final long mDeadline;
+
+    private final CountDownLatch mCancelledSignal = new CountDownLatch(1);
+
+    private final List<Runnable> mCancelListeners = new ArrayList<>();
+
+    /**
+     * Creates a token without deadline, which only expires when it is cancelled.
+     */
+    public CancellationToken() {
+        mDeadline = NO_DEADLINE;
+    }
+
+    private CancellationToken(final long deadline) {
+        mDeadline = deadline;
+    }
+
+    /**
+     * @param timeout how long the request may take from now.
+     * @param unit    the unit of the timeout.
+     * @return a token that expires once the timeout elapsed.
+     */
+    public static CancellationToken withTimeout(final long timeout, @NonNull final TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout");
+        }
+
+        return new CancellationToken(SystemClock.elapsedRealtime() + unit.toMillis(timeout));
+    }
+
+    /**
+     * Cancels the request. The waits of the request return immediately and it fails with
+     * {@link ADALError#REQUEST_CANCELLED}.
+     */
+    public void cancel() {
+        final List<Runnable> listeners;
+        synchronized (this) {
+            if (isCancelled()) {
+                return;
+            }
+
+            mCancelledSignal.countDown();
+            listeners = new ArrayList<>(mCancelListeners);
+            mCancelListeners.clear();
+        }
+
+        for (final Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return mCancelledSignal.getCount() == 0;
+    }
+
+    /**
+     * @return true if the deadline of the token passed.
+     */
+    public boolean isExpired() {
+        return mDeadline != NO_DEADLINE && SystemClock.elapsedRealtime() >= mDeadline;
+    }
+
+    /**
+     * @return the milliseconds left until the deadline, {@link Long#MAX_VALUE} if the token has none.
+     */
+    long getRemainingMillis() {
+        if (mDeadline == NO_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(0, mDeadline - SystemClock.elapsedRealtime());
+    }
+
+    boolean hasDeadline() {
+        return mDeadline != NO_DEADLINE;
+    }
+
+    void throwIfCancelledOrExpired() throws AuthenticationException {
+        if (isCancelled()) {
+            throw new AuthenticationException(ADALError.REQUEST_CANCELLED);
+        }
+
+        if (isExpired()) {
+            throw new AuthenticationException(ADALError.REQUEST_DEADLINE_EXCEEDED);
+        }
+    }
+
+    /**
+     * Sleeps for the given time, or until the token is cancelled or expires.
+     *
+     * @throws AuthenticationException if the token was cancelled or expired.
+     */
+    void sleep(final long millis) throws AuthenticationException, InterruptedException {
+        mCancelledSignal.await(Math.min(millis, getRemainingMillis()), TimeUnit.MILLISECONDS);
+        throwIfCancelledOrExpired();
+    }
+
+    /**
+     * Waits for the latch, or until the token is cancelled or expires. Cancelling the token counts the
+     * latch down.
+     *
+     * @throws AuthenticationException if the token was cancelled or expired before the latch was released.
+     */
+    void await(@NonNull final CountDownLatch latch) throws AuthenticationException, InterruptedException {
+        final Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+
+        if (!addCancelListener(release)) {
+            throwIfCancelledOrExpired();
+        }
+
+        final boolean released;
+        try {
+            released = latch.await(getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            removeCancelListener(release);
+        }
+
+        if (!released || isCancelled()) {
+            throwIfCancelledOrExpired();
+        }
+    }
+
+    /**
+     * Acquires the lock, giving up when the token is cancelled or expires.
+     *
+     * @throws AuthenticationException if the token was cancelled or expired before the lock was acquired.
+     */
+    void lock(@NonNull final Lock lock) throws AuthenticationException, InterruptedException {
+        throwIfCancelledOrExpired();
+        while (!lock.tryLock(Math.min(getRemainingMillis(), LOCK_POLL_INTERVAL_MILLIS), TimeUnit.MILLISECONDS)) {
+            throwIfCancelledOrExpired();
+        }
+    }
+
+    /**
+     * Registers a listener that runs on the thread that cancels the token.
+     *
+     * @return false if the token is already cancelled, the listener is not registered.
+     */
+    synchronized boolean addCancelListener(@NonNull final Runnable listener) {
+        if (isCancelled()) {
+            return false;
+        }
+
+        mCancelListeners.add(listener);
+        return true;
+    }
+
+    synchronized void removeCancelListener(@NonNull final Runnable listener) {
+        mCancelListeners.remove(listener);
+    }
+}
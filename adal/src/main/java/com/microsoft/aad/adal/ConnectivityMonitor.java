@@ -0,0 +1,208 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+package com.microsoft.aad.adal;
+
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Keeps whether the network is usable in a volatile field, updated by a {@link ConnectivityManager.NetworkCallback}
+ * registered once per process, so requests do not have to query connectivity and power state each time.
+ * <p>
+ * The connectivity is taken from the callbacks themselves, {@link ConnectivityManager#getActiveNetworkInfo()}
+ * is not updated yet when they are called. It is only read once, before the callback is registered.
+ * <p>
+ * Only a usable network is trusted. When the network is down, blocked or the device is idle,
+ * {@link HttpUtil} runs the full check to report the precise error.
+ */
+final class ConnectivityMonitor {
+
+    private static final String TAG = ConnectivityMonitor.class.getSimpleName();
+
+    private static final Object LOCK = new Object();
+
+    @SuppressLint("StaticFieldLeak")
+    private static volatile ConnectivityMonitor sInstance;
+
+    private static volatile boolean sRegistrationFailed = false;
+
+    private final ConnectivityManager mConnectivityManager;
+
+    private final PowerManager mPowerManager;
+
+    private volatile boolean mNetworkAvailable = false;
+
+    private volatile boolean mConnected = false;
+
+    private volatile boolean mBlocked = false;
+
+    // The network the callback last reported as available, null before the first callback
+    private volatile Network mNetwork;
+
+    // Package private for tests, the process monitor is obtained through getInstance
+    ConnectivityMonitor(final ConnectivityManager connectivityManager, final PowerManager powerManager) {
+        mConnectivityManager = connectivityManager;
+        mPowerManager = powerManager;
+    }
+
+    /**
+     * Returns the process monitor, registering it on first use.
+     *
+     * @return The monitor, null below API 21 or if the callback could not be registered.
+     */
+    static ConnectivityMonitor getInstance(final Context context) {
+        ConnectivityMonitor monitor = sInstance;
+        if (monitor != null || sRegistrationFailed || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return monitor;
+        }
+
+        synchronized (LOCK) {
+            if (sInstance == null && !sRegistrationFailed) {
+                sInstance = register(context.getApplicationContext() == null
+                        ? context : context.getApplicationContext());
+                sRegistrationFailed = sInstance == null;
+            }
+
+            return sInstance;
+        }
+    }
+
+    /**
+     * @param context The context of the request.
+     * @return True if the monitor watches the {@link ConnectivityManager} of the context and the network is usable.
+     */
+    boolean isNetworkAvailable(final Context context) {
+        return mNetworkAvailable && context.getSystemService(Context.CONNECTIVITY_SERVICE) == mConnectivityManager;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static ConnectivityMonitor register(final Context appContext) {
+        final String methodName = ":register";
+        final Object connectivityService = appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (!(connectivityService instanceof ConnectivityManager)) {
+            return null;
+        }
+
+        final Object powerService = appContext.getSystemService(Context.POWER_SERVICE);
+        final ConnectivityMonitor monitor = new ConnectivityMonitor((ConnectivityManager) connectivityService,
+                powerService instanceof PowerManager ? (PowerManager) powerService : null);
+        try {
+            final NetworkInfo networkInfo = monitor.mConnectivityManager.getActiveNetworkInfo();
+            monitor.mConnected = networkInfo != null && networkInfo.isConnectedOrConnecting();
+            monitor.refresh();
+            final ConnectivityManager.NetworkCallback callback = monitor.new Callback();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                monitor.mConnectivityManager.registerDefaultNetworkCallback(callback);
+            } else {
+                monitor.mConnectivityManager.registerNetworkCallback(new NetworkRequest.Builder().build(), callback);
+            }
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                appContext.registerReceiver(new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(final Context context, final Intent intent) {
+                        monitor.refresh();
+                    }
+                }, new IntentFilter(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED));
+            }
+        } catch (final RuntimeException e) {
+            // Missing ACCESS_NETWORK_STATE or too many callbacks registered by the app
+            Logger.w(TAG + methodName, "Unable to monitor connectivity, checking it on each request.",
+                    e.getMessage(), null);
+            return null;
+        }
+
+        return monitor;
+    }
+
+    /**
+     * Applies the blocked and doze state on top of the connectivity reported by the callback.
+     */
+    private void refresh() {
+        boolean available = mConnected && !mBlocked;
+        if (available && mPowerManager != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            available = !mPowerManager.isDeviceIdleMode();
+        }
+
+        mNetworkAvailable = available;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    final class Callback extends ConnectivityManager.NetworkCallback {
+
+        @Override
+        public void onAvailable(final Network network) {
+            setConnected(network);
+        }
+
+        @Override
+        public void onCapabilitiesChanged(final Network network, final NetworkCapabilities networkCapabilities) {
+            setConnected(network);
+        }
+
+        @Override
+        public void onLost(final Network network) {
+            // A network that is no longer the default one may be lost after its replacement became available
+            if (!isCurrent(network)) {
+                return;
+            }
+
+            mNetwork = null;
+            mConnected = false;
+            mBlocked = false;
+            refresh();
+        }
+
+        @Override
+        public void onBlockedStatusChanged(final Network network, final boolean blocked) {
+            if (!isCurrent(network)) {
+                return;
+            }
+
+            mBlocked = blocked;
+            refresh();
+        }
+
+        private boolean isCurrent(final Network network) {
+            final Network current = mNetwork;
+            return current == null || current.equals(network);
+        }
+
+        private void setConnected(final Network network) {
+            mNetwork = network;
+            mConnected = true;
+            refresh();
+        }
+    }
+}
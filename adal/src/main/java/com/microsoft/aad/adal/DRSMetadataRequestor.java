@@ -23,6 +23,8 @@
 
 package com.microsoft.aad.adal;
 
+import androidx.annotation.NonNull;
+
 import com.google.gson.JsonSyntaxException;
 import com.microsoft.identity.common.adal.internal.AuthenticationConstants;
 import com.microsoft.identity.common.adal.internal.net.HttpWebResponse;
@@ -34,6 +36,17 @@ import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.aad.adal.DRSMetadataRequestor.Type.CLOUD;
 import static com.microsoft.aad.adal.DRSMetadataRequestor.Type.ON_PREM;
@@ -56,6 +69,45 @@ final class DRSMetadataRequestor extends AbstractMetadataRequestor<DRSMetadata,
     private static final String DRS_URL_PREFIX = "https://enterpriseregistration.";
     private static final String CLOUD_RESOLVER_DOMAIN = "windows.net/";
 
+    /**
+     * How long the on-prem lookup may run before the cloud lookup is started alongside it.
+     */
+    static final long DEFAULT_HEDGE_DELAY_MILLIS = 500;
+
+    // Each lookup runs at most two requests, on-prem and cloud
+    private static final int MAX_THREADS = 4;
+
+    private static final int MAX_QUEUED_LOOKUPS = 8;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor THREAD_EXECUTOR = createThreadExecutor();
+
+    private final CancellationToken mCancellationToken;
+
+    private final long mHedgeDelayMillis;
+
+    DRSMetadataRequestor() {
+        this(new CancellationToken());
+    }
+
+    DRSMetadataRequestor(final long hedgeDelayMillis) {
+        this(new CancellationToken(), hedgeDelayMillis);
+    }
+
+    /**
+     * @param cancellationToken The {@link CancellationToken} of the request, bounds how long the lookups
+     *                          are waited for.
+     */
+    DRSMetadataRequestor(@NonNull final CancellationToken cancellationToken) {
+        this(cancellationToken, DEFAULT_HEDGE_DELAY_MILLIS);
+    }
+
+    DRSMetadataRequestor(@NonNull final CancellationToken cancellationToken, final long hedgeDelayMillis) {
+        mCancellationToken = cancellationToken;
+        mHedgeDelayMillis = hedgeDelayMillis;
+    }
+
     /**
      * The DRS configuration.
      */
@@ -65,7 +117,11 @@ final class DRSMetadataRequestor extends AbstractMetadataRequestor<DRSMetadata,
     }
 
     /**
-     * Request the DRS discovery metadata for a supplied domain.
+     * Request the DRS discovery metadata for a supplied domain. The on-prem configuration is
+     * queried first; if it has not answered within the hedge delay the cloud configuration is
+     * queried concurrently, and its result is used only if the on-prem server cannot be resolved.
+     * The lookups are waited for until the {@link CancellationToken} of the request expires or is
+     * cancelled, and no longer than the connect and read timeout of a request.
      *
      * @param domain the domain to validate
      * @return the metadata
@@ -73,13 +129,138 @@ final class DRSMetadataRequestor extends AbstractMetadataRequestor<DRSMetadata,
      */
     @Override
     DRSMetadata requestMetadata(final String domain) throws AuthenticationException {
+        mCancellationToken.throwIfCancelledOrExpired();
+        final Future<DRSMetadata> onPrem;
         try {
-            return requestOnPrem(domain);
-        } catch (UnknownHostException e) {
-            return requestCloud(domain);
+            onPrem = THREAD_EXECUTOR.submit(new Callable<DRSMetadata>() {
+                @Override
+                public DRSMetadata call() throws UnknownHostException, AuthenticationException {
+                    return requestOnPrem(domain);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            throw new AuthenticationException(ADALError.IO_EXCEPTION, "Too many DRS discovery requests", e);
+        }
+
+        // The on-prem result always wins; the cloud lookup is only a fallback for when the
+        // on-prem enrollment server cannot be resolved. If the on-prem lookup is slow (typically
+        // a slow DNS failure), start the cloud lookup in parallel so the fallback is ready sooner.
+        Future<DRSMetadata> cloud = null;
+        try {
+            try {
+                return awaitResult(onPrem, mHedgeDelayMillis);
+            } catch (final TimeoutException e) {
+                Logger.v(TAG, "On-prem DRS discovery is slow, starting cloud DRS discovery in parallel");
+                cloud = submitCloud(domain);
+                return awaitResult(onPrem);
+            }
+        } catch (final UnknownHostException e) {
+            if (cloud == null) {
+                cloud = submitCloud(domain);
+            }
+
+            try {
+                return awaitResult(cloud);
+            } catch (final UnknownHostException unknownHostException) {
+                // requestCloud() already maps this case, this is never reached
+                throw new AuthenticationException(ADALError.DRS_DISCOVERY_FAILED_UNKNOWN_HOST);
+            }
+        } finally {
+            onPrem.cancel(true);
+            if (cloud != null) {
+                cloud.cancel(true);
+            }
+        }
+    }
+
+    private Future<DRSMetadata> submitCloud(final String domain) throws AuthenticationException {
+        try {
+            return THREAD_EXECUTOR.submit(new Callable<DRSMetadata>() {
+                @Override
+                public DRSMetadata call() throws AuthenticationException {
+                    return requestCloud(domain);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            throw new AuthenticationException(ADALError.IO_EXCEPTION, "Too many DRS discovery requests", e);
+        }
+    }
+
+    /**
+     * Waits for the lookup as long as the request may take, the lookup is cancelled if it does not complete.
+     */
+    private DRSMetadata awaitResult(final Future<DRSMetadata> future)
+            throws UnknownHostException, AuthenticationException {
+        final AuthenticationSettings settings = AuthenticationSettings.INSTANCE;
+        final long lookupTimeoutMillis = (long) settings.getConnectTimeOut() + settings.getReadTimeOut();
+        final boolean deadlineFirst = mCancellationToken.getRemainingMillis() <= lookupTimeoutMillis;
+        try {
+            return awaitResult(future, lookupTimeoutMillis);
+        } catch (final TimeoutException e) {
+            future.cancel(true);
+            mCancellationToken.throwIfCancelledOrExpired();
+            if (deadlineFirst) {
+                throw new AuthenticationException(ADALError.REQUEST_DEADLINE_EXCEEDED);
+            }
+
+            throw new AuthenticationException(ADALError.IO_EXCEPTION, "DRS discovery timed out", e);
         }
     }
 
+    /**
+     * Waits for the lookup up to the given time, less if the {@link CancellationToken} expires sooner.
+     * Cancelling the token cancels the lookup.
+     */
+    private DRSMetadata awaitResult(final Future<DRSMetadata> future, final long timeoutMillis)
+            throws UnknownHostException, AuthenticationException, TimeoutException {
+        final Runnable cancel = new Runnable() {
+            @Override
+            public void run() {
+                future.cancel(true);
+            }
+        };
+
+        if (!mCancellationToken.addCancelListener(cancel)) {
+            future.cancel(true);
+            mCancellationToken.throwIfCancelledOrExpired();
+        }
+
+        try {
+            return future.get(Math.min(timeoutMillis, mCancellationToken.getRemainingMillis()),
+                    TimeUnit.MILLISECONDS);
+        } catch (final CancellationException e) {
+            mCancellationToken.throwIfCancelledOrExpired();
+            throw new AuthenticationException(ADALError.REQUEST_CANCELLED, "DRS discovery was cancelled", e);
+        } catch (final InterruptedException e) {
+            throw interrupted(e);
+        } catch (final ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            mCancellationToken.removeCancelListener(cancel);
+        }
+    }
+
+    private static AuthenticationException interrupted(final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new AuthenticationException(ADALError.IO_EXCEPTION, "DRS discovery was interrupted", e);
+    }
+
+    /**
+     * Rethrows the failure of a DRS lookup as it was thrown by the lookup itself.
+     */
+    private static AuthenticationException unwrap(final ExecutionException e) throws UnknownHostException {
+        final Throwable cause = e.getCause();
+        if (cause instanceof UnknownHostException) {
+            throw (UnknownHostException) cause;
+        } else if (cause instanceof AuthenticationException) {
+            return (AuthenticationException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+
+        return new AuthenticationException(ADALError.IO_EXCEPTION, String.valueOf(cause), cause);
+    }
+
     /**
      * Requests DRS discovery metadata from on-prem configurations.
      *
@@ -190,4 +371,25 @@ final class DRSMetadataRequestor extends AbstractMetadataRequestor<DRSMetadata,
         return requestUrlStr;
     }
 
+    private static ThreadPoolExecutor createThreadExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_THREADS,
+                MAX_THREADS,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_LOOKUPS),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "adal-drs-" + mThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -42,6 +42,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -133,6 +134,17 @@ public class DefaultTokenCacheStore implements ITokenCacheStore, ITokenStoreQuer
         return sHelper;
     }
 
+    /**
+     * Loads the key the cache is encrypted with, unwrapping it from AndroidKeyStore if needed, so
+     * that the first read from the cache does not have to.
+     *
+     * @throws GeneralSecurityException for key related exceptions.
+     * @throws IOException              For general IO related exceptions.
+     */
+    void loadSecretKey() throws GeneralSecurityException, IOException {
+        getStorageHelper().loadSecretKeyForEncryption();
+    }
+
     private String encrypt(String value) {
         try {
             return getStorageHelper().encrypt(value);
@@ -148,11 +160,14 @@ public class DefaultTokenCacheStore implements ITokenCacheStore, ITokenStoreQuer
             throw new IllegalArgumentException("key is null or blank");
         }
 
+        final TraceSpan span = Tracing.begin(TracePhase.DECRYPT);
         try {
             return getStorageHelper().decrypt(value);
         } catch (GeneralSecurityException | IOException e) {
             Logger.e(TAG, "Decryption failure. ", "", ADALError.DECRYPTION_FAILED, e);
             removeItem(key);
+        } finally {
+            Tracing.end(span);
         }
 
         return null;
@@ -224,11 +239,18 @@ public class DefaultTokenCacheStore implements ITokenCacheStore, ITokenStoreQuer
      */
     @Override
     public Iterator<TokenCacheItem> getAll() {
+        return new ArrayList<>(getAllByKey().values()).iterator();
+    }
+
+    /**
+     * @return the {@link TokenCacheItem}s in the cache by their cache key.
+     */
+    Map<String, TokenCacheItem> getAllByKey() {
         @SuppressWarnings("unchecked")
         Map<String, String> results = (Map<String, String>) mPrefs.getAll();
 
         // create objects
-        final List<TokenCacheItem> tokens = new ArrayList<>(results.values().size());
+        final Map<String, TokenCacheItem> tokens = new LinkedHashMap<>(results.size());
 
         Iterator<Entry<String, String>> tokenResultEntrySet = results.entrySet().iterator();
         while (tokenResultEntrySet.hasNext()) {
@@ -240,14 +262,14 @@ public class DefaultTokenCacheStore implements ITokenCacheStore, ITokenStoreQuer
             if (decryptedValue != null) {
                 try {
                     final TokenCacheItem tokenCacheItem = mGson.fromJson(decryptedValue, TokenCacheItem.class);
-                    tokens.add(tokenCacheItem);
+                    tokens.put(tokenKey, tokenCacheItem);
                 } catch (final JsonSyntaxException exception) {
                     Logger.e(TAG, "Fail to parse Json. ", exception.getMessage(), ARGUMENT_EXCEPTION, exception);
                 }
             }
         }
 
-        return tokens.iterator();
+        return tokens;
     }
 
     /**
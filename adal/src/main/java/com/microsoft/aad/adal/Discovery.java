@@ -102,6 +102,8 @@ class Discovery {
 
     private Context mContext;
 
+    private CancellationToken mCancellationToken = new CancellationToken();
+
     /**
      * interface to use in testing.
      */
@@ -136,16 +138,24 @@ class Discovery {
             trustedHost = TRUSTED_QUERY_INSTANCE;
         }
 
+        sInstanceDiscoveryNetworkRequestLock = getLock();
+        try {
+            // Another request may be running instance discovery, wait no longer than this request may take
+            mCancellationToken.lock(sInstanceDiscoveryNetworkRequestLock);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException(ADALError.REQUEST_CANCELLED,
+                    "Interrupted while waiting for instance discovery", e);
+        }
+
         try {
-            sInstanceDiscoveryNetworkRequestLock = getLock();
-            sInstanceDiscoveryNetworkRequestLock.lock();
             performInstanceDiscovery(authorizationEndpoint, trustedHost);
         } finally {
             sInstanceDiscoveryNetworkRequestLock.unlock();
         }
     }
 
-    private static void validateADFS(final URL authorizationEndpoint, final String domain)
+    private void validateADFS(final URL authorizationEndpoint, final String domain)
             throws AuthenticationException {
         // Maps & Sets of URLs perform domain name resolution for equals() & hashCode()
         // To prevent this from happening, store/consult the cache using the URI value
@@ -166,24 +176,39 @@ class Discovery {
             return;
         }
 
-        // Get the DRS metadata
-        final DRSMetadata drsMetadata = new DRSMetadataRequestor().requestMetadata(domain);
+        // Get the WebFinger metadata, reusing the metadata persisted by an earlier validation
+        // when it has not expired yet
+        WebFingerMetadata webFingerMetadata =
+                ADFSMetadataCache.getWebFingerMetadata(mContext, domain, authorityUri);
+        final boolean isWebFingerMetadataCached = webFingerMetadata != null;
+        if (!isWebFingerMetadataCached) {
+            // Get the DRS metadata
+            DRSMetadata drsMetadata = ADFSMetadataCache.getDRSMetadata(mContext, domain);
+            if (drsMetadata == null) {
+                drsMetadata = new DRSMetadataRequestor(mCancellationToken).requestMetadata(domain);
+                ADFSMetadataCache.putDRSMetadata(mContext, domain, drsMetadata);
+            }
 
-        // Get the WebFinger metadata
-        final WebFingerMetadata webFingerMetadata =
-                new WebFingerMetadataRequestor() // create the requestor
-                        .requestMetadata(// request the data
-                                new WebFingerMetadataRequestParameters(// using these params
-                                        authorizationEndpoint,
-                                        drsMetadata
-                                )
-                        );
+            webFingerMetadata =
+                    new WebFingerMetadataRequestor() // create the requestor
+                            .requestMetadata(// request the data
+                                    new WebFingerMetadataRequestParameters(// using these params
+                                            authorizationEndpoint,
+                                            drsMetadata
+                                    )
+                            );
+        }
 
         // Verify trust
         if (!ADFSWebFingerValidator.realmIsTrusted(authorityUri, webFingerMetadata)) {
             throw new AuthenticationException(ADALError.DEVELOPER_AUTHORITY_IS_NOT_VALID_INSTANCE);
         }
 
+        // Only metadata which establishes trust is kept
+        if (!isWebFingerMetadataCached) {
+            ADFSMetadataCache.putWebFingerMetadata(mContext, domain, authorityUri, webFingerMetadata);
+        }
+
         // Trust established, add it to the cache
 
         // If this authorization endpoint doesn't already have a Set, create it
@@ -204,6 +229,15 @@ class Discovery {
         mCorrelationId = requestCorrelationId;
     }
 
+    /**
+     * Sets the cancellation token that bounds how long the validation waits.
+     *
+     * @param cancellationToken The {@link CancellationToken} of the request.
+     */
+    void setCancellationToken(final CancellationToken cancellationToken) {
+        mCancellationToken = cancellationToken;
+    }
+
     static URL constructAuthorityUrl(final URL originalAuthority, final String host) throws MalformedURLException {
         final String path = originalAuthority.getPath().replaceFirst("/", "");
         final Uri.Builder builder = new Uri.Builder().scheme(originalAuthority.getProtocol()).authority(host).appendPath(path);
@@ -290,7 +324,12 @@ class Discovery {
         final HttpWebResponse webResponse;
         try {
             ClientMetrics.INSTANCE.beginClientMetricsRecord(queryUrl, mCorrelationId, headers);
-            webResponse = mWebrequestHandler.sendGet(queryUrl, headers);
+            final TraceSpan span = Tracing.begin(TracePhase.NETWORK, mCorrelationId);
+            try {
+                webResponse = mWebrequestHandler.sendGet(queryUrl, headers);
+            } finally {
+                Tracing.end(span);
+            }
             ClientMetrics.INSTANCE.setLastError(null);
 
             // parse discovery response to find tenant info
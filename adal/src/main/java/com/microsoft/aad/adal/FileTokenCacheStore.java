@@ -25,20 +25,38 @@ package com.microsoft.aad.adal;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+
 import com.microsoft.identity.common.adal.internal.util.StringExtensions;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Persisted cache that keeps cache in-memory until write operation. Filename
  * should not be used on another instance of FileTokenCacheStore since read
  * operations are not synced to file.
+ * <p>
+ * The file is loaded in the background, the constructor returns right away and the first operation
+ * waits for the load if it has not finished. Files written with Java serialization by earlier versions
+ * are rewritten in {@link TokenCacheFileFormat} when they are loaded.
  */
 public class FileTokenCacheStore implements ITokenCacheStore {
 
@@ -49,9 +67,18 @@ public class FileTokenCacheStore implements ITokenCacheStore {
 
     private static final String TAG = FileTokenCacheStore.class.getSimpleName();
 
+    private static final ExecutorService LOAD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "adal-file-cache-load");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final File mFile;
 
-    private final MemoryTokenCacheStore mInMemoryCache;
+    private final transient FutureTask<MemoryTokenCacheStore> mInMemoryCache;
 
     private final Object mCacheLock = new Object();
 
@@ -65,7 +92,6 @@ public class FileTokenCacheStore implements ITokenCacheStore {
      *                 write to a file.
      */
     public FileTokenCacheStore(Context context, String fileName) {
-        final String methodName = ":FileTokenCacheStore";
         if (context == null) {
             throw new IllegalArgumentException("context");
         }
@@ -77,101 +103,174 @@ public class FileTokenCacheStore implements ITokenCacheStore {
         // It is using package directory not the external storage, so
         // external write permissions are not needed
         final File directory = context.getDir(context.getPackageName(), Context.MODE_PRIVATE);
-
         if (directory == null) {
             throw new IllegalStateException("It could not access the Authorization cache directory");
         }
 
-        // Initialize cache from file if it exists
-        try {
-            mFile = new File(directory, fileName);
-
-            if (mFile.exists()) {
-                Logger.v(TAG + methodName, "There is previous cache file to load cache. ");
-                FileInputStream inputStream = new FileInputStream(mFile);
-                ObjectInputStream objectStream = new ObjectInputStream(inputStream);
-                Object cacheObj = objectStream.readObject();
-                inputStream.close();
-                objectStream.close();
-
-                if (cacheObj instanceof MemoryTokenCacheStore) {
-                    mInMemoryCache = (MemoryTokenCacheStore) cacheObj;
-                } else {
-                    Logger.w(TAG + methodName, "Existing cache format is wrong. ", "",
-                            ADALError.DEVICE_FILE_CACHE_FORMAT_IS_WRONG);
-
-                    // Write operation will replace with correct file
-                    mInMemoryCache = new MemoryTokenCacheStore();
-                }
-            } else {
-                Logger.v(TAG + methodName, "There is not any previous cache file to load cache. ");
-                mInMemoryCache = new MemoryTokenCacheStore();
+        mFile = new File(directory, fileName);
+        mInMemoryCache = new FutureTask<>(new Callable<MemoryTokenCacheStore>() {
+            @Override
+            public MemoryTokenCacheStore call() throws IOException {
+                return load();
             }
-        } catch (IOException | ClassNotFoundException ex) {
-            Logger.e(TAG + methodName, "Exception during cache load. ",
-                    ExceptionExtensions.getExceptionMessage(ex),
-                    ADALError.DEVICE_FILE_CACHE_IS_NOT_LOADED_FROM_FILE);
-            // if it is not possible to load the cache because of permissions or
-            // similar, it will not work again. File cache is not working and
-            // not make sense to use it.
-            throw new IllegalStateException(ex);
-
-        }
+        });
+        LOAD_EXECUTOR.execute(mInMemoryCache);
     }
 
     @Override
     public TokenCacheItem getItem(String key) {
-        return mInMemoryCache.getItem(key);
+        return getInMemoryCache().getItem(key);
     }
 
     @Override
     public boolean contains(String key) {
-        return mInMemoryCache.contains(key);
+        return getInMemoryCache().contains(key);
     }
 
     @Override
     public void setItem(String key, TokenCacheItem item) {
-        mInMemoryCache.setItem(key, item);
+        getInMemoryCache().setItem(key, item);
         writeToFile();
     }
 
 
     @Override
     public void removeItem(String key) {
-        mInMemoryCache.removeItem(key);
+        getInMemoryCache().removeItem(key);
         writeToFile();
     }
 
     @Override
     public void removeAll() {
-        mInMemoryCache.removeAll();
+        getInMemoryCache().removeAll();
         writeToFile();
     }
 
+    /**
+     * Waits for the file to be loaded.
+     *
+     * @throws IllegalStateException if the file could not be read. It will not work on later attempts
+     *                               either, because of permissions or similar.
+     */
+    private MemoryTokenCacheStore getInMemoryCache() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mInMemoryCache.get();
+                } catch (final InterruptedException e) {
+                    // The load is short and the cache is unusable without it, keep waiting
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private MemoryTokenCacheStore load() throws IOException {
+        final String methodName = ":load";
+        if (!mFile.exists()) {
+            Logger.v(TAG + methodName, "There is not any previous cache file to load cache. ");
+            return new MemoryTokenCacheStore();
+        }
+
+        Logger.v(TAG + methodName, "There is previous cache file to load cache. ");
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            input.mark(Integer.SIZE / Byte.SIZE);
+            if (input.readInt() == TokenCacheFileFormat.MAGIC) {
+                putAll(cache, TokenCacheFileFormat.readAfterMagic(input, mFile.length()));
+                return cache;
+            }
+
+            input.reset();
+            if (!loadSerializedCache(input, cache)) {
+                return cache;
+            }
+        } catch (final TokenCacheFileFormat.FormatException | EOFException e) {
+            // Write operation will replace with correct file
+            Logger.w(TAG + methodName, "Existing cache format is wrong. ", e.getMessage(),
+                    ADALError.DEVICE_FILE_CACHE_FORMAT_IS_WRONG);
+            return cache;
+        } catch (final IOException e) {
+            Logger.e(TAG + methodName, "Exception during cache load. ",
+                    ExceptionExtensions.getExceptionMessage(e),
+                    ADALError.DEVICE_FILE_CACHE_IS_NOT_LOADED_FROM_FILE);
+            throw e;
+        } finally {
+            input.close();
+        }
+
+        Logger.v(TAG + methodName, "Rewriting the cache file written with Java serialization. ");
+        writeToFile(cache);
+        return cache;
+    }
+
+    /**
+     * Reads a file written with Java serialization by earlier versions.
+     *
+     * @return true if the items were read.
+     */
+    private boolean loadSerializedCache(final DataInputStream input, final MemoryTokenCacheStore cache)
+            throws IOException {
+        final String methodName = ":loadSerializedCache";
+        final Object cacheObj;
+        try {
+            cacheObj = new ObjectInputStream(input).readObject();
+        } catch (final ClassNotFoundException | ObjectStreamException e) {
+            Logger.w(TAG + methodName, "Existing cache format is wrong. ", e.getMessage(),
+                    ADALError.DEVICE_FILE_CACHE_FORMAT_IS_WRONG);
+            return false;
+        }
+
+        if (!(cacheObj instanceof MemoryTokenCacheStore)) {
+            Logger.w(TAG + methodName, "Existing cache format is wrong. ", "",
+                    ADALError.DEVICE_FILE_CACHE_FORMAT_IS_WRONG);
+            return false;
+        }
+
+        putAll(cache, ((MemoryTokenCacheStore) cacheObj).getAllByKey());
+        return true;
+    }
+
+    private static void putAll(final MemoryTokenCacheStore cache, final Map<String, TokenCacheItem> items) {
+        for (final Map.Entry<String, TokenCacheItem> entry : items.entrySet()) {
+            cache.setItem(entry.getKey(), entry.getValue());
+        }
+    }
+
     private void writeToFile() {
+        writeToFile(getInMemoryCache());
+    }
+
+    private void writeToFile(final MemoryTokenCacheStore cache) {
         synchronized (mCacheLock) {
-            if (mFile != null && mInMemoryCache != null) {
+            try {
+                // FileOutputStream will create the file.
+                final DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(mFile)));
                 try {
-
-                    // FileOutputStream will create the file.
-                    FileOutputStream outputStream = new FileOutputStream(mFile);
-                    ObjectOutputStream objectStream = new ObjectOutputStream(outputStream);
-                    objectStream.writeObject(mInMemoryCache);
-                    objectStream.flush();
-                    objectStream.close();
-                    outputStream.close();
-
-                } catch (IOException ex) {
-                    Logger.e(TAG, "Exception during cache flush",
-                            ExceptionExtensions.getExceptionMessage(ex),
-                            ADALError.DEVICE_FILE_CACHE_IS_NOT_WRITING_TO_FILE);
+                    TokenCacheFileFormat.write(output, cache.getAllByKey());
+                    output.flush();
+                } finally {
+                    output.close();
                 }
+            } catch (IOException ex) {
+                Logger.e(TAG, "Exception during cache flush",
+                        ExceptionExtensions.getExceptionMessage(ex),
+                        ADALError.DEVICE_FILE_CACHE_IS_NOT_WRITING_TO_FILE);
             }
         }
     }
 
     @Override
     public Iterator<TokenCacheItem> getAll() {
-        return mInMemoryCache.getAll();
+        return getInMemoryCache().getAll();
     }
 }
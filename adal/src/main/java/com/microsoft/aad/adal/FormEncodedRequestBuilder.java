@@ -0,0 +1,210 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Builds an application/x-www-form-urlencoded request body in a single pass, writing straight to
+ * a byte buffer. Values are encoded exactly as {@link java.net.URLEncoder} encodes them with
+ * UTF-8, so the output is identical to joining {@code StringExtensions.urlFormEncode} results.
+ */
+final class FormEncodedRequestBuilder {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int DEFAULT_CAPACITY = 512;
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    /**
+     * Replacement written for unpaired surrogates, as String.getBytes does.
+     */
+    private static final int MALFORMED_REPLACEMENT = '?';
+
+    private byte[] mBuffer;
+
+    private int mCount;
+
+    private boolean mHasContent = false;
+
+    FormEncodedRequestBuilder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    FormEncodedRequestBuilder(final int initialCapacity) {
+        mBuffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Appends already encoded text as is.
+     *
+     * @param text the text to append
+     * @return this builder
+     */
+    FormEncodedRequestBuilder append(final String text) {
+        mHasContent = true;
+        writeRaw(String.valueOf(text));
+        return this;
+    }
+
+    /**
+     * Appends {@code name=value}, with the value url form encoded. Anything appended after the
+     * first append is separated with {@code &}.
+     *
+     * @param name  the parameter name, written as is
+     * @param value the parameter value
+     * @return this builder
+     */
+    FormEncodedRequestBuilder appendParameter(final String name, final String value) {
+        startParameter(name);
+        writeEncoded(value);
+        return this;
+    }
+
+    /**
+     * Appends {@code name=value} without encoding the value, for values which are known to be
+     * safe such as protocol constants.
+     *
+     * @param name  the parameter name, written as is
+     * @param value the parameter value, written as is
+     * @return this builder
+     */
+    FormEncodedRequestBuilder appendRawParameter(final String name, final String value) {
+        startParameter(name);
+        writeRaw(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * @return the number of bytes written so far.
+     */
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * @return a copy of the body written so far.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mCount);
+    }
+
+    @Override
+    public String toString() {
+        return new String(mBuffer, 0, mCount, UTF8);
+    }
+
+    private void startParameter(final String name) {
+        if (mHasContent) {
+            writeByte('&');
+        }
+
+        mHasContent = true;
+        writeRaw(String.valueOf(name));
+        writeByte('=');
+    }
+
+    private void writeRaw(final String text) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Not ascii, leave the rest to the platform encoder
+                writeBytes(text.substring(i).getBytes(UTF8));
+                return;
+            }
+
+            writeByte(c);
+        }
+    }
+
+    private void writeEncoded(final String value) {
+        final int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                writeByte(c);
+            } else if (c == ' ') {
+                writeByte('+');
+            } else if (c < 0x80) {
+                writePercentEncoded(c);
+            } else if (c < 0x800) {
+                writePercentEncoded(0xC0 | (c >> 6));
+                writePercentEncoded(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writePercentEncoded(0xF0 | (codePoint >> 18));
+                writePercentEncoded(0x80 | ((codePoint >> 12) & 0x3F));
+                writePercentEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+                writePercentEncoded(0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                writePercentEncoded(MALFORMED_REPLACEMENT);
+            } else {
+                writePercentEncoded(0xE0 | (c >> 12));
+                writePercentEncoded(0x80 | ((c >> 6) & 0x3F));
+                writePercentEncoded(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * @return true for the characters URLEncoder leaves untouched.
+     */
+    private static boolean isUnreserved(final char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '*';
+    }
+
+    private void writePercentEncoded(final int b) {
+        ensureCapacity(3);
+        mBuffer[mCount++] = '%';
+        mBuffer[mCount++] = HEX_DIGITS[(b >> 4) & 0xF];
+        mBuffer[mCount++] = HEX_DIGITS[b & 0xF];
+    }
+
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        mBuffer[mCount++] = (byte) b;
+    }
+
+    private void writeBytes(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mCount, bytes.length);
+        mCount += bytes.length;
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (mCount + additional > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mCount + additional));
+        }
+    }
+}
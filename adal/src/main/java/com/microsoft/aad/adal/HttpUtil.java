@@ -35,6 +35,11 @@ import com.microsoft.identity.common.java.exception.ErrorStrings;
 class HttpUtil {
 
     static void throwIfNetworkNotAvailable(final Context context) throws AuthenticationException {
+        final ConnectivityMonitor monitor = ConnectivityMonitor.getInstance(context);
+        if (monitor != null && monitor.isNetworkAvailable(context)) {
+            return;
+        }
+
         try {
             new AndroidPlatformUtil(context, null).throwIfNetworkNotAvailable(false);
         } catch (final ClientException e) {
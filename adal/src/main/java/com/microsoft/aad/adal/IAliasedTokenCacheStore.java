@@ -0,0 +1,50 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import java.util.Collection;
+
+/**
+ * {@link ITokenCacheStore} that stores an item once for all the keys it is cached under. ADAL caches the
+ * same token under the displayable id, the unique id and no user, a store implementing this interface
+ * keeps a single encrypted copy with the keys pointing to it.
+ */
+public interface IAliasedTokenCacheStore extends ITokenCacheStore {
+
+    /**
+     * Sets the item once for all the keys. Items the keys pointed to before are dropped when no other key
+     * points to them.
+     *
+     * @param keys {@link CacheKey}s of the item
+     * @param item Cache item
+     */
+    void setItem(Collection<String> keys, TokenCacheItem item);
+
+    /**
+     * Removes the keys in one write. Items no other key points to are dropped.
+     *
+     * @param keys {@link CacheKey}s to remove
+     */
+    void removeItems(Collection<String> keys);
+}
@@ -24,15 +24,17 @@
 package com.microsoft.aad.adal;
 
 import android.util.Base64;
+import android.util.LruCache;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.microsoft.identity.common.adal.internal.AuthenticationConstants;
-import com.microsoft.identity.common.adal.internal.util.HashMapExtensions;
 import com.microsoft.identity.common.adal.internal.util.StringExtensions;
 
-import org.json.JSONException;
-
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
-import java.util.Map;
 
 /**
  * IdToken class is used to initialize the IdToken object with the raw idToken
@@ -42,6 +44,18 @@ class IdToken {
 
     private static final String TAG = "IdToken";
 
+    /**
+     * Max number of parsed id tokens kept in the per process cache.
+     */
+    private static final int ID_TOKEN_CACHE_SIZE = 16;
+
+    /**
+     * Parsed id tokens keyed by the raw id token. The same id token is read when the result is
+     * created, when the cache is updated and when telemetry is recorded, {@link IdToken} is
+     * immutable so the parsed instance can be shared.
+     */
+    private static final LruCache<String, IdToken> ID_TOKEN_CACHE = new LruCache<>(ID_TOKEN_CACHE_SIZE);
+
     private String mSubject;
 
     private String mTenantId;
@@ -64,25 +78,29 @@ class IdToken {
 
     IdToken(String idtoken) throws AuthenticationException {
         // Message segments: Header.Body.Signature
-        final Map<String, String> responseItems = this.parseJWT(idtoken);
-
-        if (responseItems != null && !responseItems.isEmpty()) {
-            this.mSubject = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_SUBJECT);
-            this.mTenantId = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_TENANTID);
-            this.mUpn = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_UPN);
-            this.mEmail = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_EMAIL);
-            this.mGivenName = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_GIVEN_NAME);
-            this.mFamilyName = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_FAMILY_NAME);
-            this.mIdentityProvider = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_IDENTITY_PROVIDER);
-            this.mObjectId = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_OBJECT_ID);
-            final String expiration = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_PASSWORD_EXPIRATION);
-
-            if (!StringExtensions.isNullOrBlank(expiration)) {
-                this.mPasswordExpiration = Long.parseLong(expiration);
-            }
+        this.readClaims(extractJWTBody(idtoken));
+    }
+
+    /**
+     * Returns the parsed {@link IdToken} for the raw id token, the id token is only decoded the
+     * first time it is seen in the process.
+     *
+     * @param rawIdToken The raw id token returned from the server.
+     * @return The parsed {@link IdToken}.
+     * @throws AuthenticationException if the id token cannot be parsed.
+     */
+    static IdToken parse(final String rawIdToken) throws AuthenticationException {
+        if (rawIdToken == null) {
+            throw new AuthenticationException(ADALError.IDTOKEN_PARSING_FAILURE, "The id token is null.");
+        }
 
-            this.mPasswordChangeUrl = responseItems.get(AuthenticationConstants.OAuth2.ID_TOKEN_PASSWORD_CHANGE_URL);
+        IdToken idToken = ID_TOKEN_CACHE.get(rawIdToken);
+        if (idToken == null) {
+            idToken = new IdToken(rawIdToken);
+            ID_TOKEN_CACHE.put(rawIdToken, idToken);
         }
+
+        return idToken;
     }
 
     public String getSubject() {
@@ -125,25 +143,88 @@ class IdToken {
         return mPasswordChangeUrl;
     }
 
-    private Map<String, String> parseJWT(final String idtoken) throws AuthenticationException {
-        final String methodName = ":parseJWT";
-        final String idbody = extractJWTBody(idtoken);
+    /**
+     * Reads the claims ADAL needs straight from the decoded body, the other claims are skipped
+     * without being materialized.
+     */
+    private void readClaims(final String idbody) throws AuthenticationException {
+        final String methodName = ":readClaims";
         // URL_SAFE: Encoder/decoder flag bit to use
         // "URL and filename safe" variant of Base64
         // (see RFC 3548 section 4) where - and _ are used in place of +
         // and /.
         final byte[] data = Base64.decode(idbody, Base64.URL_SAFE);
-
+        final JsonReader reader;
         try {
-            final String decodedBody = new String(data, "UTF-8");
-            return HashMapExtensions.jsonStringAsMap(decodedBody);
+            reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), "UTF-8"));
         } catch (UnsupportedEncodingException exception) {
             Logger.e(TAG + methodName, "The encoding is not supported.", "", ADALError.ENCODING_IS_NOT_SUPPORTED, exception);
             throw new AuthenticationException(ADALError.ENCODING_IS_NOT_SUPPORTED, exception.getMessage(), exception);
-        } catch (JSONException exception) {
+        }
+
+        String expiration = null;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String claim = reader.nextName();
+                if (AuthenticationConstants.OAuth2.ID_TOKEN_SUBJECT.equals(claim)) {
+                    this.mSubject = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_TENANTID.equals(claim)) {
+                    this.mTenantId = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_UPN.equals(claim)) {
+                    this.mUpn = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_EMAIL.equals(claim)) {
+                    this.mEmail = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_GIVEN_NAME.equals(claim)) {
+                    this.mGivenName = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_FAMILY_NAME.equals(claim)) {
+                    this.mFamilyName = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_IDENTITY_PROVIDER.equals(claim)) {
+                    this.mIdentityProvider = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_OBJECT_ID.equals(claim)) {
+                    this.mObjectId = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_PASSWORD_EXPIRATION.equals(claim)) {
+                    expiration = readClaimValue(reader);
+                } else if (AuthenticationConstants.OAuth2.ID_TOKEN_PASSWORD_CHANGE_URL.equals(claim)) {
+                    this.mPasswordChangeUrl = readClaimValue(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (final IOException | IllegalStateException exception) {
             Logger.e(TAG + methodName, "Failed to parse the decoded body into JsonObject.", "",
                     ADALError.JSON_PARSE_ERROR, exception);
             throw new AuthenticationException(ADALError.JSON_PARSE_ERROR, exception.getMessage(), exception);
+        } finally {
+            closeReader(reader);
+        }
+
+        if (!StringExtensions.isNullOrBlank(expiration)) {
+            this.mPasswordExpiration = Long.parseLong(expiration);
+        }
+    }
+
+    /**
+     * Reads a claim as a string, numbers and booleans are returned with their json representation.
+     */
+    private static String readClaimValue(final JsonReader reader) throws IOException {
+        final JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        } else if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+
+        reader.skipValue();
+        return null;
+    }
+
+    private static void closeReader(final JsonReader reader) {
+        try {
+            reader.close();
+        } catch (final IOException exception) {
+            Logger.v(TAG, "Failed to close the json reader. " + exception.getMessage());
         }
     }
 
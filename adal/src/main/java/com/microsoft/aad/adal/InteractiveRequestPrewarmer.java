@@ -0,0 +1,239 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.webkit.WebSettings;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Does the work an interactive sign-in needs before its first page can be shown ahead of time,
+ * while the app is still busy with its own UI. It loads the WebView provider, resolves and connects
+ * to the authority host, and builds the authorization request url that
+ * {@link AuthenticationActivity} then picks up instead of building it again.
+ */
+final class InteractiveRequestPrewarmer {
+    private static final String TAG = InteractiveRequestPrewarmer.class.getSimpleName();
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private static final String HEAD_REQUEST_METHOD = "HEAD";
+
+    private static final ExecutorService THREAD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "adal-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final Object LOCK = new Object();
+
+    private static PrebuiltCodeRequestUrl sPrebuiltCodeRequestUrl = null;
+
+    private InteractiveRequestPrewarmer() {
+        // Utility class, no public constructor
+    }
+
+    /**
+     * Starts preparing the interactive sign-in for the given request. Returns right away, the
+     * WebView provider is loaded on the main thread and the rest of the work is done in the
+     * background.
+     *
+     * @param context {@link Context} of the app
+     * @param request the request the app expects to send. Its correlation id is a placeholder,
+     *                which is swapped for the one of the actual request.
+     */
+    static void prewarm(@NonNull final Context context, @NonNull final AuthenticationRequest request) {
+        preloadWebViewProvider(context.getApplicationContext());
+
+        THREAD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                prebuildCodeRequestUrl(request);
+                preconnect(request.getAuthority());
+            }
+        });
+    }
+
+    /**
+     * Builds the authorization request url for the request and keeps it for
+     * {@link #getCodeRequestUrl(AuthenticationRequest)}. The correlation id of the request is
+     * used as a placeholder.
+     */
+    static void prebuildCodeRequestUrl(@NonNull final AuthenticationRequest request) {
+        final String methodName = ":prebuildCodeRequestUrl";
+        try {
+            final String codeRequestUrl = new Oauth2(request).getCodeRequestUrl();
+            synchronized (LOCK) {
+                sPrebuiltCodeRequestUrl = new PrebuiltCodeRequestUrl(getCodeRequestKey(request),
+                        codeRequestUrl, request.getCorrelationId().toString());
+            }
+            Logger.v(TAG + methodName, "Authorization request url is built.");
+        } catch (final UnsupportedEncodingException e) {
+            Logger.e(TAG + methodName, "Encoding format is not supported. ", e);
+        }
+    }
+
+    /**
+     * @param request the interactive request which is about to be sent
+     * @return the authorization request url built by {@link #prewarm(Context, AuthenticationRequest)}
+     * if it was built for the same request, or null if the caller needs to build it.
+     */
+    @Nullable
+    static String getCodeRequestUrl(@NonNull final AuthenticationRequest request) {
+        if (request.getCorrelationId() == null) {
+            return null;
+        }
+
+        final PrebuiltCodeRequestUrl prebuilt;
+        synchronized (LOCK) {
+            prebuilt = sPrebuiltCodeRequestUrl;
+        }
+
+        if (prebuilt == null || !prebuilt.mKey.equals(getCodeRequestKey(request))) {
+            return null;
+        }
+
+        return prebuilt.mUrl.replace(prebuilt.mPlaceholderCorrelationId, request.getCorrelationId().toString());
+    }
+
+    /**
+     * Drops the prebuilt authorization request url.
+     */
+    static void clear() {
+        synchronized (LOCK) {
+            sPrebuiltCodeRequestUrl = null;
+        }
+    }
+
+    private static void preloadWebViewProvider(@NonNull final Context appContext) {
+        final String methodName = ":preloadWebViewProvider";
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Logger.v(TAG + methodName, "WebView provider cannot be loaded ahead of time on this OS version.");
+            return;
+        }
+
+        // The WebView provider has to be loaded on the main thread, like the WebView itself
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    WebSettings.getDefaultUserAgent(appContext);
+                    Logger.v(TAG + methodName, "WebView provider is loaded.");
+                } catch (final RuntimeException e) {
+                    // Thrown if the WebView package is missing or being updated, the activity reports it later
+                    Logger.w(TAG + methodName, "WebView provider could not be loaded. " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Resolves the authority host and opens a connection to it. The address stays in the DNS cache
+     * of the device, which the WebView uses as well, and the connection is kept alive for the token
+     * request which follows the sign-in.
+     */
+    private static void preconnect(@NonNull final String authority) {
+        final String methodName = ":preconnect";
+        HttpURLConnection connection = null;
+        try {
+            final URL authorityUrl = new URL(authority);
+            InetAddress.getAllByName(authorityUrl.getHost());
+
+            final URL hostUrl = new URL(authorityUrl.getProtocol(), authorityUrl.getHost(), authorityUrl.getPort(), "/");
+            connection = (HttpURLConnection) hostUrl.openConnection();
+            connection.setRequestMethod(HEAD_REQUEST_METHOD);
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(CONNECT_TIMEOUT_MILLIS);
+
+            final int responseCode = connection.getResponseCode();
+            // Read the response to the end so that the connection goes back to the pool
+            final InputStream responseStream = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getInputStream() : connection.getErrorStream();
+            if (responseStream != null) {
+                responseStream.close();
+            }
+
+            Logger.v(TAG + methodName, "Connected to the authority host.");
+        } catch (final IOException e) {
+            // Only an optimization, the sign-in connects again if this did not work out
+            Logger.w(TAG + methodName, "Could not connect to the authority host. " + e.getMessage());
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @return the parts of the request the authorization request url is built from, other than
+     * the correlation id.
+     */
+    private static List<Object> getCodeRequestKey(@NonNull final AuthenticationRequest request) {
+        return Arrays.<Object>asList(
+                request.getAuthority(),
+                request.getResource(),
+                request.getClientId(),
+                request.getRedirectUri(),
+                request.getLoginHint(),
+                request.getPrompt(),
+                request.getExtraQueryParamsAuthentication(),
+                request.getClaimsChallenge(),
+                request.getClientCapabilities(),
+                request.getAppName(),
+                request.getAppVersion()
+        );
+    }
+
+    private static final class PrebuiltCodeRequestUrl {
+        private final List<Object> mKey;
+        private final String mUrl;
+        private final String mPlaceholderCorrelationId;
+
+        PrebuiltCodeRequestUrl(final List<Object> key, final String url, final String placeholderCorrelationId) {
+            mKey = key;
+            mUrl = url;
+            mPlaceholderCorrelationId = placeholderCorrelationId;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the background work of an interactive flow, such as answering PKeyAuth challenges and
+ * redeeming the authorization code, on a small pool dedicated to ADAL so that it cannot be held
+ * up by other work of the app. Each UI owner holds its own instance and cancels the work that is
+ * still outstanding when it goes away.
+ */
+final class InteractiveTaskExecutor {
+    private static final String TAG = InteractiveTaskExecutor.class.getSimpleName();
+
+    static final int MAX_THREADS = 2;
+
+    static final int MAX_QUEUED_TASKS = 16;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor THREAD_EXECUTOR = createThreadExecutor();
+
+    private final Set<FutureTask<Void>> mPendingTasks =
+            Collections.newSetFromMap(new ConcurrentHashMap<FutureTask<Void>, Boolean>());
+
+    private final Handler mMainThreadHandler = new Handler(Looper.getMainLooper());
+
+    private final UIEvent mUIEvent;
+
+    private volatile boolean mCancelled = false;
+
+    /**
+     * @param uiEvent the event the queue and execution times are recorded in, if any
+     */
+    InteractiveTaskExecutor(@Nullable final UIEvent uiEvent) {
+        mUIEvent = uiEvent;
+    }
+
+    /**
+     * Runs the task in the background.
+     *
+     * @param task the task to run
+     * @return false if the task was not accepted, because the work of this owner was cancelled
+     * or too many tasks are waiting for a thread
+     */
+    boolean execute(@NonNull final Runnable task) {
+        final String methodName = ":execute";
+        if (mCancelled) {
+            Logger.w(TAG + methodName, "Background work was cancelled, task is not run.");
+            return false;
+        }
+
+        final long submittedAt = SystemClock.elapsedRealtime();
+        final FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                final long startedAt = SystemClock.elapsedRealtime();
+                try {
+                    task.run();
+                } finally {
+                    recordTimings(startedAt - submittedAt, SystemClock.elapsedRealtime() - startedAt);
+                }
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                mPendingTasks.remove(this);
+                try {
+                    get();
+                } catch (final CancellationException | InterruptedException e) {
+                    Logger.v(TAG + methodName, "Background task was cancelled.");
+                } catch (final ExecutionException e) {
+                    Logger.e(TAG + methodName, "Background task failed.", e.getCause());
+                }
+            }
+        };
+
+        mPendingTasks.add(future);
+        try {
+            THREAD_EXECUTOR.execute(future);
+        } catch (final RejectedExecutionException e) {
+            mPendingTasks.remove(future);
+            Logger.w(TAG + methodName, "Too many background tasks are queued, task is not run.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels the tasks that have not finished yet, interrupting the running ones, and rejects
+     * further tasks. Called when the owner of the interactive flow is destroyed, before its
+     * UIEvent is stopped, so timings of cancelled tasks are no longer added to the event.
+     */
+    void cancelAll() {
+        mCancelled = true;
+        for (final FutureTask<Void> task : mPendingTasks) {
+            task.cancel(true);
+        }
+        mPendingTasks.clear();
+        mMainThreadHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * @return the number of tasks of this owner which have not finished yet.
+     */
+    int getPendingCount() {
+        return mPendingTasks.size();
+    }
+
+    private void recordTimings(final long queueTimeMillis, final long executionTimeMillis) {
+        if (mUIEvent == null || mCancelled) {
+            return;
+        }
+
+        // Telemetry events are not thread safe, update the event from the UI thread. The owner may
+        // have been destroyed and its event dispatched in the meantime.
+        mMainThreadHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mCancelled) {
+                    mUIEvent.addBackgroundTask(queueTimeMillis, executionTimeMillis);
+                }
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor createThreadExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_THREADS,
+                MAX_THREADS,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_TASKS),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "adal-interactive-" + mThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -23,15 +23,27 @@
 
 package com.microsoft.aad.adal;
 
+import com.microsoft.identity.common.adal.internal.util.StringExtensions;
+
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * tokenCacheItem is not persisted. Memory cache does not keep static items.
+ * <p>
+ * Reads and writes do not lock. {@link #getAll()} is weakly consistent: it never throws
+ * {@link java.util.ConcurrentModificationException} and may or may not reflect writes made while
+ * iterating.
  */
 public class MemoryTokenCacheStore implements ITokenCacheStore {
 
@@ -42,14 +54,61 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
 
     private static final String TAG = "MemoryTokenCacheStore";
 
-    private final Map<String, TokenCacheItem> mCache = new HashMap<>();
+    /**
+     * Candidates are evicted by rank first: items without a usable token, then items with only an access
+     * token, then regular items with a refresh token, then multi resource and family refresh token items.
+     * Within a rank, items with only an access token are ordered by when it stops being valid, items with
+     * a refresh token by when they were last written, since the lifetime of a refresh token is not known.
+     */
+    private static final Comparator<EvictionCandidate> EVICTION_ORDER = new Comparator<EvictionCandidate>() {
+        @Override
+        public int compare(final EvictionCandidate lhs, final EvictionCandidate rhs) {
+            if (lhs.mRank != rhs.mRank) {
+                return lhs.mRank < rhs.mRank ? -1 : 1;
+            }
+
+            if (lhs.mOrder == null) {
+                return rhs.mOrder == null ? 0 : -1;
+            }
+
+            return rhs.mOrder == null ? 1 : lhs.mOrder.compareTo(rhs.mOrder);
+        }
+    };
+
+    private static final int RANK_NO_USABLE_TOKEN = 0;
+
+    private static final int RANK_ACCESS_TOKEN_ONLY = 1;
+
+    private static final int RANK_REFRESH_TOKEN = 2;
+
+    private static final int RANK_MULTI_RESOURCE_REFRESH_TOKEN = 3;
+
+    // Not final, caches serialized by older versions are read back as a HashMap
+    private Map<String, TokenCacheItem> mCache = new ConcurrentHashMap<>();
+
+    private final int mMaxSize;
 
-    private transient Object mCacheLock = new Object();
+    private transient Object mEvictionLock = new Object();
 
     /**
      * Creates MemoryTokenCacheStore.
      */
     public MemoryTokenCacheStore() {
+        this(0);
+    }
+
+    /**
+     * Creates MemoryTokenCacheStore holding at most maxSize items. When it is full, items without a usable
+     * token are evicted first and items holding a refresh token last.
+     *
+     * @param maxSize Maximum number of items, 0 for no bound.
+     */
+    public MemoryTokenCacheStore(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize");
+        }
+
+        mMaxSize = maxSize;
     }
 
     @Override
@@ -58,10 +117,7 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
             throw new IllegalArgumentException("The input key is null.");
         }
 
-        Logger.i(TAG, "Get Item from cache. ", "Key:" + key);
-        synchronized (mCacheLock) {
-            return mCache.get(key);
-        }
+        return mCache.get(key);
     }
 
     @Override
@@ -74,9 +130,9 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
             throw new IllegalArgumentException("key");
         }
 
-        Logger.i(TAG, "Set Item to cache. ", "Key: " + key);
-        synchronized (mCacheLock) {
-            mCache.put(key, item);
+        mCache.put(key, item);
+        if (mMaxSize > 0 && mCache.size() > mMaxSize) {
+            evict(key);
         }
     }
 
@@ -86,17 +142,75 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
             throw new IllegalArgumentException("key");
         }
 
-        Logger.i(TAG, "Remove Item from cache. ", "Key:" + key.hashCode());
-        synchronized (mCacheLock) {
-            mCache.remove(key);
-        }
+        mCache.remove(key);
     }
 
     @Override
     public void removeAll() {
         Logger.v(TAG, "Remove all items from cache.");
-        synchronized (mCacheLock) {
-            mCache.clear();
+        mCache.clear();
+    }
+
+    /**
+     * Evicts items until the cache is within its bound, keeping the item that was just set.
+     */
+    private void evict(final String keptKey) {
+        synchronized (mEvictionLock) {
+            int excess = mCache.size() - mMaxSize;
+            if (excess <= 0) {
+                return;
+            }
+
+            final Calendar validity = Calendar.getInstance();
+            validity.add(Calendar.SECOND, AuthenticationSettings.INSTANCE.getExpirationBuffer());
+            final List<EvictionCandidate> candidates = new ArrayList<>(mCache.size());
+            for (final Map.Entry<String, TokenCacheItem> entry : mCache.entrySet()) {
+                if (!entry.getKey().equals(keptKey)) {
+                    candidates.add(new EvictionCandidate(entry.getKey(), entry.getValue(), validity.getTime()));
+                }
+            }
+
+            Collections.sort(candidates, EVICTION_ORDER);
+            for (final EvictionCandidate candidate : candidates) {
+                if (excess <= 0) {
+                    break;
+                }
+
+                if (mCache.remove(candidate.mKey) != null) {
+                    excess--;
+                }
+            }
+        }
+
+        Logger.v(TAG, "Evicted items from cache.");
+    }
+
+    private static final class EvictionCandidate {
+        private final String mKey;
+
+        private final int mRank;
+
+        private final Date mOrder;
+
+        EvictionCandidate(final String key, final TokenCacheItem item, final Date validity) {
+            mKey = key;
+            if (!StringExtensions.isNullOrBlank(item.getRefreshToken())) {
+                mRank = item.getTokenEntryType() == TokenEntryType.REGULAR_TOKEN_ENTRY
+                        ? RANK_REFRESH_TOKEN : RANK_MULTI_RESOURCE_REFRESH_TOKEN;
+                mOrder = item.getTokenUpdateTime();
+                return;
+            }
+
+            Date lastValidDate = item.getExpiresOn();
+            final Date extendedExpiresOn = item.getExtendedExpiresOn();
+            if (extendedExpiresOn != null && (lastValidDate == null || extendedExpiresOn.after(lastValidDate))) {
+                lastValidDate = extendedExpiresOn;
+            }
+
+            final boolean hasAccessToken = !StringExtensions.isNullOrBlank(item.getAccessToken())
+                    && (lastValidDate == null || !lastValidDate.before(validity));
+            mRank = hasAccessToken ? RANK_ACCESS_TOKEN_ONLY : RANK_NO_USABLE_TOKEN;
+            mOrder = lastValidDate;
         }
     }
 
@@ -108,7 +222,10 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
             ClassNotFoundException {
         inputStream.defaultReadObject();
 
-        mCacheLock = new Object();
+        if (!(mCache instanceof ConcurrentHashMap)) {
+            mCache = new ConcurrentHashMap<>(mCache);
+        }
+        mEvictionLock = new Object();
     }
 
     @Override
@@ -117,17 +234,18 @@ public class MemoryTokenCacheStore implements ITokenCacheStore {
             throw new IllegalArgumentException("key");
         }
 
-        Logger.i(TAG, "contains Item from cache.", "Key: " + key);
-        synchronized (mCacheLock) {
-            return mCache.get(key) != null;
-        }
+        return mCache.containsKey(key);
     }
 
     @Override
     public Iterator<TokenCacheItem> getAll() {
-        Logger.v(TAG, "Retrieving all items from cache. ");
-        synchronized (mCacheLock) {
-            return mCache.values().iterator();
-        }
+        return mCache.values().iterator();
+    }
+
+    /**
+     * @return read-only view of the items by their cache key, weakly consistent like {@link #getAll()}.
+     */
+    Map<String, TokenCacheItem> getAllByKey() {
+        return Collections.unmodifiableMap(mCache);
     }
 }
@@ -89,8 +89,6 @@ class Oauth2 {
 
     private static final String HTTPS_PROTOCOL_STRING = "https";
 
-    private static final String STRING_FORMAT_QUERY_PARAM = "%s&%s=%s";
-
     private String mBrokerClientVersion = "";
 
     private String mClientVersion = "";
@@ -247,131 +245,107 @@ class Oauth2 {
     }
 
     public String buildTokenRequestMessage(String code) throws UnsupportedEncodingException {
-        Logger.v(TAG, "Building request message for redeeming token with auth code.");
+        return newTokenRequestBody(code).toString();
+    }
 
-        String message = String.format("%s=%s&%s=%s&%s=%s&%s=%s&%s=%s",
-                AuthenticationConstants.OAuth2.GRANT_TYPE,
-                StringExtensions.urlFormEncode(AuthenticationConstants.OAuth2.AUTHORIZATION_CODE),
+    public String buildRefreshTokenRequestMessage(String refreshToken)
+            throws UnsupportedEncodingException {
+        return newRefreshTokenRequestBody(refreshToken).toString();
+    }
 
-                AuthenticationConstants.OAuth2.CODE,
-                StringExtensions.urlFormEncode(code),
+    public String buildAssertionMessage(@NonNull String assertion, @NonNull String assertionType)
+            throws UnsupportedEncodingException {
+        return newAssertionRequestBody(assertion, assertionType).toString();
+    }
 
-                AuthenticationConstants.OAuth2.CLIENT_ID,
-                StringExtensions.urlFormEncode(mRequest.getClientId()),
+    public String buildRequestMessage(String message) throws UnsupportedEncodingException {
+        return appendRequestParameters(new FormEncodedRequestBuilder().append(message)).toString();
+    }
 
-                AuthenticationConstants.OAuth2.REDIRECT_URI,
-                StringExtensions.urlFormEncode(mRequest.getRedirectUri()),
+    private FormEncodedRequestBuilder newTokenRequestBody(final String code) {
+        Logger.v(TAG, "Building request message for redeeming token with auth code.");
 
+        final FormEncodedRequestBuilder body = new FormEncodedRequestBuilder()
+                .appendParameter(AuthenticationConstants.OAuth2.GRANT_TYPE,
+                        AuthenticationConstants.OAuth2.AUTHORIZATION_CODE)
+                .appendParameter(AuthenticationConstants.OAuth2.CODE, code)
+                .appendParameter(AuthenticationConstants.OAuth2.CLIENT_ID, mRequest.getClientId())
+                .appendParameter(AuthenticationConstants.OAuth2.REDIRECT_URI, mRequest.getRedirectUri())
                 // Request client_info
-                AuthenticationConstants.OAuth2.CLIENT_INFO,
-                AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE
-        );
-
-        if (!StringExtensions.isNullOrBlank(mRequest.getClaimsChallenge()) ||
-                mRequest.getClientCapabilities() != null) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.OAuth2.CLAIMS,
-                    StringExtensions.urlFormEncode(AuthenticationContext.mergeClaimsWithClientCapabilities(
-                            mRequest.getClaimsChallenge(),
-                            mRequest.getClientCapabilities()
-                    )));
-        }
-
-        if (!StringExtensions.isNullOrBlank(mRequest.getAppName())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.AAD.APP_PACKAGE_NAME,
-                    StringExtensions.urlFormEncode(mRequest.getAppName()));
-        }
-
-        if (!StringExtensions.isNullOrBlank(mRequest.getAppVersion())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.AAD.APP_VERSION,
-                    StringExtensions.urlFormEncode(mRequest.getAppVersion()));
-        }
-        return message;
+                .appendRawParameter(AuthenticationConstants.OAuth2.CLIENT_INFO,
+                        AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE);
 
+        return appendClaimsAndAppInfo(body);
     }
 
-    public String buildRefreshTokenRequestMessage(String refreshToken)
-            throws UnsupportedEncodingException {
+    private FormEncodedRequestBuilder newRefreshTokenRequestBody(final String refreshToken) {
         Logger.v(TAG, "Building request message for redeeming token with refresh token.");
-        String message = String.format("%s=%s&%s=%s&%s=%s&%s=%s",
-                AuthenticationConstants.OAuth2.GRANT_TYPE,
-                StringExtensions.urlFormEncode(AuthenticationConstants.OAuth2.REFRESH_TOKEN),
 
-                AuthenticationConstants.OAuth2.REFRESH_TOKEN,
-                StringExtensions.urlFormEncode(refreshToken),
+        final FormEncodedRequestBuilder body = new FormEncodedRequestBuilder()
+                .appendParameter(AuthenticationConstants.OAuth2.GRANT_TYPE,
+                        AuthenticationConstants.OAuth2.REFRESH_TOKEN)
+                .appendParameter(AuthenticationConstants.OAuth2.REFRESH_TOKEN, refreshToken)
+                .appendParameter(AuthenticationConstants.OAuth2.CLIENT_ID, mRequest.getClientId())
+                .appendRawParameter(AuthenticationConstants.OAuth2.CLIENT_INFO,
+                        AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE);
 
-                AuthenticationConstants.OAuth2.CLIENT_ID,
-                StringExtensions.urlFormEncode(mRequest.getClientId()),
-
-                AuthenticationConstants.OAuth2.CLIENT_INFO,
-                AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE
-        );
-
-        message = buildRequestMessage(message);
-        return message;
+        return appendRequestParameters(body);
     }
 
-    public String buildAssertionMessage(@NonNull String assertion, @NonNull String assertionType)
+    private FormEncodedRequestBuilder newAssertionRequestBody(final String assertion, final String assertionType)
             throws UnsupportedEncodingException {
         Logger.v(TAG, "Building request message for redeeming token with saml assertion.");
-        String message = String.format("%s=%s&%s=%s&%s=%s&%s=%s&%s=%s",
-                AuthenticationConstants.OAuth2.GRANT_TYPE,
-                StringExtensions.urlFormEncode(assertionType),
-
-                com.microsoft.aad.adal.AuthenticationConstants.OAuth2.ASSERTION,
-                StringExtensions.urlFormEncode(Base64.encodeToString(assertion.getBytes("UTF-8"), Base64.NO_WRAP)),
 
-                AuthenticationConstants.OAuth2.CLIENT_ID,
-                StringExtensions.urlFormEncode(mRequest.getClientId()),
-
-                AuthenticationConstants.OAuth2.SCOPE,
-                AuthenticationConstants.OAuth2Scopes.OPEN_ID_SCOPE,
-
-                AuthenticationConstants.OAuth2.CLIENT_INFO,
-                AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE
-        );
-
-        message = buildRequestMessage(message);
-        return message;
+        final FormEncodedRequestBuilder body = new FormEncodedRequestBuilder()
+                .appendParameter(AuthenticationConstants.OAuth2.GRANT_TYPE, assertionType)
+                .appendParameter(com.microsoft.aad.adal.AuthenticationConstants.OAuth2.ASSERTION,
+                        Base64.encodeToString(assertion.getBytes(AuthenticationConstants.ENCODING_UTF8), Base64.NO_WRAP))
+                .appendParameter(AuthenticationConstants.OAuth2.CLIENT_ID, mRequest.getClientId())
+                .appendRawParameter(AuthenticationConstants.OAuth2.SCOPE,
+                        AuthenticationConstants.OAuth2Scopes.OPEN_ID_SCOPE)
+                .appendRawParameter(AuthenticationConstants.OAuth2.CLIENT_INFO,
+                        AuthenticationConstants.OAuth2.CLIENT_INFO_TRUE);
+
+        return appendRequestParameters(body);
     }
 
-    public String buildRequestMessage(String message) throws UnsupportedEncodingException {
-
+    private FormEncodedRequestBuilder appendRequestParameters(final FormEncodedRequestBuilder body) {
         if (!StringExtensions.isNullOrBlank(mRequest.getResource())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.AAD.RESOURCE,
-                    StringExtensions.urlFormEncode(mRequest.getResource()));
+            body.appendParameter(AuthenticationConstants.AAD.RESOURCE, mRequest.getResource());
         }
 
         // append scope to request if provided
         if (!StringExtensions.isNullOrBlank(mRequest.getScope())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, "scope",
-                    StringExtensions.urlFormEncode(mRequest.getScope()));
+            body.appendParameter("scope", mRequest.getScope());
         }
 
         // sending redirect uri for the refresh token request if it's provided
         if (!StringExtensions.isNullOrBlank(mRequest.getRedirectUri())
                 && !mRequest.getClientId().equalsIgnoreCase(BROKER_CLIENT_ID)) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.OAuth2.REDIRECT_URI,
-                    StringExtensions.urlFormEncode(mRequest.getRedirectUri()));
+            body.appendParameter(AuthenticationConstants.OAuth2.REDIRECT_URI, mRequest.getRedirectUri());
         }
 
+        return appendClaimsAndAppInfo(body);
+    }
+
+    private FormEncodedRequestBuilder appendClaimsAndAppInfo(final FormEncodedRequestBuilder body) {
         if (!StringExtensions.isNullOrBlank(mRequest.getClaimsChallenge()) ||
                 mRequest.getClientCapabilities() != null) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.OAuth2.CLAIMS,
-                    StringExtensions.urlFormEncode(AuthenticationContext.mergeClaimsWithClientCapabilities(
+            body.appendParameter(AuthenticationConstants.OAuth2.CLAIMS,
+                    AuthenticationContext.mergeClaimsWithClientCapabilities(
                             mRequest.getClaimsChallenge(),
-                            mRequest.getClientCapabilities())));
+                            mRequest.getClientCapabilities()));
         }
 
         if (!StringExtensions.isNullOrBlank(mRequest.getAppName())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.AAD.APP_PACKAGE_NAME,
-                    StringExtensions.urlFormEncode(mRequest.getAppName()));
+            body.appendParameter(AuthenticationConstants.AAD.APP_PACKAGE_NAME, mRequest.getAppName());
         }
 
         if (!StringExtensions.isNullOrBlank(mRequest.getAppVersion())) {
-            message = String.format(STRING_FORMAT_QUERY_PARAM, message, AuthenticationConstants.AAD.APP_VERSION,
-                    StringExtensions.urlFormEncode(mRequest.getAppVersion()));
+            body.appendParameter(AuthenticationConstants.AAD.APP_VERSION, mRequest.getAppVersion());
         }
-        return message;
+
+        return body;
     }
 
     public AuthenticationResult processUIResponseParams(Map<String, String> response) throws AuthenticationException {
@@ -476,7 +450,7 @@ class Oauth2 {
                 rawIdToken = response.get(AuthenticationConstants.OAuth2.ID_TOKEN);
                 if (!StringExtensions.isNullOrBlank(rawIdToken)) {
                     Logger.v(TAG, "Id token was returned, parsing id token.");
-                    final IdToken tokenParsed = new IdToken(rawIdToken);
+                    final IdToken tokenParsed = IdToken.parse(rawIdToken);
                     if (tokenParsed != null) {
                         tenantId = tokenParsed.getTenantId();
                         userinfo = new UserInfo(tokenParsed);
@@ -552,23 +526,13 @@ class Oauth2 {
 
     public AuthenticationResult refreshToken(String refreshToken) throws IOException,
             AuthenticationException {
-        final String requestMessage;
         if (mWebRequestHandler == null) {
             Logger.v(TAG, "Web request is not set correctly.");
             throw new IllegalArgumentException("webRequestHandler is null.");
         }
 
         // Token request message
-        try {
-            requestMessage = buildRefreshTokenRequestMessage(refreshToken);
-        } catch (UnsupportedEncodingException encoding) {
-            Logger.e(TAG,
-                    ADALError.ENCODING_IS_NOT_SUPPORTED.getDescription(),
-                    encoding.getMessage(),
-                    ADALError.ENCODING_IS_NOT_SUPPORTED,
-                    encoding);
-            return null;
-        }
+        final byte[] requestMessage = newRefreshTokenRequestBody(refreshToken).toByteArray();
 
         final Map<String, String> headers = getRequestHeaders();
 
@@ -583,14 +547,14 @@ class Oauth2 {
     public AuthenticationResult refreshTokenUsingAssertion(@NonNull final String samlAssertion,
                                                            @NonNull final String assertionType)
             throws IOException, AuthenticationException {
-        final String requestMessage;
+        final byte[] requestMessage;
         if (mWebRequestHandler == null) {
             Logger.v(TAG, "Web request is not set correctly.");
             throw new IllegalArgumentException("webRequestHandler is null.");
         }
 
         try {
-            requestMessage = buildAssertionMessage(samlAssertion, assertionType);
+            requestMessage = newAssertionRequestBody(samlAssertion, assertionType).toByteArray();
         } catch (UnsupportedEncodingException encoding) {
             Logger.e(TAG,
                     ADALError.ENCODING_IS_NOT_SUPPORTED.getDescription(),
@@ -678,22 +642,12 @@ class Oauth2 {
      */
     public AuthenticationResult getTokenForCode(String code) throws IOException, AuthenticationException {
         final String methodName = ":getTokenForCode";
-        final String requestMessage;
         if (mWebRequestHandler == null) {
             throw new IllegalArgumentException("webRequestHandler");
         }
 
         // Token request message
-        try {
-            requestMessage = buildTokenRequestMessage(code);
-        } catch (UnsupportedEncodingException encoding) {
-            Logger.e(TAG + methodName,
-                    ADALError.ENCODING_IS_NOT_SUPPORTED.getDescription(),
-                    encoding.getMessage(),
-                    ADALError.ENCODING_IS_NOT_SUPPORTED,
-                    encoding);
-            return null;
-        }
+        final byte[] requestMessage = newTokenRequestBody(code).toByteArray();
 
         final Map<String, String> headers = getRequestHeaders();
 
@@ -701,7 +655,7 @@ class Oauth2 {
         return postMessage(requestMessage, headers);
     }
 
-    private AuthenticationResult postMessage(String requestMessage, Map<String, String> headers)
+    private AuthenticationResult postMessage(final byte[] requestMessage, Map<String, String> headers)
             throws IOException, AuthenticationException {
         final String methodName = ":postMessage";
         AuthenticationResult result = null;
@@ -720,9 +674,7 @@ class Oauth2 {
             mWebRequestHandler.setClientVersion(AuthenticationContext.getVersionName());
             ClientMetrics.INSTANCE.beginClientMetricsRecord(authority, mRequest.getCorrelationId(),
                     headers);
-            HttpWebResponse response = mWebRequestHandler.sendPost(authority, headers,
-                    requestMessage.getBytes(AuthenticationConstants.ENCODING_UTF8),
-                    "application/x-www-form-urlencoded");
+            HttpWebResponse response = sendTokenRequest(authority, headers, requestMessage);
 
             httpEvent.setResponseCode(response.getStatusCode());
             httpEvent.setCorrelationId(mRequest.getCorrelationId().toString());
@@ -756,9 +708,7 @@ class Oauth2 {
                             headers.put(AuthenticationConstants.Broker.CHALLENGE_RESPONSE_HEADER,
                                     challengeResponse.getAuthorizationHeaderValue());
                             Logger.v(TAG + methodName, "Sending request with challenge response.");
-                            response = mWebRequestHandler.sendPost(authority, headers,
-                                    requestMessage.getBytes(AuthenticationConstants.ENCODING_UTF8),
-                                    "application/x-www-form-urlencoded");
+                            response = sendTokenRequest(authority, headers, requestMessage);
                             challengeHttpEvent.setResponseCode(response.getStatusCode());
                             challengeHttpEvent.setCorrelationId(mRequest.getCorrelationId().toString());
                             stopHttpEvent(challengeHttpEvent);
@@ -838,13 +788,27 @@ class Oauth2 {
         return result;
     }
 
-    private AuthenticationResult retry(String requestMessage, Map<String, String> headers) throws IOException, AuthenticationException {
+    private HttpWebResponse sendTokenRequest(final URL authority, final Map<String, String> headers,
+                                             final byte[] requestMessage)
+            throws IOException, AuthenticationException {
+        mRequest.getCancellationToken().throwIfCancelledOrExpired();
+        final TraceSpan span = Tracing.begin(TracePhase.NETWORK, mRequest.getCorrelationId());
+        try {
+            return mWebRequestHandler.sendPost(authority, headers, requestMessage,
+                    "application/x-www-form-urlencoded");
+        } finally {
+            Tracing.end(span);
+        }
+    }
+
+    private AuthenticationResult retry(final byte[] requestMessage, Map<String, String> headers) throws IOException, AuthenticationException {
         final String methodName = ":retry";
         //retry once if there is an observation of a network timeout by the client
         if (mRetryOnce) {
             mRetryOnce = false;
             try {
-                Thread.sleep(DELAY_TIME_PERIOD);
+                // Returns early if the request is cancelled or runs out of time
+                mRequest.getCancellationToken().sleep(DELAY_TIME_PERIOD);
             } catch (final InterruptedException exception) {
                 Logger.v(TAG + methodName, "The thread is interrupted while it is sleeping. ");
             }
@@ -990,22 +954,27 @@ class Oauth2 {
     private AuthenticationResult parseJsonResponse(final String responseBody)
             throws JSONException,
             AuthenticationException {
-        final Map<String, String> responseItems = new HashMap<>();
-        extractJsonObjects(responseItems, responseBody);
-        return processUIResponseParams(responseItems);
+        return processUIResponseParams(TokenResponseReader.read(responseBody));
     }
 
     private HttpEvent startHttpEvent() {
         final HttpEvent httpEvent = new HttpEvent(EventStrings.HTTP_EVENT);
         httpEvent.setRequestId(mRequest.getTelemetryRequestId());
         httpEvent.setMethod(EventStrings.HTTP_METHOD_POST);
-        Telemetry.getInstance().startEvent(mRequest.getTelemetryRequestId(), EventStrings.HTTP_EVENT);
+        Telemetry.getInstance().startEvent(mRequest.getTelemetryRequestId(), getHttpEventKey());
         return httpEvent;
     }
 
     private void stopHttpEvent(final HttpEvent httpEvent) {
-        Telemetry.getInstance().stopEvent(mRequest.getTelemetryRequestId(), httpEvent,
-                EventStrings.HTTP_EVENT);
+        Telemetry.getInstance().stopEvent(mRequest.getTelemetryRequestId(), httpEvent, getHttpEventKey());
+    }
+
+    /**
+     * The requests of {@link AuthenticationContext#acquireTokensSilent} share the telemetry request id and
+     * are refreshed in parallel, the resource keeps their HTTP events apart.
+     */
+    private String getHttpEventKey() {
+        return EventStrings.HTTP_EVENT + ":" + mRequest.getResource();
     }
 
     public void setTokenEndpoint(final String tokenEndpoint) {
@@ -0,0 +1,580 @@
+/// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.annotation.SuppressLint;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.microsoft.identity.common.adal.internal.util.StringExtensions;
+import com.microsoft.identity.common.java.adal.cache.DateTimeAdapter;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.microsoft.aad.adal.ADALError.ARGUMENT_EXCEPTION;
+
+/**
+ * Store/Retrieve TokenCacheItem from a SQLite database. The authority, client id, resource, user id,
+ * entry type and expiry of every item are stored in clear text in indexed columns, so queries do not
+ * have to read and decrypt the whole cache. Only the serialized item is encrypted.
+ * <p>
+ * An item is stored once, the cache keys it is set under point to it. Items set for several keys with
+ * {@link #setItem(Collection, TokenCacheItem)} are encrypted and stored a single time.
+ * <p>
+ * The first time the database is created, the items of {@link DefaultTokenCacheStore} are moved into it.
+ */
+public class SQLiteTokenCacheStore implements IAliasedTokenCacheStore, ITokenStoreQuery {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String TAG = "SQLiteTokenCacheStore";
+
+    static final String DATABASE_NAME = "com.microsoft.aad.adal.cache.db";
+
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_ITEMS = "items";
+
+    static final String TABLE_KEYS = "cache_keys";
+
+    private static final String COLUMN_ID = "id";
+
+    private static final String COLUMN_KEY = "cache_key";
+
+    private static final String COLUMN_ITEM_ID = "item_id";
+
+    private static final String COLUMN_AUTHORITY = "authority";
+
+    private static final String COLUMN_CLIENT_ID = "client_id";
+
+    private static final String COLUMN_RESOURCE = "resource";
+
+    private static final String COLUMN_USER_ID = "user_id";
+
+    private static final String COLUMN_ENTRY_TYPE = "entry_type";
+
+    private static final String COLUMN_EXPIRES_ON = "expires_on";
+
+    private static final String COLUMN_PAYLOAD = "payload";
+
+    private static final String SELECT_ITEM_IDS_FOR_KEY = "SELECT " + COLUMN_ITEM_ID + " FROM " + TABLE_KEYS
+            + " WHERE " + COLUMN_KEY + " = ?";
+
+    private static final String DELETE_UNREFERENCED_ITEM = "DELETE FROM " + TABLE_ITEMS + " WHERE "
+            + COLUMN_ID + " = ? AND NOT EXISTS (SELECT 1 FROM " + TABLE_KEYS + " WHERE " + COLUMN_ITEM_ID
+            + " = ?)";
+
+    private static final int TOKEN_VALIDITY_WINDOW_MILLIS = 10000;
+
+    private final Gson mGson = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new DateTimeAdapter())
+            .create();
+
+    private final transient DatabaseHelper mDatabaseHelper;
+
+    private final transient Context mContext;
+
+    @SuppressLint("StaticFieldLeak")
+    private static StorageHelper sHelper;
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * @param context {@link Context}
+     */
+    public SQLiteTokenCacheStore(final Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    SQLiteTokenCacheStore(final Context context, final String databaseName) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context is null");
+        }
+
+        final byte[] secretKeyData = AuthenticationSettings.INSTANCE.getSecretKeyData();
+        if (secretKeyData == null && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            throw new IllegalArgumentException("Secret key must be provided for API < 18. "
+                    + "Use AuthenticationSettings.INSTANCE.setSecretKey()");
+        }
+
+        mContext = context.getApplicationContext() == null ? context : context.getApplicationContext();
+        mDatabaseHelper = new DatabaseHelper(mContext, databaseName);
+    }
+
+    /**
+     * Method that allows to mock StorageHelper class and use custom encryption in UTs.
+     */
+    protected StorageHelper getStorageHelper() {
+        synchronized (LOCK) {
+            if (sHelper == null) {
+                Logger.v(TAG, "Started to initialize storage helper");
+                sHelper = new StorageHelper(mContext);
+                Logger.v(TAG, "Finished to initialize storage helper");
+            }
+        }
+        return sHelper;
+    }
+
+    @Override
+    public TokenCacheItem getItem(final String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("The key is null.");
+        }
+
+        final List<TokenCacheItem> items = query(COLUMN_ID + " IN (" + SELECT_ITEM_IDS_FOR_KEY + ")",
+                new String[]{key});
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    @Override
+    public boolean contains(final String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key");
+        }
+
+        return DatabaseUtils.queryNumEntries(mDatabaseHelper.getReadableDatabase(), TABLE_KEYS,
+                COLUMN_KEY + " = ?", new String[]{key}) > 0;
+    }
+
+    @Override
+    public void setItem(final String key, final TokenCacheItem item) {
+        if (key == null) {
+            throw new IllegalArgumentException("key");
+        }
+
+        setItem(Collections.singletonList(key), item);
+    }
+
+    @Override
+    public void setItem(final Collection<String> keys, final TokenCacheItem item) {
+        if (keys == null || keys.isEmpty()) {
+            throw new IllegalArgumentException("keys");
+        }
+
+        if (item == null) {
+            throw new IllegalArgumentException("item");
+        }
+
+        final ContentValues values = toContentValues(item);
+        if (values == null) {
+            Logger.e(TAG, "Encrypted output is null. ", "", ADALError.ENCRYPTION_FAILED);
+            return;
+        }
+
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            insertItem(database, keys, values);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Sets all the items in one transaction, either all of them are written or none.
+     *
+     * @param items The {@link TokenCacheItem}s by their {@link CacheKey}.
+     */
+    public void setItems(final Map<String, TokenCacheItem> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("items");
+        }
+
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (final Map.Entry<String, TokenCacheItem> entry : items.entrySet()) {
+                final ContentValues values = toContentValues(entry.getValue());
+                if (values == null) {
+                    throw new SQLException("Fail to encrypt the item, "
+                            + ADALError.ENCRYPTION_FAILED.getDescription());
+                }
+
+                insertItem(database, Collections.singletonList(entry.getKey()), values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Override
+    public void removeItem(final String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key");
+        }
+
+        removeItems(Collections.singletonList(key));
+    }
+
+    @Override
+    public void removeItems(final Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys");
+        }
+
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            removeKeys(database, keys);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            database.delete(TABLE_KEYS, null, null);
+            database.delete(TABLE_ITEMS, null, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * @return {@link Iterator} of the stored items, an item set for several keys is returned once.
+     */
+    @Override
+    public Iterator<TokenCacheItem> getAll() {
+        return query(null, null).iterator();
+    }
+
+    /**
+     * Unique users with tokens, read from the user id column without decrypting the items.
+     *
+     * @return unique users
+     */
+    @Override
+    public Set<String> getUniqueUsersWithTokenCache() {
+        final Set<String> users = new HashSet<>();
+        final Cursor cursor = mDatabaseHelper.getReadableDatabase().query(true, TABLE_ITEMS,
+                new String[]{COLUMN_USER_ID}, COLUMN_USER_ID + " IS NOT NULL", null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                users.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return users;
+    }
+
+    @Override
+    public List<TokenCacheItem> getTokensForResource(final String resource) {
+        return query(COLUMN_RESOURCE + " = ?", new String[]{resource});
+    }
+
+    @Override
+    public List<TokenCacheItem> getTokensForUser(final String userId) {
+        return query(COLUMN_USER_ID + " = ? COLLATE NOCASE", new String[]{userId});
+    }
+
+    /**
+     * Clear tokens for user in one transaction.
+     *
+     * @param userId UserId
+     */
+    @Override
+    public void clearTokensForUser(final String userId) {
+        final String[] selectionArgs = new String[]{userId};
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            database.delete(TABLE_KEYS, COLUMN_ITEM_ID + " IN (SELECT " + COLUMN_ID + " FROM " + TABLE_ITEMS
+                    + " WHERE " + COLUMN_USER_ID + " = ? COLLATE NOCASE)", selectionArgs);
+            database.delete(TABLE_ITEMS, COLUMN_USER_ID + " = ? COLLATE NOCASE", selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Override
+    public List<TokenCacheItem> getTokensAboutToExpire() {
+        final long validity = System.currentTimeMillis() + TOKEN_VALIDITY_WINDOW_MILLIS;
+        return query(COLUMN_EXPIRES_ON + " < ?", new String[]{String.valueOf(validity)});
+    }
+
+    /**
+     * Reads and decrypts the items matching the selection. Items that fail to decrypt are removed, like
+     * {@link DefaultTokenCacheStore} does.
+     */
+    private List<TokenCacheItem> query(final String selection, final String[] selectionArgs) {
+        final List<TokenCacheItem> items = new ArrayList<>();
+        final List<String> undecryptableItemIds = new ArrayList<>();
+        final Cursor cursor = mDatabaseHelper.getReadableDatabase().query(TABLE_ITEMS,
+                new String[]{COLUMN_ID, COLUMN_PAYLOAD}, selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                final String decrypted = decrypt(cursor.getString(1));
+                if (decrypted == null) {
+                    undecryptableItemIds.add(cursor.getString(0));
+                    continue;
+                }
+
+                try {
+                    items.add(mGson.fromJson(decrypted, TokenCacheItem.class));
+                } catch (final JsonSyntaxException exception) {
+                    Logger.e(TAG, "Fail to parse Json. ", exception.getMessage(), ARGUMENT_EXCEPTION, exception);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (!undecryptableItemIds.isEmpty()) {
+            removeItemsById(undecryptableItemIds);
+        }
+
+        return items;
+    }
+
+    private void removeItemsById(final List<String> itemIds) {
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            for (final String itemId : itemIds) {
+                database.delete(TABLE_KEYS, COLUMN_ITEM_ID + " = ?", new String[]{itemId});
+                database.delete(TABLE_ITEMS, COLUMN_ID + " = ?", new String[]{itemId});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts the item and points the keys to it. Must run in a transaction.
+     */
+    private static void insertItem(final SQLiteDatabase database, final Collection<String> keys,
+                                   final ContentValues itemValues) {
+        final Set<String> previousItemIds = getItemIds(database, keys);
+        final long itemId = database.insertOrThrow(TABLE_ITEMS, null, itemValues);
+        final ContentValues keyValues = new ContentValues();
+        for (final String key : keys) {
+            keyValues.put(COLUMN_KEY, key);
+            keyValues.put(COLUMN_ITEM_ID, itemId);
+            database.insertWithOnConflict(TABLE_KEYS, null, keyValues, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+
+        deleteUnreferencedItems(database, previousItemIds);
+    }
+
+    /**
+     * Removes the keys and the items only they pointed to. Must run in a transaction.
+     */
+    private static void removeKeys(final SQLiteDatabase database, final Collection<String> keys) {
+        final Set<String> itemIds = getItemIds(database, keys);
+        for (final String key : keys) {
+            database.delete(TABLE_KEYS, COLUMN_KEY + " = ?", new String[]{key});
+        }
+
+        deleteUnreferencedItems(database, itemIds);
+    }
+
+    private static Set<String> getItemIds(final SQLiteDatabase database, final Collection<String> keys) {
+        final Set<String> itemIds = new HashSet<>();
+        for (final String key : keys) {
+            final Cursor cursor = database.rawQuery(SELECT_ITEM_IDS_FOR_KEY, new String[]{key});
+            try {
+                while (cursor.moveToNext()) {
+                    itemIds.add(cursor.getString(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return itemIds;
+    }
+
+    private static void deleteUnreferencedItems(final SQLiteDatabase database, final Set<String> itemIds) {
+        for (final String itemId : itemIds) {
+            database.execSQL(DELETE_UNREFERENCED_ITEM, new Object[]{itemId, itemId});
+        }
+    }
+
+    private ContentValues toContentValues(final TokenCacheItem item) {
+        final String encrypted = encrypt(mGson.toJson(item));
+        if (encrypted == null) {
+            return null;
+        }
+
+        final ContentValues values = new ContentValues();
+        values.put(COLUMN_AUTHORITY, item.getAuthority());
+        values.put(COLUMN_CLIENT_ID, item.getClientId());
+        values.put(COLUMN_RESOURCE, item.getResource());
+        values.put(COLUMN_USER_ID, item.getUserInfo() == null ? null : item.getUserInfo().getUserId());
+        values.put(COLUMN_ENTRY_TYPE, item.getTokenEntryType().name());
+        values.put(COLUMN_EXPIRES_ON, item.getExpiresOn() == null ? null : item.getExpiresOn().getTime());
+        values.put(COLUMN_PAYLOAD, encrypted);
+        return values;
+    }
+
+    private String encrypt(final String value) {
+        try {
+            return getStorageHelper().encrypt(value);
+        } catch (GeneralSecurityException | IOException e) {
+            Logger.e(TAG, "Encryption failure. ", "", ADALError.ENCRYPTION_FAILED, e);
+        }
+
+        return null;
+    }
+
+    private String decrypt(final String value) {
+        if (StringExtensions.isNullOrBlank(value)) {
+            return null;
+        }
+
+        final TraceSpan span = Tracing.begin(TracePhase.DECRYPT);
+        try {
+            return getStorageHelper().decrypt(value);
+        } catch (GeneralSecurityException | IOException e) {
+            Logger.e(TAG, "Decryption failure. ", "", ADALError.DECRYPTION_FAILED, e);
+        } finally {
+            Tracing.end(span);
+        }
+
+        return null;
+    }
+
+    /**
+     * Moves the items of {@link DefaultTokenCacheStore} into the database in the transaction that
+     * creates it. Identical items stored under several keys are stored once. The SharedPreferences file
+     * is cleared once the database is open.
+     */
+    private void migrateFromDefaultTokenCacheStore(final SQLiteDatabase database) {
+        final Map<String, TokenCacheItem> items = new DefaultTokenCacheStore(mContext).getAllByKey();
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Logger.i(TAG, "Moving items from the SharedPreferences token cache.", "Items: " + items.size());
+        final Map<String, List<String>> keysByItem = new LinkedHashMap<>();
+        final Map<String, TokenCacheItem> itemsByJson = new LinkedHashMap<>();
+        for (final Map.Entry<String, TokenCacheItem> entry : items.entrySet()) {
+            final String json = mGson.toJson(entry.getValue());
+            if (!keysByItem.containsKey(json)) {
+                keysByItem.put(json, new ArrayList<String>());
+                itemsByJson.put(json, entry.getValue());
+            }
+            keysByItem.get(json).add(entry.getKey());
+        }
+
+        for (final Map.Entry<String, List<String>> entry : keysByItem.entrySet()) {
+            final ContentValues values = toContentValues(itemsByJson.get(entry.getKey()));
+            if (values == null) {
+                // The item is dropped, the token is acquired again when it is needed
+                Logger.w(TAG, "Fail to encrypt an item of the SharedPreferences token cache.", "", null);
+                continue;
+            }
+
+            insertItem(database, entry.getValue(), values);
+        }
+    }
+
+    private static void createTables(final SQLiteDatabase database) {
+        database.execSQL("CREATE TABLE " + TABLE_ITEMS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_AUTHORITY + " TEXT, "
+                + COLUMN_CLIENT_ID + " TEXT, "
+                + COLUMN_RESOURCE + " TEXT, "
+                + COLUMN_USER_ID + " TEXT COLLATE NOCASE, "
+                + COLUMN_ENTRY_TYPE + " TEXT, "
+                + COLUMN_EXPIRES_ON + " INTEGER, "
+                + COLUMN_PAYLOAD + " TEXT NOT NULL)");
+        database.execSQL("CREATE TABLE " + TABLE_KEYS + " ("
+                + COLUMN_KEY + " TEXT PRIMARY KEY NOT NULL, "
+                + COLUMN_ITEM_ID + " INTEGER NOT NULL)");
+        database.execSQL("CREATE INDEX " + TABLE_KEYS + "_" + COLUMN_ITEM_ID
+                + " ON " + TABLE_KEYS + " (" + COLUMN_ITEM_ID + ")");
+        database.execSQL("CREATE INDEX " + TABLE_ITEMS + "_" + COLUMN_RESOURCE
+                + " ON " + TABLE_ITEMS + " (" + COLUMN_RESOURCE + ")");
+        database.execSQL("CREATE INDEX " + TABLE_ITEMS + "_" + COLUMN_USER_ID
+                + " ON " + TABLE_ITEMS + " (" + COLUMN_USER_ID + ")");
+        database.execSQL("CREATE INDEX " + TABLE_ITEMS + "_" + COLUMN_EXPIRES_ON
+                + " ON " + TABLE_ITEMS + " (" + COLUMN_EXPIRES_ON + ")");
+        database.execSQL("CREATE INDEX " + TABLE_ITEMS + "_" + COLUMN_CLIENT_ID
+                + " ON " + TABLE_ITEMS + " (" + COLUMN_CLIENT_ID + ", " + COLUMN_AUTHORITY + ", "
+                + COLUMN_ENTRY_TYPE + ")");
+    }
+
+    private final class DatabaseHelper extends SQLiteOpenHelper {
+
+        private boolean mMigrated = false;
+
+        DatabaseHelper(final Context context, final String databaseName) {
+            super(context, databaseName, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(final SQLiteDatabase database) {
+            createTables(database);
+            migrateFromDefaultTokenCacheStore(database);
+            mMigrated = true;
+        }
+
+        @Override
+        public void onUpgrade(final SQLiteDatabase database, final int oldVersion, final int newVersion) {
+            // Only one version of the schema so far
+        }
+
+        @Override
+        public void onOpen(final SQLiteDatabase database) {
+            super.onOpen(database);
+            if (mMigrated) {
+                // The items are committed to the database, drop the old copies
+                mMigrated = false;
+                new DefaultTokenCacheStore(mContext).removeAll();
+            }
+        }
+    }
+}
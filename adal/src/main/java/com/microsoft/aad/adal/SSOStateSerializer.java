@@ -27,11 +27,14 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoft.identity.common.adal.internal.AuthenticationConstants.OAuth2;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -40,17 +43,23 @@ import java.util.List;
  * TokenCacheItem and a deserializer to return the TokenCacheItem.
  */
 final class SSOStateSerializer {
+    private static final String TAG = SSOStateSerializer.class.getSimpleName();
+
+    private static final String VERSION_ATTRIBUTE = "version";
+
+    private static final String TOKEN_CACHE_ITEMS_ATTRIBUTE = "tokenCacheItems";
+
     /**
      * The version number of {@link SSOStateSerializer }.
      */
-    @SerializedName("version")
+    @SerializedName(VERSION_ATTRIBUTE)
     private final int version = 1;
 
     /**
      * The {@link SSOStateSerializer } stores the FRT tokenCacheItem of the
      * given user.
      */
-    @SerializedName("tokenCacheItems")
+    @SerializedName(TOKEN_CACHE_ITEMS_ATTRIBUTE)
     private final List<TokenCacheItem> mTokenCacheItems = new ArrayList<>();
 
     /**
@@ -87,21 +96,6 @@ final class SSOStateSerializer {
         return version;
     }
 
-    /**
-     * Return the token cache item in this blob container object.
-     *
-     * @return tokenCacheItem
-     * @throws AuthenticationException
-     */
-    @SuppressWarnings("PMD")
-    private TokenCacheItem getTokenItem() throws AuthenticationException {
-        if (mTokenCacheItems == null || mTokenCacheItems.isEmpty()) {
-            throw new AuthenticationException(ADALError.TOKEN_CACHE_ITEM_NOT_FOUND,
-                    "There is no token cache item in the SSOStateContainer.");
-        }
-        return mTokenCacheItems.get(0);
-    }
-
     /**
      * serialize the tokenCacheItem with Adapter.
      *
@@ -114,25 +108,111 @@ final class SSOStateSerializer {
     /**
      * Deserialize the serializedBlob.
      * <p>
-     * this function covers the details of the deserialization process
+     * this function covers the details of the deserialization process. The blob is read in a
+     * single streaming pass: the version and the serialized token items are pulled out of the
+     * same {@link JsonReader}, and the token cache item is only built once the version has been
+     * verified, so the order of the attributes inside the blob does not matter.
      *
      * @param serializedBlob String blob to convert to TokenCacheItem
      * @return TokenCacheItem
      * @throws AuthenticationException
      */
     private TokenCacheItem internalDeserialize(final String serializedBlob) throws AuthenticationException {
+        final JsonReader reader = new JsonReader(new StringReader(serializedBlob));
+        // Gson.fromJson used to read the blob leniently, keep accepting the same inputs.
+        reader.setLenient(true);
         try {
-            final JSONObject jsonObject = new JSONObject(serializedBlob);
-            if (jsonObject.getInt("version") == this.getVersion()) {
-                return GSON.fromJson(serializedBlob, SSOStateSerializer.class).getTokenItem();
+            return readBlob(reader);
+        } catch (final JsonParseException | IOException | IllegalStateException | NumberFormatException exception) {
+            throw new DeserializationAuthenticationException(exception.getMessage());
+        } finally {
+            closeReader(reader);
+        }
+    }
+
+    private TokenCacheItem readBlob(final JsonReader reader) throws IOException, AuthenticationException {
+        Integer blobVersion = null;
+        List<SerializedTokenItem> serializedItems = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (VERSION_ATTRIBUTE.equals(name)) {
+                blobVersion = reader.nextInt();
+            } else if (TOKEN_CACHE_ITEMS_ATTRIBUTE.equals(name)) {
+                serializedItems = readTokenItems(reader);
             } else {
-                throw new DeserializationAuthenticationException(
-                        "Fail to deserialize because the blob version is incompatible. The version of the serializedBlob is "
-                                + jsonObject.getInt("version") + ". And the target class version is "
-                                + this.getVersion());
+                reader.skipValue();
             }
-        } catch (final JsonParseException | JSONException exception) {
-            throw new DeserializationAuthenticationException(exception.getMessage());
+        }
+        reader.endObject();
+
+        if (blobVersion == null) {
+            throw new DeserializationAuthenticationException("No value for " + VERSION_ATTRIBUTE);
+        }
+
+        if (blobVersion != this.getVersion()) {
+            throw new DeserializationAuthenticationException(
+                    "Fail to deserialize because the blob version is incompatible. The version of the serializedBlob is "
+                            + blobVersion + ". And the target class version is "
+                            + this.getVersion());
+        }
+
+        if (serializedItems == null || serializedItems.isEmpty()) {
+            throw new AuthenticationException(ADALError.TOKEN_CACHE_ITEM_NOT_FOUND,
+                    "There is no token cache item in the SSOStateContainer.");
+        }
+
+        for (final SerializedTokenItem serializedItem : serializedItems) {
+            serializedItem.throwIfAttributeMissing();
+        }
+
+        return serializedItems.get(0).toTokenCacheItem();
+    }
+
+    private static List<SerializedTokenItem> readTokenItems(final JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        final List<SerializedTokenItem> serializedItems = new ArrayList<>(1);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            serializedItems.add(readTokenItem(reader));
+        }
+        reader.endArray();
+
+        return serializedItems;
+    }
+
+    private static SerializedTokenItem readTokenItem(final JsonReader reader) throws IOException {
+        final SerializedTokenItem serializedItem = new SerializedTokenItem();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (OAuth2.AUTHORITY.equals(name)) {
+                serializedItem.mAuthority = reader.nextString();
+            } else if (OAuth2.ID_TOKEN.equals(name)) {
+                serializedItem.mRawIdToken = reader.nextString();
+            } else if (OAuth2.ADAL_CLIENT_FAMILY_ID.equals(name)) {
+                serializedItem.mFamilyClientId = reader.nextString();
+            } else if (OAuth2.REFRESH_TOKEN.equals(name)) {
+                serializedItem.mRefreshToken = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return serializedItem;
+    }
+
+    private static void closeReader(final JsonReader reader) {
+        try {
+            reader.close();
+        } catch (final IOException e) {
+            Logger.v(TAG, "Failed to close the json reader. " + e.getMessage());
         }
     }
 
@@ -164,4 +244,51 @@ final class SSOStateSerializer {
         SSOStateSerializer ssoStateSerializer = new SSOStateSerializer();
         return ssoStateSerializer.internalDeserialize(serializedBlob);
     }
+
+    /**
+     * Deserialize a batch of serialized blobs, e.g. when importing the SSO state of many users at
+     * once. Each blob is read with the same single pass streaming reader as
+     * {@link #deserialize(String)}, and the first blob that fails to deserialize fails the batch.
+     *
+     * @param serializedBlobs string blobs to deserialize into TokenCacheItems
+     * @return The TokenCacheItems in the same order as the given blobs
+     * @throws AuthenticationException
+     */
+    static List<TokenCacheItem> deserializeAll(final Collection<String> serializedBlobs) throws AuthenticationException {
+        final SSOStateSerializer ssoStateSerializer = new SSOStateSerializer();
+        final List<TokenCacheItem> tokenCacheItems = new ArrayList<>(serializedBlobs.size());
+        for (final String serializedBlob : serializedBlobs) {
+            tokenCacheItems.add(ssoStateSerializer.internalDeserialize(serializedBlob));
+        }
+
+        return tokenCacheItems;
+    }
+
+    /**
+     * Holds the raw attributes of a serialized token item while the rest of the blob is read.
+     */
+    private static final class SerializedTokenItem {
+        private String mAuthority;
+        private String mRawIdToken;
+        private String mFamilyClientId;
+        private String mRefreshToken;
+
+        void throwIfAttributeMissing() {
+            throwIfAttributeMissing(OAuth2.AUTHORITY, mAuthority);
+            throwIfAttributeMissing(OAuth2.ID_TOKEN, mRawIdToken);
+            throwIfAttributeMissing(OAuth2.ADAL_CLIENT_FAMILY_ID, mFamilyClientId);
+            throwIfAttributeMissing(OAuth2.REFRESH_TOKEN, mRefreshToken);
+        }
+
+        TokenCacheItem toTokenCacheItem() {
+            return TokenCacheItemSerializationAdapater.createTokenCacheItem(mAuthority, mRawIdToken,
+                    mFamilyClientId, mRefreshToken);
+        }
+
+        private static void throwIfAttributeMissing(final String name, final String value) {
+            if (value == null) {
+                throw new JsonParseException(TAG + "Attribute " + name + " is missing for deserialization.");
+            }
+        }
+    }
 }
@@ -23,6 +23,7 @@
 package com.microsoft.aad.adal;
 
 import android.content.Context;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 
@@ -50,6 +51,7 @@ import com.microsoft.identity.common.java.providers.microsoft.azureactivedirecto
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -64,6 +66,32 @@ import static com.microsoft.identity.common.java.cache.SharedPreferencesAccountC
 class TokenCacheAccessor {
     private static final String TAG = TokenCacheAccessor.class.getSimpleName();
 
+    /**
+     * Max number of strategies kept for writing to the common cache. Apps use a handful of authorities, the
+     * least recently used strategy is dropped when an app goes through more.
+     */
+    private static final int COMMON_CACHE_STRATEGIES_SIZE = 8;
+
+    /**
+     * Strategies used to write to the common cache, keyed by authority and whether authority host validation is
+     * enabled. A new accessor is created for each request, so they are shared across instances. Saving only
+     * reads the configuration of the strategy to build the cache records and keeps no state in it, and saves
+     * are made under {@link #CACHE_WRITE_LOCK}, so a strategy is never used by two saves at the same time.
+     */
+    private static final LruCache<String, AzureActiveDirectoryOAuth2Strategy> COMMON_CACHE_STRATEGIES =
+            new LruCache<>(COMMON_CACHE_STRATEGIES_SIZE);
+
+    /**
+     * Held while tokens are written to or removed from the cache, so {@link TokenCacheMaintenance} can check
+     * an entry and change it without a token written in between being lost.
+     */
+    static final Object CACHE_WRITE_LOCK = new Object();
+
+    /**
+     * Number of writes and removals made under {@link #CACHE_WRITE_LOCK}, guarded by it.
+     */
+    private static long sCacheWriteCount = 0;
+
     private final Context mContext;
     private final ITokenCacheStore mTokenCacheStore;
     private String mAuthority; // Remove final to update the authority when preferred cache location is not the same as passed in authority
@@ -173,70 +201,85 @@ class TokenCacheAccessor {
      * @return {@link TokenCacheItem} for regular token cache entry.
      */
     TokenCacheItem getRegularRefreshTokenCacheItem(final String resource, final String clientId, final String user) throws MalformedURLException {
-        final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_RT);
+        final TraceSpan span = Tracing.begin(TracePhase.CACHE_LOOKUP);
+        try {
+            final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_RT);
 
-        // try preferred cache location first
-        final String cacheKey = CacheKey.createCacheKeyForRTEntry(getAuthorityUrlWithPreferredCache(), resource, clientId, user);
+            // try preferred cache location first
+            final String cacheKey = CacheKey.createCacheKeyForRTEntry(getAuthorityUrlWithPreferredCache(), resource, clientId, user);
 
-        TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
-        // try all the alias
-        if (item == null) {
-            item = performAdditionalCacheLookup(resource, clientId, null, user, REGULAR_TOKEN_ENTRY);
-        }
+            TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
+            // try all the alias
+            if (item == null) {
+                item = performAdditionalCacheLookup(resource, clientId, null, user, REGULAR_TOKEN_ENTRY);
+            }
 
-        if (item != null) {
-            cacheEvent.setTokenTypeRT(true);
-            cacheEvent.setSpeRing(item.getSpeRing());
-        }
-        Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
+            if (item != null) {
+                cacheEvent.setTokenTypeRT(true);
+                cacheEvent.setSpeRing(item.getSpeRing());
+            }
+            Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
 
-        return item;
+            return item;
+        } finally {
+            Tracing.end(span);
+        }
     }
 
     /**
      * @return {@link TokenCacheItem} for MRRT token cache entry.
      */
     TokenCacheItem getMRRTItem(final String clientId, final String user) throws MalformedURLException {
-        final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_MRRT);
-        final String cacheKey = CacheKey.createCacheKeyForMRRT(getAuthorityUrlWithPreferredCache(), clientId, user);
+        final TraceSpan span = Tracing.begin(TracePhase.CACHE_LOOKUP);
+        try {
+            final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_MRRT);
+            final String cacheKey = CacheKey.createCacheKeyForMRRT(getAuthorityUrlWithPreferredCache(), clientId, user);
 
-        TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
-        if (item == null) {
-            item = performAdditionalCacheLookup(null, clientId, null, user, MRRT_TOKEN_ENTRY);
-        }
+            TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
+            if (item == null) {
+                item = performAdditionalCacheLookup(null, clientId, null, user, MRRT_TOKEN_ENTRY);
+            }
 
-        if (item != null) {
-            cacheEvent.setTokenTypeMRRT(true);
-            cacheEvent.setTokenTypeFRT(item.isFamilyToken());
-        }
+            if (item != null) {
+                cacheEvent.setTokenTypeMRRT(true);
+                cacheEvent.setTokenTypeFRT(item.isFamilyToken());
+            }
 
-        Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
+            Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
 
-        return item;
+            return item;
+        } finally {
+            Tracing.end(span);
+        }
     }
 
     /**
      * @return {@link TokenCacheItem} for FRT token cache entry.
      */
     TokenCacheItem getFRTItem(final String familyClientId, final String user) throws MalformedURLException {
-        final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_FRT);
-        if (StringExtensions.isNullOrBlank(user)) {
-            Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
-            return null;
-        }
+        final TraceSpan span = Tracing.begin(TracePhase.CACHE_LOOKUP);
+        try {
+            final CacheEvent cacheEvent = startCacheTelemetryRequest(EventStrings.TOKEN_TYPE_FRT);
+            if (StringExtensions.isNullOrBlank(user)) {
+                Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
+                return null;
+            }
 
-        final String cacheKey = CacheKey.createCacheKeyForFRT(getAuthorityUrlWithPreferredCache(), familyClientId, user);
+            final String cacheKey = CacheKey.createCacheKeyForFRT(getAuthorityUrlWithPreferredCache(), familyClientId, user);
 
-        TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
-        if (item == null) {
-            item = performAdditionalCacheLookup(null, null, familyClientId, user, FRT_TOKEN_ENTRY);
-        }
-        if (item != null) {
-            cacheEvent.setTokenTypeFRT(true);
-        }
-        Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
+            TokenCacheItem item = mTokenCacheStore.getItem(cacheKey);
+            if (item == null) {
+                item = performAdditionalCacheLookup(null, null, familyClientId, user, FRT_TOKEN_ENTRY);
+            }
+            if (item != null) {
+                cacheEvent.setTokenTypeFRT(true);
+            }
+            Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent, EventStrings.TOKEN_CACHE_LOOKUP);
 
-        return item;
+            return item;
+        } finally {
+            Tracing.end(span);
+        }
     }
 
     TokenCacheItem getStaleToken(AuthenticationRequest authRequest) throws AuthenticationException {
@@ -328,6 +371,12 @@ class TokenCacheAccessor {
             return;
         }
 
+        final IAliasedTokenCacheStore aliasedStore = getAliasedTokenCacheStore();
+        if (aliasedStore != null) {
+            setItemToAliasedCache(aliasedStore, request.getResource(), request.getClientId(), result);
+            return;
+        }
+
         if (result.getUserInfo() != null) {
             // update cache entry with displayableId
             if (!StringExtensions.isNullOrBlank(result.getUserInfo().getDisplayableId())) {
@@ -346,19 +395,11 @@ class TokenCacheAccessor {
 
     void updateTokenCacheUsingCommonCache(final AuthenticationRequest request, final AuthenticationResult result)
             throws MalformedURLException, AuthenticationException, ClientException {
-        AzureActiveDirectory ad = new AzureActiveDirectory();
-        AzureActiveDirectoryTokenResponse tokenResponse = CoreAdapter.asAadTokenResponse(result);
-        AzureActiveDirectoryOAuth2Configuration config = new AzureActiveDirectoryOAuth2Configuration();
-        config.setAuthorityHostValidationEnabled(this.isValidateAuthorityHost());
+        final AzureActiveDirectoryTokenResponse tokenResponse = CoreAdapter.asAadTokenResponse(result);
+        final URL authorityUrl = null == mAuthority ? null : new URL(mAuthority);
 
-        if (null != mAuthority) {
-            config.setAuthorityUrl(new URL(mAuthority));
-        }
-
-        AzureActiveDirectoryOAuth2Strategy strategy = null;
         try {
-            strategy = ad.createOAuth2Strategy(config,
-                    AndroidPlatformComponentsFactory.createFromContext(mContext));
+            final AzureActiveDirectoryOAuth2Strategy strategy = getCommonCacheStrategy(authorityUrl);
 
             AzureActiveDirectoryAuthorizationRequest.Builder aadAuthRequestBuilder = new AzureActiveDirectoryAuthorizationRequest.Builder();
             aadAuthRequestBuilder
@@ -369,16 +410,39 @@ class TokenCacheAccessor {
                     .setLoginHint(request.getLoginHint())
                     .setCorrelationId(request.getCorrelationId());
 
-            if (null != mAuthority) {
-                aadAuthRequestBuilder.setAuthority(new URL(mAuthority));
+            if (null != authorityUrl) {
+                aadAuthRequestBuilder.setAuthority(authorityUrl);
             }
 
-            mCommonCache.save(strategy, aadAuthRequestBuilder.build(), tokenResponse);
+            synchronized (CACHE_WRITE_LOCK) {
+                mCommonCache.save(strategy, aadAuthRequestBuilder.build(), tokenResponse);
+                onCacheWritten();
+            }
         } catch (final ClientException e) {
             throw ADALError.fromCommon(e);
         }
     }
 
+    private AzureActiveDirectoryOAuth2Strategy getCommonCacheStrategy(final URL authorityUrl) throws ClientException {
+        final boolean validateAuthorityHost = isValidateAuthorityHost();
+        final String strategyKey = (null == authorityUrl ? "" : authorityUrl.toString()) + "|" + validateAuthorityHost;
+        final AzureActiveDirectoryOAuth2Strategy cachedStrategy = COMMON_CACHE_STRATEGIES.get(strategyKey);
+        if (cachedStrategy != null) {
+            return cachedStrategy;
+        }
+
+        final AzureActiveDirectoryOAuth2Configuration config = new AzureActiveDirectoryOAuth2Configuration();
+        config.setAuthorityHostValidationEnabled(validateAuthorityHost);
+        if (null != authorityUrl) {
+            config.setAuthorityUrl(authorityUrl);
+        }
+
+        final AzureActiveDirectoryOAuth2Strategy strategy = new AzureActiveDirectory().createOAuth2Strategy(config,
+                AndroidPlatformComponentsFactory.createFromContext(mContext));
+        // Requests racing for the same key each create one, any of them can be used
+        COMMON_CACHE_STRATEGIES.put(strategyKey, strategy);
+        return strategy;
+    }
 
     /**
      * Remove token from cache.
@@ -426,8 +490,16 @@ class TokenCacheAccessor {
                 throw new AuthenticationException(ADALError.INVALID_TOKEN_CACHE_ITEM);
         }
 
-        for (final String key : keys) {
-            mTokenCacheStore.removeItem(key);
+        final IAliasedTokenCacheStore aliasedStore = getAliasedTokenCacheStore();
+        synchronized (CACHE_WRITE_LOCK) {
+            if (aliasedStore != null) {
+                aliasedStore.removeItems(keys);
+            } else {
+                for (final String key : keys) {
+                    mTokenCacheStore.removeItem(key);
+                }
+            }
+            onCacheWritten();
         }
         Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent,
                 EventStrings.TOKEN_CACHE_DELETE);
@@ -477,14 +549,14 @@ class TokenCacheAccessor {
         Telemetry.getInstance().startEvent(mTelemetryRequestId, EventStrings.TOKEN_CACHE_WRITE);
 
         // new tokens will only be saved into preferred cache location
-        mTokenCacheStore.setItem(CacheKey.createCacheKeyForRTEntry(getAuthorityUrlWithPreferredCache(), resource, clientId, userId),
+        setItem(CacheKey.createCacheKeyForRTEntry(getAuthorityUrlWithPreferredCache(), resource, clientId, userId),
                 TokenCacheItem.createRegularTokenCacheItem(getAuthorityUrlWithPreferredCache(), resource, clientId, result));
         cacheEvent.setTokenTypeRT(true);
 
         // Store separate entries for MRRT.  
         if (result.getIsMultiResourceRefreshToken()) {
             Logger.v(TAG + methodName, "Save Multi Resource Refresh token to cache.");
-            mTokenCacheStore.setItem(CacheKey.createCacheKeyForMRRT(getAuthorityUrlWithPreferredCache(), clientId, userId),
+            setItem(CacheKey.createCacheKeyForMRRT(getAuthorityUrlWithPreferredCache(), clientId, userId),
                     TokenCacheItem.createMRRTTokenCacheItem(getAuthorityUrlWithPreferredCache(), clientId, result));
             cacheEvent.setTokenTypeMRRT(true);
         }
@@ -493,13 +565,111 @@ class TokenCacheAccessor {
         if (!StringExtensions.isNullOrBlank(result.getFamilyClientId()) && !StringExtensions.isNullOrBlank(userId)) {
             Logger.v(TAG + methodName, "Save Family Refresh token into cache.");
             final TokenCacheItem familyTokenCacheItem = TokenCacheItem.createFRRTTokenCacheItem(getAuthorityUrlWithPreferredCache(), result);
-            mTokenCacheStore.setItem(CacheKey.createCacheKeyForFRT(getAuthorityUrlWithPreferredCache(), result.getFamilyClientId(), userId), familyTokenCacheItem);
+            setItem(CacheKey.createCacheKeyForFRT(getAuthorityUrlWithPreferredCache(), result.getFamilyClientId(), userId), familyTokenCacheItem);
             cacheEvent.setTokenTypeFRT(true);
         }
         Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent,
                 EventStrings.TOKEN_CACHE_WRITE);
     }
 
+    /**
+     * Same entries as {@link #setItemToCacheForUser} for the displayable id, the unique id and no user,
+     * with each item written once under all its keys.
+     */
+    private void setItemToAliasedCache(final IAliasedTokenCacheStore aliasedStore, final String resource,
+                                       final String clientId, final AuthenticationResult result) throws MalformedURLException {
+        final String methodName = ":setItemToAliasedCache";
+        logReturnedToken(result);
+        Logger.v(TAG + methodName, "Save regular token into cache.");
+
+        final CacheEvent cacheEvent = new CacheEvent(EventStrings.TOKEN_CACHE_WRITE);
+        cacheEvent.setRequestId(mTelemetryRequestId);
+        Telemetry.getInstance().startEvent(mTelemetryRequestId, EventStrings.TOKEN_CACHE_WRITE);
+
+        final List<String> userIds = new ArrayList<>();
+        if (result.getUserInfo() != null) {
+            if (!StringExtensions.isNullOrBlank(result.getUserInfo().getDisplayableId())) {
+                userIds.add(result.getUserInfo().getDisplayableId());
+            }
+
+            if (!StringExtensions.isNullOrBlank(result.getUserInfo().getUserId())) {
+                userIds.add(result.getUserInfo().getUserId());
+            }
+        }
+        userIds.add(null);
+
+        // new tokens will only be saved into preferred cache location
+        final String authority = getAuthorityUrlWithPreferredCache();
+        final List<String> rtKeys = new ArrayList<>();
+        final List<String> mrrtKeys = new ArrayList<>();
+        final List<String> frtKeys = new ArrayList<>();
+        for (final String userId : userIds) {
+            rtKeys.add(CacheKey.createCacheKeyForRTEntry(authority, resource, clientId, userId));
+            mrrtKeys.add(CacheKey.createCacheKeyForMRRT(authority, clientId, userId));
+            if (!StringExtensions.isNullOrBlank(userId)) {
+                frtKeys.add(CacheKey.createCacheKeyForFRT(authority, result.getFamilyClientId(), userId));
+            }
+        }
+
+        setItem(aliasedStore, rtKeys, TokenCacheItem.createRegularTokenCacheItem(authority, resource, clientId, result));
+        cacheEvent.setTokenTypeRT(true);
+
+        if (result.getIsMultiResourceRefreshToken()) {
+            Logger.v(TAG + methodName, "Save Multi Resource Refresh token to cache.");
+            setItem(aliasedStore, mrrtKeys, TokenCacheItem.createMRRTTokenCacheItem(authority, clientId, result));
+            cacheEvent.setTokenTypeMRRT(true);
+        }
+
+        if (!StringExtensions.isNullOrBlank(result.getFamilyClientId()) && !frtKeys.isEmpty()) {
+            Logger.v(TAG + methodName, "Save Family Refresh token into cache.");
+            setItem(aliasedStore, frtKeys, TokenCacheItem.createFRRTTokenCacheItem(authority, result));
+            cacheEvent.setTokenTypeFRT(true);
+        }
+        Telemetry.getInstance().stopEvent(mTelemetryRequestId, cacheEvent,
+                EventStrings.TOKEN_CACHE_WRITE);
+    }
+
+    private void setItem(final String key, final TokenCacheItem item) {
+        synchronized (CACHE_WRITE_LOCK) {
+            mTokenCacheStore.setItem(key, item);
+            onCacheWritten();
+        }
+    }
+
+    private static void setItem(final IAliasedTokenCacheStore aliasedStore, final Collection<String> keys,
+                                final TokenCacheItem item) {
+        synchronized (CACHE_WRITE_LOCK) {
+            aliasedStore.setItem(keys, item);
+            onCacheWritten();
+        }
+    }
+
+    /**
+     * Counts a write or removal, called with {@link #CACHE_WRITE_LOCK} held.
+     */
+    static void onCacheWritten() {
+        sCacheWriteCount++;
+    }
+
+    /**
+     * @return the number of writes and removals made under {@link #CACHE_WRITE_LOCK} so far, so a
+     * {@link TokenCacheMaintenance} which read entries without the lock can tell whether they may have changed.
+     */
+    static long getCacheWriteCount() {
+        synchronized (CACHE_WRITE_LOCK) {
+            return sCacheWriteCount;
+        }
+    }
+
+    /**
+     * @return The store as an {@link IAliasedTokenCacheStore}, null if it does not implement it.
+     */
+    private IAliasedTokenCacheStore getAliasedTokenCacheStore() {
+        final ITokenCacheStore store = mTokenCacheStore instanceof DelegatingCache
+                ? ((DelegatingCache) mTokenCacheStore).getDelegateCache() : mTokenCacheStore;
+        return store instanceof IAliasedTokenCacheStore ? (IAliasedTokenCacheStore) store : null;
+    }
+
     /**
      * @return List of keys to remove when using regular RT to send refresh token request.
      */
@@ -719,32 +889,18 @@ class TokenCacheAccessor {
 
     private TokenCacheItem getTokenCacheItemFromAliasedHost(final String resource, final String clientId, final String familyClientId,
                                                             final String user, final TokenEntryType type) throws MalformedURLException {
-
-        final InstanceDiscoveryMetadata instanceDiscoveryMetadata = getInstanceDiscoveryMetadata();
-        if (instanceDiscoveryMetadata == null) {
-            return null;
-        }
-
-        TokenCacheItem tokenCacheItemForAliasedHost = null;
-        final List<String> aliasHosts = instanceDiscoveryMetadata.getAliases();
-        for (final String aliasHost : aliasHosts) {
-            final String authority = constructAuthorityUrl(aliasHost);
-            // Already looked cache with preferred cache location and passed in authority, needs to look through other
-            // aliased host.
-            if (authority.equalsIgnoreCase(mAuthority) || authority.equalsIgnoreCase(getAuthorityUrlWithPreferredCache())) {
-                continue;
-            }
-
+        // Already looked cache with preferred cache location and passed in authority, needs to look through other
+        // aliased host.
+        for (final String authority : AliasAuthorities.forAuthority(mAuthority).getOtherAliasAuthorities()) {
             final String cacheKeyForAliasedHost = getCacheKey(authority, resource, clientId, user, familyClientId, type);
 
             final TokenCacheItem item = mTokenCacheStore.getItem(cacheKeyForAliasedHost);
             if (item != null) {
-                tokenCacheItemForAliasedHost = item;
-                break;
+                return item;
             }
         }
 
-        return tokenCacheItemForAliasedHost;
+        return null;
     }
 
     private String getCacheKey(final String authority, final String resource, final String clientId, final String user,
@@ -768,28 +924,7 @@ class TokenCacheAccessor {
     }
 
     String getAuthorityUrlWithPreferredCache() throws MalformedURLException {
-        final InstanceDiscoveryMetadata instanceDiscoveryMetadata = getInstanceDiscoveryMetadata();
-        if (instanceDiscoveryMetadata == null || !instanceDiscoveryMetadata.isValidated()) {
-            return mAuthority;
-        }
-
-        final String preferredLocation = instanceDiscoveryMetadata.getPreferredCache();
-
         // mAuthority can be updated to preferred location.
-        return constructAuthorityUrl(preferredLocation);
-    }
-
-    private String constructAuthorityUrl(final String host) throws MalformedURLException {
-        final URL passedInAuthority = new URL(mAuthority);
-        if (passedInAuthority.getHost().equalsIgnoreCase(host)) {
-            return mAuthority;
-        }
-
-        return Discovery.constructAuthorityUrl(passedInAuthority, host).toString();
-    }
-
-    private InstanceDiscoveryMetadata getInstanceDiscoveryMetadata() throws MalformedURLException {
-        final URL passedInAuthority = new URL(mAuthority);
-        return AuthorityValidationMetadataCache.getCachedInstanceDiscoveryMetadata(passedInAuthority);
+        return AliasAuthorities.forAuthority(mAuthority).getPreferredCacheAuthority();
     }
 }
@@ -0,0 +1,228 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary format of {@link FileTokenCacheStore}. Fields are written one by one, no reflection is involved.
+ * <pre>
+ * int     magic
+ * int     format version
+ * int     entry count
+ * entries int record length, then the record: cache key and the {@link TokenCacheItem} fields
+ * </pre>
+ * Strings are written as their UTF-8 length, -1 for null, and bytes. Each record is length-prefixed, so
+ * a later version can append fields to the item and still be read by this one.
+ */
+final class TokenCacheFileFormat {
+
+    /**
+     * "ADAL", Java serialization streams start with 0xACED instead.
+     */
+    static final int MAGIC = 0x4144414C;
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private TokenCacheFileFormat() {
+        // Utility class
+    }
+
+    /**
+     * Thrown when the file is not in this format or is truncated.
+     */
+    static final class FormatException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        FormatException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Writes the items, magic and version included.
+     */
+    static void write(final DataOutputStream output, final Map<String, TokenCacheItem> items) throws IOException {
+        // The map may change while it is written, count the records written
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        final DataOutputStream recordsOutput = new DataOutputStream(records);
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        final DataOutputStream recordOutput = new DataOutputStream(record);
+        int count = 0;
+        for (final Map.Entry<String, TokenCacheItem> entry : items.entrySet()) {
+            record.reset();
+            writeString(recordOutput, entry.getKey());
+            writeItem(recordOutput, entry.getValue());
+            recordOutput.flush();
+            recordsOutput.writeInt(record.size());
+            record.writeTo(recordsOutput);
+            count++;
+        }
+        recordsOutput.flush();
+
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(count);
+        records.writeTo(output);
+    }
+
+    /**
+     * Reads the items after the magic, which the caller has read to tell the format apart.
+     *
+     * @param input      The stream positioned after the magic.
+     * @param dataLength Upper bound of the length of the data, records longer than that are not valid.
+     * @throws FormatException if the version is unknown or the data is not valid.
+     */
+    static Map<String, TokenCacheItem> readAfterMagic(final DataInputStream input, final long dataLength)
+            throws IOException {
+        final int version = input.readInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new FormatException("Unsupported token cache file version " + version);
+        }
+
+        final int count = input.readInt();
+        if (count < 0) {
+            throw new FormatException("Invalid entry count " + count);
+        }
+
+        final Map<String, TokenCacheItem> items = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final int recordLength = input.readInt();
+            if (recordLength < 0 || recordLength > dataLength) {
+                throw new FormatException("Invalid record length " + recordLength);
+            }
+
+            final byte[] record = new byte[recordLength];
+            input.readFully(record);
+            final DataInputStream recordInput = new DataInputStream(new ByteArrayInputStream(record));
+            final String key = readString(recordInput);
+            if (key == null) {
+                throw new FormatException("Record without key");
+            }
+
+            items.put(key, readItem(recordInput));
+        }
+
+        return items;
+    }
+
+    private static void writeItem(final DataOutputStream output, final TokenCacheItem item) throws IOException {
+        writeString(output, item.getAuthority());
+        writeString(output, item.getResource());
+        writeString(output, item.getClientId());
+        writeString(output, item.getAccessToken());
+        writeString(output, item.getRefreshToken());
+        writeString(output, item.getRawIdToken());
+        writeDate(output, item.getExpiresOn());
+        output.writeBoolean(item.getIsMultiResourceRefreshToken());
+        writeString(output, item.getTenantId());
+        writeString(output, item.getFamilyClientId());
+        writeDate(output, item.getTokenUpdateTime());
+        writeDate(output, item.getExtendedExpiresOn());
+        writeString(output, item.getSpeRing());
+
+        final UserInfo userInfo = item.getUserInfo();
+        output.writeBoolean(userInfo != null);
+        if (userInfo != null) {
+            writeString(output, userInfo.getUserId());
+            writeString(output, userInfo.getGivenName());
+            writeString(output, userInfo.getFamilyName());
+            writeString(output, userInfo.getIdentityProvider());
+            writeString(output, userInfo.getDisplayableId());
+        }
+    }
+
+    private static TokenCacheItem readItem(final DataInputStream input) throws IOException {
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(readString(input));
+        item.setResource(readString(input));
+        item.setClientId(readString(input));
+        item.setAccessToken(readString(input));
+        item.setRefreshToken(readString(input));
+        item.setRawIdToken(readString(input));
+        item.setExpiresOn(readDate(input));
+        item.setIsMultiResourceRefreshToken(input.readBoolean());
+        item.setTenantId(readString(input));
+        item.setFamilyClientId(readString(input));
+        item.setTokenUpdateTime(readDate(input));
+        item.setExtendedExpiresOn(readDate(input));
+        item.setSpeRing(readString(input));
+
+        if (input.readBoolean()) {
+            item.setUserInfo(new UserInfo(readString(input), readString(input), readString(input),
+                    readString(input), readString(input)));
+        }
+
+        // Fields appended by later versions are skipped with the rest of the record
+        return item;
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(UTF8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length == -1) {
+            return null;
+        }
+
+        if (length < 0 || length > input.available()) {
+            throw new FormatException("Invalid string length " + length);
+        }
+
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeDate(final DataOutputStream output, final Date value) throws IOException {
+        output.writeLong(value == null ? NO_DATE : value.getTime());
+    }
+
+    private static Date readDate(final DataInputStream input) throws IOException {
+        final long value = input.readLong();
+        return value == NO_DATE ? null : new Date(value);
+    }
+}
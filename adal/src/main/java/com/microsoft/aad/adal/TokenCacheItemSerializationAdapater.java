@@ -65,22 +65,42 @@ public final class TokenCacheItemSerializationAdapater
         throwIfParameterMissing(srcJsonObj, OAuth2.ADAL_CLIENT_FAMILY_ID);
         throwIfParameterMissing(srcJsonObj, OAuth2.REFRESH_TOKEN);
 
-        final String rawIdToken = srcJsonObj.get(OAuth2.ID_TOKEN).getAsString();
+        return createTokenCacheItem(srcJsonObj.get(OAuth2.AUTHORITY).getAsString(),
+                srcJsonObj.get(OAuth2.ID_TOKEN).getAsString(),
+                srcJsonObj.get(OAuth2.ADAL_CLIENT_FAMILY_ID).getAsString(),
+                srcJsonObj.get(OAuth2.REFRESH_TOKEN).getAsString());
+    }
+
+    /**
+     * Builds the lightweight family token cache item from the serialized attributes. Shared by the
+     * tree based {@link #deserialize(JsonElement, Type, JsonDeserializationContext)} and the
+     * streaming reader in {@link SSOStateSerializer}.
+     *
+     * @param authority      The authority the FRT was issued by.
+     * @param rawIdToken     The raw id token used to populate the user info and tenant id.
+     * @param familyClientId The family client id of the FRT.
+     * @param refreshToken   The family refresh token.
+     * @return The {@link TokenCacheItem} holding the FRT.
+     * @throws JsonParseException if the id token cannot be parsed.
+     */
+    static TokenCacheItem createTokenCacheItem(final String authority, final String rawIdToken,
+                                               final String familyClientId, final String refreshToken)
+            throws JsonParseException {
         final TokenCacheItem tokenCacheItem = new TokenCacheItem();
         final IdToken idToken;
         try {
-            idToken = new IdToken(rawIdToken);
+            idToken = IdToken.parse(rawIdToken);
         } catch (AuthenticationException e) {
             throw new JsonParseException(TAG + ": Could not deserialize into a tokenCacheItem object", e);
         }
         final UserInfo userInfo = new UserInfo(idToken);
         tokenCacheItem.setUserInfo(userInfo);
         tokenCacheItem.setTenantId(idToken.getTenantId());
-        tokenCacheItem.setAuthority(srcJsonObj.get(OAuth2.AUTHORITY).getAsString());
+        tokenCacheItem.setAuthority(authority);
         tokenCacheItem.setIsMultiResourceRefreshToken(true);
         tokenCacheItem.setRawIdToken(rawIdToken);
-        tokenCacheItem.setFamilyClientId(srcJsonObj.get(OAuth2.ADAL_CLIENT_FAMILY_ID).getAsString());
-        tokenCacheItem.setRefreshToken(srcJsonObj.get(OAuth2.REFRESH_TOKEN).getAsString());
+        tokenCacheItem.setFamilyClientId(familyClientId);
+        tokenCacheItem.setRefreshToken(refreshToken);
         return tokenCacheItem;
     }
 
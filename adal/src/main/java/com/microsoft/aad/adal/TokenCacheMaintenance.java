@@ -0,0 +1,388 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.microsoft.identity.common.adal.internal.util.StringExtensions;
+import com.microsoft.identity.common.java.adal.cache.DateTimeAdapter;
+
+import java.net.MalformedURLException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compaction of the token cache started by {@link AuthenticationContext#compactTokenCache()}. It runs
+ * on a background priority thread and:
+ * <ul>
+ * <li>removes items with no refresh token whose access token is expired, extended lifetime included,</li>
+ * <li>removes items superseded by a newer item for the same user, client and resource, such as items
+ * under an old alias of the authority or under the old displayable id of a renamed user,</li>
+ * <li>drops the access token of the remaining items once it is past its extended lifetime.</li>
+ * </ul>
+ * Refresh tokens rejected by the server are already removed when the request fails. Items are found
+ * under the keys ADAL writes them with, items stored under other keys are left as they are. Items are
+ * read and compacted without holding {@link TokenCacheAccessor#CACHE_WRITE_LOCK}, which is only taken to
+ * change them if no token was written since they were read, so tokens saved by requests in the meantime
+ * are kept.
+ */
+public final class TokenCacheMaintenance {
+    private static final String TAG = TokenCacheMaintenance.class.getSimpleName();
+
+    /**
+     * Times an item is read again when tokens were written between reading it and changing it.
+     */
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final ExecutorService THREAD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "adal-cache-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ITokenCacheStore mTokenCacheStore;
+
+    private final Gson mGson = new GsonBuilder()
+            .registerTypeAdapter(Date.class, new DateTimeAdapter())
+            .create();
+
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    private final AtomicInteger mEntriesRemoved = new AtomicInteger();
+
+    private final AtomicInteger mAccessTokensDropped = new AtomicInteger();
+
+    private final AtomicLong mBytesReclaimed = new AtomicLong();
+
+    private volatile boolean mCancelled = false;
+
+    TokenCacheMaintenance(@Nullable final ITokenCacheStore tokenCacheStore) {
+        mTokenCacheStore = tokenCacheStore;
+    }
+
+    /**
+     * Submits the compaction to the background thread.
+     */
+    void start() {
+        THREAD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact();
+                } catch (final RuntimeException e) {
+                    // The cache is left as it is, the next run starts over
+                    Logger.w(TAG + ":start", "Token cache compaction failed. " + e.getMessage());
+                } finally {
+                    mDone.countDown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the compaction after the item being processed. Items already compacted stay compacted.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return true if the compaction has finished or stopped.
+     */
+    public boolean isDone() {
+        return mDone.getCount() == 0;
+    }
+
+    /**
+     * Waits for the compaction to finish or stop.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if the compaction has finished or stopped, false if the time ran out.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public boolean await(final long timeout, @NonNull final TimeUnit unit) throws InterruptedException {
+        return mDone.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of cache entries removed so far. An item cached under several keys counts once per key.
+     */
+    public int getEntriesRemoved() {
+        return mEntriesRemoved.get();
+    }
+
+    /**
+     * @return the number of cache entries whose expired access token was dropped so far.
+     */
+    public int getAccessTokensDropped() {
+        return mAccessTokensDropped.get();
+    }
+
+    /**
+     * @return the size in bytes of the removed and dropped data so far, measured on the UTF-8 encoded
+     * serialized items before encryption.
+     */
+    public long getBytesReclaimed() {
+        return mBytesReclaimed.get();
+    }
+
+    private void compact() {
+        final String methodName = ":compact";
+        if (mTokenCacheStore == null) {
+            return;
+        }
+
+        // Stores return an item cached under several keys once per key
+        final Map<String, CachedItem> itemsByJson = new LinkedHashMap<>();
+        final Iterator<TokenCacheItem> iterator = mTokenCacheStore.getAll();
+        while (iterator.hasNext() && !mCancelled) {
+            final TokenCacheItem item = iterator.next();
+            if (item != null) {
+                final String json = mGson.toJson(item);
+                if (!itemsByJson.containsKey(json)) {
+                    itemsByJson.put(json, new CachedItem(item, json));
+                }
+            }
+        }
+
+        final Collection<CachedItem> items = itemsByJson.values();
+
+        // Keep the newest item of each user, client and resource
+        final Map<String, CachedItem> newestItems = new HashMap<>();
+        for (final CachedItem cachedItem : items) {
+            final String identity = getIdentity(cachedItem.mItem);
+            if (identity == null) {
+                continue;
+            }
+
+            final CachedItem newest = newestItems.get(identity);
+            if (newest == null || isNewer(cachedItem.mItem, newest.mItem)) {
+                newestItems.put(identity, cachedItem);
+            }
+        }
+
+        for (final CachedItem cachedItem : items) {
+            if (mCancelled) {
+                break;
+            }
+
+            final TokenCacheItem item = cachedItem.mItem;
+            final boolean accessTokenExpired = StringExtensions.isNullOrBlank(item.getAccessToken())
+                    || TokenCacheItem.isTokenExpired(getLastValidDate(item));
+            final String identity = getIdentity(item);
+            if (StringExtensions.isNullOrBlank(item.getRefreshToken()) && accessTokenExpired
+                    || identity != null && newestItems.get(identity) != cachedItem) {
+                remove(cachedItem);
+            } else if (accessTokenExpired && !StringExtensions.isNullOrBlank(item.getAccessToken())) {
+                dropAccessToken(cachedItem);
+            }
+        }
+
+        Logger.i(TAG + methodName, "Token cache compacted. ", "Entries removed:" + mEntriesRemoved.get()
+                + " Access tokens dropped:" + mAccessTokensDropped.get() + " Bytes reclaimed:" + mBytesReclaimed.get());
+    }
+
+    private void remove(final CachedItem cachedItem) {
+        final String methodName = ":remove";
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS && !mCancelled; attempt++) {
+            final long writeCount = TokenCacheAccessor.getCacheWriteCount();
+            final List<String> keys = getStoredKeys(cachedItem);
+            synchronized (TokenCacheAccessor.CACHE_WRITE_LOCK) {
+                // A token written since the stored items were read would be lost
+                if (writeCount != TokenCacheAccessor.getCacheWriteCount()) {
+                    continue;
+                }
+
+                for (final String key : keys) {
+                    mTokenCacheStore.removeItem(key);
+                    mEntriesRemoved.incrementAndGet();
+                    mBytesReclaimed.addAndGet(cachedItem.mBytes);
+                }
+                TokenCacheAccessor.onCacheWritten();
+                return;
+            }
+        }
+
+        Logger.v(TAG + methodName, "Tokens kept being written, item left for the next compaction.");
+    }
+
+    private void dropAccessToken(final CachedItem cachedItem) {
+        final String methodName = ":dropAccessToken";
+        final TokenCacheItem compacted = new TokenCacheItem(cachedItem.mItem);
+        compacted.setAccessToken(null);
+        compacted.setExtendedExpiresOn(null);
+        final int bytesReclaimed = cachedItem.mBytes - getUtf8Length(mGson.toJson(compacted));
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS && !mCancelled; attempt++) {
+            final long writeCount = TokenCacheAccessor.getCacheWriteCount();
+            final List<String> keys = getStoredKeys(cachedItem);
+            synchronized (TokenCacheAccessor.CACHE_WRITE_LOCK) {
+                // A token written since the stored items were read would be lost
+                if (writeCount != TokenCacheAccessor.getCacheWriteCount()) {
+                    continue;
+                }
+
+                for (final String key : keys) {
+                    mTokenCacheStore.setItem(key, compacted);
+                    mAccessTokensDropped.incrementAndGet();
+                    mBytesReclaimed.addAndGet(bytesReclaimed);
+                }
+                TokenCacheAccessor.onCacheWritten();
+                return;
+            }
+        }
+
+        Logger.v(TAG + methodName, "Tokens kept being written, item left for the next compaction.");
+    }
+
+    /**
+     * @return the keys ADAL writes the item with which still hold it.
+     */
+    private List<String> getStoredKeys(final CachedItem cachedItem) {
+        final TokenCacheItem item = cachedItem.mItem;
+        final Set<String> users = new LinkedHashSet<>();
+        if (item.getUserInfo() != null) {
+            users.add(item.getUserInfo().getUserId());
+            users.add(item.getUserInfo().getDisplayableId());
+        }
+        users.add(null);
+
+        final List<String> keys = new ArrayList<>();
+        for (final String user : users) {
+            final String key = createCacheKey(item, user);
+            final TokenCacheItem stored = mTokenCacheStore.getItem(key);
+            if (stored != null && cachedItem.mJson.equals(mGson.toJson(stored))) {
+                keys.add(key);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return what the item is a token for, null if it has no user to tell it apart from the tokens of
+     * other users.
+     */
+    private static String getIdentity(final TokenCacheItem item) {
+        if (item.getUserInfo() == null || StringExtensions.isNullOrBlank(item.getUserInfo().getUserId())) {
+            return null;
+        }
+
+        String authority = item.getAuthority();
+        try {
+            authority = AliasAuthorities.forAuthority(authority).getPreferredCacheAuthority();
+        } catch (final MalformedURLException e) {
+            // Group it by the authority as it is
+        }
+
+        final TokenEntryType tokenEntryType = item.getTokenEntryType();
+        return (authority + "$" + tokenEntryType + "$" + item.getClientId() + "$" + item.getFamilyClientId() + "$"
+                + item.getResource() + "$" + item.getUserInfo().getUserId()).toLowerCase(Locale.US);
+    }
+
+    private static String createCacheKey(final TokenCacheItem item, final String user) {
+        switch (item.getTokenEntryType()) {
+            case MRRT_TOKEN_ENTRY:
+                return CacheKey.createCacheKeyForMRRT(item.getAuthority(), item.getClientId(), user);
+            case FRT_TOKEN_ENTRY:
+                return CacheKey.createCacheKeyForFRT(item.getAuthority(), item.getFamilyClientId(), user);
+            default:
+                return CacheKey.createCacheKeyForRTEntry(item.getAuthority(), item.getResource(), item.getClientId(), user);
+        }
+    }
+
+    private static Date getLastValidDate(final TokenCacheItem item) {
+        final Date expiresOn = item.getExpiresOn();
+        final Date extendedExpiresOn = item.getExtendedExpiresOn();
+        if (extendedExpiresOn != null && (expiresOn == null || extendedExpiresOn.after(expiresOn))) {
+            return extendedExpiresOn;
+        }
+
+        return expiresOn;
+    }
+
+    private static int getUtf8Length(final String json) {
+        return json.getBytes(UTF8).length;
+    }
+
+    private static boolean isNewer(final TokenCacheItem item, final TokenCacheItem other) {
+        final Date expiresOn = item.getExpiresOn();
+        final Date otherExpiresOn = other.getExpiresOn();
+        return expiresOn != null && (otherExpiresOn == null || expiresOn.after(otherExpiresOn));
+    }
+
+    private static final class CachedItem {
+        private final TokenCacheItem mItem;
+
+        private final String mJson;
+
+        private final int mBytes;
+
+        CachedItem(final TokenCacheItem item, final String json) {
+            mItem = item;
+            mJson = json;
+            mBytes = getUtf8Length(json);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a token endpoint response in a single streaming pass into the name/value pairs consumed
+ * by {@link Oauth2#processUIResponseParams(Map)}, without building a JSON tree for the response.
+ * Scalar values are kept as their literal text, which is what
+ * {@link org.json.JSONObject#getString(String)} returns for the strings, integers and booleans
+ * of token responses; nested objects and arrays are kept as their compact JSON text.
+ */
+final class TokenResponseReader {
+
+    private static final String NULL_VALUE = "null";
+
+    private TokenResponseReader() {
+        // Utility class, no public constructor
+    }
+
+    /**
+     * @param json the response body
+     * @return the top level members of the response
+     * @throws JSONException if the body is not a JSON object
+     */
+    static Map<String, String> read(final String json) throws JSONException {
+        final Map<String, String> responseItems = new HashMap<>();
+        final JsonReader reader = new JsonReader(new StringReader(json));
+        // Match the leniency of org.json
+        reader.setLenient(true);
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                responseItems.put(name, readValue(reader));
+            }
+            reader.endObject();
+        } catch (final IOException | IllegalStateException | JsonParseException | NumberFormatException e) {
+            final JSONException jsonException = new JSONException(e.getMessage());
+            jsonException.initCause(e);
+            throw jsonException;
+        }
+
+        return responseItems;
+    }
+
+    private static String readValue(final JsonReader reader) throws IOException {
+        final JsonToken token = reader.peek();
+        switch (token) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return NULL_VALUE;
+            default:
+                return JsonParser.parseReader(reader).toString();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+/**
+ * The phases of a token request that are measured by {@link Tracing}.
+ */
+public enum TracePhase {
+    /**
+     * The whole acquireToken call on the background thread, or on the calling thread when the token
+     * is served from the cache.
+     */
+    ACQUIRE_TOKEN,
+
+    /**
+     * Authority validation, including the instance discovery request if the authority is not cached.
+     */
+    AUTHORITY_VALIDATION,
+
+    /**
+     * A lookup of a token in the token cache, including the lookups of the authority aliases.
+     */
+    CACHE_LOOKUP,
+
+    /**
+     * Decryption of a token cache entry.
+     */
+    DECRYPT,
+
+    /**
+     * An http request to the token or instance discovery endpoint.
+     */
+    NETWORK,
+
+    /**
+     * A call into the broker through the AccountManager.
+     */
+    BROKER_IPC,
+
+    /**
+     * Running the {@link AuthenticationCallback} of the app.
+     */
+    CALLBACK_DISPATCH
+}
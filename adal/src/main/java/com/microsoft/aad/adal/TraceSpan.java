@@ -0,0 +1,137 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.annotation.Nullable;
+
+import java.util.UUID;
+
+/**
+ * One timed phase of a token request. Spans of the same request share its correlation id, spans
+ * that ran inside another span on the same thread have it as their parent.
+ */
+public final class TraceSpan {
+
+    private final TracePhase mPhase;
+
+    private final UUID mCorrelationId;
+
+    private final TraceSpan mParent;
+
+    private final String mThreadName;
+
+    private final long mStartNanos;
+
+    private volatile long mEndNanos;
+
+    // The span that was current on the thread before this one began, restored when it ends
+    private final TraceSpan mPreviousOnThread;
+
+    private final boolean mSystemTraceSection;
+
+    TraceSpan(final TracePhase phase, @Nullable final UUID correlationId, @Nullable final TraceSpan parent,
+              @Nullable final TraceSpan previousOnThread, final boolean systemTraceSection) {
+        mPhase = phase;
+        mCorrelationId = correlationId;
+        mParent = parent;
+        mPreviousOnThread = previousOnThread;
+        mSystemTraceSection = systemTraceSection;
+        mThreadName = Thread.currentThread().getName();
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the phase measured by this span.
+     */
+    public TracePhase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * @return the correlation id of the request, null if the span was not started for a request.
+     */
+    @Nullable
+    public UUID getCorrelationId() {
+        return mCorrelationId;
+    }
+
+    /**
+     * @return the span this span ran in, null for the outermost span of a request.
+     */
+    @Nullable
+    public TraceSpan getParent() {
+        return mParent;
+    }
+
+    /**
+     * @return the number of enclosing spans, 0 for the outermost span.
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (TraceSpan parent = mParent; parent != null; parent = parent.mParent) {
+            depth++;
+        }
+
+        return depth;
+    }
+
+    /**
+     * @return the name of the thread the span ran on.
+     */
+    public String getThreadName() {
+        return mThreadName;
+    }
+
+    /**
+     * @return the start of the span in {@link System#nanoTime()}.
+     */
+    public long getStartNanos() {
+        return mStartNanos;
+    }
+
+    /**
+     * @return the duration of the span in nanoseconds, -1 if the span has not ended.
+     */
+    public long getDurationNanos() {
+        final long endNanos = mEndNanos;
+        return endNanos == 0 ? -1 : endNanos - mStartNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mPhase + "(" + mCorrelationId + ", " + getDurationNanos() + "ns)";
+    }
+
+    void end() {
+        mEndNanos = System.nanoTime();
+    }
+
+    TraceSpan getPreviousOnThread() {
+        return mPreviousOnThread;
+    }
+
+    boolean isSystemTraceSection() {
+        return mSystemTraceSection;
+    }
+}
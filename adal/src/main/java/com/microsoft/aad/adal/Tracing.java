@@ -0,0 +1,167 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records how long each phase of a token request takes, see {@link TracePhase}. Tracing is off by
+ * default and costs a volatile read per phase until a listener is set or system tracing is enabled.
+ */
+public final class Tracing {
+
+    private static final String TAG = Tracing.class.getSimpleName();
+
+    private static final String SECTION_PREFIX = "ADAL:";
+
+    private static final ThreadLocal<TraceSpan> CURRENT_SPAN = new ThreadLocal<>();
+
+    // Outermost open span of each request, the parent of spans the request runs on other threads
+    private static final ConcurrentMap<UUID, TraceSpan> OPEN_REQUEST_SPANS = new ConcurrentHashMap<>();
+
+    private static volatile ITraceListener sListener;
+
+    private static volatile boolean sSystemTraceEnabled;
+
+    private Tracing() {
+        // Intentionally left blank
+    }
+
+    /**
+     * Sets the listener that receives every span when it ends.
+     *
+     * @param listener the listener, null to stop listening
+     */
+    public static void setListener(@Nullable final ITraceListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * Enables {@link Trace} sections for every span, so the phases show up in systrace and
+     * Perfetto captures. Only has an effect on API 18 and above.
+     *
+     * @param enabled true to emit trace sections
+     */
+    public static void setSystemTraceEnabled(final boolean enabled) {
+        sSystemTraceEnabled = enabled;
+    }
+
+    /**
+     * @return true if spans are recorded.
+     */
+    public static boolean isEnabled() {
+        return sListener != null || sSystemTraceEnabled;
+    }
+
+    /**
+     * Begins a span in the span that is current on this thread, with its correlation id.
+     */
+    @Nullable
+    static TraceSpan begin(final TracePhase phase) {
+        return begin(phase, null);
+    }
+
+    /**
+     * Begins a span for the request with the given correlation id. The span has to be ended with
+     * {@link #end(TraceSpan)} on the same thread.
+     *
+     * @return the span, null if tracing is not enabled.
+     */
+    @Nullable
+    static TraceSpan begin(final TracePhase phase, @Nullable final UUID correlationId) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final TraceSpan current = CURRENT_SPAN.get();
+        TraceSpan parent = current;
+        UUID spanCorrelationId = correlationId;
+        if (spanCorrelationId == null) {
+            spanCorrelationId = current == null ? null : current.getCorrelationId();
+        } else if (current != null && !spanCorrelationId.equals(current.getCorrelationId())) {
+            parent = null;
+        }
+
+        if (parent == null && spanCorrelationId != null) {
+            parent = OPEN_REQUEST_SPANS.get(spanCorrelationId);
+        }
+
+        final boolean systemTraceSection = sSystemTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        if (systemTraceSection) {
+            Trace.beginSection(SECTION_PREFIX + phase.name());
+        }
+
+        final TraceSpan span = new TraceSpan(phase, spanCorrelationId, parent, current, systemTraceSection);
+        CURRENT_SPAN.set(span);
+        if (parent == null && spanCorrelationId != null) {
+            OPEN_REQUEST_SPANS.putIfAbsent(spanCorrelationId, span);
+        }
+
+        return span;
+    }
+
+    /**
+     * Ends the span and passes it to the listener.
+     *
+     * @param span the span returned by {@link #begin}, may be null
+     */
+    static void end(@Nullable final TraceSpan span) {
+        if (span == null) {
+            return;
+        }
+
+        span.end();
+        if (span.isSystemTraceSection()) {
+            Trace.endSection();
+        }
+
+        if (CURRENT_SPAN.get() == span) {
+            if (span.getPreviousOnThread() == null) {
+                CURRENT_SPAN.remove();
+            } else {
+                CURRENT_SPAN.set(span.getPreviousOnThread());
+            }
+        }
+
+        if (span.getCorrelationId() != null) {
+            OPEN_REQUEST_SPANS.remove(span.getCorrelationId(), span);
+        }
+
+        final ITraceListener listener = sListener;
+        if (listener != null) {
+            try {
+                listener.onSpanEnded(span);
+            } catch (final RuntimeException e) {
+                Logger.w(TAG, "Trace listener threw an exception.", e.getMessage(), null);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.microsoft.identity.common.adal.internal.util.StringExtensions;
+
+import java.io.IOException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warm-up of the library started by {@link AuthenticationContext#warmUp(String...)}. The stages
+ * run concurrently in the background, each on its own thread. It can be waited for and cancelled,
+ * and reports how long each of the stages took.
+ */
+public final class WarmUp {
+    private static final String TAG = WarmUp.class.getSimpleName();
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final String WARM_UP_KEY = "warm_up";
+
+    private static final ThreadPoolExecutor THREAD_EXECUTOR = createThreadExecutor();
+
+    /**
+     * The stages of the warm-up.
+     */
+    public enum Stage {
+        /**
+         * Loads the key the default token cache is encrypted with, which is unwrapped from
+         * AndroidKeyStore.
+         */
+        SECRET_KEY,
+
+        /**
+         * Loads the token cache from disk and reads the tokens of the resources passed in.
+         */
+        TOKEN_CACHE,
+
+        /**
+         * Runs instance discovery for the authority.
+         */
+        INSTANCE_DISCOVERY,
+
+        /**
+         * Checks whether requests can be sent to the broker.
+         */
+        BROKER_DETECTION,
+
+        /**
+         * Sets up the cache shared with MSAL.
+         */
+        COMMON_CACHE
+    }
+
+    private final Context mContext;
+    private final String mAuthority;
+    private final ITokenCacheStore mTokenCacheStore;
+    private final BrokerProxy mBrokerProxy;
+    private final List<String> mResources;
+
+    private final Map<Stage, Long> mStageDurations = new ConcurrentHashMap<>();
+    private final List<Future<Void>> mStageFutures = new ArrayList<>();
+    private final CountDownLatch mStagesDone = new CountDownLatch(Stage.values().length);
+
+    private volatile boolean mCancelled = false;
+
+    WarmUp(@NonNull final Context context,
+           @NonNull final String authority,
+           @Nullable final ITokenCacheStore tokenCacheStore,
+           @NonNull final BrokerProxy brokerProxy,
+           @NonNull final String... resources) {
+        mContext = context;
+        mAuthority = authority;
+        mTokenCacheStore = tokenCacheStore;
+        mBrokerProxy = brokerProxy;
+        mResources = Arrays.asList(resources);
+    }
+
+    /**
+     * Submits all stages to the background threads.
+     */
+    void start() {
+        for (final Stage stage : Stage.values()) {
+            final FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                    runStage(stage);
+                }
+            }, null) {
+                @Override
+                protected void done() {
+                    mStagesDone.countDown();
+                }
+            };
+
+            synchronized (mStageFutures) {
+                mStageFutures.add(future);
+            }
+            THREAD_EXECUTOR.execute(future);
+        }
+    }
+
+    /**
+     * Cancels the stages which have not finished yet. Work which is already cached by a finished
+     * stage is kept.
+     */
+    public void cancel() {
+        mCancelled = true;
+        synchronized (mStageFutures) {
+            for (final Future<Void> future : mStageFutures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return true if all stages have finished or were cancelled.
+     */
+    public boolean isDone() {
+        return mStagesDone.getCount() == 0;
+    }
+
+    /**
+     * Waits for all stages to finish or be cancelled.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if all stages have finished or were cancelled, false if the time ran out.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public boolean await(final long timeout, @NonNull final TimeUnit unit) throws InterruptedException {
+        return mStagesDone.await(timeout, unit);
+    }
+
+    /**
+     * @return how long each of the stages which completed took, in milliseconds. Stages which
+     * failed, were cancelled or are still running are not included.
+     */
+    @NonNull
+    public Map<Stage, Long> getStageDurations() {
+        final Map<Stage, Long> stageDurations = new EnumMap<>(Stage.class);
+        stageDurations.putAll(mStageDurations);
+        return Collections.unmodifiableMap(stageDurations);
+    }
+
+    private void runStage(@NonNull final Stage stage) {
+        final String methodName = ":runStage";
+        try {
+            if (mCancelled) {
+                return;
+            }
+
+            final long startedAt = SystemClock.elapsedRealtime();
+            switch (stage) {
+                case SECRET_KEY:
+                    loadSecretKey();
+                    break;
+                case TOKEN_CACHE:
+                    loadTokenCache();
+                    break;
+                case INSTANCE_DISCOVERY:
+                    discoverInstance();
+                    break;
+                case BROKER_DETECTION:
+                    detectBroker();
+                    break;
+                case COMMON_CACHE:
+                    setUpCommonCache();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown warm-up stage " + stage);
+            }
+
+            final long duration = SystemClock.elapsedRealtime() - startedAt;
+            mStageDurations.put(stage, duration);
+            Logger.i(TAG + methodName, "Warm-up stage finished. ", "Stage:" + stage + " Duration:" + duration);
+        } catch (final AuthenticationException | GeneralSecurityException | IOException | RuntimeException e) {
+            // The request path does the same work again and reports the failure to the caller
+            Logger.w(TAG + methodName, "Warm-up stage failed. Stage:" + stage + " " + e.getMessage());
+        }
+    }
+
+    private void loadSecretKey() throws GeneralSecurityException, IOException {
+        final DefaultTokenCacheStore defaultTokenCacheStore = getDefaultTokenCacheStore();
+        if (defaultTokenCacheStore != null) {
+            defaultTokenCacheStore.loadSecretKey();
+        }
+    }
+
+    private void loadTokenCache() {
+        if (mTokenCacheStore == null) {
+            return;
+        }
+
+        // Reading any key waits for the cache to be loaded from disk
+        mTokenCacheStore.contains(WARM_UP_KEY);
+
+        if (mResources.isEmpty()) {
+            return;
+        }
+
+        int tokenCount = 0;
+        final Iterator<TokenCacheItem> items = mTokenCacheStore.getAll();
+        while (items.hasNext() && !mCancelled) {
+            if (mResources.contains(items.next().getResource())) {
+                tokenCount++;
+            }
+        }
+
+        Logger.v(TAG + ":loadTokenCache", "Tokens read for the warm-up resources: " + tokenCount);
+    }
+
+    private void discoverInstance() throws AuthenticationException {
+        final URL authorityUrl = StringExtensions.getUrl(mAuthority);
+        if (authorityUrl == null || UrlExtensions.isADFSAuthority(authorityUrl)
+                || AuthorityValidationMetadataCache.containsAuthorityHost(authorityUrl)) {
+            // AD FS validation needs the domain of the user, which is not known yet
+            return;
+        }
+
+        final Discovery discovery = new Discovery(mContext);
+        discovery.setCorrelationId(UUID.randomUUID());
+        discovery.validateAuthority(authorityUrl);
+    }
+
+    private void detectBroker() {
+        mBrokerProxy.canSwitchToBroker(mAuthority);
+    }
+
+    private void setUpCommonCache() {
+        // The common cache is only used together with the default token cache
+        if (getDefaultTokenCacheStore() != null) {
+            TokenCacheAccessor.getMsalOAuth2TokenCache(mContext);
+        }
+    }
+
+    @Nullable
+    private DefaultTokenCacheStore getDefaultTokenCacheStore() {
+        if (mTokenCacheStore instanceof DelegatingCache
+                && ((DelegatingCache) mTokenCacheStore).getDelegateCache() instanceof DefaultTokenCacheStore) {
+            return (DefaultTokenCacheStore) ((DelegatingCache) mTokenCacheStore).getDelegateCache();
+        }
+
+        return null;
+    }
+
+    private static ThreadPoolExecutor createThreadExecutor() {
+        final int threadCount = Stage.values().length;
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "adal-warmup-" + mThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -25,13 +25,36 @@ package com.microsoft.aad.adal;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 final class AggregatedDispatcher extends DefaultDispatcher {
+    private static final String TAG = AggregatedDispatcher.class.getSimpleName();
+
+    /**
+     * Events of a request that has not been flushed after this long are considered orphaned, e.g. the
+     * cache events of a {@link TokenCacheAccessor} that is not tied to an API call.
+     */
+    static final long DEFAULT_ORPHANED_REQUEST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Time at which the first event of each pending request was received.
+     */
+    private final Map<String, Long> mFirstReceivedTimes = new HashMap<>();
+
+    private final long mOrphanedRequestTimeoutMillis;
+
+    private long mLastEvictionTime = System.currentTimeMillis();
 
     AggregatedDispatcher(final IDispatcher dispatcher) {
+        this(dispatcher, DEFAULT_ORPHANED_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    AggregatedDispatcher(final IDispatcher dispatcher, final long orphanedRequestTimeoutMillis) {
         super(dispatcher);
+        mOrphanedRequestTimeoutMillis = orphanedRequestTimeoutMillis;
     }
 
     /**
@@ -49,6 +72,7 @@ final class AggregatedDispatcher extends DefaultDispatcher {
         }
 
         final List<IEvents> events = getObjectsToBeDispatched().remove(requestId);
+        mFirstReceivedTimes.remove(requestId);
         if (events == null || events.isEmpty()) {
             return;
         }
@@ -64,13 +88,41 @@ final class AggregatedDispatcher extends DefaultDispatcher {
     }
 
     @SuppressWarnings("unchecked")
-    void receive(final String requestId, final IEvents events) {
+    synchronized void receive(final String requestId, final IEvents events) {
         List<IEvents> eventsList = getObjectsToBeDispatched().get(requestId);
         if (eventsList == null) {
+            final long now = System.currentTimeMillis();
+            evictOrphanedRequests(now);
+
             eventsList = new ArrayList<>();
+            getObjectsToBeDispatched().put(requestId, eventsList);
+            mFirstReceivedTimes.put(requestId, now);
         }
 
         eventsList.add(events);
-        getObjectsToBeDispatched().put(requestId, eventsList);
+    }
+
+    /**
+     * Drops the events of the requests which have not been flushed within the orphaned request timeout,
+     * so they do not stay in memory for the lifetime of the process. The scan runs at most once per
+     * timeout period.
+     *
+     * @param now the current time in milliseconds
+     */
+    synchronized void evictOrphanedRequests(final long now) {
+        if (now - mLastEvictionTime < mOrphanedRequestTimeoutMillis) {
+            return;
+        }
+
+        mLastEvictionTime = now;
+        final Iterator<Map.Entry<String, Long>> iterator = mFirstReceivedTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+            if (now - entry.getValue() >= mOrphanedRequestTimeoutMillis) {
+                Logger.v(TAG, "Evicting telemetry events of a request which was never flushed.");
+                getObjectsToBeDispatched().remove(entry.getKey());
+                iterator.remove();
+            }
+        }
     }
 }
@@ -0,0 +1,192 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher which hands the received events over to a background flusher instead of running the
+ * registered {@link IDispatcher} on the authentication thread.
+ * Events and flushes are queued in a bounded queue and replayed, in order, on the wrapped
+ * {@link DefaultDispatcher} or {@link AggregatedDispatcher}. The flusher thread wakes up once per
+ * batch, a batch is closed either when it is full or when its first operation has waited for the max
+ * batch delay. If the queue is full the telemetry is dropped rather than blocking the caller.
+ */
+final class AsyncDispatcher extends DefaultDispatcher {
+    private static final String TAG = AsyncDispatcher.class.getSimpleName();
+
+    /**
+     * Max number of pending receive/flush operations.
+     */
+    static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * Max number of operations handled per batch.
+     */
+    static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    /**
+     * Max time the first operation of a batch waits for the batch to fill up.
+     */
+    static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 200;
+
+    private final DefaultDispatcher mDelegate;
+    private final BlockingQueue<Operation> mQueue;
+    private final int mMaxBatchSize;
+    private final long mMaxBatchDelayMillis;
+    private final Thread mFlusherThread;
+    private volatile boolean mIsShutdown = false;
+
+    AsyncDispatcher(final DefaultDispatcher delegate) {
+        this(delegate, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS);
+    }
+
+    AsyncDispatcher(final DefaultDispatcher delegate, final int queueCapacity, final int maxBatchSize,
+                    final long maxBatchDelayMillis) {
+        super(delegate.getDispatcher());
+        mDelegate = delegate;
+        mQueue = new ArrayBlockingQueue<>(queueCapacity);
+        mMaxBatchSize = maxBatchSize;
+        mMaxBatchDelayMillis = maxBatchDelayMillis;
+
+        mFlusherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        }, TAG);
+        mFlusherThread.setDaemon(true);
+        mFlusherThread.setPriority(Thread.MIN_PRIORITY);
+        mFlusherThread.start();
+    }
+
+    @Override
+    void receive(final String requestId, final IEvents events) {
+        enqueue(new Operation(requestId, events));
+    }
+
+    @Override
+    void flush(final String requestId) {
+        enqueue(new Operation(requestId, null));
+    }
+
+    /**
+     * Stops the flusher once the operations already queued have been dispatched. Operations received
+     * after the shutdown are dropped.
+     */
+    void shutdown() {
+        mIsShutdown = true;
+        mFlusherThread.interrupt();
+    }
+
+    /**
+     * @return the number of operations waiting for the flusher.
+     */
+    int getPendingCount() {
+        return mQueue.size();
+    }
+
+    DefaultDispatcher getDelegate() {
+        return mDelegate;
+    }
+
+    private void enqueue(final Operation operation) {
+        if (mIsShutdown || getDispatcher() == null) {
+            return;
+        }
+
+        if (!mQueue.offer(operation)) {
+            Logger.w(TAG, "Telemetry queue is full, dropping the telemetry operation.");
+        }
+    }
+
+    private void runFlusher() {
+        final List<Operation> batch = new ArrayList<>(mMaxBatchSize);
+        while (!mIsShutdown) {
+            try {
+                fillBatch(batch);
+            } catch (final InterruptedException e) {
+                // Shutdown requested, the remaining operations are drained below.
+            }
+
+            dispatchBatch(batch);
+        }
+
+        mQueue.drainTo(batch);
+        dispatchBatch(batch);
+    }
+
+    private void fillBatch(final List<Operation> batch) throws InterruptedException {
+        batch.add(mQueue.take());
+
+        final long deadline = System.currentTimeMillis() + mMaxBatchDelayMillis;
+        while (batch.size() < mMaxBatchSize) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+
+            final Operation operation = mQueue.poll(remaining, TimeUnit.MILLISECONDS);
+            if (operation == null) {
+                break;
+            }
+
+            batch.add(operation);
+        }
+    }
+
+    private void dispatchBatch(final List<Operation> batch) {
+        for (final Operation operation : batch) {
+            try {
+                if (operation.mEvents == null) {
+                    mDelegate.flush(operation.mRequestId);
+                } else {
+                    mDelegate.receive(operation.mRequestId, operation.mEvents);
+                }
+            } catch (final RuntimeException e) {
+                // The app provided dispatcher should not be able to stop the flusher.
+                Logger.e(TAG, "Failed to dispatch the telemetry event.", e);
+            }
+        }
+
+        batch.clear();
+    }
+
+    /**
+     * A queued receive, or a flush when there are no events.
+     */
+    private static final class Operation {
+        private final String mRequestId;
+        private final IEvents mEvents;
+
+        Operation(final String requestId, final IEvents events) {
+            mRequestId = requestId;
+            mEvents = events;
+        }
+    }
+}
@@ -25,8 +25,6 @@ package com.microsoft.aad.adal;
 
 import com.microsoft.identity.common.adal.internal.util.StringExtensions;
 
-import java.util.AbstractMap;
-import java.util.List;
 import java.util.Map;
 
 final class CacheEvent extends DefaultEvent {
@@ -44,7 +42,7 @@ final class CacheEvent extends DefaultEvent {
     }
 
     void setTokenType(final String tokenType) {
-        getEventList().add(new AbstractMap.SimpleEntry<>(EventStrings.TOKEN_TYPE, tokenType));
+        addProperty(EventStrings.TOKEN_TYPE, tokenType);
     }
 
     void setTokenTypeRT(final boolean tokenTypeRT) {
@@ -71,8 +69,6 @@ final class CacheEvent extends DefaultEvent {
             return;
         }
 
-        final List<Map.Entry<String, String>> eventList = getEventList();
-
         // We are keeping track of the number of Cache Events here, first time we insert the CACHE_EVENT_COUNT in the
         // map, next time onwards, we read the value of it and increment by one.
         final String count = dispatchMap.get(EventStrings.CACHE_EVENT_COUNT);
@@ -91,12 +87,12 @@ final class CacheEvent extends DefaultEvent {
             dispatchMap.remove(EventStrings.SPE_INFO);
         }
 
-        for (Map.Entry<String, String> eventKeyValuePair : eventList) {
-            final String name = eventKeyValuePair.getKey();
+        for (int i = 0; i < getPropertyCount(); i++) {
+            final String name = getPropertyName(i);
 
             if (name.equals(EventStrings.TOKEN_TYPE_IS_FRT) || name.equals(EventStrings.TOKEN_TYPE_IS_RT)
                     || name.equals(EventStrings.TOKEN_TYPE_IS_MRRT) || name.equals(EventStrings.SPE_INFO)) {
-                dispatchMap.put(name, eventKeyValuePair.getValue());
+                dispatchMap.put(name, getPropertyValue(i));
             }
         }
     }
@@ -56,10 +56,15 @@ class DefaultDispatcher {
         }
 
         final Map<String, String> dispatchMap = new HashMap<>();
-        final List<Map.Entry<String, String>> eventList = events.getEvents();
-
-        for (final Map.Entry<String, String> event : eventList) {
-            dispatchMap.put(event.getKey(), event.getValue());
+        if (events instanceof DefaultEvent) {
+            final DefaultEvent defaultEvent = (DefaultEvent) events;
+            for (int i = 0; i < defaultEvent.getPropertyCount(); i++) {
+                dispatchMap.put(defaultEvent.getPropertyName(i), defaultEvent.getPropertyValue(i));
+            }
+        } else {
+            for (final Map.Entry<String, String> event : events.getEvents()) {
+                dispatchMap.put(event.getKey(), event.getValue());
+            }
         }
 
         mDispatcher.dispatchEvent(dispatchMap);
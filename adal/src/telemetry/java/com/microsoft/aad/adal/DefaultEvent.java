@@ -33,15 +33,24 @@ import android.text.TextUtils;
 
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
 import java.util.AbstractMap;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-
+/**
+ * Base telemetry event. The properties are kept in two parallel arrays of names and values instead of
+ * a list of entries, the names are the {@link EventStrings} constants so comparing them is mostly an
+ * identity check.
+ */
 class DefaultEvent implements IEvents {
-    private final List<Map.Entry<String, String>> mEventList;
+    private String[] mPropertyNames;
+
+    private String[] mPropertyValues;
+
+    private int mPropertyCount;
 
     private static String sApplicationName = null;
 
@@ -58,7 +67,8 @@ class DefaultEvent implements IEvents {
     private int mDefaultEventCount;
 
     DefaultEvent() {
-        mEventList = new ArrayList<>(EVENT_LIST_SIZE);
+        mPropertyNames = new String[EVENT_LIST_SIZE];
+        mPropertyValues = new String[EVENT_LIST_SIZE];
 
         // Keying off Application name not being null to decide if the defaults have been set
         if (sApplicationName != null) {
@@ -66,7 +76,7 @@ class DefaultEvent implements IEvents {
             setProperty(EventStrings.APPLICATION_VERSION, sApplicationVersion);
             setProperty(EventStrings.CLIENT_ID, sClientId);
             setProperty(EventStrings.DEVICE_ID, sDeviceId);
-            mDefaultEventCount = mEventList.size();
+            mDefaultEventCount = mPropertyCount;
         }
     }
 
@@ -85,12 +95,68 @@ class DefaultEvent implements IEvents {
             return;
         }
 
-        mEventList.add(new AbstractMap.SimpleEntry<>(name, value));
+        addProperty(name, value);
     }
 
     @Override
     public List<Map.Entry<String, String>> getEvents() {
-        return Collections.unmodifiableList(mEventList);
+        return Collections.unmodifiableList(getEventList());
+    }
+
+    /**
+     * @return the number of recorded properties.
+     */
+    final int getPropertyCount() {
+        return mPropertyCount;
+    }
+
+    final String getPropertyName(final int index) {
+        return mPropertyNames[index];
+    }
+
+    final String getPropertyValue(final int index) {
+        return mPropertyValues[index];
+    }
+
+    /**
+     * Appends the property, without any validation of the name or value.
+     */
+    final void addProperty(final String name, final String value) {
+        addProperty(mPropertyCount, name, value);
+    }
+
+    /**
+     * Replaces the value of the first property with the given name, or appends the property if
+     * there is none yet.
+     */
+    final void replaceProperty(final String name, final String value) {
+        for (int i = 0; i < mPropertyCount; i++) {
+            if (mPropertyNames[i].equals(name)) {
+                mPropertyValues[i] = value;
+                return;
+            }
+        }
+
+        addProperty(name, value);
+    }
+
+    /**
+     * Inserts the property at the given position, without any validation of the name or value.
+     */
+    final void addProperty(final int index, final String name, final String value) {
+        if (mPropertyCount == mPropertyNames.length) {
+            mPropertyNames = Arrays.copyOf(mPropertyNames, mPropertyCount * 2);
+            mPropertyValues = Arrays.copyOf(mPropertyValues, mPropertyCount * 2);
+        }
+
+        if (index < mPropertyCount) {
+            System.arraycopy(mPropertyNames, index, mPropertyNames, index + 1, mPropertyCount - index);
+            System.arraycopy(mPropertyValues, index, mPropertyValues, index + 1, mPropertyCount - index);
+        }
+
+        mPropertyNames[index] = name;
+        mPropertyValues[index] = value;
+        mPropertyCount++;
     }
 
     /**
@@ -137,24 +203,41 @@ class DefaultEvent implements IEvents {
             setProperty(EventStrings.APPLICATION_VERSION, sApplicationVersion);
             setProperty(EventStrings.CLIENT_ID, sClientId);
             setProperty(EventStrings.DEVICE_ID, sDeviceId);
-            mDefaultEventCount = mEventList.size();
+            mDefaultEventCount = mPropertyCount;
         }
     }
 
     // Sets the correlation id to the top of the list
     void setCorrelationId(final String correlationId) {
-        mEventList.add(0, new AbstractMap.SimpleEntry<>(EventStrings.CORRELATION_ID, correlationId));
+        addProperty(0, EventStrings.CORRELATION_ID, correlationId);
         mDefaultEventCount++;
     }
 
     void setRequestId(final String requestId) {
         mRequestId = requestId;
-        mEventList.add(0, new AbstractMap.SimpleEntry<>(EventStrings.REQUEST_ID, requestId));
+        addProperty(0, EventStrings.REQUEST_ID, requestId);
         mDefaultEventCount++;
     }
 
+    /**
+     * @return a read only view of the properties, the entries are created on access.
+     */
     List<Map.Entry<String, String>> getEventList() {
-        return mEventList;
+        return new AbstractList<Map.Entry<String, String>>() {
+            @Override
+            public Map.Entry<String, String> get(final int index) {
+                if (index >= mPropertyCount) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mPropertyCount);
+                }
+
+                return new AbstractMap.SimpleImmutableEntry<>(mPropertyNames[index], mPropertyValues[index]);
+            }
+
+            @Override
+            public int size() {
+                return mPropertyCount;
+            }
+        };
     }
 
     String getTelemetryRequestId() {
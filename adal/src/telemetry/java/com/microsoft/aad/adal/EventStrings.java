@@ -100,6 +100,18 @@ final class EventStrings {
 
     static final String USER_CANCEL = EVENT_PREFIX + "user_cancel";
 
+    static final String UI_BACKGROUND_TASK_COUNT = EVENT_PREFIX + "ui_background_task_count"; // Android only
+
+    static final String UI_BACKGROUND_QUEUE_TIME = EVENT_PREFIX + "ui_background_queue_time"; // Android only
+
+    static final String UI_BACKGROUND_EXECUTION_TIME = EVENT_PREFIX + "ui_background_execution_time"; // Android only
+
+    static final String UI_WEBVIEW_INIT_TIME = EVENT_PREFIX + "ui_webview_init_time"; // Android only
+
+    static final String UI_TIME_TO_FIRST_PAINT = EVENT_PREFIX + "ui_time_to_first_paint"; // Android only
+
+    static final String UI_PREWARMED = EVENT_PREFIX + "ui_prewarmed"; // Android only
+
     static final String BROKER_APP = EVENT_PREFIX + "broker_app";
 
     static final String BROKER_VERSION = EVENT_PREFIX + "broker_version";
@@ -182,6 +194,10 @@ final class EventStrings {
 
     static final String ACQUIRE_TOKEN_SILENT_ASYNC_CLAIMS_CHALLENGE = "16";
 
+    static final String ACQUIRE_TOKENS_SILENT_ASYNC = "17";
+
+    static final String ACQUIRE_TOKEN_SILENT_WITH_CANCELLATION = "18";
+
     static final String ACQUIRE_TOKEN_WITH_REFRESH_TOKEN = "4";
 
     static final String ACQUIRE_TOKEN_WITH_REFRESH_TOKEN_2 = "5";
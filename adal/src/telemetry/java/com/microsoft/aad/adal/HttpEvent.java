@@ -26,8 +26,6 @@ package com.microsoft.aad.adal;
 import com.microsoft.identity.common.adal.internal.util.StringExtensions;
 
 import java.net.URL;
-import java.util.AbstractMap;
-import java.util.List;
 import java.util.Map;
 
 import static com.microsoft.aad.adal.TelemetryUtils.CliTelemInfo;
@@ -37,7 +35,7 @@ final class HttpEvent extends DefaultEvent {
     private static final String TAG = HttpEvent.class.getSimpleName();
 
     HttpEvent(final String eventName) {
-        getEventList().add(new AbstractMap.SimpleEntry<>(EventStrings.EVENT_NAME, eventName));
+        addProperty(EventStrings.EVENT_NAME, eventName);
     }
 
     void setUserAgent(final String userAgent) {
@@ -179,9 +177,8 @@ final class HttpEvent extends DefaultEvent {
             dispatchMap.remove(EventStrings.SPE_INFO);
         }
 
-        final List<Map.Entry<String, String>> eventList = getEventList();
-        for (Map.Entry<String, String> eventKeyValuePair : eventList) {
-            final String name = eventKeyValuePair.getKey();
+        for (int i = 0; i < getPropertyCount(); i++) {
+            final String name = getPropertyName(i);
 
             if (name.equals(EventStrings.HTTP_RESPONSE_CODE)
                     || name.equals(EventStrings.REQUEST_ID_HEADER)
@@ -191,7 +188,7 @@ final class HttpEvent extends DefaultEvent {
                     || name.equals(EventStrings.SERVER_SUBERROR_CODE)
                     || name.equals(EventStrings.TOKEN_AGE)
                     || name.equals(EventStrings.SPE_INFO)) {
-                dispatchMap.put(name, eventKeyValuePair.getValue());
+                dispatchMap.put(name, getPropertyValue(i));
             }
         }
     }
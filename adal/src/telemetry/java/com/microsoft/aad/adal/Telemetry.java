@@ -23,18 +23,17 @@
 
 package com.microsoft.aad.adal;
 
-import com.microsoft.identity.common.adal.internal.util.StringExtensions;
-
 import java.util.AbstractMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public final class Telemetry {
     private static final String TAG = Telemetry.class.getSimpleName();
-    private DefaultDispatcher mDispatcher = null;
+    private volatile DefaultDispatcher mDispatcher = null;
     private static boolean sAllowPii = false;
-    private final Map<Map.Entry<String, String>, String> mEventTracking = new ConcurrentHashMap<>();
+    private final Map<Map.Entry<String, String>, EventStartTime> mEventTracking = new ConcurrentHashMap<>();
     private static final Telemetry INSTANCE = new Telemetry();
 
     /**
@@ -81,10 +80,44 @@ public final class Telemetry {
      * @param aggregationRequired true if client wants a single event per call to AcquireToken, false otherwise
      */
     public synchronized void registerDispatcher(final IDispatcher dispatcher, final boolean aggregationRequired) {
+        registerDispatcher(dispatcher, aggregationRequired, false);
+    }
+
+    /**
+     * Same as {@link #registerDispatcher(IDispatcher, boolean)}, with the option to dispatch the telemetry
+     * from a background thread.
+     * When asynchronous dispatch is requested, events are queued in a bounded queue and handed to the
+     * IDispatcher in batches by a low priority background thread, so the IDispatcher never runs on the
+     * thread acquiring the token. If the IDispatcher cannot keep up and the queue is full, telemetry
+     * is dropped.
+     *
+     * @param dispatcher the IDispatcher interface to be registered, null to stop collecting telemetry
+     * @param aggregationRequired true if client wants a single event per call to AcquireToken, false otherwise
+     * @param dispatchAsynchronously true if the IDispatcher should be called from a background thread
+     */
+    public synchronized void registerDispatcher(final IDispatcher dispatcher, final boolean aggregationRequired,
+                                                final boolean dispatchAsynchronously) {
+        if (mDispatcher instanceof AsyncDispatcher) {
+            ((AsyncDispatcher) mDispatcher).shutdown();
+        }
+
+        if (dispatcher == null) {
+            // Nothing would be dispatched, skip tracking the events as well
+            mDispatcher = null;
+            return;
+        }
+
+        final DefaultDispatcher newDispatcher;
         if (aggregationRequired) {
-            mDispatcher = new AggregatedDispatcher(dispatcher);
+            newDispatcher = new AggregatedDispatcher(dispatcher);
         } else {
-            mDispatcher = new DefaultDispatcher(dispatcher);
+            newDispatcher = new DefaultDispatcher(dispatcher);
+        }
+
+        if (dispatchAsynchronously) {
+            mDispatcher = new AsyncDispatcher(newDispatcher);
+        } else {
+            mDispatcher = newDispatcher;
         }
     }
 
@@ -98,40 +131,54 @@ public final class Telemetry {
             return;
         }
 
-        mEventTracking.put(new AbstractMap.SimpleEntry<>(requestId, eventName), Long.toString(System.currentTimeMillis()));
+        mEventTracking.put(new AbstractMap.SimpleEntry<>(requestId, eventName),
+                new EventStartTime(System.currentTimeMillis(), System.nanoTime()));
     }
 
     void stopEvent(final String requestId, final IEvents events, final String eventName) {
+        final DefaultDispatcher dispatcher = mDispatcher;
         // We do not need to log if we do not have a dispatcher.
-        if (mDispatcher == null) {
+        if (dispatcher == null) {
             return;
         }
 
-        final String startTime = mEventTracking.remove(new AbstractMap.SimpleEntry<>(requestId, eventName));
+        final EventStartTime startTime = mEventTracking.remove(new AbstractMap.SimpleEntry<>(requestId, eventName));
 
         // If we did not get anything back from the dictionary, most likely its a bug that stopEvent was called without
         // a corresponding startEvent
-        if (StringExtensions.isNullOrBlank(startTime)) {
+        if (startTime == null) {
             Logger.w(TAG, "Stop Event called without a corresponding start_event", "", null);
             return;
         }
 
-        long startTimeLong = Long.parseLong(startTime);
-        long stopTimeLong  = System.currentTimeMillis();
-        long diffTime = stopTimeLong - startTimeLong;
-
-        final String stopTime = Long.toString(stopTimeLong);
+        // The response time is measured on the monotonic clock, the wall clock is only used to report the start
+        // and stop times.
+        final long diffTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime.mStartNanos);
 
-        events.setProperty(EventStrings.START_TIME, startTime);
-        events.setProperty(EventStrings.STOP_TIME, stopTime);
+        events.setProperty(EventStrings.START_TIME, Long.toString(startTime.mStartTimeMillis));
+        events.setProperty(EventStrings.STOP_TIME, Long.toString(startTime.mStartTimeMillis + diffTime));
         events.setProperty(EventStrings.RESPONSE_TIME, Long.toString(diffTime));
 
-        mDispatcher.receive(requestId, events);
+        dispatcher.receive(requestId, events);
     }
 
     void flush(final String requestId) {
-        if (mDispatcher != null) {
-            mDispatcher.flush(requestId);
+        final DefaultDispatcher dispatcher = mDispatcher;
+        if (dispatcher != null) {
+            dispatcher.flush(requestId);
+        }
+    }
+
+    /**
+     * Start of a tracked event, kept as primitives until the event is stopped.
+     */
+    private static final class EventStartTime {
+        private final long mStartTimeMillis;
+        private final long mStartNanos;
+
+        EventStartTime(final long startTimeMillis, final long startNanos) {
+            mStartTimeMillis = startTimeMillis;
+            mStartNanos = startNanos;
         }
     }
 }
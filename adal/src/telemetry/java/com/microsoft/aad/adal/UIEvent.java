@@ -23,13 +23,15 @@
 
 package com.microsoft.aad.adal;
 
-import java.util.AbstractMap;
-import java.util.List;
 import java.util.Map;
 
 final class UIEvent extends DefaultEvent {
+    private int mBackgroundTaskCount;
+    private long mBackgroundQueueTimeMillis;
+    private long mBackgroundExecutionTimeMillis;
+
     UIEvent(final String eventName) {
-        getEventList().add(new AbstractMap.SimpleEntry<>(EventStrings.EVENT_NAME, eventName));
+        addProperty(EventStrings.EVENT_NAME, eventName);
     }
 
     void setRedirectCount(final Integer redirectCount) {
@@ -44,6 +46,44 @@ final class UIEvent extends DefaultEvent {
         setProperty(EventStrings.USER_CANCEL, "true");
     }
 
+    /**
+     * @param webViewInitTimeMillis how long it took to create the WebView of the interactive flow
+     */
+    void setWebViewInitTime(final long webViewInitTimeMillis) {
+        setProperty(EventStrings.UI_WEBVIEW_INIT_TIME, Long.toString(webViewInitTimeMillis));
+    }
+
+    /**
+     * @param timeToFirstPaintMillis how long it took from the start of the interactive flow until
+     *                               the sign-in page was first shown
+     */
+    void setTimeToFirstPaint(final long timeToFirstPaintMillis) {
+        replaceProperty(EventStrings.UI_TIME_TO_FIRST_PAINT, Long.toString(timeToFirstPaintMillis));
+    }
+
+    /**
+     * @param prewarmed true if the interactive flow used the request url prepared by
+     *                  {@link AuthenticationContext#prepareForInteractiveRequest}
+     */
+    void setPrewarmed(final boolean prewarmed) {
+        setProperty(EventStrings.UI_PREWARMED, String.valueOf(prewarmed));
+    }
+
+    /**
+     * Adds a background task run for the interactive flow to the totals of this event.
+     *
+     * @param queueTimeMillis     how long the task waited for a thread
+     * @param executionTimeMillis how long the task ran
+     */
+    void addBackgroundTask(final long queueTimeMillis, final long executionTimeMillis) {
+        mBackgroundTaskCount++;
+        mBackgroundQueueTimeMillis += queueTimeMillis;
+        mBackgroundExecutionTimeMillis += executionTimeMillis;
+        replaceProperty(EventStrings.UI_BACKGROUND_TASK_COUNT, Integer.toString(mBackgroundTaskCount));
+        replaceProperty(EventStrings.UI_BACKGROUND_QUEUE_TIME, Long.toString(mBackgroundQueueTimeMillis));
+        replaceProperty(EventStrings.UI_BACKGROUND_EXECUTION_TIME, Long.toString(mBackgroundExecutionTimeMillis));
+    }
+
     /**
      * Each event chooses which of its members get picked on aggregation.
      * UI event adds an event count field
@@ -51,8 +91,6 @@ final class UIEvent extends DefaultEvent {
      */
     @Override
     public void processEvent(final Map<String, String> dispatchMap) {
-        final List<Map.Entry<String, String>> eventList = getEventList();
-
         // We are keeping track of the number of UI Events here, first time we insert the UI_EVENT_COUNT into the map
         // next time onwards, we read the value of it and increment by one.
         final String count = dispatchMap.get(EventStrings.UI_EVENT_COUNT);
@@ -70,11 +108,17 @@ final class UIEvent extends DefaultEvent {
             dispatchMap.put(EventStrings.NTLM, "");
         }
 
-        for (Map.Entry<String, String> eventKeyValuePair : eventList) {
-            final String name = eventKeyValuePair.getKey();
+        for (int i = 0; i < getPropertyCount(); i++) {
+            final String name = getPropertyName(i);
 
-            if (name.equals(EventStrings.USER_CANCEL) || name.equals(EventStrings.NTLM)) {
-                dispatchMap.put(name, eventKeyValuePair.getValue());
+            if (name.equals(EventStrings.USER_CANCEL) || name.equals(EventStrings.NTLM)
+                    || name.equals(EventStrings.UI_BACKGROUND_TASK_COUNT)
+                    || name.equals(EventStrings.UI_BACKGROUND_QUEUE_TIME)
+                    || name.equals(EventStrings.UI_BACKGROUND_EXECUTION_TIME)
+                    || name.equals(EventStrings.UI_WEBVIEW_INIT_TIME)
+                    || name.equals(EventStrings.UI_TIME_TO_FIRST_PAINT)
+                    || name.equals(EventStrings.UI_PREWARMED)) {
+                dispatchMap.put(name, getPropertyValue(i));
             }
         }
     }
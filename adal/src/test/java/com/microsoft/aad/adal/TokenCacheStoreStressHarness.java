@@ -0,0 +1,284 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.aad.adal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a mixed get/set/remove/getAll workload against an {@link ITokenCacheStore} from several threads and
+ * checks the outcome of every key.
+ * <p>
+ * Each thread owns some keys and shares others with all threads. A read of an owned key must return what
+ * the thread last wrote to it. A read of a shared key, and every item returned by getAll, must be an item
+ * some thread wrote to that key. Once all threads are done, each shared key must hold the outcome of the
+ * last operation of one of the threads on it.
+ */
+final class TokenCacheStoreStressHarness {
+
+    private static final int OWNED_KEYS_PER_THREAD = 8;
+
+    private static final int SHARED_KEYS = 8;
+
+    private static final long TIMEOUT_MINUTES = 5;
+
+    private static final String REMOVED = "removed";
+
+    private final ITokenCacheStore mStore;
+
+    private final int mOperationsPerThread;
+
+    /**
+     * @param store               The store under test, emptied before each run.
+     * @param operationsPerThread Number of operations each thread runs.
+     */
+    TokenCacheStoreStressHarness(final ITokenCacheStore store, final int operationsPerThread) {
+        mStore = store;
+        mOperationsPerThread = operationsPerThread;
+    }
+
+    /**
+     * Runs the workload with the given number of threads.
+     *
+     * @return The throughput of the run.
+     * @throws AssertionError if a thread failed or a key ended up in a state no operation could produce.
+     */
+    Result run(final int threadCount) throws InterruptedException {
+        clear();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final List<Map<String, String>> lastSharedOperations = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            final Map<String, String> lastOperations = new HashMap<>();
+            lastSharedOperations.add(lastOperations);
+            final Worker worker = new Worker(i, lastOperations);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        worker.run();
+                    } catch (final Throwable throwable) {
+                        failures.add(throwable);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "cache-stress-" + i).start();
+        }
+
+        final long startedAt = System.nanoTime();
+        start.countDown();
+        if (!done.await(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            throw new AssertionError("Stress run did not finish, threads: " + threadCount);
+        }
+        final long elapsedNanos = System.nanoTime() - startedAt;
+
+        if (!failures.isEmpty()) {
+            final AssertionError error = new AssertionError(failures.size() + " thread(s) failed, threads: "
+                    + threadCount + ", first failure: " + failures.get(0));
+            error.initCause(failures.get(0));
+            throw error;
+        }
+
+        verifySharedKeys(lastSharedOperations);
+        return new Result(threadCount, (long) threadCount * mOperationsPerThread, elapsedNanos);
+    }
+
+    private void verifySharedKeys(final List<Map<String, String>> lastSharedOperations) {
+        for (int i = 0; i < SHARED_KEYS; i++) {
+            final String key = getSharedKey(i);
+            final TokenCacheItem item = mStore.getItem(key);
+            final String actual = item == null ? REMOVED : item.getAccessToken();
+            boolean touched = false;
+            boolean possible = false;
+            for (final Map<String, String> lastOperations : lastSharedOperations) {
+                if (lastOperations.containsKey(key)) {
+                    touched = true;
+                    possible |= lastOperations.get(key).equals(actual);
+                }
+            }
+
+            // Keys no thread wrote stay empty
+            possible |= !touched && item == null;
+
+            if (!possible) {
+                throw new AssertionError("Key " + key + " holds " + actual
+                        + ", which is not the last operation of any thread");
+            }
+        }
+    }
+
+    private void clear() {
+        // DelegatingCache also clears the cache shared with MSAL, only the items of the harness are removed
+        for (int i = 0; i < SHARED_KEYS; i++) {
+            mStore.removeItem(getSharedKey(i));
+        }
+
+        final Iterator<TokenCacheItem> items = mStore.getAll();
+        final List<String> keys = new ArrayList<>();
+        while (items.hasNext()) {
+            keys.add(items.next().getResource());
+        }
+
+        for (final String key : keys) {
+            mStore.removeItem(key);
+        }
+    }
+
+    private static String getSharedKey(final int index) {
+        return "shared-" + index;
+    }
+
+    private static String getOwnedKey(final int thread, final int index) {
+        return "owned-" + thread + "-" + index;
+    }
+
+    private static TokenCacheItem createItem(final String key, final String value) {
+        final TokenCacheItem item = new TokenCacheItem();
+        // The key is kept in the item to check reads return an item of the key
+        item.setResource(key);
+        item.setClientId("clientid");
+        item.setAccessToken(value);
+        return item;
+    }
+
+    private static void verifyItemOfKey(final String key, final TokenCacheItem item) {
+        if (item != null && !key.equals(item.getResource())) {
+            throw new AssertionError("Key " + key + " returned the item of " + item.getResource());
+        }
+    }
+
+    private final class Worker {
+
+        private final int mThread;
+
+        private final Map<String, String> mLastSharedOperations;
+
+        private final Map<String, String> mOwnedValues = new HashMap<>();
+
+        private final Random mRandom;
+
+        Worker(final int thread, final Map<String, String> lastSharedOperations) {
+            mThread = thread;
+            mLastSharedOperations = lastSharedOperations;
+            mRandom = new Random(thread);
+        }
+
+        void run() {
+            for (int operation = 0; operation < mOperationsPerThread; operation++) {
+                final boolean shared = mRandom.nextBoolean();
+                final String key = shared ? getSharedKey(mRandom.nextInt(SHARED_KEYS))
+                        : getOwnedKey(mThread, mRandom.nextInt(OWNED_KEYS_PER_THREAD));
+                final String value = mThread + ":" + operation;
+                final int kind = mRandom.nextInt(10);
+                if (kind < 4) {
+                    get(key, shared);
+                } else if (kind < 7) {
+                    mStore.setItem(key, createItem(key, value));
+                    record(key, shared, value);
+                } else if (kind < 9) {
+                    mStore.removeItem(key);
+                    record(key, shared, REMOVED);
+                } else {
+                    getAll();
+                }
+            }
+        }
+
+        private void get(final String key, final boolean shared) {
+            final TokenCacheItem item = mStore.getItem(key);
+            verifyItemOfKey(key, item);
+            if (shared) {
+                return;
+            }
+
+            final String expected = mOwnedValues.containsKey(key) ? mOwnedValues.get(key) : REMOVED;
+            final String actual = item == null ? REMOVED : item.getAccessToken();
+            if (!expected.equals(actual)) {
+                throw new AssertionError("Key " + key + " returned " + actual + ", last written " + expected);
+            }
+        }
+
+        private void getAll() {
+            final Iterator<TokenCacheItem> items = mStore.getAll();
+            while (items.hasNext()) {
+                final TokenCacheItem item = items.next();
+                if (item == null || item.getResource() == null || item.getAccessToken() == null) {
+                    throw new AssertionError("getAll returned an incomplete item");
+                }
+            }
+        }
+
+        private void record(final String key, final boolean shared, final String outcome) {
+            if (shared) {
+                mLastSharedOperations.put(key, outcome);
+            } else {
+                mOwnedValues.put(key, outcome);
+            }
+        }
+    }
+
+    /**
+     * Throughput of a run.
+     */
+    static final class Result {
+
+        private final int mThreadCount;
+
+        private final long mOperations;
+
+        private final long mElapsedNanos;
+
+        Result(final int threadCount, final long operations, final long elapsedNanos) {
+            mThreadCount = threadCount;
+            mOperations = operations;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        int getThreadCount() {
+            return mThreadCount;
+        }
+
+        long getOperations() {
+            return mOperations;
+        }
+
+        long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        double getOperationsPerSecond() {
+            return mOperations * TimeUnit.SECONDS.toNanos(1) / (double) Math.max(1, mElapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Runs {@link TokenCacheStoreStressHarness} against each {@link ITokenCacheStore} and writes the throughput for
+ * each thread count to build/stress-results/&lt;store&gt;.json, as a baseline for performance work on the stores.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TokenCacheStoreStressTests {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    private static final int IN_MEMORY_OPERATIONS = 20000;
+
+    // Persisting stores write to disk and encrypt on each write
+    private static final int PERSISTED_OPERATIONS = 500;
+
+    private static final String FILE_NAME = "stress-cache";
+
+    // Relative to the module directory, where Gradle runs the unit tests
+    private static final File RESULTS_DIRECTORY = new File("build", "stress-results");
+
+    private Context mContext;
+
+    private boolean mSecretKeySet;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        if (AuthenticationSettings.INSTANCE.getSecretKeyData() == null) {
+            final byte[] secretKey = new byte[32];
+            Arrays.fill(secretKey, (byte) 1);
+            AuthenticationSettings.INSTANCE.setSecretKey(secretKey);
+            mSecretKeySet = true;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(SQLiteTokenCacheStore.DATABASE_NAME);
+        if (mSecretKeySet) {
+            // The settings are process wide, later tests must not encrypt with the key of this test
+            com.microsoft.identity.common.adal.internal.AuthenticationSettings.INSTANCE.clearSecretKeysForTestCases();
+        }
+    }
+
+    @Test
+    public void testMemoryTokenCacheStore() throws InterruptedException, IOException, JSONException {
+        runAllThreadCounts("MemoryTokenCacheStore", new MemoryTokenCacheStore(), IN_MEMORY_OPERATIONS);
+    }
+
+    @Test
+    public void testDelegatingCache() throws InterruptedException, IOException, JSONException {
+        runAllThreadCounts("DelegatingCache", new DelegatingCache(mContext, new MemoryTokenCacheStore()),
+                IN_MEMORY_OPERATIONS);
+    }
+
+    @Test
+    public void testFileTokenCacheStore() throws InterruptedException, IOException, JSONException {
+        runAllThreadCounts("FileTokenCacheStore", new FileTokenCacheStore(mContext, FILE_NAME), PERSISTED_OPERATIONS);
+    }
+
+    @Test
+    public void testDefaultTokenCacheStore() throws InterruptedException, IOException, JSONException {
+        final DefaultTokenCacheStore store = new DefaultTokenCacheStore(mContext);
+        store.removeAll();
+        runAllThreadCounts("DefaultTokenCacheStore", store, PERSISTED_OPERATIONS);
+    }
+
+    @Test
+    public void testSQLiteTokenCacheStore() throws InterruptedException, IOException, JSONException {
+        runAllThreadCounts("SQLiteTokenCacheStore", new SQLiteTokenCacheStore(mContext), PERSISTED_OPERATIONS);
+    }
+
+    private static void runAllThreadCounts(final String storeName, final ITokenCacheStore store,
+                                           final int operationsPerThread)
+            throws InterruptedException, IOException, JSONException {
+        final TokenCacheStoreStressHarness harness = new TokenCacheStoreStressHarness(store, operationsPerThread);
+        final JSONArray results = new JSONArray();
+        for (final int threadCount : THREAD_COUNTS) {
+            final TokenCacheStoreStressHarness.Result result = harness.run(threadCount);
+            results.put(new JSONObject()
+                    .put("threads", result.getThreadCount())
+                    .put("operations", result.getOperations())
+                    .put("elapsedNanos", result.getElapsedNanos())
+                    .put("operationsPerSecond", result.getOperationsPerSecond()));
+        }
+
+        writeResults(storeName, new JSONObject().put("store", storeName).put("results", results));
+    }
+
+    private static void writeResults(final String storeName, final JSONObject results) throws IOException {
+        if (!RESULTS_DIRECTORY.isDirectory() && !RESULTS_DIRECTORY.mkdirs()) {
+            throw new IOException("Could not create " + RESULTS_DIRECTORY.getAbsolutePath());
+        }
+
+        final Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(RESULTS_DIRECTORY, storeName + ".json")), Charset.forName("UTF-8"));
+        try {
+            writer.write(results.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures acquireTokenSilentSync for an access token found in the cache, the allocation count reported
+ * with each result is the garbage created per call. Telemetry is measured with no dispatcher and with an
+ * aggregating dispatcher, which builds and flushes the events of every call.
+ * <p>
+ * {@link #cacheHitThroughBackgroundPipeline()} resolves the same cache hit through the background thread
+ * and the main looper, as acquireTokenSilentSync did before it read the cache on the calling thread.
+ * Compare it with {@link #cacheHitWithoutTelemetry()}. The runs in the results give the percentiles.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AcquireTokenSilentBenchmark {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String RESOURCE = "resource";
+
+    private static final String CLIENT_ID = "clientid";
+
+    private static final String USER_ID = "userid";
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private AuthenticationContext mContext;
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata(false));
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        cache.setItem(CacheKey.createCacheKeyForRTEntry(AUTHORITY, RESOURCE, CLIENT_ID, USER_ID), createValidItem());
+        mContext = new AuthenticationContext(getInstrumentation().getContext(), AUTHORITY, false, cache);
+    }
+
+    @After
+    public void tearDown() {
+        Telemetry.getInstance().registerDispatcher(null, false);
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void cacheHitWithoutTelemetry() throws AuthenticationException, InterruptedException {
+        Telemetry.getInstance().registerDispatcher(null, false);
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mContext.acquireTokenSilentSync(RESOURCE, CLIENT_ID, USER_ID);
+        }
+    }
+
+    @Test
+    public void cacheHitWithAggregatedTelemetry() throws AuthenticationException, InterruptedException {
+        Telemetry.getInstance().registerDispatcher(new IDispatcher() {
+            @Override
+            public void dispatchEvent(final Map<String, String> events) {
+            }
+        }, true);
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mContext.acquireTokenSilentSync(RESOURCE, CLIENT_ID, USER_ID);
+        }
+    }
+
+    @Test
+    public void cacheHitThroughBackgroundPipeline() throws InterruptedException {
+        Telemetry.getInstance().registerDispatcher(null, false);
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            acquireTokenSilentThroughPipeline();
+        }
+    }
+
+    private void acquireTokenSilentThroughPipeline() throws InterruptedException {
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        mContext.acquireTokenSilentAsync(RESOURCE, CLIENT_ID, USER_ID,
+                new AuthenticationCallback<AuthenticationResult>() {
+                    @Override
+                    public void onSuccess(final AuthenticationResult authenticationResult) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Exception exc) {
+                        error.set(exc);
+                        latch.countDown();
+                    }
+                });
+
+        if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("acquireTokenSilentAsync did not complete");
+        }
+
+        if (error.get() != null) {
+            throw new IllegalStateException("Cache hit expected", error.get());
+        }
+    }
+
+    private static TokenCacheItem createValidItem() {
+        final Calendar expiresOn = new GregorianCalendar();
+        expiresOn.add(Calendar.HOUR, 1);
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(AUTHORITY);
+        item.setResource(RESOURCE);
+        item.setClientId(CLIENT_ID);
+        item.setAccessToken("accessToken");
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn.getTime());
+        item.setUserInfo(new UserInfo(USER_ID, "", "", "", USER_ID));
+        return item;
+    }
+}
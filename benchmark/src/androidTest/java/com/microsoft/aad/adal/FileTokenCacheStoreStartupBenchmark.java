@@ -0,0 +1,174 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures opening a {@link FileTokenCacheStore} with 100 and 1000 entries: the constructor alone, and the
+ * constructor followed by the first read, which waits for the file to be loaded. "serialized" files are
+ * written with Java serialization by earlier versions and are migrated when loaded, "binary" files are
+ * in the current format.
+ */
+@RunWith(Parameterized.class)
+public class FileTokenCacheStoreStartupBenchmark {
+
+    private static final String CACHE_FILE_NAME = "adal-benchmark-startup-cache";
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mCacheSize;
+
+    private final boolean mSerialized;
+
+    private Context mContext;
+
+    private File mFile;
+
+    private byte[] mFileContent;
+
+    private String mFirstKey;
+
+    @Parameterized.Parameters(name = "{0}_{1}")
+    public static Collection<Object[]> files() {
+        return Arrays.asList(new Object[][]{
+                {100, "serialized"},
+                {100, "binary"},
+                {1000, "serialized"},
+                {1000, "binary"}
+        });
+    }
+
+    public FileTokenCacheStoreStartupBenchmark(final int cacheSize, final String format) {
+        mCacheSize = cacheSize;
+        mSerialized = "serialized".equals(format);
+    }
+
+    @Before
+    public void setUp() throws AuthenticationException, IOException {
+        mContext = getInstrumentation().getTargetContext();
+        mFile = new File(mContext.getDir(mContext.getPackageName(), Context.MODE_PRIVATE), CACHE_FILE_NAME);
+
+        final MemoryTokenCacheStore cache = new MemoryTokenCacheStore();
+        for (int i = 0; i < mCacheSize; i++) {
+            final TokenCacheItem item = TokenCacheStoreBenchmark.createItem("resource" + i);
+            final String key = CacheKey.createCacheKey(item);
+            if (i == 0) {
+                mFirstKey = key;
+            }
+            cache.setItem(key, item);
+        }
+
+        final ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(mFile));
+        try {
+            output.writeObject(cache);
+        } finally {
+            output.close();
+        }
+
+        if (!mSerialized) {
+            // Loading migrates the file to the current format
+            new FileTokenCacheStore(mContext, CACHE_FILE_NAME).contains(mFirstKey);
+        }
+
+        mFileContent = readFile();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void construct() throws IOException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final FileTokenCacheStore store = new FileTokenCacheStore(mContext, CACHE_FILE_NAME);
+
+            state.pauseTiming();
+            // Let the load finish, a migration rewrites the file
+            store.contains(mFirstKey);
+            restoreFile();
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void constructAndFirstRead() throws IOException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            new FileTokenCacheStore(mContext, CACHE_FILE_NAME).getItem(mFirstKey);
+
+            state.pauseTiming();
+            restoreFile();
+            state.resumeTiming();
+        }
+    }
+
+    private byte[] readFile() throws IOException {
+        final byte[] content = new byte[(int) mFile.length()];
+        final InputStream input = new FileInputStream(mFile);
+        try {
+            int read = 0;
+            while (read < content.length) {
+                read += input.read(content, read, content.length - read);
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private void restoreFile() throws IOException {
+        final OutputStream output = new FileOutputStream(mFile);
+        try {
+            output.write(mFileContent);
+        } finally {
+            output.close();
+        }
+    }
+}
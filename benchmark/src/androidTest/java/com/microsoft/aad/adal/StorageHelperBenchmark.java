@@ -0,0 +1,87 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures encryption and decryption of a token cache entry by {@link StorageHelper}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StorageHelperBenchmark {
+
+    // About the size of a serialized TokenCacheItem with an AAD access token
+    private static final int CLEAR_TEXT_LENGTH = 2048;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private StorageHelper mStorageHelper;
+
+    private String mClearText;
+
+    private String mEncryptedText;
+
+    @Before
+    public void setUp() throws GeneralSecurityException, IOException {
+        mStorageHelper = new StorageHelper(getInstrumentation().getTargetContext());
+
+        final StringBuilder builder = new StringBuilder(CLEAR_TEXT_LENGTH);
+        for (int i = 0; i < CLEAR_TEXT_LENGTH; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        mClearText = builder.toString();
+
+        // Also loads the secret key so that it is not part of the measurement
+        mEncryptedText = mStorageHelper.encrypt(mClearText);
+    }
+
+    @Test
+    public void encrypt() throws GeneralSecurityException, IOException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mStorageHelper.encrypt(mClearText);
+        }
+    }
+
+    @Test
+    public void decrypt() throws GeneralSecurityException, IOException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mStorageHelper.decrypt(mEncryptedText);
+        }
+    }
+}
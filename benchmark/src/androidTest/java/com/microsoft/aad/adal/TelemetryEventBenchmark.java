@@ -0,0 +1,75 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures building and aggregating telemetry events, the allocation count reported with each
+ * result shows the garbage created per event.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TelemetryEventBenchmark {
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void buildAndProcessUIEvent() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final Map<String, String> dispatchMap = new HashMap<>();
+        while (state.keepRunning()) {
+            final UIEvent event = new UIEvent(EventStrings.UI_EVENT);
+            event.setRedirectCount(3);
+            event.setNTLM(false);
+            event.setWebViewInitTime(120);
+            event.setTimeToFirstPaint(850);
+            event.setPrewarmed(true);
+            event.addBackgroundTask(2, 40);
+            event.processEvent(dispatchMap);
+        }
+    }
+
+    @Test
+    public void buildAndProcessDefaultEvent() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final Map<String, String> dispatchMap = new HashMap<>();
+        while (state.keepRunning()) {
+            final DefaultEvent event = new DefaultEvent();
+            event.setProperty(EventStrings.EVENT_NAME, EventStrings.API_EVENT);
+            event.setProperty(EventStrings.AUTHORITY_NAME, "https://login.windows.net/common");
+            event.setProperty(EventStrings.API_ID, "100");
+            event.processEvent(dispatchMap);
+        }
+    }
+}
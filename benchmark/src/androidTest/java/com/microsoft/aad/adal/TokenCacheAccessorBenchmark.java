@@ -0,0 +1,114 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures access token lookups through {@link TokenCacheAccessor} with 10, 100 and 1000 entries in the cache.
+ * The authority has aliases, so a miss also goes through the alias lookups.
+ */
+@RunWith(Parameterized.class)
+public class TokenCacheAccessorBenchmark {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String CLIENT_ID = "clientid";
+
+    private static final String USER_ID = "userid";
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mCacheSize;
+
+    private TokenCacheAccessor mTokenCacheAccessor;
+
+    @Parameterized.Parameters(name = "entries={0}")
+    public static Collection<Object[]> cacheSizes() {
+        return Arrays.asList(new Object[][]{
+                {10},
+                {100},
+                {1000}
+        });
+    }
+
+    public TokenCacheAccessorBenchmark(final int cacheSize) {
+        mCacheSize = cacheSize;
+    }
+
+    @Before
+    public void setUp() throws MalformedURLException, AuthenticationException {
+        AuthorityValidationMetadataCache.updateInstanceDiscoveryMap(new URL(AUTHORITY).getHost(),
+                new InstanceDiscoveryMetadata("login.microsoftonline.com", "login.windows.net",
+                        Arrays.asList("login.microsoftonline.com", "login.windows.net", "sts.windows.net")));
+
+        final ITokenCacheStore store = new MemoryTokenCacheStore();
+        for (int i = 0; i < mCacheSize; i++) {
+            final TokenCacheItem item = TokenCacheStoreBenchmark.createItem("resource" + i);
+            store.setItem(CacheKey.createCacheKey(item), item);
+        }
+
+        mTokenCacheAccessor = new TokenCacheAccessor(getInstrumentation().getTargetContext(), store, AUTHORITY,
+                UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() {
+        AuthorityValidationMetadataCache.clearAuthorityValidationCache();
+    }
+
+    @Test
+    public void getATFromCacheHit() throws AuthenticationException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final String resource = "resource" + (mCacheSize - 1);
+        while (state.keepRunning()) {
+            mTokenCacheAccessor.getATFromCache(resource, CLIENT_ID, USER_ID);
+        }
+    }
+
+    @Test
+    public void getATFromCacheMiss() throws AuthenticationException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mTokenCacheAccessor.getATFromCache("missingResource", CLIENT_ID, USER_ID);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+import android.util.Base64;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.microsoft.identity.common.java.exception.ServiceException;
+import com.microsoft.identity.common.java.providers.microsoft.azureactivedirectory.AzureActiveDirectory;
+import com.microsoft.identity.common.java.providers.microsoft.azureactivedirectory.AzureActiveDirectoryCloud;
+import com.microsoft.identity.common.java.providers.microsoft.azureactivedirectory.ClientInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures saving a token response through {@link TokenCacheAccessor#updateCachedItemWithResult}. "common" saves
+ * to the common cache, which is used when the default token cache is, and "memory" saves to a
+ * {@link MemoryTokenCacheStore}.
+ */
+@RunWith(Parameterized.class)
+public class TokenCacheAccessorSaveBenchmark {
+
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+
+    private static final String RESOURCE = "resource";
+
+    private static final String CLIENT_ID = "clientid";
+
+    private static final String USER_ID = "userid";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mCacheType;
+
+    private ITokenCacheStore mStore;
+
+    private TokenCacheAccessor mTokenCacheAccessor;
+
+    private AuthenticationRequest mRequest;
+
+    private AuthenticationResult mResult;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> caches() {
+        return Arrays.asList(new Object[][]{
+                {"memory"},
+                {"common"}
+        });
+    }
+
+    public TokenCacheAccessorSaveBenchmark(final String cacheType) {
+        mCacheType = cacheType;
+    }
+
+    @Before
+    public void setUp() throws MalformedURLException, ServiceException {
+        final Context context = getInstrumentation().getTargetContext();
+        AzureActiveDirectory.putCloud(new URL(AUTHORITY).getHost(),
+                new AzureActiveDirectoryCloud("login.microsoftonline.com", "login.windows.net",
+                        Arrays.asList("login.microsoftonline.com", "login.windows.net", "sts.windows.net")));
+
+        if ("memory".equals(mCacheType)) {
+            mStore = new MemoryTokenCacheStore();
+        } else {
+            mStore = new DelegatingCache(context, new DefaultTokenCacheStore(context));
+        }
+
+        mStore.removeAll();
+        mTokenCacheAccessor = new TokenCacheAccessor(context, mStore, AUTHORITY, UUID.randomUUID().toString());
+
+        mRequest = new AuthenticationRequest(AUTHORITY, RESOURCE, CLIENT_ID, "https://localhost", "",
+                PromptBehavior.Auto, "", UUID.randomUUID(), false, null);
+        mResult = new AuthenticationResult("accesstoken", "refreshtoken",
+                new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)), true,
+                new UserInfo(USER_ID, "givenName", "familyName", "identity", USER_ID), "tenantid", createIdToken(),
+                null, CLIENT_ID);
+        mResult.setAuthority(AUTHORITY);
+        mResult.setClientInfo(new ClientInfo(encode("{\"uid\":\"uid\",\"utid\":\"utid\"}")));
+        mResult.setResponseReceived(System.currentTimeMillis());
+        mResult.setExpiresIn(TimeUnit.HOURS.toSeconds(1));
+    }
+
+    @After
+    public void tearDown() {
+        mStore.removeAll();
+    }
+
+    @Test
+    public void updateCachedItemWithResult() throws AuthenticationException {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mTokenCacheAccessor.updateCachedItemWithResult(mRequest, mResult, null);
+        }
+    }
+
+    /**
+     * Creates an unsigned id token, the cache only reads its claims.
+     */
+    private static String createIdToken() {
+        final String claims = "{\"iss\":\"https://sts.windows.net/utid/\",\"aud\":\"" + CLIENT_ID + "\","
+                + "\"oid\":\"" + USER_ID + "\",\"tid\":\"utid\",\"upn\":\"user@contoso.com\","
+                + "\"preferred_username\":\"user@contoso.com\",\"given_name\":\"givenName\","
+                + "\"family_name\":\"familyName\",\"name\":\"name\"}";
+        return encode("{\"alg\":\"none\"}") + "." + encode(claims) + ".";
+    }
+
+    private static String encode(final String value) {
+        return Base64.encodeToString(value.getBytes(UTF8), Base64.NO_PADDING | Base64.NO_WRAP | Base64.URL_SAFE);
+    }
+}
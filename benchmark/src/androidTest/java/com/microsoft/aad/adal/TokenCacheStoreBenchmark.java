@@ -0,0 +1,155 @@
+// Copyright (c) Microsoft Corporation.
+// All rights reserved.
+//
+// This code is licensed under the MIT License.
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files(the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions :
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Measures get, set and getAll of the {@link ITokenCacheStore} implementations shipped with ADAL.
+ */
+@RunWith(Parameterized.class)
+public class TokenCacheStoreBenchmark {
+
+    private static final String AUTHORITY = "https://login.windows.net/common";
+
+    private static final String CLIENT_ID = "clientid";
+
+    private static final String USER_ID = "userid";
+
+    private static final String CACHE_FILE_NAME = "adal-benchmark-cache";
+
+    private static final int CACHE_SIZE = 100;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mStoreType;
+
+    private ITokenCacheStore mStore;
+
+    private String[] mKeys;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> stores() {
+        return Arrays.asList(new Object[][]{
+                {"memory"},
+                {"file"},
+                {"default"},
+                {"sqlite"}
+        });
+    }
+
+    public TokenCacheStoreBenchmark(final String storeType) {
+        mStoreType = storeType;
+    }
+
+    @Before
+    public void setUp() throws AuthenticationException {
+        final Context context = getInstrumentation().getTargetContext();
+        if ("memory".equals(mStoreType)) {
+            mStore = new MemoryTokenCacheStore();
+        } else if ("file".equals(mStoreType)) {
+            mStore = new FileTokenCacheStore(context, CACHE_FILE_NAME);
+        } else if ("sqlite".equals(mStoreType)) {
+            mStore = new SQLiteTokenCacheStore(context);
+        } else {
+            mStore = new DefaultTokenCacheStore(context);
+        }
+
+        mStore.removeAll();
+        mKeys = new String[CACHE_SIZE];
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            final TokenCacheItem item = createItem("resource" + i);
+            mKeys[i] = CacheKey.createCacheKey(item);
+            mStore.setItem(mKeys[i], item);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mStore.removeAll();
+    }
+
+    @Test
+    public void getItem() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mStore.getItem(mKeys[i++ % CACHE_SIZE]);
+        }
+    }
+
+    @Test
+    public void setItem() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        final TokenCacheItem item = createItem("resource0");
+        while (state.keepRunning()) {
+            mStore.setItem(mKeys[0], item);
+        }
+    }
+
+    @Test
+    public void getAll() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final Iterator<TokenCacheItem> items = mStore.getAll();
+            while (items.hasNext()) {
+                items.next();
+            }
+        }
+    }
+
+    static TokenCacheItem createItem(final String resource) {
+        final Calendar expiresOn = new GregorianCalendar();
+        expiresOn.add(Calendar.HOUR, 1);
+
+        final TokenCacheItem item = new TokenCacheItem();
+        item.setAuthority(AUTHORITY);
+        item.setResource(resource);
+        item.setClientId(CLIENT_ID);
+        item.setAccessToken("accessToken");
+        item.setRefreshToken("refreshToken");
+        item.setExpiresOn(expiresOn.getTime());
+        item.setUserInfo(new UserInfo(USER_ID, "givenName", "familyName", "identityProvider", USER_ID));
+        return item;
+    }
+}
@@ -0,0 +1,152 @@
+//  Copyright (c) Microsoft Corporation.
+//  All rights reserved.
+//
+//  This code is licensed under the MIT License.
+//
+//  Permission is hereby granted, free of charge, to any person obtaining a copy
+//  of this software and associated documentation files(the "Software"), to deal
+//  in the Software without restriction, including without limitation the rights
+//  to use, copy, modify, merge, publish, distribute, sublicense, and / or sell
+//  copies of the Software, and to permit persons to whom the Software is
+//  furnished to do so, subject to the following conditions :
+//
+//  The above copyright notice and this permission notice shall be included in
+//  all copies or substantial portions of the Software.
+//
+//  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+//  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+//  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+//  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+//  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+//  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+//  THE SOFTWARE.
+
+package com.microsoft.aad.adal;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+/**
+ * Compares the {@link ITokenStoreQuery} operations of the SharedPreferences and the SQLite token
+ * cache stores with a cache of a thousand items.
+ */
+@RunWith(Parameterized.class)
+public class TokenStoreQueryBenchmark {
+
+    private static final int CACHE_SIZE = 1000;
+
+    private static final int USER_COUNT = 10;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mStoreType;
+
+    private ITokenCacheStore mStore;
+
+    private ITokenStoreQuery mQuery;
+
+    private String[] mKeys;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> stores() {
+        return Arrays.asList(new Object[][]{
+                {"default"},
+                {"sqlite"}
+        });
+    }
+
+    public TokenStoreQueryBenchmark(final String storeType) {
+        mStoreType = storeType;
+    }
+
+    @Before
+    public void setUp() throws AuthenticationException {
+        final Context context = getInstrumentation().getTargetContext();
+        if ("sqlite".equals(mStoreType)) {
+            final SQLiteTokenCacheStore store = new SQLiteTokenCacheStore(context);
+            mStore = store;
+            mQuery = store;
+        } else {
+            final DefaultTokenCacheStore store = new DefaultTokenCacheStore(context);
+            mStore = store;
+            mQuery = store;
+        }
+
+        mStore.removeAll();
+        mKeys = new String[CACHE_SIZE];
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            final TokenCacheItem item = TokenCacheStoreBenchmark.createItem("resource" + i);
+            item.setUserInfo(new UserInfo(getUserId(i), "givenName", "familyName", "identityProvider",
+                    getUserId(i)));
+            mKeys[i] = CacheKey.createCacheKey(item);
+            mStore.setItem(mKeys[i], item);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mStore.removeAll();
+    }
+
+    @Test
+    public void getItem() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mStore.getItem(mKeys[i++ % CACHE_SIZE]);
+        }
+    }
+
+    @Test
+    public void getTokensForUser() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mQuery.getTokensForUser(getUserId(i++));
+        }
+    }
+
+    @Test
+    public void getTokensForResource() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            mQuery.getTokensForResource("resource" + (i++ % CACHE_SIZE));
+        }
+    }
+
+    @Test
+    public void getUniqueUsersWithTokenCache() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mQuery.getUniqueUsersWithTokenCache();
+        }
+    }
+
+    @Test
+    public void getTokensAboutToExpire() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mQuery.getTokensAboutToExpire();
+        }
+    }
+
+    private static String getUserId(final int index) {
+        return "userid" + (index % USER_COUNT);
+    }
+}